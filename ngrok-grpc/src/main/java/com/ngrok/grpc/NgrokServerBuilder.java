@@ -0,0 +1,110 @@
+package com.ngrok.grpc;
+
+import com.ngrok.Connection;
+import com.ngrok.Listener;
+import com.ngrok.netty.NgrokServerChannel;
+
+import io.grpc.ForwardingServerBuilder;
+import io.grpc.ServerBuilder;
+import io.grpc.netty.NettyServerBuilder;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.net.InetSocketAddress;
+
+/**
+ * A gRPC {@link ServerBuilder} serving HTTP/2 connections straight from an ngrok
+ * {@link Listener}, instead of forwarding them to a local port:
+ *
+ * <pre>
+ * var server = NgrokServerBuilder.forListener(session.tcpEndpoint().listen())
+ *         .addService(new GreeterImpl())
+ *         .build()
+ *         .start();
+ * </pre>
+ *
+ * Connections are accepted by an {@link NgrokServerChannel} and handled by gRPC's Netty
+ * transport, so calls are multiplexed as HTTP/2 streams on each connection, up to
+ * {@link #maxConcurrentCallsPerConnection(int)}. Reads are only issued while the
+ * transport asks for data and writes are tracked by the channel's outbound buffer,
+ * so HTTP/2 flow control, sized with {@link #flowControlWindow(int)}, applies all the way
+ * to the tunnel.
+ *
+ * ngrok terminates TLS, so the listener should be a TCP or TLS endpoint, or a TCP or
+ * TLS-terminating edge, serving HTTP/2 with prior knowledge.
+ */
+public final class NgrokServerBuilder extends ForwardingServerBuilder<NgrokServerBuilder> {
+    private final NettyServerBuilder delegate;
+
+    private NgrokServerBuilder(Listener<? extends Connection> listener) {
+        // the listener is bound when created, so the address is ignored
+        this.delegate = NettyServerBuilder.forAddress(new InetSocketAddress(0))
+                .channelFactory(() -> new NgrokServerChannel(listener))
+                .bossEventLoopGroup(SharedGroups.BOSS)
+                .workerEventLoopGroup(SharedGroups.WORKER);
+    }
+
+    /**
+     * Creates a new builder serving the given listener. The listener is closed when the
+     * built server is shut down.
+     *
+     * @param listener the listener to accept connections from
+     * @return the builder
+     */
+    public static NgrokServerBuilder forListener(Listener<? extends Connection> listener) {
+        return new NgrokServerBuilder(listener);
+    }
+
+    /**
+     * Sets the event loops accepting connections and serving calls, instead of the
+     * loops shared by all ngrok gRPC servers. The caller is responsible for shutting
+     * them down once the server has terminated.
+     *
+     * @param boss   the event loop group accepting connections
+     * @param worker the event loop group serving connections
+     * @return this builder
+     */
+    public NgrokServerBuilder eventLoopGroups(EventLoopGroup boss, EventLoopGroup worker) {
+        delegate.bossEventLoopGroup(boss);
+        delegate.workerEventLoopGroup(worker);
+        return this;
+    }
+
+    /**
+     * Sets the initial HTTP/2 flow control window of each connection and stream.
+     *
+     * @param flowControlWindow the window size in bytes
+     * @return this builder
+     */
+    public NgrokServerBuilder flowControlWindow(int flowControlWindow) {
+        delegate.flowControlWindow(flowControlWindow);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of concurrent calls on each connection. Unlimited by default.
+     *
+     * @param maxCalls the maximum number of concurrent calls
+     * @return this builder
+     */
+    public NgrokServerBuilder maxConcurrentCallsPerConnection(int maxCalls) {
+        delegate.maxConcurrentCallsPerConnection(maxCalls);
+        return this;
+    }
+
+    @Override
+    protected ServerBuilder<?> delegate() {
+        return delegate;
+    }
+
+    /**
+     * Event loops shared by servers without their own. ngrok channels complete their
+     * I/O on the native runtime and only hand results to the loops, so they do not
+     * need selector based loops.
+     */
+    private static class SharedGroups {
+        static final EventLoopGroup BOSS = new DefaultEventLoopGroup(1, new DefaultThreadFactory("ngrok-grpc-boss", true));
+        static final EventLoopGroup WORKER = new DefaultEventLoopGroup(0, new DefaultThreadFactory("ngrok-grpc-worker", true));
+    }
+}
@@ -0,0 +1,205 @@
+package com.ngrok.grpc;
+
+import com.ngrok.Connection;
+import com.ngrok.Listener;
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCalls;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NgrokServerBuilderTest {
+    private static final MethodDescriptor.Marshaller<String> UTF8 = new MethodDescriptor.Marshaller<>() {
+        @Override
+        public InputStream stream(String value) {
+            return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String parse(InputStream stream) {
+            try {
+                return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+
+    private static final MethodDescriptor<String, String> ECHO = MethodDescriptor.<String, String>newBuilder()
+            .setType(MethodDescriptor.MethodType.UNARY)
+            .setFullMethodName("test.Echo/Echo")
+            .setRequestMarshaller(UTF8)
+            .setResponseMarshaller(UTF8)
+            .build();
+
+    private static final MethodDescriptor<String, String> REPEAT = MethodDescriptor.<String, String>newBuilder()
+            .setType(MethodDescriptor.MethodType.SERVER_STREAMING)
+            .setFullMethodName("test.Echo/Repeat")
+            .setRequestMarshaller(UTF8)
+            .setResponseMarshaller(UTF8)
+            .build();
+
+    private static final ServerServiceDefinition SERVICE = ServerServiceDefinition.builder("test.Echo")
+            .addMethod(ECHO, ServerCalls.<String, String>asyncUnaryCall((req, response) -> {
+                response.onNext("echo " + req);
+                response.onCompleted();
+            }))
+            .addMethod(REPEAT, ServerCalls.<String, String>asyncServerStreamingCall((req, response) -> {
+                for (int i = 0; i < 64; i++) {
+                    response.onNext(i + req);
+                }
+                response.onCompleted();
+            }))
+            .build();
+
+    @Test
+    public void testUnaryCall() throws Exception {
+        var socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        var server = NgrokServerBuilder.forListener(new SocketListener(socket))
+                .addService(SERVICE)
+                .build()
+                .start();
+        var channel = ManagedChannelBuilder.forAddress(socket.getInetAddress().getHostAddress(), socket.getLocalPort())
+                .usePlaintext()
+                .build();
+
+        try {
+            assertEquals(List.of(InetSocketAddress.createUnresolved("socket", 0)), server.getListenSockets());
+            var reply = ClientCalls.blockingUnaryCall(channel, ECHO,
+                    CallOptions.DEFAULT.withDeadlineAfter(10, TimeUnit.SECONDS), "hello");
+            assertEquals("echo hello", reply);
+        } finally {
+            channel.shutdownNow();
+            server.shutdownNow();
+            assertTrue(server.awaitTermination(5, TimeUnit.SECONDS));
+        }
+        assertTrue(socket.isClosed());
+    }
+
+    @Test
+    public void testServerStreamingCall() throws Exception {
+        var socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        var server = NgrokServerBuilder.forListener(new SocketListener(socket))
+                .addService(SERVICE)
+                .build()
+                .start();
+        var channel = ManagedChannelBuilder.forAddress(socket.getInetAddress().getHostAddress(), socket.getLocalPort())
+                .usePlaintext()
+                .build();
+
+        // 64 messages of 4KiB are well past the initial HTTP/2 flow control window,
+        // so the stream only completes if window updates make it through the channel
+        var payload = "x".repeat(4096);
+        try {
+            var replies = ClientCalls.blockingServerStreamingCall(channel, REPEAT,
+                    CallOptions.DEFAULT.withDeadlineAfter(10, TimeUnit.SECONDS), payload);
+            int count = 0;
+            while (replies.hasNext()) {
+                assertEquals(count + payload, replies.next());
+                count++;
+            }
+            assertEquals(64, count);
+        } finally {
+            channel.shutdownNow();
+            server.shutdownNow();
+            assertTrue(server.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Hands out connections accepted from a local socket, standing in for the tunnel.
+     */
+    private static class SocketListener implements Listener<Connection> {
+        private final ServerSocket socket;
+
+        SocketListener(ServerSocket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public Connection accept() throws IOException {
+            return new SocketConnection(socket.accept());
+        }
+
+        @Override
+        public String getId() {
+            return "socket";
+        }
+
+        @Override
+        public String getMetadata() {
+            return "";
+        }
+
+        @Override
+        public String getForwardsTo() {
+            return "";
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    /**
+     * Follows the native conventions: reads fill the buffer from its start and flip it,
+     * and writes send everything up to the buffer limit.
+     */
+    private static class SocketConnection implements Connection {
+        private final Socket socket;
+
+        SocketConnection(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public String getRemoteAddr() {
+            return socket.getRemoteSocketAddress().toString();
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            var buf = new byte[dst.capacity()];
+            var sz = socket.getInputStream().read(buf);
+            if (sz < 0) {
+                dst.position(0).limit(0);
+                return -1;
+            }
+            dst.clear();
+            dst.put(buf, 0, sz).flip();
+            return sz;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            var buf = new byte[src.limit()];
+            src.duplicate().position(0).get(buf);
+            socket.getOutputStream().write(buf);
+            return buf.length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.ngrok.httpserver;
+
+import com.ngrok.Connection;
+import com.sun.net.httpserver.Headers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Serves the HTTP/1.1 exchanges of a single ngrok {@link Connection}, one request after
+ * the other, until the connection or the server is closed.
+ *
+ * Reads and writes use the connection's asynchronous operations and park the calling
+ * thread until they complete, so a virtual thread serving the connection does not pin
+ * its carrier inside the native runtime.
+ */
+class HttpConnection implements Runnable {
+    private static final System.Logger LOG = System.getLogger(HttpConnection.class.getName());
+
+    private static final int BUFFER_SIZE = 16384;
+    private static final int MAX_LINE = 8192;
+    private static final int MAX_HEADERS = 200;
+
+    private static final CompletionHandler<Integer, CompletableFuture<Integer>> HANDLER = new CompletionHandler<>() {
+        @Override
+        public void completed(Integer sz, CompletableFuture<Integer> done) {
+            done.complete(sz);
+        }
+
+        @Override
+        public void failed(Throwable exc, CompletableFuture<Integer> done) {
+            done.completeExceptionally(exc);
+        }
+    };
+
+    private final NgrokHttpServer server;
+    private final Connection conn;
+    private final Input input = new Input();
+    private final Output output = new Output();
+
+    private volatile boolean busy;
+    private volatile boolean closed;
+
+    HttpConnection(NgrokHttpServer server, Connection conn) {
+        this.server = server;
+        this.conn = conn;
+    }
+
+    Connection connection() {
+        return conn;
+    }
+
+    InputStream input() {
+        return input;
+    }
+
+    OutputStream output() {
+        return output;
+    }
+
+    boolean isBusy() {
+        return busy;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (server.isRunning() && serve()) {
+                busy = false;
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                LOG.log(System.Logger.Level.DEBUG, "ngrok connection failed", e);
+            }
+        } catch (RuntimeException e) {
+            LOG.log(System.Logger.Level.WARNING, "exception while serving ngrok connection", e);
+        } finally {
+            busy = false;
+            close();
+            server.closed(this);
+        }
+    }
+
+    /**
+     * Reads a request and serves it.
+     *
+     * @return true if the connection can be used for another request
+     */
+    private boolean serve() throws IOException {
+        String line;
+        do {
+            line = readLine();
+            if (line == null) {
+                return false;
+            }
+        } while (line.isEmpty());
+        busy = true;
+
+        var parts = line.split(" ");
+        if (parts.length != 3 || !parts[2].startsWith("HTTP/1.")) {
+            reject(400, "Bad Request");
+            return false;
+        }
+        URI uri;
+        try {
+            uri = new URI(parts[1]);
+        } catch (URISyntaxException e) {
+            reject(400, "Bad Request");
+            return false;
+        }
+
+        var headers = readHeaders();
+        if (headers == null) {
+            return false;
+        }
+        if (!hasValidFraming(headers)) {
+            reject(400, "Bad Request");
+            return false;
+        }
+
+        var context = server.findContext(uri.getPath());
+        var exchange = new NgrokHttpExchange(this, context, parts[0], uri, parts[2], headers);
+        if ("100-continue".equalsIgnoreCase(headers.getFirst("Expect"))) {
+            writeAscii("HTTP/1.1 100 Continue\r\n\r\n");
+            output.flush();
+        }
+
+        server.exchangeStarted();
+        try {
+            if (context == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                context.handle(exchange);
+            }
+        } finally {
+            server.exchangeFinished();
+        }
+        return exchange.finish();
+    }
+
+    /**
+     * Reads the request headers, rejecting requests with malformed or too many headers.
+     *
+     * @return the headers, or null if the request was rejected
+     */
+    private Headers readHeaders() throws IOException {
+        var headers = new Headers();
+        for (int i = 0; i <= MAX_HEADERS; i++) {
+            var line = readLine();
+            if (line == null) {
+                throw new IOException("connection closed while reading headers");
+            }
+            if (line.isEmpty()) {
+                return headers;
+            }
+            var colon = line.indexOf(':');
+            // no whitespace is allowed around the field name, a proxy in front could
+            // read such a header differently (RFC 9112, section 5.1)
+            if (colon <= 0 || isWhitespace(line.charAt(0)) || isWhitespace(line.charAt(colon - 1))) {
+                reject(400, "Bad Request");
+                return null;
+            }
+            headers.add(line.substring(0, colon), line.substring(colon + 1).trim());
+        }
+        reject(431, "Request Header Fields Too Large");
+        return null;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    /**
+     * Checks that the request body is framed by a single non-negative
+     * {@code Content-Length} or by chunked transfer encoding alone. Requests framed
+     * both ways, or by codings we cannot decode, are rejected rather than guessed at,
+     * as a proxy in front could read their body differently.
+     */
+    private static boolean hasValidFraming(Headers headers) {
+        var transferEncoding = headers.get("Transfer-Encoding");
+        var contentLength = headers.get("Content-Length");
+        if (transferEncoding != null) {
+            return contentLength == null && transferEncoding.size() == 1
+                    && transferEncoding.get(0).equalsIgnoreCase("chunked");
+        }
+        if (contentLength != null) {
+            if (contentLength.size() != 1) {
+                return false;
+            }
+            var value = contentLength.get(0);
+            if (value.isEmpty() || !value.chars().allMatch(c -> c >= '0' && c <= '9')) {
+                return false;
+            }
+            try {
+                Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void reject(int code, String reason) throws IOException {
+        writeAscii("HTTP/1.1 " + code + " " + reason + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+        output.flush();
+    }
+
+    /**
+     * Reads a line terminated by LF, dropping the optional CR before it.
+     *
+     * @return the line, or null if the connection was closed before any data was read
+     * @throws IOException if the line is too long or reading failed
+     */
+    String readLine() throws IOException {
+        var sb = new StringBuilder();
+        for (;;) {
+            var b = input.read();
+            if (b < 0) {
+                if (sb.length() == 0) {
+                    return null;
+                }
+                throw new IOException("connection closed in the middle of a line");
+            }
+            if (b == '\n') {
+                var len = sb.length();
+                if (len > 0 && sb.charAt(len - 1) == '\r') {
+                    sb.setLength(len - 1);
+                }
+                return sb.toString();
+            }
+            if (sb.length() == MAX_LINE) {
+                throw new IOException("line too long");
+            }
+            sb.append((char) b);
+        }
+    }
+
+    void writeAscii(String s) throws IOException {
+        output.write(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Closes the connection, which fails any pending read or write.
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            conn.close();
+        } catch (IOException ignored) {
+            // the connection is gone either way
+        }
+    }
+
+    private static int await(CompletableFuture<Integer> done) throws IOException {
+        try {
+            return done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * Buffers data read from the connection in a direct buffer.
+     */
+    private class Input extends InputStream {
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).flip();
+        private boolean endOfStream;
+
+        private boolean fill() throws IOException {
+            if (buffer.hasRemaining()) {
+                return true;
+            }
+            if (endOfStream) {
+                return false;
+            }
+
+            buffer.clear();
+            var done = new CompletableFuture<Integer>();
+            conn.readAsync(buffer, done, HANDLER);
+            var sz = await(done);
+            if (sz < 0) {
+                endOfStream = true;
+                buffer.position(0).limit(0);
+                return false;
+            }
+            buffer.position(0).limit(sz);
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return buffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            var sz = Math.min(len, buffer.remaining());
+            buffer.get(b, off, sz);
+            return sz;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Buffers data to write to the connection in a direct buffer, which is written
+     * once full or flushed.
+     */
+    private class Output extends OutputStream {
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                var sz = Math.min(len, buffer.remaining());
+                buffer.put(b, off, sz);
+                off += sz;
+                len -= sz;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                var done = new CompletableFuture<Integer>();
+                conn.writeAsync(buffer, done, HANDLER);
+                var sz = await(done);
+                // the connection writes from the start of the buffer
+                buffer.position(sz);
+                buffer.compact();
+                buffer.flip();
+            }
+            buffer.clear();
+        }
+    }
+}
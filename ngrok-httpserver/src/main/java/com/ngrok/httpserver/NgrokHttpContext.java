@@ -0,0 +1,125 @@
+package com.ngrok.httpserver;
+
+import com.sun.net.httpserver.Authenticator;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A context of an {@link NgrokHttpServer}. Exchanges pass through the context's
+ * authenticator first, then through its filters, before reaching its handler.
+ */
+class NgrokHttpContext extends HttpContext {
+    private final NgrokHttpServer server;
+    private final String path;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final List<Filter> filters = new CopyOnWriteArrayList<>();
+
+    private volatile HttpHandler handler;
+    private volatile Authenticator authenticator;
+
+    NgrokHttpContext(NgrokHttpServer server, String path, HttpHandler handler) {
+        this.server = server;
+        this.path = path;
+        this.handler = handler;
+    }
+
+    void handle(NgrokHttpExchange exchange) throws IOException {
+        var handler = this.handler;
+        if (handler == null) {
+            exchange.sendResponseHeaders(500, -1);
+            return;
+        }
+
+        var chain = new ArrayList<Filter>(filters.size() + 1);
+        var authenticator = this.authenticator;
+        if (authenticator != null) {
+            chain.add(new AuthFilter(authenticator));
+        }
+        chain.addAll(filters);
+        new Filter.Chain(chain, handler).doFilter(exchange);
+    }
+
+    @Override
+    public HttpHandler getHandler() {
+        return handler;
+    }
+
+    @Override
+    public void setHandler(HttpHandler handler) {
+        if (handler == null) {
+            throw new NullPointerException("handler");
+        }
+        if (this.handler != null) {
+            throw new IllegalArgumentException("handler already set");
+        }
+        this.handler = handler;
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public HttpServer getServer() {
+        return server;
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public List<Filter> getFilters() {
+        return filters;
+    }
+
+    @Override
+    public Authenticator setAuthenticator(Authenticator auth) {
+        var previous = authenticator;
+        authenticator = auth;
+        return previous;
+    }
+
+    @Override
+    public Authenticator getAuthenticator() {
+        return authenticator;
+    }
+
+    private static class AuthFilter extends Filter {
+        private final Authenticator authenticator;
+
+        AuthFilter(Authenticator authenticator) {
+            this.authenticator = authenticator;
+        }
+
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            var result = authenticator.authenticate(exchange);
+            if (result instanceof Authenticator.Success) {
+                ((NgrokHttpExchange) exchange).setPrincipal(((Authenticator.Success) result).getPrincipal());
+                chain.doFilter(exchange);
+            } else if (result instanceof Authenticator.Retry) {
+                exchange.sendResponseHeaders(((Authenticator.Retry) result).getResponseCode(), -1);
+            } else {
+                exchange.sendResponseHeaders(((Authenticator.Failure) result).getResponseCode(), -1);
+            }
+        }
+
+        @Override
+        public String description() {
+            return "Authentication filter";
+        }
+    }
+}
@@ -0,0 +1,522 @@
+package com.ngrok.httpserver;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An HTTP exchange read from an ngrok connection.
+ *
+ * Request bodies are framed by their {@code Content-Length} or chunked transfer
+ * encoding. Responses follow {@link #sendResponseHeaders(int, long)}: a positive length
+ * sends a body of exactly that length, zero sends a chunked body, and -1 sends no body.
+ * Responses to {@code HEAD} requests send no body, but keep a positive length as their
+ * {@code Content-Length}.
+ */
+class NgrokHttpExchange extends HttpExchange {
+    private final HttpConnection connection;
+    private final NgrokHttpContext context;
+    private final String method;
+    private final URI uri;
+    private final String protocol;
+    private final Headers requestHeaders;
+    private final Headers responseHeaders = new Headers();
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    private final InputStream requestBody;
+    private final OutputStream placeholder = new PlaceholderOutputStream();
+    private OutputStream responseBody;
+    private InputStream filteredIn;
+    private OutputStream filteredOut;
+
+    private HttpPrincipal principal;
+    private int responseCode = -1;
+    private boolean closeConnection;
+    private boolean closed;
+
+    NgrokHttpExchange(HttpConnection connection, NgrokHttpContext context, String method, URI uri, String protocol,
+                      Headers requestHeaders) throws IOException {
+        this.connection = connection;
+        this.context = context;
+        this.method = method;
+        this.uri = uri;
+        this.protocol = protocol;
+        this.requestHeaders = requestHeaders;
+
+        this.closeConnection = "HTTP/1.0".equals(protocol) || "close".equalsIgnoreCase(requestHeaders.getFirst("Connection"));
+
+        // the connection has checked the framing headers already
+        var contentLength = requestHeaders.getFirst("Content-Length");
+        if (requestHeaders.containsKey("Transfer-Encoding")) {
+            this.requestBody = new ChunkedInputStream(connection);
+        } else if (contentLength != null) {
+            this.requestBody = new FixedLengthInputStream(connection.input(), Long.parseLong(contentLength));
+        } else {
+            this.requestBody = new FixedLengthInputStream(connection.input(), 0);
+        }
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return uri;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return context;
+    }
+
+    /**
+     * Closes the response body, completing the response.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (responseBody == null) {
+            // no response was sent, so the connection cannot be reused
+            closeConnection = true;
+            return;
+        }
+        try {
+            getResponseBody().close();
+        } catch (IOException e) {
+            closeConnection = true;
+        }
+    }
+
+    /**
+     * Completes the exchange once its handler has returned, closing it if the handler
+     * has not and consuming any unread request body.
+     *
+     * @return true if the connection can be used for another exchange
+     */
+    boolean finish() throws IOException {
+        close();
+        if (closeConnection) {
+            connection.output().flush();
+            return false;
+        }
+        requestBody.transferTo(OutputStream.nullOutputStream());
+        connection.output().flush();
+        return true;
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return filteredIn != null ? filteredIn : requestBody;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return filteredOut != null ? filteredOut : placeholder;
+    }
+
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+        if (responseCode >= 0) {
+            throw new IOException("response headers already sent");
+        }
+        responseCode = rCode;
+
+        var noBody = "HEAD".equals(method) || rCode == 204 || rCode == 304 || (rCode >= 100 && rCode < 200);
+        var out = connection.output();
+        if (noBody) {
+            if ("HEAD".equals(method) && responseLength > 0) {
+                // the length of the body a GET would have sent
+                responseHeaders.set("Content-Length", Long.toString(responseLength));
+            }
+            responseBody = new FixedLengthOutputStream(out, 0);
+        } else if (responseLength > 0) {
+            responseHeaders.set("Content-Length", Long.toString(responseLength));
+            responseBody = new FixedLengthOutputStream(out, responseLength);
+        } else if (responseLength == 0) {
+            if ("HTTP/1.0".equals(protocol)) {
+                // the body ends when the connection is closed
+                closeConnection = true;
+                responseBody = new FixedLengthOutputStream(out, Long.MAX_VALUE);
+            } else {
+                responseHeaders.set("Transfer-Encoding", "chunked");
+                responseBody = new ChunkedOutputStream(out);
+            }
+        } else {
+            responseHeaders.set("Content-Length", "0");
+            responseBody = new FixedLengthOutputStream(out, 0);
+        }
+        if (closeConnection) {
+            responseHeaders.set("Connection", "close");
+        }
+
+        var head = new StringBuilder(256);
+        head.append("HTTP/1.1 ").append(rCode).append(' ').append(reason(rCode)).append("\r\n");
+        for (var header : responseHeaders.entrySet()) {
+            for (var value : header.getValue()) {
+                head.append(header.getKey()).append(": ").append(value).append("\r\n");
+            }
+        }
+        head.append("\r\n");
+        connection.writeAscii(head.toString());
+        out.flush();
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return connection.connection().inetAddress();
+    }
+
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    /**
+     * Returns {@code null}, as ngrok connections are not bound to a local address.
+     */
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return null;
+    }
+
+    @Override
+    public String getProtocol() {
+        return protocol;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, value);
+        }
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        if (i != null) {
+            filteredIn = i;
+        }
+        if (o != null) {
+            filteredOut = o;
+        }
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return principal;
+    }
+
+    void setPrincipal(HttpPrincipal principal) {
+        this.principal = principal;
+    }
+
+    private static String reason(int code) {
+        switch (code) {
+            case 200: return "OK";
+            case 201: return "Created";
+            case 202: return "Accepted";
+            case 204: return "No Content";
+            case 206: return "Partial Content";
+            case 301: return "Moved Permanently";
+            case 302: return "Found";
+            case 303: return "See Other";
+            case 304: return "Not Modified";
+            case 307: return "Temporary Redirect";
+            case 308: return "Permanent Redirect";
+            case 400: return "Bad Request";
+            case 401: return "Unauthorized";
+            case 403: return "Forbidden";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 409: return "Conflict";
+            case 413: return "Content Too Large";
+            case 429: return "Too Many Requests";
+            case 500: return "Internal Server Error";
+            case 501: return "Not Implemented";
+            case 502: return "Bad Gateway";
+            case 503: return "Service Unavailable";
+            default: return "";
+        }
+    }
+
+    /**
+     * Hands out the response body before the response headers are sent, failing any
+     * writes until they are.
+     */
+    private class PlaceholderOutputStream extends OutputStream {
+        private OutputStream body() throws IOException {
+            if (responseBody == null) {
+                throw new IOException("response headers not sent yet");
+            }
+            return responseBody;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            body().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            body().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            body().flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            body().close();
+        }
+    }
+
+    /**
+     * Reads a request body of a known length.
+     */
+    private static class FixedLengthInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        FixedLengthInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            var b = in.read();
+            if (b < 0) {
+                throw new IOException("connection closed before the end of the request body");
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            var sz = in.read(b, off, (int) Math.min(len, remaining));
+            if (sz < 0) {
+                throw new IOException("connection closed before the end of the request body");
+            }
+            remaining -= sz;
+            return sz;
+        }
+    }
+
+    /**
+     * Reads a request body with chunked transfer encoding, skipping any trailers.
+     */
+    private static class ChunkedInputStream extends InputStream {
+        private final HttpConnection connection;
+        private long remaining;
+        private boolean done;
+
+        ChunkedInputStream(HttpConnection connection) {
+            this.connection = connection;
+        }
+
+        private boolean nextChunk() throws IOException {
+            if (done) {
+                return false;
+            }
+            if (remaining > 0) {
+                return true;
+            }
+
+            var line = connection.readLine();
+            if (line == null) {
+                throw new IOException("connection closed before the end of the request body");
+            }
+            var ext = line.indexOf(';');
+            var size = (ext < 0 ? line : line.substring(0, ext)).trim();
+            // parseLong alone would accept a sign, and so a negative size
+            if (size.isEmpty() || !size.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+                throw new IOException("invalid chunk size: " + line);
+            }
+            try {
+                remaining = Long.parseLong(size, 16);
+            } catch (NumberFormatException e) {
+                throw new IOException("invalid chunk size: " + line);
+            }
+            if (remaining == 0) {
+                String trailer;
+                do {
+                    trailer = connection.readLine();
+                } while (trailer != null && !trailer.isEmpty());
+                done = true;
+                return false;
+            }
+            return true;
+        }
+
+        private void endChunk() throws IOException {
+            if (remaining == 0 && !"".equals(connection.readLine())) {
+                throw new IOException("missing chunk terminator");
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+            var b = connection.input().read();
+            if (b < 0) {
+                throw new IOException("connection closed before the end of the request body");
+            }
+            remaining--;
+            endChunk();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!nextChunk()) {
+                return -1;
+            }
+            var sz = connection.input().read(b, off, (int) Math.min(len, remaining));
+            if (sz < 0) {
+                throw new IOException("connection closed before the end of the request body");
+            }
+            remaining -= sz;
+            endChunk();
+            return sz;
+        }
+    }
+
+    /**
+     * Writes a response body of a known length, failing writes past it.
+     */
+    private class FixedLengthOutputStream extends OutputStream {
+        private final OutputStream out;
+        private long remaining;
+        private boolean closed;
+
+        FixedLengthOutputStream(OutputStream out, long length) {
+            this.out = out;
+            this.remaining = length;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("response body is closed");
+            }
+            if (len > remaining) {
+                throw new IOException("too many bytes to write to response body");
+            }
+            out.write(b, off, len);
+            remaining -= len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (remaining > 0) {
+                // the client would wait for the rest of the body
+                closeConnection = true;
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Writes a response body with chunked transfer encoding, one chunk per write.
+     */
+    private class ChunkedOutputStream extends OutputStream {
+        private final OutputStream out;
+        private boolean closed;
+
+        ChunkedOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("response body is closed");
+            }
+            if (len == 0) {
+                return;
+            }
+            connection.writeAscii(Integer.toHexString(len) + "\r\n");
+            out.write(b, off, len);
+            connection.writeAscii("\r\n");
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            connection.writeAscii("0\r\n\r\n");
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.ngrok.httpserver;
+
+import com.ngrok.Connection;
+import com.ngrok.Listener;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link HttpServer} serving exchanges from an ngrok {@link Listener}, so handlers
+ * written for the JDK's built-in server can be exposed without forwarding to a
+ * local port:
+ *
+ * <pre>
+ * var server = new NgrokHttpServer(session.httpEndpoint().listen());
+ * server.createContext("/", handler);
+ * server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+ * server.start();
+ * </pre>
+ *
+ * Each connection is served on a task submitted to the server's executor, which runs its
+ * exchanges one after the other, so an executor starting a virtual thread per task serves
+ * each connection on its own virtual thread. Without an executor, each connection is
+ * served on a new platform thread.
+ *
+ * The listener is bound when created, so {@link #bind(InetSocketAddress, int)} does nothing.
+ * TLS is terminated by ngrok, so exchanges are always plain HTTP/1.1.
+ */
+public class NgrokHttpServer extends HttpServer {
+    private final Listener<? extends Connection> listener;
+    private final CopyOnWriteArrayList<NgrokHttpContext> contexts = new CopyOnWriteArrayList<>();
+    private final Set<HttpConnection> connections = ConcurrentHashMap.newKeySet();
+
+    private final Object lock = new Object();
+    private int activeExchanges;
+
+    private volatile Executor executor;
+    private volatile boolean running;
+    private Thread dispatcher;
+
+    /**
+     * Creates a new server for the given listener.
+     *
+     * @param listener the listener to accept connections from
+     */
+    public NgrokHttpServer(Listener<? extends Connection> listener) {
+        this.listener = Objects.requireNonNull(listener);
+    }
+
+    /**
+     * Returns the listener backing this server.
+     *
+     * @return the listener
+     */
+    public Listener<? extends Connection> listener() {
+        return listener;
+    }
+
+    /**
+     * Does nothing, as the listener is bound when created.
+     */
+    @Override
+    public void bind(InetSocketAddress addr, int backlog) throws IOException {
+    }
+
+    /**
+     * Starts accepting connections on a new dispatcher thread.
+     *
+     * @throws IllegalStateException if the server has already been started
+     */
+    @Override
+    public synchronized void start() {
+        if (dispatcher != null) {
+            throw new IllegalStateException("server already started");
+        }
+        running = true;
+        dispatcher = new Thread(this::dispatch, "ngrok-httpserver-dispatcher");
+        dispatcher.start();
+    }
+
+    private void dispatch() {
+        while (running) {
+            Connection conn;
+            try {
+                conn = listener.accept();
+            } catch (IOException e) {
+                // the listener was closed
+                return;
+            }
+
+            var connection = new HttpConnection(this, conn);
+            connections.add(connection);
+            if (!running) {
+                connection.close();
+                connections.remove(connection);
+                return;
+            }
+
+            var executor = this.executor;
+            if (executor == null) {
+                new Thread(connection, "ngrok-httpserver-connection").start();
+            } else {
+                executor.execute(connection);
+            }
+        }
+    }
+
+    @Override
+    public void setExecutor(Executor executor) {
+        if (dispatcher != null) {
+            throw new IllegalStateException("server already started");
+        }
+        this.executor = executor;
+    }
+
+    @Override
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Stops the server. The listener is closed and idle connections are closed right away,
+     * then the server waits up to the given delay for active exchanges to finish before
+     * closing the remaining connections.
+     *
+     * @param delay the maximum time to wait for active exchanges, in seconds
+     */
+    @Override
+    public void stop(int delay) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("negative delay parameter");
+        }
+        running = false;
+        try {
+            listener.close();
+        } catch (IOException ignored) {
+            // the listener is gone either way
+        }
+
+        for (var connection : connections) {
+            if (!connection.isBusy()) {
+                connection.close();
+            }
+        }
+
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(delay);
+        synchronized (lock) {
+            var remaining = deadline - System.nanoTime();
+            while (activeExchanges > 0 && remaining > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                remaining = deadline - System.nanoTime();
+            }
+        }
+
+        for (var connection : connections) {
+            connection.close();
+        }
+
+        Thread dispatcher;
+        synchronized (this) {
+            dispatcher = this.dispatcher;
+        }
+        if (dispatcher != null) {
+            try {
+                dispatcher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    void exchangeStarted() {
+        synchronized (lock) {
+            activeExchanges++;
+        }
+    }
+
+    void exchangeFinished() {
+        synchronized (lock) {
+            if (--activeExchanges == 0) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    void closed(HttpConnection connection) {
+        connections.remove(connection);
+    }
+
+    /**
+     * Finds the context with the longest path that is a prefix of the given path.
+     */
+    NgrokHttpContext findContext(String path) {
+        if (path == null) {
+            return null;
+        }
+        NgrokHttpContext found = null;
+        for (var context : contexts) {
+            var prefix = context.getPath();
+            if (path.startsWith(prefix) && (found == null || prefix.length() > found.getPath().length())) {
+                found = context;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public HttpContext createContext(String path, HttpHandler handler) {
+        return addContext(path, Objects.requireNonNull(handler, "handler"));
+    }
+
+    @Override
+    public HttpContext createContext(String path) {
+        return addContext(path, null);
+    }
+
+    private synchronized HttpContext addContext(String path, HttpHandler handler) {
+        if (path == null || !path.startsWith("/")) {
+            throw new IllegalArgumentException("invalid context path: " + path);
+        }
+        for (var context : contexts) {
+            if (context.getPath().equals(path)) {
+                throw new IllegalArgumentException("cannot add context to list");
+            }
+        }
+        var context = new NgrokHttpContext(this, path, handler);
+        contexts.add(context);
+        return context;
+    }
+
+    @Override
+    public synchronized void removeContext(String path) {
+        if (!contexts.removeIf(context -> context.getPath().equals(path))) {
+            throw new IllegalArgumentException("cannot remove element from list");
+        }
+    }
+
+    @Override
+    public void removeContext(HttpContext context) {
+        if (!(context instanceof NgrokHttpContext) || !contexts.remove(context)) {
+            throw new IllegalArgumentException("wrong HttpContext type");
+        }
+    }
+
+    /**
+     * Returns {@code null}, as ngrok listeners are not bound to a local address.
+     */
+    @Override
+    public InetSocketAddress getAddress() {
+        return null;
+    }
+}
@@ -0,0 +1,48 @@
+package com.ngrok.httpserver;
+
+import com.ngrok.Listener;
+import com.ngrok.Session;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsServer;
+import com.sun.net.httpserver.spi.HttpServerProvider;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * An {@link HttpServerProvider} creating {@link NgrokHttpServer}s, for code that creates
+ * its servers through a provider. Each server gets its own listener, created from the
+ * session when the server is created. The address and backlog are ignored.
+ */
+public class NgrokHttpServerProvider extends HttpServerProvider {
+    private final Supplier<Session> sessionSupplier;
+    private final Function<Session, Listener> listenerFunction;
+
+    /**
+     * Constructs a new provider with the specified session supplier and listener function.
+     *
+     * @param sessionSupplier  the supplier for the session used by created servers
+     * @param listenerFunction the function for creating the listener of each server
+     */
+    public NgrokHttpServerProvider(Supplier<Session> sessionSupplier, Function<Session, Listener> listenerFunction) {
+        this.sessionSupplier = sessionSupplier;
+        this.listenerFunction = listenerFunction;
+    }
+
+    @Override
+    public HttpServer createHttpServer(InetSocketAddress addr, int backlog) throws IOException {
+        return new NgrokHttpServer(listenerFunction.apply(sessionSupplier.get()));
+    }
+
+    /**
+     * Throws an {@link UnsupportedOperationException}, as TLS is terminated by ngrok.
+     *
+     * @throws UnsupportedOperationException if the method is called
+     */
+    @Override
+    public HttpsServer createHttpsServer(InetSocketAddress addr, int backlog) throws IOException {
+        throw new UnsupportedOperationException("TLS is terminated by ngrok");
+    }
+}
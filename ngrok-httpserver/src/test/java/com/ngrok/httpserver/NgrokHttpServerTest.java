@@ -0,0 +1,254 @@
+package com.ngrok.httpserver;
+
+import com.ngrok.Connection;
+import com.ngrok.Listener;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class NgrokHttpServerTest {
+    @Test
+    public void testKeepAliveExchanges() throws Exception {
+        var conn = new ScriptConnection(
+                "POST /echo HTTP/1.1\r\nHost: example.ngrok.app\r\nContent-Length: 5\r\n\r\nhello"
+                        + "GET /missing HTTP/1.1\r\nHost: example.ngrok.app\r\nConnection: close\r\n\r\n");
+        var server = new NgrokHttpServer(new QueueListener(conn));
+        server.createContext("/echo", exchange -> {
+            var body = exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, 0);
+            try (var out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        try {
+            assertTrue(conn.awaitClose(5, TimeUnit.SECONDS));
+        } finally {
+            server.stop(0);
+        }
+
+        var response = conn.written();
+        assertTrue(response, response.startsWith("HTTP/1.1 200 OK\r\n"));
+        assertTrue(response, response.contains("\r\n\r\n5\r\nhello\r\n0\r\n\r\n"));
+        var second = response.indexOf("HTTP/1.1 404 Not Found\r\n");
+        assertTrue(response, second > 0);
+        assertTrue(response, response.substring(second).contains("Connection: close\r\n"));
+    }
+
+    @Test
+    public void testChunkedRequestBody() throws Exception {
+        var conn = new ScriptConnection(
+                "PUT /len HTTP/1.1\r\nTransfer-Encoding: chunked\r\nConnection: close\r\n\r\n"
+                        + "3\r\nabc\r\n4;ext=1\r\ndefg\r\n0\r\n\r\n");
+        var server = new NgrokHttpServer(new QueueListener(conn));
+        server.createContext("/", exchange -> {
+            var body = exchange.getRequestBody().readAllBytes();
+            var reply = Integer.toString(body.length).getBytes(StandardCharsets.US_ASCII);
+            exchange.sendResponseHeaders(200, reply.length);
+            exchange.getResponseBody().write(reply);
+            exchange.close();
+        });
+        server.start();
+
+        try {
+            assertTrue(conn.awaitClose(5, TimeUnit.SECONDS));
+        } finally {
+            server.stop(0);
+        }
+
+        var response = conn.written();
+        assertTrue(response, response.contains("Content-length: 1\r\n"));
+        assertEquals("7", response.substring(response.indexOf("\r\n\r\n") + 4));
+    }
+
+    @Test
+    public void testRejectsInvalidChunkSize() throws Exception {
+        for (var size : new String[] {"-1", "+a", "0x1", ""}) {
+            var conn = new ScriptConnection(
+                    "PUT / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n" + size + "\r\n0123456789\r\n0\r\n\r\n");
+            var failures = new LinkedBlockingQueue<IOException>();
+            var server = new NgrokHttpServer(new QueueListener(conn));
+            server.createContext("/", exchange -> {
+                try {
+                    exchange.getRequestBody().readAllBytes();
+                } catch (IOException e) {
+                    failures.add(e);
+                    throw e;
+                }
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            });
+            server.start();
+
+            try {
+                assertTrue(conn.awaitClose(5, TimeUnit.SECONDS));
+            } finally {
+                server.stop(0);
+            }
+
+            var failure = failures.poll();
+            assertNotNull(size, failure);
+            assertTrue(failure.getMessage(), failure.getMessage().startsWith("invalid chunk size"));
+        }
+    }
+
+    @Test
+    public void testRejectsAmbiguousFraming() throws Exception {
+        var requests = new String[] {
+                "POST / HTTP/1.1\r\nContent-Length: 3\r\nTransfer-Encoding: chunked\r\n\r\n0\r\n\r\n",
+                "POST / HTTP/1.1\r\nTransfer-Encoding: gzip, chunked\r\n\r\n0\r\n\r\n",
+                "POST / HTTP/1.1\r\nContent-Length: -1\r\n\r\n",
+                "POST / HTTP/1.1\r\nContent-Length: 1x\r\n\r\nab",
+                "POST / HTTP/1.1\r\nno colon\r\n\r\n",
+                "POST / HTTP/1.1\r\nContent-Length : 0\r\n\r\n",
+                "POST / HTTP/1.1\r\n Host: example.ngrok.app\r\n\r\n",
+        };
+        for (var request : requests) {
+            var conn = new ScriptConnection(request);
+            var server = new NgrokHttpServer(new QueueListener(conn));
+            server.createContext("/", exchange -> {
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            });
+            server.start();
+
+            try {
+                assertTrue(conn.awaitClose(5, TimeUnit.SECONDS));
+            } finally {
+                server.stop(0);
+            }
+
+            assertTrue(request, conn.written().startsWith("HTTP/1.1 400 Bad Request\r\n"));
+        }
+    }
+
+    @Test
+    public void testHeadKeepsContentLength() throws Exception {
+        var conn = new ScriptConnection("HEAD / HTTP/1.1\r\nConnection: close\r\n\r\n");
+        var server = new NgrokHttpServer(new QueueListener(conn));
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, 42);
+            exchange.close();
+        });
+        server.start();
+
+        try {
+            assertTrue(conn.awaitClose(5, TimeUnit.SECONDS));
+        } finally {
+            server.stop(0);
+        }
+
+        var response = conn.written();
+        assertTrue(response, response.contains("Content-length: 42\r\n"));
+        assertTrue(response, response.endsWith("\r\n\r\n"));
+    }
+
+    private static class ScriptConnection implements Connection {
+        // hand out small reads to exercise the parser across buffer boundaries
+        private static final int MAX_READ = 7;
+
+        private final ByteBuffer input;
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        ScriptConnection(String script) {
+            this.input = ByteBuffer.wrap(script.getBytes(StandardCharsets.ISO_8859_1));
+        }
+
+        synchronized String written() {
+            return output.toString(StandardCharsets.ISO_8859_1);
+        }
+
+        boolean awaitClose(long timeout, TimeUnit unit) throws InterruptedException {
+            return closed.await(timeout, unit);
+        }
+
+        @Override
+        public String getRemoteAddr() {
+            return "127.0.0.1:1234";
+        }
+
+        @Override
+        public synchronized int read(ByteBuffer dst) throws IOException {
+            if (!input.hasRemaining()) {
+                return -1;
+            }
+            var len = Math.min(Math.min(dst.capacity(), input.remaining()), MAX_READ);
+            dst.clear();
+            dst.put(input.slice().limit(len));
+            dst.flip();
+            input.position(input.position() + len);
+            return len;
+        }
+
+        @Override
+        public synchronized int write(ByteBuffer src) throws IOException {
+            var sz = src.limit();
+            for (int i = 0; i < sz; i++) {
+                output.write(src.get(i));
+            }
+            return sz;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed.countDown();
+        }
+    }
+
+    private static class QueueListener implements Listener<Connection> {
+        private static final Connection CLOSED = new ScriptConnection("");
+
+        private final LinkedBlockingQueue<Connection> connections = new LinkedBlockingQueue<>();
+
+        QueueListener(Connection conn) {
+            connections.add(conn);
+        }
+
+        @Override
+        public Connection accept() throws IOException {
+            Connection conn;
+            try {
+                conn = connections.take();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (conn == CLOSED) {
+                connections.add(CLOSED);
+                throw new IOException("listener closed");
+            }
+            return conn;
+        }
+
+        @Override
+        public String getId() {
+            return "id";
+        }
+
+        @Override
+        public String getMetadata() {
+            return "";
+        }
+
+        @Override
+        public String getForwardsTo() {
+            return "";
+        }
+
+        @Override
+        public void close() throws IOException {
+            connections.add(CLOSED);
+        }
+    }
+}
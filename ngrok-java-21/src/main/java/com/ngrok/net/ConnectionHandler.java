@@ -0,0 +1,19 @@
+package com.ngrok.net;
+
+import com.ngrok.Connection;
+
+/**
+ * Handles a connection accepted by an {@link NgrokServer}, on its own virtual thread.
+ */
+@FunctionalInterface
+public interface ConnectionHandler {
+    /**
+     * Handles the given connection. The connection is closed once the handler returns,
+     * or throws.
+     *
+     * @param conn the connection, an {@link Connection.Endpoint} or {@link Connection.Edge}
+     *             if the listener accepts those
+     * @throws Exception if handling the connection failed
+     */
+    void handle(Connection conn) throws Exception;
+}
@@ -0,0 +1,360 @@
+package com.ngrok.net;
+
+import com.ngrok.Connection;
+import com.ngrok.Listener;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A server running a {@link ConnectionHandler} for each connection accepted from a
+ * {@link Listener}, each on its own virtual thread:
+ *
+ * <pre>
+ * try (var server = NgrokServer.serve(session.tcpEndpoint().listen(), conn -&gt; {
+ *     var buf = ByteBuffer.allocateDirect(4096);
+ *     while (conn.read(buf) &gt; 0) {
+ *         conn.write(buf);
+ *     }
+ * })) {
+ *     server.join();
+ * }
+ * </pre>
+ *
+ * Connections are accepted on a few platform threads. Handlers get a connection whose
+ * blocking reads and writes park their virtual thread on the asynchronous operations,
+ * so they never pin a carrier thread inside the native runtime. The number of
+ * connections handled at once can be capped, in which case accepting pauses until a
+ * handler finishes.
+ *
+ * Handler threads are owned by the server, like subtasks of a structured task scope:
+ * {@link #shutdown()} stops accepting and lets running handlers finish, and
+ * {@link #close()} also closes all open connections and waits for every handler
+ * thread to terminate, so no handler outlives the server. If accepting a connection
+ * fails, the server shuts itself down and reports the error from {@link #getFailure()}.
+ */
+public class NgrokServer implements AutoCloseable {
+    private static final System.Logger LOG = System.getLogger(NgrokServer.class.getName());
+
+    private final Listener<? extends Connection> listener;
+    private final ConnectionHandler handler;
+    private final Semaphore permits;
+    private final List<Thread> acceptors = new ArrayList<>();
+    private final Set<Thread> handlers = ConcurrentHashMap.newKeySet();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition terminated = lock.newCondition();
+    private int running;
+
+    private volatile boolean shutdown;
+    private volatile IOException failure;
+
+    private NgrokServer(Builder builder) {
+        this.listener = builder.listener;
+        this.handler = builder.handler;
+        this.permits = builder.maxConcurrency > 0 ? new Semaphore(builder.maxConcurrency) : null;
+
+        var factory = Thread.ofPlatform().name("ngrok-server-acceptor-", 0).factory();
+        for (int i = 0; i < builder.acceptors; i++) {
+            acceptors.add(factory.newThread(this::accept));
+        }
+        running = acceptors.size();
+    }
+
+    /**
+     * Starts serving the given listener with a single acceptor and no concurrency cap.
+     *
+     * @param listener the listener to accept connections from
+     * @param handler  the handler to run for each connection
+     * @return the running server
+     */
+    public static NgrokServer serve(Listener<? extends Connection> listener, ConnectionHandler handler) {
+        return builder(listener, handler).start();
+    }
+
+    /**
+     * Creates a new builder for a server.
+     *
+     * @param listener the listener to accept connections from
+     * @param handler  the handler to run for each connection
+     * @return the builder
+     */
+    public static Builder builder(Listener<? extends Connection> listener, ConnectionHandler handler) {
+        return new Builder(listener, handler);
+    }
+
+    private void start() {
+        acceptors.forEach(Thread::start);
+    }
+
+    private void accept() {
+        var factory = Thread.ofVirtual().name("ngrok-server-connection-", 0).factory();
+        try {
+            while (!shutdown) {
+                if (permits != null) {
+                    permits.acquire();
+                }
+
+                Connection conn;
+                try {
+                    conn = listener.accept();
+                } catch (IOException e) {
+                    release();
+                    if (!shutdown) {
+                        // the listener does not recover from a failed accept
+                        LOG.log(System.Logger.Level.WARNING, "accepting ngrok connection failed, shutting down", e);
+                        fail(e);
+                    }
+                    return;
+                }
+
+                lock.lock();
+                try {
+                    if (shutdown) {
+                        closeQuietly(conn);
+                        release();
+                        return;
+                    }
+                    var thread = factory.newThread(() -> handle(conn));
+                    handlers.add(thread);
+                    connections.add(conn);
+                    running++;
+                    thread.start();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed while waiting for a permit
+        } finally {
+            finished();
+        }
+    }
+
+    private void handle(Connection conn) {
+        try {
+            handler.handle(ParkingConnection.wrap(conn));
+        } catch (Exception e) {
+            if (!shutdown) {
+                LOG.log(System.Logger.Level.WARNING, "ngrok connection handler failed", e);
+            }
+        } finally {
+            closeQuietly(conn);
+            connections.remove(conn);
+            handlers.remove(Thread.currentThread());
+            release();
+            finished();
+        }
+    }
+
+    private void fail(IOException e) {
+        lock.lock();
+        try {
+            if (failure == null && !shutdown) {
+                failure = e;
+            }
+        } finally {
+            lock.unlock();
+        }
+        shutdown();
+    }
+
+    private void release() {
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+    private void finished() {
+        lock.lock();
+        try {
+            if (--running == 0) {
+                terminated.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting connections and closes the listener. Handlers of open connections
+     * keep running.
+     */
+    public void shutdown() {
+        lock.lock();
+        try {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            listener.close();
+        } catch (IOException e) {
+            LOG.log(System.Logger.Level.DEBUG, "closing ngrok listener failed", e);
+        }
+        // release acceptors waiting for a permit
+        acceptors.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Returns whether the server has been shut down.
+     *
+     * @return true if the server no longer accepts connections
+     */
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Returns the error that shut the server down, if accepting a connection failed.
+     *
+     * @return the accept failure, or {@code null} if the server was shut down normally
+     *         or is still running
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Waits until the server has been shut down and all handlers have finished.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void join() throws InterruptedException {
+        lock.lock();
+        try {
+            while (running > 0) {
+                terminated.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits up to the given timeout until the server has been shut down and all handlers
+     * have finished.
+     *
+     * @param timeout the maximum time to wait
+     * @return true if the server has terminated, false if the timeout elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(Duration timeout) throws InterruptedException {
+        var nanos = timeout.toNanos();
+        lock.lock();
+        try {
+            while (running > 0) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = terminated.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Shuts the server down, then closes all open connections, interrupts their handlers,
+     * and waits for every acceptor and handler thread to terminate.
+     */
+    @Override
+    public void close() {
+        shutdown();
+        for (var conn : connections) {
+            closeQuietly(conn);
+        }
+        handlers.forEach(Thread::interrupt);
+
+        var interrupted = false;
+        for (;;) {
+            try {
+                join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (IOException ignored) {
+            // the connection is gone either way
+        }
+    }
+
+    /**
+     * A builder for a {@link NgrokServer}.
+     */
+    public static class Builder {
+        private final Listener<? extends Connection> listener;
+        private final ConnectionHandler handler;
+        private int acceptors = 1;
+        private int maxConcurrency;
+
+        private Builder(Listener<? extends Connection> listener, ConnectionHandler handler) {
+            this.listener = Objects.requireNonNull(listener);
+            this.handler = Objects.requireNonNull(handler);
+        }
+
+        /**
+         * Sets the number of platform threads accepting connections. Defaults to one.
+         *
+         * @param acceptors the number of acceptor threads
+         * @return the builder instance
+         */
+        public Builder acceptors(int acceptors) {
+            if (acceptors < 1) {
+                throw new IllegalArgumentException("at least one acceptor is required");
+            }
+            this.acceptors = acceptors;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of connections handled at once. Accepting pauses while
+         * the cap is reached. Unlimited by default.
+         *
+         * @param maxConcurrency the maximum number of concurrent connections, or 0 for no cap
+         * @return the builder instance
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            if (maxConcurrency < 0) {
+                throw new IllegalArgumentException("negative concurrency cap");
+            }
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Starts the server.
+         *
+         * @return the running server
+         */
+        public NgrokServer start() {
+            var server = new NgrokServer(this);
+            server.start();
+            return server;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.ngrok.net;
+
+import com.ngrok.Connection;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A connection whose blocking reads and writes park the calling thread on the
+ * asynchronous operations, instead of blocking inside the native runtime. A virtual
+ * thread blocked in a native call pins its carrier, so a few slow clients would
+ * otherwise stall every other connection.
+ *
+ * Heap buffers are staged through a direct buffer, as the asynchronous operations
+ * require direct buffers. Buffers follow the same conventions as the connection.
+ */
+class ParkingConnection implements Connection {
+    private static final int MAX_STAGING = 65536;
+
+    private static final CompletionHandler<Integer, CompletableFuture<Integer>> HANDLER = new CompletionHandler<>() {
+        @Override
+        public void completed(Integer sz, CompletableFuture<Integer> done) {
+            done.complete(sz);
+        }
+
+        @Override
+        public void failed(Throwable exc, CompletableFuture<Integer> done) {
+            done.completeExceptionally(exc);
+        }
+    };
+
+    private final Connection conn;
+    private ByteBuffer readStaging;
+    private ByteBuffer writeStaging;
+
+    ParkingConnection(Connection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * Wraps the given connection, keeping its endpoint or edge details.
+     */
+    static ParkingConnection wrap(Connection conn) {
+        return switch (conn) {
+            case Connection.Endpoint endpoint -> new Endpoint(endpoint);
+            case Connection.Edge edge -> new Edge(edge);
+            default -> new ParkingConnection(conn);
+        };
+    }
+
+    @Override
+    public String getRemoteAddr() {
+        return conn.getRemoteAddr();
+    }
+
+    @Override
+    public InetSocketAddress inetAddress() {
+        return conn.inetAddress();
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (readStaging == null || !readStaging.hasRemaining()) {
+            if (dst.isDirect()) {
+                return await(dst, true);
+            }
+
+            if (readStaging == null) {
+                readStaging = ByteBuffer.allocateDirect(Math.min(dst.capacity(), MAX_STAGING));
+            }
+            readStaging.clear();
+            var sz = await(readStaging, true);
+            if (sz < 0) {
+                readStaging.limit(0);
+                return sz;
+            }
+            readStaging.position(0).limit(sz);
+        }
+
+        // data left over from a read into a larger staging buffer is handed out first
+        var sz = Math.min(dst.capacity(), readStaging.remaining());
+        dst.clear();
+        dst.put(readStaging.slice().limit(sz));
+        dst.flip();
+        readStaging.position(readStaging.position() + sz);
+        return sz;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (src.isDirect()) {
+            return await(src, false);
+        }
+
+        var size = Math.min(src.limit(), MAX_STAGING);
+        if (writeStaging == null || writeStaging.capacity() < size) {
+            writeStaging = ByteBuffer.allocateDirect(size);
+        }
+        writeStaging.clear();
+        writeStaging.put(src.duplicate().position(0).limit(size));
+        writeStaging.flip();
+        return await(writeStaging, false);
+    }
+
+    @Override
+    public <A> void readAsync(ByteBuffer dst, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        conn.readAsync(dst, attachment, handler);
+    }
+
+    @Override
+    public <A> void writeAsync(ByteBuffer src, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        conn.writeAsync(src, attachment, handler);
+    }
+
+    @Override
+    public void close() throws IOException {
+        conn.close();
+    }
+
+    private int await(ByteBuffer buffer, boolean read) throws IOException {
+        var done = new CompletableFuture<Integer>();
+        if (read) {
+            conn.readAsync(buffer, done, HANDLER);
+        } else {
+            conn.writeAsync(buffer, done, HANDLER);
+        }
+        try {
+            return done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            throw cause instanceof IOException io ? io : new IOException(cause);
+        }
+    }
+
+    private static class Endpoint extends ParkingConnection implements Connection.Endpoint {
+        private final Connection.Endpoint endpoint;
+
+        Endpoint(Connection.Endpoint endpoint) {
+            super(endpoint);
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public String getProto() {
+            return endpoint.getProto();
+        }
+    }
+
+    private static class Edge extends ParkingConnection implements Connection.Edge {
+        private final Connection.Edge edge;
+
+        Edge(Connection.Edge edge) {
+            super(edge);
+            this.edge = edge;
+        }
+
+        @Override
+        public String getEdgeType() {
+            return edge.getEdgeType();
+        }
+
+        @Override
+        public boolean isPassthroughTls() {
+            return edge.isPassthroughTls();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.ngrok.net;
+
+import com.ngrok.Connection;
+import com.ngrok.Listener;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NgrokServerTest {
+    @Test
+    public void testEchoOnVirtualThreads() throws Exception {
+        var conn = new QueueConnection();
+        var listener = new QueueListener(conn);
+
+        try (var server = NgrokServer.serve(listener, c -> {
+            assertTrue(Thread.currentThread().isVirtual());
+            // heap buffers are staged through direct buffers
+            var buf = ByteBuffer.allocate(4);
+            while (c.read(buf) > 0) {
+                c.write(buf);
+            }
+        })) {
+            conn.feed("hello ngrok".getBytes(StandardCharsets.UTF_8));
+            conn.end();
+            assertTrue(conn.awaitClose(5, TimeUnit.SECONDS));
+            assertEquals("hello ngrok", conn.written());
+        }
+    }
+
+    @Test
+    public void testCloseStopsHandlers() throws Exception {
+        var started = new CountDownLatch(2);
+        var conns = new QueueConnection[] {new QueueConnection(), new QueueConnection(), new QueueConnection()};
+        var listener = new QueueListener(conns);
+
+        var server = NgrokServer.builder(listener, c -> {
+            started.countDown();
+            c.read(ByteBuffer.allocateDirect(16));
+        }).maxConcurrency(2).start();
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertFalse(server.awaitTermination(Duration.ofMillis(50)));
+        // the cap keeps the third connection waiting in the listener
+        assertEquals(1, listener.pending());
+
+        server.close();
+        assertTrue(server.isShutdown());
+        assertTrue(server.awaitTermination(Duration.ZERO));
+        assertTrue(conns[0].awaitClose(0, TimeUnit.SECONDS));
+        assertTrue(conns[1].awaitClose(0, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testAcceptFailureShutsDown() throws Exception {
+        var listener = new QueueListener();
+        listener.close();
+
+        var server = NgrokServer.serve(listener, c -> {});
+        assertTrue(server.awaitTermination(Duration.ofSeconds(5)));
+        assertTrue(server.isShutdown());
+        assertEquals("listener closed", server.getFailure().getMessage());
+    }
+
+    private static class QueueConnection implements Connection {
+        private static final byte[] END = new byte[0];
+
+        private final LinkedBlockingDeque<byte[]> input = new LinkedBlockingDeque<>();
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        void feed(byte[] chunk) {
+            input.add(chunk);
+        }
+
+        void end() {
+            input.add(END);
+        }
+
+        synchronized String written() {
+            return output.toString(StandardCharsets.UTF_8);
+        }
+
+        boolean awaitClose(long timeout, TimeUnit unit) throws InterruptedException {
+            return closed.await(timeout, unit);
+        }
+
+        @Override
+        public String getRemoteAddr() {
+            return "127.0.0.1:1234";
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            byte[] chunk;
+            try {
+                chunk = input.take();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (chunk == END) {
+                input.addFirst(END);
+                return -1;
+            }
+            var len = Math.min(chunk.length, dst.capacity());
+            if (len < chunk.length) {
+                input.addFirst(Arrays.copyOfRange(chunk, len, chunk.length));
+            }
+            dst.clear();
+            dst.put(chunk, 0, len);
+            dst.flip();
+            return len;
+        }
+
+        @Override
+        public synchronized int write(ByteBuffer src) throws IOException {
+            var sz = src.limit();
+            for (int i = 0; i < sz; i++) {
+                output.write(src.get(i));
+            }
+            return sz;
+        }
+
+        @Override
+        public void close() throws IOException {
+            end();
+            closed.countDown();
+        }
+    }
+
+    private static class QueueListener implements Listener<Connection> {
+        private static final Connection CLOSED = new QueueConnection();
+
+        private final LinkedBlockingQueue<Connection> connections = new LinkedBlockingQueue<>();
+
+        QueueListener(Connection... conns) {
+            connections.addAll(List.of(conns));
+        }
+
+        int pending() {
+            return (int) connections.stream().filter(c -> c != CLOSED).count();
+        }
+
+        @Override
+        public Connection accept() throws IOException {
+            Connection conn;
+            try {
+                conn = connections.take();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (conn == CLOSED) {
+                connections.add(CLOSED);
+                throw new IOException("listener closed");
+            }
+            return conn;
+        }
+
+        @Override
+        public String getId() {
+            return "id";
+        }
+
+        @Override
+        public String getMetadata() {
+            return "";
+        }
+
+        @Override
+        public String getForwardsTo() {
+            return "";
+        }
+
+        @Override
+        public void close() throws IOException {
+            connections.add(CLOSED);
+        }
+    }
+}
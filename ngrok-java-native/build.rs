@@ -34,6 +34,8 @@ fn main() -> Result<(), Box<dyn Error>> {
         Cow::from("com.ngrok.Session$ClientInfo"),
         Cow::from("com.ngrok.Session$CommandHandler"),
         Cow::from("com.ngrok.Session$HeartbeatHandler"),
+        Cow::from("com.ngrok.Session$LifecycleHandler"),
+        Cow::from("com.ngrok.ReconnectPolicy"),
         Cow::from("com.ngrok.MetadataBuilder"),
         Cow::from("com.ngrok.EdgeBuilder"),
         Cow::from("com.ngrok.EndpointBuilder"),
@@ -48,6 +50,7 @@ fn main() -> Result<(), Box<dyn Error>> {
         Cow::from("com.ngrok.AbstractEdge"),
         Cow::from("com.ngrok.AbstractEndpoint"),
         Cow::from("com.ngrok.NgrokException"),
+        Cow::from("com.ngrok.NativeCompletion"),
     ];
     let output_dir = PathBuf::from(std::env::var("OUT_DIR").expect("OUT_DIR not set"));
 
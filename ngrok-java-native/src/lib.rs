@@ -1,20 +1,43 @@
 use async_trait::async_trait;
 use bytes::Bytes;
 use com_ngrok::{
-    ComNgrokEdgeBuilder, ComNgrokHttpBuilder, ComNgrokHttpHeader, ComNgrokNativeEdgeConnection,
-    ComNgrokNativeEdgeForwarder, ComNgrokNativeEdgeListener, ComNgrokNativeEndpointConnection,
-    ComNgrokNativeHttpForwarder, ComNgrokNativeHttpListener, ComNgrokNativeSession,
-    ComNgrokNativeSessionClass, ComNgrokNativeTcpForwarder, ComNgrokNativeTcpListener,
-    ComNgrokNativeTlsForwarder, ComNgrokNativeTlsListener, ComNgrokNgrokException,
-    ComNgrokRuntimeLogger, ComNgrokSessionBuilder, ComNgrokSessionClientInfo,
-    ComNgrokSessionCommandHandler, ComNgrokSessionHeartbeatHandler, ComNgrokTcpBuilder,
-    ComNgrokTlsBuilder, IOException, IOExceptionErr, JavaNetUrl, JavaUtilList, JavaUtilMap,
-    JavaUtilOptional,
+    ComNgrokConnection, ComNgrokForwarder, ComNgrokListener, ComNgrokNativeCompletion,
+    ComNgrokNativeEdgeConnection, ComNgrokNativeEdgeForwarder, ComNgrokNativeEdgeListener,
+    ComNgrokNativeEndpointConnection, ComNgrokNativeHttpForwarder, ComNgrokNativeHttpListener,
+    ComNgrokNativeSession, ComNgrokNativeSessionClass, ComNgrokNativeTcpForwarder,
+    ComNgrokNativeTcpListener, ComNgrokNativeTlsForwarder, ComNgrokNativeTlsListener,
+    ComNgrokNgrokException, ComNgrokRuntimeLogger, ComNgrokSession, ComNgrokSessionBuilder,
+    ComNgrokSessionClientInfo, ComNgrokSessionCommandHandler, ComNgrokSessionHeartbeatHandler,
+    ComNgrokSessionLifecycleHandler, IOException, IOExceptionErr, JavaNetUrl, JavaTimeDuration,
+    JavaUtilList, JavaUtilMap, JavaUtilOptional,
 };
-use futures::TryStreamExt;
-use once_cell::sync::OnceCell;
-use std::{collections::HashMap, str::FromStr, sync::MutexGuard, time::Duration};
-use tokio::{io::AsyncReadExt, io::AsyncWriteExt, runtime::Runtime};
+use futures::{TryStream, TryStreamExt};
+use once_cell::sync::{Lazy, OnceCell};
+use rustls::{
+    client::{
+        ClientSessionMemoryCache, ClientSessionStore, ResolvesClientCert, Resumption,
+        Tls12ClientSessionValue, Tls13ClientSessionValue,
+    },
+    crypto::ring,
+    pki_types::ServerName,
+    version, CipherSuite, ClientConfig, NamedGroup, RootCertStore, SupportedProtocolVersion,
+};
+use std::{
+    collections::HashMap,
+    net::SocketAddr,
+    str::FromStr,
+    sync::{
+        atomic::{AtomicU64, Ordering},
+        Arc, MutexGuard,
+    },
+    time::{Duration, Instant},
+};
+use tokio::{
+    io::{AsyncRead, AsyncReadExt, AsyncWrite, AsyncWriteExt, ReadHalf, WriteHalf},
+    runtime::Runtime,
+    sync::mpsc::{unbounded_channel, UnboundedSender},
+};
+use tokio_util::sync::CancellationToken;
 use tracing::{level_filters::LevelFilter, Level};
 use tracing_subscriber::{prelude::__tracing_subscriber_SubscriberExt, util::SubscriberInitExt};
 use url::Url;
@@ -35,7 +58,10 @@ use ngrok::{
     conn::ConnInfo,
     forwarder::Forwarder,
     prelude::{EdgeConnInfo, EndpointConnInfo, ForwarderBuilder, TunnelBuilder},
-    session::{CommandHandler, HeartbeatHandler, Restart, Stop, Update},
+    session::{
+        default_connect, CommandHandler, ConnectError, HeartbeatHandler, IoStream, Restart,
+        SessionBuilder, Stop, Update,
+    },
     tunnel::{
         AcceptError, EdgeInfo, EndpointInfo, HttpTunnel, LabeledTunnel, TcpTunnel, TlsTunnel,
         TunnelCloser, TunnelInfo,
@@ -169,6 +195,15 @@ trait JNIExt<'local> {
             .expect("cannot get native value")
     }
 
+    fn get_native_arc<J, R>(&self, this: J) -> Arc<R>
+    where
+        J: Into<JObject<'local>>,
+        R: Send + Sync + 'static,
+    {
+        let native: MutexGuard<Arc<R>> = self.get_native(this);
+        native.clone()
+    }
+
     fn take_native<J, R>(&self, this: J) -> R
     where
         J: Into<JObject<'local>>,
@@ -246,10 +281,24 @@ impl<'local> JavaUtilList<'local> {
             .expect("could not get list item")
     }
 
-    fn get_string(self, env: JNIEnv<'local>, idx: i32) -> String {
-        env.get_string(JString::from(self.get(env, idx)))
-            .expect("could not convert to string")
-            .into()
+    fn strings(self, env: JNIEnv<'local>) -> Vec<String> {
+        (0..self.size(env))
+            .map(|i| {
+                env.get_string(JString::from(self.get(env, i)))
+                    .expect("could not convert list item to string")
+                    .into()
+            })
+            .collect()
+    }
+}
+
+impl<'local> JavaTimeDuration<'local> {
+    fn as_duration(self, env: JNIEnv<'local>) -> Duration {
+        let ms = env
+            .call_method(self, "toMillis", "()J", &[])
+            .and_then(|o| o.j())
+            .expect("cannot get duration millis");
+        Duration::from_millis(ms.try_into().expect("cannot convert to unsigned"))
     }
 }
 
@@ -279,19 +328,6 @@ impl<'local> JavaUtilOptional<'local> {
         }
     }
 
-    fn of_double(self, env: JNIEnv<'local>) -> Option<f64> {
-        if self.is_present(env) {
-            let d = self
-                .get(env)
-                .and_then(|o| env.call_method(o, "doubleValue", "()D", &[]))
-                .and_then(|o| o.d())
-                .expect("could not get double");
-            Some(d)
-        } else {
-            None
-        }
-    }
-
     fn of_duration_ms(self, env: JNIEnv<'local>) -> Option<Duration> {
         if self.is_present(env) {
             let d = self
@@ -420,377 +456,1186 @@ impl HeartbeatHandler for HeartbeatCallback {
     }
 }
 
-struct NativeSessionRsImpl<'local> {
-    env: JNIEnv<'local>,
+/// The number of servers to keep TLS sessions for, as in rustls' default cache.
+const TLS_SESSION_CACHE_SIZE: usize = 256;
+
+/// TLS sessions of the ngrok service, shared by every session in the process so
+/// that connects and reconnects resume instead of doing a full handshake.
+static TLS_SESSIONS: Lazy<Arc<TlsSessionCache>> =
+    Lazy::new(|| Arc::new(TlsSessionCache::new(TLS_SESSION_CACHE_SIZE)));
+
+/// An in-memory session store counting how often a handshake offers a session
+/// to resume. The store only sees the lookups, not whether the server accepted
+/// the offer, so an offer is not necessarily a resumption.
+#[derive(Debug)]
+struct TlsSessionCache {
+    inner: ClientSessionMemoryCache,
+    offered: AtomicU64,
+    not_offered: AtomicU64,
 }
 
-impl<'local> NativeSessionRsImpl<'local> {
-    fn tcp_builder(
-        &self,
-        sess: MutexGuard<Session>,
-        jttb: ComNgrokTcpBuilder<'local>,
-    ) -> Result<TcpTunnelBuilder, Error<IOExceptionErr>> {
-        let mut bldr = sess.tcp_endpoint();
+impl TlsSessionCache {
+    fn new(size: usize) -> Self {
+        TlsSessionCache {
+            inner: ClientSessionMemoryCache::new(size),
+            offered: AtomicU64::new(0),
+            not_offered: AtomicU64::new(0),
+        }
+    }
+}
 
-        let jeb = jttb.as_com_ngrok_endpoint_builder();
-        let jmb = jeb.as_com_ngrok_metadata_builder();
+impl ClientSessionStore for TlsSessionCache {
+    fn set_kx_hint(&self, server_name: ServerName<'static>, group: NamedGroup) {
+        self.inner.set_kx_hint(server_name, group)
+    }
 
-        // from MetadataBuilder
-        if let Some(metadata) = jmb.get_metadata(self.env).of_string(self.env) {
-            bldr.metadata(metadata);
-        }
+    fn kx_hint(&self, server_name: &ServerName<'_>) -> Option<NamedGroup> {
+        self.inner.kx_hint(server_name)
+    }
 
-        if let Some(forwards_to) = jmb.get_forwards_to(self.env).of_string(self.env) {
-            bldr.forwards_to(forwards_to);
-        }
+    fn set_tls12_session(&self, server_name: ServerName<'static>, value: Tls12ClientSessionValue) {
+        self.inner.set_tls12_session(server_name, value)
+    }
 
-        // from EndpointBuilder
-        let allow_cidr = jeb.get_allow_cidr(self.env);
-        for i in 0..allow_cidr.size(self.env) {
-            bldr.allow_cidr(allow_cidr.get_string(self.env, i));
+    // only looked up when there is no TLS 1.3 ticket, so it settles what the
+    // handshake offers
+    fn tls12_session(&self, server_name: &ServerName<'_>) -> Option<Tls12ClientSessionValue> {
+        let found = self.inner.tls12_session(server_name);
+        if found.is_some() {
+            self.offered.fetch_add(1, Ordering::Relaxed);
+        } else {
+            self.not_offered.fetch_add(1, Ordering::Relaxed);
         }
+        found
+    }
 
-        let deny_cidr = jeb.get_deny_cidr(self.env);
-        for i in 0..deny_cidr.size(self.env) {
-            bldr.deny_cidr(deny_cidr.get_string(self.env, i));
-        }
+    fn remove_tls12_session(&self, server_name: &ServerName<'static>) {
+        self.inner.remove_tls12_session(server_name)
+    }
 
-        bldr.proxy_proto(ProxyProto::from(jeb.get_proxy_proto_version(self.env)));
+    fn insert_tls13_ticket(
+        &self,
+        server_name: ServerName<'static>,
+        value: Tls13ClientSessionValue,
+    ) {
+        self.inner.insert_tls13_ticket(server_name, value)
+    }
 
-        if let Some(policy) = jeb.get_policy(self.env).of_string(self.env) {
-            bldr.traffic_policy(policy.as_str());
+    fn take_tls13_ticket(
+        &self,
+        server_name: &ServerName<'static>,
+    ) -> Option<Tls13ClientSessionValue> {
+        let found = self.inner.take_tls13_ticket(server_name);
+        if found.is_some() {
+            self.offered.fetch_add(1, Ordering::Relaxed);
         }
+        found
+    }
+}
 
-        if let Some(traffic_policy) = jeb.get_traffic_policy(self.env).of_string(self.env) {
-            bldr.traffic_policy(traffic_policy);
-        }
+/// TLS settings of the connection to the ngrok service, from the Java builder.
+#[derive(Default)]
+struct TlsSettings {
+    cipher_suites: Vec<String>,
+    kx_groups: Vec<String>,
+    min_version: Option<String>,
+    ca_cert: Option<Vec<u8>>,
+    client_cert: Option<(Vec<u8>, Vec<u8>)>,
+}
 
-        // from TcpBuilder
-        if let Some(remote_addr) = jttb.get_remote_address(self.env).of_string(self.env) {
-            bldr.remote_addr(remote_addr);
-        }
+/// The TLS settings applied to the configuration ngrok builds for each connect.
+struct TlsOptions {
+    /// Replaces the configuration when the crypto provider or protocol versions
+    /// change, neither of which can be changed on an existing configuration.
+    config: Option<ClientConfig>,
+    client_auth: Option<Arc<dyn ResolvesClientCert>>,
+}
 
-        Ok(bldr)
-    }
+impl TlsOptions {
+    fn new(settings: TlsSettings) -> Result<Self, String> {
+        let client_auth = match &settings.client_cert {
+            Some((chain, key)) => Some(client_auth(chain, key)?),
+            None => None,
+        };
 
-    fn tls_builder(
-        &self,
-        sess: MutexGuard<Session>,
-        jttb: ComNgrokTlsBuilder<'local>,
-    ) -> Result<TlsTunnelBuilder, Error<IOExceptionErr>> {
-        let mut bldr = sess.tls_endpoint();
+        let config = if settings.cipher_suites.is_empty()
+            && settings.kx_groups.is_empty()
+            && settings.min_version.is_none()
+        {
+            None
+        } else {
+            Some(tls_config(&settings)?)
+        };
 
-        let jeb = jttb.as_com_ngrok_endpoint_builder();
-        let jmb = jeb.as_com_ngrok_metadata_builder();
+        Ok(TlsOptions { config, client_auth })
+    }
 
-        // from MetadataBuilder
-        if let Some(metadata) = jmb.get_metadata(self.env).of_string(self.env) {
-            bldr.metadata(metadata);
+    fn apply(&self, tls_config: Arc<ClientConfig>) -> Arc<ClientConfig> {
+        let mut config = match &self.config {
+            Some(config) => {
+                // keep what the transport configures on top, such as its ALPN protocol
+                let mut config = config.clone();
+                config.alpn_protocols = tls_config.alpn_protocols.clone();
+                config.enable_sni = tls_config.enable_sni;
+                config
+            }
+            None => (*tls_config).clone(),
+        };
+        if let Some(resolver) = &self.client_auth {
+            config.client_auth_cert_resolver = resolver.clone();
         }
+        config.resumption = Resumption::store(TLS_SESSIONS.clone());
+        Arc::new(config)
+    }
+}
 
-        if let Some(forwards_to) = jmb.get_forwards_to(self.env).of_string(self.env) {
-            bldr.forwards_to(forwards_to);
-        }
+/// The reconnect policy from the Java builder.
+struct ReconnectPolicy {
+    initial_delay: Duration,
+    max_delay: Duration,
+    multiplier: f64,
+    jitter: f64,
+    connect_timeout: Option<Duration>,
+}
 
-        // from EndpointBuilder
-        let allow_cidr = jeb.get_allow_cidr(self.env);
-        for i in 0..allow_cidr.size(self.env) {
-            bldr.allow_cidr(allow_cidr.get_string(self.env, i));
-        }
+impl ReconnectPolicy {
+    /// Returns the delay before the given reconnect attempt, counted from 1.
+    fn delay(&self, attempt: u32) -> Duration {
+        let exp = i32::try_from(attempt.saturating_sub(1)).unwrap_or(i32::MAX);
+        let delay = (self.initial_delay.as_secs_f64() * self.multiplier.powi(exp))
+            .min(self.max_delay.as_secs_f64());
+        Duration::from_secs_f64(delay * (1.0 - self.jitter * rand::random::<f64>()))
+    }
+}
+
+/// A session lifecycle event for a Java handler.
+enum LifecycleEvent {
+    Connecting {
+        attempt: u32,
+    },
+    Connected {
+        attempt: u32,
+        duration: Duration,
+    },
+    Disconnected {
+        cause: String,
+    },
+    Reconnecting {
+        attempt: u32,
+        delay: Duration,
+        cause: String,
+    },
+}
 
-        let deny_cidr = jeb.get_deny_cidr(self.env);
-        for i in 0..deny_cidr.size(self.env) {
-            bldr.deny_cidr(deny_cidr.get_string(self.env, i));
+/// Lifecycle events waiting for their handlers. They are delivered from a thread
+/// of their own, so that neither the runtime's workers nor the reconnect wait on
+/// Java code.
+static LIFECYCLE_EVENTS: Lazy<UnboundedSender<(Arc<GlobalRef>, LifecycleEvent)>> =
+    Lazy::new(|| {
+        let (tx, mut rx) = unbounded_channel::<(Arc<GlobalRef>, LifecycleEvent)>();
+        std::thread::Builder::new()
+            .name("ngrok-lifecycle".into())
+            .spawn(move || {
+                let jvm = JVM.get().expect("no jvm");
+                let jenv = jvm
+                    .attach_current_thread_as_daemon()
+                    .expect("cannot attach lifecycle thread");
+                while let Some((handler, event)) = rx.blocking_recv() {
+                    // the thread never returns to Java, free local references per event
+                    let _ = jenv.with_local_frame(16, || {
+                        deliver(jenv, &handler, event);
+                        Ok(JObject::null())
+                    });
+                }
+            })
+            .expect("cannot start lifecycle thread");
+        tx
+    });
+
+fn deliver(jenv: JNIEnv<'_>, handler: &GlobalRef, event: LifecycleEvent) {
+    let lcbk = ComNgrokSessionLifecycleHandler::from(handler.as_obj());
+    match event {
+        LifecycleEvent::Connecting { attempt } => lcbk.connecting(jenv, attempt as i32),
+        LifecycleEvent::Connected { attempt, duration } => {
+            lcbk.connected(jenv, attempt as i32, duration.as_millis() as i64)
+        }
+        LifecycleEvent::Disconnected { cause } => lcbk.disconnected(jenv, cause),
+        LifecycleEvent::Reconnecting {
+            attempt,
+            delay,
+            cause,
+        } => lcbk.reconnecting(jenv, attempt as i32, delay.as_millis() as i64, cause),
+    }
+    // a throwing handler must not leave the exception pending on this thread, log it
+    // the way completion handler failures are logged on the Java side
+    if let Ok(thrown) = jenv.exception_occurred() {
+        if thrown.is_null() {
+            return;
+        }
+        let _ = jenv.exception_clear();
+        let cause: String = jenv
+            .call_method(thrown, "toString", "()Ljava/lang/String;", &[])
+            .and_then(|o| o.l())
+            .map(JString::from)
+            .and_then(|o| jenv.get_string(o))
+            .map(Into::into)
+            .unwrap_or_else(|_| "unknown".to_string());
+        let _ = jenv.exception_clear();
+        if let Some(logref) = LOGGER.get() {
+            ComNgrokRuntimeLogger::from(logref.as_obj()).log(
+                jenv,
+                "warn".to_string(),
+                "lifecycle".to_string(),
+                format!("lifecycle handler failed: {cause}"),
+            );
         }
+    }
+}
 
-        bldr.proxy_proto(ProxyProto::from(jeb.get_proxy_proto_version(self.env)));
+#[derive(Default)]
+struct ConnectState {
+    attempt: u32,
+    connected: bool,
+    last_error: Option<String>,
+}
 
-        if let Some(policy) = jeb.get_policy(self.env).of_string(self.env) {
-            bldr.traffic_policy(policy.as_str());
-        }
+/// Connects a session to the ngrok service, applying the TLS settings and the
+/// reconnect policy from the Java builder and reporting lifecycle events.
+struct SessionConnector {
+    tls: TlsOptions,
+    policy: Option<ReconnectPolicy>,
+    handler: Option<Arc<GlobalRef>>,
+    state: std::sync::Mutex<ConnectState>,
+}
 
-        if let Some(traffic_policy) = jeb.get_traffic_policy(self.env).of_string(self.env) {
-            bldr.traffic_policy(traffic_policy);
-        }
+impl SessionConnector {
+    fn emit(&self, event: LifecycleEvent) {
+        if let Some(handler) = &self.handler {
+            let _ = LIFECYCLE_EVENTS.send((handler.clone(), event));
+        }
+    }
+
+    async fn connect(
+        self: Arc<Self>,
+        host: String,
+        port: u16,
+        tls_config: Arc<ClientConfig>,
+        err: Option<AcceptError>,
+    ) -> Result<Box<dyn IoStream>, ConnectError> {
+        let (attempt, cause) = {
+            let mut state = self.state.lock().expect("connect state poisoned");
+            if state.connected {
+                let cause = err
+                    .as_ref()
+                    .map(|e| error_chain(e))
+                    .unwrap_or_else(|| "connection lost".into());
+                self.emit(LifecycleEvent::Disconnected {
+                    cause: cause.clone(),
+                });
+                state.connected = false;
+                state.attempt = 0;
+                state.last_error = Some(cause);
+            }
+            state.attempt += 1;
+            (state.attempt, state.last_error.clone())
+        };
 
-        // from TlsBuilder
-        if let Some(domain) = jttb.get_domain(self.env).of_string(self.env) {
-            bldr.domain(domain);
+        match cause {
+            None => self.emit(LifecycleEvent::Connecting { attempt }),
+            Some(cause) => {
+                let delay = self
+                    .policy
+                    .as_ref()
+                    .map(|p| p.delay(attempt))
+                    .unwrap_or_default();
+                self.emit(LifecycleEvent::Reconnecting {
+                    attempt,
+                    delay,
+                    cause,
+                });
+                if !delay.is_zero() {
+                    tokio::time::sleep(delay).await;
+                }
+            }
         }
 
-        let mtls = jttb.get_mutual_tlsca(self.env);
-        if !mtls.is_null() {
-            let mtls_data = mtls.as_slice(&self.env).expect("cannot get mtls data");
-            bldr.mutual_tlsca(Bytes::copy_from_slice(&mtls_data));
-        }
+        let started = Instant::now();
+        let connecting = default_connect(host, port, self.tls.apply(tls_config), err);
+        let res = match self.policy.as_ref().and_then(|p| p.connect_timeout) {
+            Some(timeout) => match tokio::time::timeout(timeout, connecting).await {
+                Ok(res) => res,
+                Err(_) => Err(ConnectError::Tcp(std::io::Error::new(
+                    std::io::ErrorKind::TimedOut,
+                    format!("connect timed out after {}ms", timeout.as_millis()),
+                ))),
+            },
+            None => connecting.await,
+        };
 
-        match (
-            jttb.get_termination_cert_pem(self.env),
-            jttb.get_termination_key_pem(self.env),
-        ) {
-            (cert, key) if !cert.is_null() && !key.is_null() => {
-                let cert_pem_data = cert.as_slice(&self.env).expect("cannot get cert data");
-                let key_pem_data = key.as_slice(&self.env).expect("cannot get key data");
-                bldr.termination(
-                    Bytes::copy_from_slice(&cert_pem_data),
-                    Bytes::copy_from_slice(&key_pem_data),
-                );
+        let mut state = self.state.lock().expect("connect state poisoned");
+        match &res {
+            Ok(_) => {
+                state.connected = true;
+                state.attempt = 0;
+                state.last_error = None;
+                self.emit(LifecycleEvent::Connected {
+                    attempt,
+                    duration: started.elapsed(),
+                });
             }
-            (cert, key) if cert.is_null() && key.is_null() => {}
-            _ => return io_exc_err("requires both terminationCertPEM and terminationKeyPEM"),
+            Err(e) => state.last_error = Some(error_chain(e)),
         }
-
-        Ok(bldr)
+        res
     }
+}
 
-    fn http_builder(
-        &self,
-        sess: MutexGuard<Session>,
-        jhtb: ComNgrokHttpBuilder<'local>,
-    ) -> Result<HttpTunnelBuilder, Error<IOExceptionErr>> {
-        let mut bldr = sess.http_endpoint();
+/// Formats an error with its sources, which ngrok errors keep their details in.
+fn error_chain(err: &dyn std::error::Error) -> String {
+    let mut msg = err.to_string();
+    let mut source = err.source();
+    while let Some(err) = source {
+        msg.push_str(": ");
+        msg.push_str(&err.to_string());
+        source = err.source();
+    }
+    msg
+}
 
-        let jeb = jhtb.as_com_ngrok_endpoint_builder();
-        let jmb = jeb.as_com_ngrok_metadata_builder();
+/// The root certificate of the ngrok service, vendored from the ngrok crate's
+/// assets/ngrok.ca.crt, which the crate only uses internally.
+const NGROK_CA_CERT: &[u8] = include_bytes!("../assets/ngrok.ca.crt");
+
+/// Builds a TLS configuration with the chosen cipher suites, key exchange groups
+/// and versions, in the order of preference given. The server certificate is
+/// verified against the ca certificate if one is set, or the ngrok root
+/// otherwise, as in the configuration ngrok builds.
+fn tls_config(settings: &TlsSettings) -> Result<ClientConfig, String> {
+    let mut provider = ring::default_provider();
+    if !settings.cipher_suites.is_empty() {
+        let mut suites = Vec::with_capacity(settings.cipher_suites.len());
+        for name in &settings.cipher_suites {
+            let suite = cipher_suite(name)
+                .and_then(|suite| provider.cipher_suites.iter().find(|s| s.suite() == suite))
+                .ok_or_else(|| format!("unsupported cipher suite: {name}"))?;
+            suites.push(*suite);
+        }
+        provider.cipher_suites = suites;
+    }
+    if !settings.kx_groups.is_empty() {
+        let mut groups = Vec::with_capacity(settings.kx_groups.len());
+        for name in &settings.kx_groups {
+            let group = kx_group(name)
+                .and_then(|group| provider.kx_groups.iter().find(|g| g.name() == group))
+                .ok_or_else(|| format!("unsupported key exchange group: {name}"))?;
+            groups.push(*group);
+        }
+        provider.kx_groups = groups;
+    }
+
+    let versions: &[&'static SupportedProtocolVersion] = match settings.min_version.as_deref() {
+        Some("TLSv1.3") => &[&version::TLS13],
+        _ => &[&version::TLS13, &version::TLS12],
+    };
+
+    let pem = settings.ca_cert.as_deref().unwrap_or(NGROK_CA_CERT);
+    let mut roots = RootCertStore::empty();
+    let certs = rustls_pemfile::certs(&mut &pem[..])
+        .collect::<Result<Vec<_>, _>>()
+        .map_err(|e| format!("invalid ca certificate: {e}"))?;
+    if certs.is_empty() {
+        return Err("invalid ca certificate: no certificate found".into());
+    }
+    roots.add_parsable_certificates(certs);
+
+    let mut config = ClientConfig::builder_with_provider(Arc::new(provider))
+        .with_protocol_versions(versions)
+        .map_err(|e| format!("invalid tls settings: {e}"))?
+        .with_root_certificates(roots)
+        .with_no_client_auth();
+    if let Some((chain, key)) = &settings.client_cert {
+        config.client_auth_cert_resolver = client_auth(chain, key)?;
+    }
+    Ok(config)
+}
 
-        // from MetadataBuilder
-        if let Some(metadata) = jmb.get_metadata(self.env).of_string(self.env) {
-            bldr.metadata(metadata);
+/// Maps the IANA name of a cipher suite to its value. TLS 1.3 suites may also
+/// be given by their rustls names, prefixed with TLS13_.
+fn cipher_suite(name: &str) -> Option<CipherSuite> {
+    Some(match name.to_ascii_uppercase().replace("TLS13_", "TLS_").as_str() {
+        "TLS_AES_128_GCM_SHA256" => CipherSuite::TLS13_AES_128_GCM_SHA256,
+        "TLS_AES_256_GCM_SHA384" => CipherSuite::TLS13_AES_256_GCM_SHA384,
+        "TLS_CHACHA20_POLY1305_SHA256" => CipherSuite::TLS13_CHACHA20_POLY1305_SHA256,
+        "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256" => {
+            CipherSuite::TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256
         }
-
-        if let Some(forwards_to) = jmb.get_forwards_to(self.env).of_string(self.env) {
-            bldr.forwards_to(forwards_to);
+        "TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384" => {
+            CipherSuite::TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384
         }
-
-        // from EndpointBuilder
-        let allow_cidr = jeb.get_allow_cidr(self.env);
-        for i in 0..allow_cidr.size(self.env) {
-            bldr.allow_cidr(allow_cidr.get_string(self.env, i));
+        "TLS_ECDHE_ECDSA_WITH_CHACHA20_POLY1305_SHA256" => {
+            CipherSuite::TLS_ECDHE_ECDSA_WITH_CHACHA20_POLY1305_SHA256
         }
-
-        let deny_cidr = jeb.get_deny_cidr(self.env);
-        for i in 0..deny_cidr.size(self.env) {
-            bldr.deny_cidr(deny_cidr.get_string(self.env, i));
+        "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256" => {
+            CipherSuite::TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256
+        }
+        "TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384" => {
+            CipherSuite::TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384
         }
+        "TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256" => {
+            CipherSuite::TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256
+        }
+        _ => return None,
+    })
+}
 
-        bldr.proxy_proto(ProxyProto::from(jeb.get_proxy_proto_version(self.env)));
+/// Maps the name of a key exchange group to its value.
+fn kx_group(name: &str) -> Option<NamedGroup> {
+    Some(match name.to_ascii_lowercase().as_str() {
+        "x25519" => NamedGroup::X25519,
+        "secp256r1" => NamedGroup::secp256r1,
+        "secp384r1" => NamedGroup::secp384r1,
+        _ => return None,
+    })
+}
 
-        if let Some(policy) = jeb.get_policy(self.env).of_string(self.env) {
-            bldr.traffic_policy(policy.as_str());
-        }
+/// Loads a PEM encoded client certificate chain and key into a resolver that
+/// can be set on any TLS configuration.
+fn client_auth(chain: &[u8], key: &[u8]) -> Result<Arc<dyn ResolvesClientCert>, String> {
+    let certs = rustls_pemfile::certs(&mut &chain[..])
+        .collect::<Result<Vec<_>, _>>()
+        .map_err(|e| format!("invalid client certificate: {e}"))?;
+    let key = rustls_pemfile::private_key(&mut &key[..])
+        .map_err(|e| format!("invalid client key: {e}"))?
+        .ok_or("no private key in client key")?;
+    let config = ClientConfig::builder()
+        .with_root_certificates(RootCertStore::empty())
+        .with_client_auth_cert(certs, key)
+        .map_err(|e| format!("invalid client certificate: {e}"))?;
+    Ok(config.client_auth_cert_resolver)
+}
 
-        if let Some(traffic_policy) = jeb.get_traffic_policy(self.env).of_string(self.env) {
-            bldr.traffic_policy(traffic_policy);
-        }
+/// A connection split into independently locked halves, so that reads and
+/// writes can be in flight at the same time, either blocking or spawned on
+/// the runtime.
+struct NativeConn<C> {
+    reader: tokio::sync::Mutex<ReadHalf<C>>,
+    writer: tokio::sync::Mutex<WriteHalf<C>>,
+    closed: CancellationToken,
+}
 
-        // from HttpBuilder
-        if let Some(scheme) = jhtb.get_scheme_name(self.env).of_string(self.env) {
-            let scheme = Scheme::from_str(scheme.as_str()).map_err(io_exc)?;
-            bldr.scheme(scheme);
-        }
+impl<C: AsyncRead + AsyncWrite> NativeConn<C> {
+    fn new(conn: C) -> Arc<Self> {
+        let (reader, writer) = tokio::io::split(conn);
+        Arc::new(NativeConn {
+            reader: tokio::sync::Mutex::new(reader),
+            writer: tokio::sync::Mutex::new(writer),
+            closed: CancellationToken::new(),
+        })
+    }
 
-        if let Some(domain) = jhtb.get_domain(self.env).of_string(self.env) {
-            bldr.domain(domain);
+    async fn read(&self, buf: &mut [u8]) -> std::io::Result<usize> {
+        tokio::select! {
+            res = async { self.reader.lock().await.read(buf).await } => res,
+            _ = self.closed.cancelled() => Err(std::io::ErrorKind::NotConnected.into()),
         }
+    }
 
-        let mtls = jhtb.get_mutual_tlsca(self.env);
-        if !mtls.is_null() {
-            let slice = mtls.as_slice(&self.env).expect("cannot get mtls data");
-            bldr.mutual_tlsca(Bytes::copy_from_slice(&slice));
+    async fn write(&self, buf: &[u8]) -> std::io::Result<usize> {
+        tokio::select! {
+            res = async { self.writer.lock().await.write(buf).await } => res,
+            _ = self.closed.cancelled() => Err(std::io::ErrorKind::NotConnected.into()),
         }
+    }
 
-        if jhtb.is_compression(self.env) {
-            bldr.compression();
-        }
+    async fn shutdown(&self) -> std::io::Result<()> {
+        self.closed.cancel();
+        self.writer.lock().await.shutdown().await
+    }
+}
 
-        if jhtb.is_websocket_tcp_conversion(self.env) {
-            bldr.websocket_tcp_conversion();
-        }
+/// A listener tunnel whose pending accepts are abandoned once it is closed.
+struct NativeTunnel<T> {
+    tunnel: tokio::sync::Mutex<T>,
+    closed: CancellationToken,
+}
 
-        if let Some(circuit_breaker) = jhtb.get_circuit_breaker(self.env).of_double(self.env) {
-            bldr.circuit_breaker(circuit_breaker);
-        }
+impl<T: TryStream + Unpin> NativeTunnel<T> {
+    fn new(tun: T) -> Arc<Self> {
+        Arc::new(NativeTunnel {
+            tunnel: tokio::sync::Mutex::new(tun),
+            closed: CancellationToken::new(),
+        })
+    }
 
-        let request_headers = jhtb.get_request_headers(self.env);
-        for i in 0..request_headers.size(self.env) {
-            let header: ComNgrokHttpHeader = request_headers.get(self.env, i).into();
-            bldr.request_header(header.get_name(self.env), header.get_value(self.env));
+    async fn accept(&self) -> Result<Option<T::Ok>, T::Error> {
+        tokio::select! {
+            res = async { self.tunnel.lock().await.try_next().await } => res,
+            _ = self.closed.cancelled() => Ok(None),
         }
+    }
+}
 
-        let response_headers = jhtb.get_response_headers(self.env);
-        for i in 0..response_headers.size(self.env) {
-            let header: ComNgrokHttpHeader = response_headers.get(self.env, i).into();
-            bldr.response_header(header.get_name(self.env), header.get_value(self.env));
-        }
+/// A forwarder that can be closed while another thread is joined on it. A pending
+/// join is abandoned once the forwarder is closed.
+struct NativeForwarder<T> {
+    forwarder: tokio::sync::Mutex<Forwarder<T>>,
+    closed: CancellationToken,
+}
 
-        let remove_request_headers = jhtb.get_remove_request_headers(self.env);
-        for i in 0..remove_request_headers.size(self.env) {
-            bldr.remove_request_header(remove_request_headers.get_string(self.env, i));
-        }
+impl<T> NativeForwarder<T> {
+    fn new(fwd: Forwarder<T>) -> Arc<Self> {
+        Arc::new(NativeForwarder {
+            forwarder: tokio::sync::Mutex::new(fwd),
+            closed: CancellationToken::new(),
+        })
+    }
 
-        let remove_response_headers = jhtb.get_remove_response_headers(self.env);
-        for i in 0..remove_response_headers.size(self.env) {
-            bldr.remove_response_header(remove_response_headers.get_string(self.env, i));
+    async fn join(&self) -> Result<(), String> {
+        tokio::select! {
+            res = async { self.forwarder.lock().await.join().await } => match res {
+                Ok(Ok(())) => Ok(()),
+                Ok(Err(e)) => Err(e.to_string()),
+                Err(e) => Err(e.to_string()),
+            },
+            _ = self.closed.cancelled() => Ok(()),
         }
+    }
+}
 
-        let basic_auth = jhtb.get_basic_auth(self.env);
-        if !basic_auth.is_null() {
-            bldr.basic_auth(
-                basic_auth.get_username(self.env),
-                basic_auth.get_password(self.env),
-            );
+/// Holds a Java side `NativeCompletion` for an operation spawned on the runtime,
+/// together with the buffer the operation is using, so it stays reachable until
+/// the operation completes.
+struct CompletionCallback {
+    cbk: GlobalRef,
+    _buff: Option<GlobalRef>,
+}
+
+impl CompletionCallback {
+    fn from(
+        env: JNIEnv<'_>,
+        obj: ComNgrokNativeCompletion,
+        buff: Option<JByteBuffer<'_>>,
+    ) -> Self {
+        CompletionCallback {
+            cbk: env
+                .new_global_ref(obj)
+                .expect("cannot get global reference"),
+            _buff: buff.map(|b| env.new_global_ref(b).expect("cannot get global reference")),
         }
+    }
+
+    fn invoke<F>(&self, f: F)
+    where
+        F: for<'a> FnOnce(JNIEnv<'a>, ComNgrokNativeCompletion<'a>),
+    {
+        let jvm = JVM.get().expect("no jvm");
+        // runtime threads stay attached, local references are released with the frame
+        let jenv = jvm
+            .attach_current_thread_as_daemon()
+            .expect("cannot attach");
+        let cbk = ComNgrokNativeCompletion::from(self.cbk.as_obj());
+        jenv.with_local_frame(16, || {
+            f(jenv, cbk);
+            Ok(JObject::null())
+        })
+        .expect("cannot complete operation");
+    }
+
+    fn complete_read(self, res: std::io::Result<usize>) {
+        self.invoke(|env, cbk| match read_result(res) {
+            Ok(sz) => cbk.completed(env, sz),
+            Err(err) => cbk.failed(env, err.to_string()),
+        })
+    }
+
+    fn complete_write(self, res: std::io::Result<usize>) {
+        self.invoke(|env, cbk| match write_result(res) {
+            Ok(sz) => cbk.completed(env, sz),
+            Err(err) => cbk.failed(env, err.to_string()),
+        })
+    }
 
-        let joauth = jhtb.get_oauth(self.env);
-        if !joauth.is_null() {
-            let mut oauth = OauthOptions::new(joauth.get_provider(self.env));
-            if joauth.has_client_configured(self.env) {
-                oauth.client_id(joauth.get_client_id(self.env));
-                oauth.client_secret(joauth.get_client_secret(self.env));
+    fn complete_endpoint(self, res: Result<Option<EndpointConn>, AcceptError>) {
+        self.invoke(|env, cbk| match res {
+            Ok(Some(conn)) => {
+                let jconn: JObject = endpoint_conn(env, conn).into();
+                cbk.accepted(env, ComNgrokConnection::from(jconn))
             }
+            Ok(None) => cbk.failed(env, "could not get next conn".to_string()),
+            Err(err) => cbk.failed(env, err.to_string()),
+        })
+    }
 
-            let allow_emails = joauth.get_allow_emails(self.env);
-            for i in 0..allow_emails.size(self.env) {
-                oauth.allow_email(allow_emails.get_string(self.env, i));
+    fn complete_listen<T, E, F>(self, res: Result<T, E>, f: F)
+    where
+        E: NError,
+        F: for<'a> FnOnce(&NativeSessionRsImpl<'a>, T) -> JObject<'a>,
+    {
+        self.invoke(|env, cbk| match res {
+            Ok(tun) => {
+                let jlistener = f(&NativeSessionRsImpl { env }, tun);
+                cbk.listened(env, ComNgrokListener::from(jlistener))
             }
+            Err(err) => fail_ngrok(env, cbk, err),
+        })
+    }
 
-            let allow_domains = joauth.get_allow_domains(self.env);
-            for i in 0..allow_domains.size(self.env) {
-                oauth.allow_domain(allow_domains.get_string(self.env, i));
+    fn complete_forward<T, E, F>(self, res: Result<T, E>, f: F)
+    where
+        E: NError,
+        F: for<'a> FnOnce(&NativeSessionRsImpl<'a>, T) -> JObject<'a>,
+    {
+        self.invoke(|env, cbk| match res {
+            Ok(tun) => {
+                let jforwarder = f(&NativeSessionRsImpl { env }, tun);
+                cbk.forwarded(env, ComNgrokForwarder::from(jforwarder))
             }
+            Err(err) => fail_ngrok(env, cbk, err),
+        })
+    }
+
+    fn complete_close<E: NError>(self, res: Result<(), E>) {
+        self.invoke(|env, cbk| match res {
+            Ok(()) => cbk.closed(env),
+            Err(err) => fail_ngrok(env, cbk, err),
+        })
+    }
 
-            let scopes: JavaUtilList<'_> = joauth.get_scopes(self.env);
-            for i in 0..scopes.size(self.env) {
-                oauth.scope(scopes.get_string(self.env, i));
+    fn complete_edge(self, res: Result<Option<EdgeConn>, AcceptError>) {
+        self.invoke(|env, cbk| match res {
+            Ok(Some(conn)) => {
+                let jconn: JObject = edge_conn(env, conn).into();
+                cbk.accepted(env, ComNgrokConnection::from(jconn))
             }
+            Ok(None) => cbk.failed(env, "could not get next conn".to_string()),
+            Err(err) => cbk.failed(env, err.to_string()),
+        })
+    }
+}
 
-            bldr.oauth(oauth);
-        }
+/// Fails a completion with the error of a connect or bind, as an `NgrokException`
+/// if it carries an ngrok error code.
+fn fail_ngrok<E: NError>(env: JNIEnv<'_>, cbk: ComNgrokNativeCompletion<'_>, err: E) {
+    match err.error_code() {
+        Some(code) => cbk.failed_with_code(env, code.to_string(), err.msg()),
+        None => cbk.failed(env, err.to_string()),
+    }
+}
 
-        let joidc = jhtb.get_oidc(self.env);
-        if !joidc.is_null() {
-            let mut oidc = OidcOptions::new(
-                joidc.get_issuer_url(self.env),
-                joidc.get_client_id(self.env),
-                joidc.get_client_secret(self.env),
-            );
+// Result codes returned to Java in place of a size, must match NativeIO.
+const RESULT_EOF: i32 = -1;
+const RESULT_RESET: i32 = -2;
+const RESULT_CLOSED: i32 = -3;
 
-            let allow_emails = joauth.get_allow_emails(self.env);
-            for i in 0..allow_emails.size(self.env) {
-                oidc.allow_email(allow_emails.get_string(self.env, i));
-            }
+/// Maps the result of a read to the number of bytes read or a result code,
+/// leaving only unexpected errors to be raised as exceptions.
+fn read_result(res: std::io::Result<usize>) -> std::io::Result<i32> {
+    match res {
+        Ok(0) => Ok(RESULT_EOF),
+        other => write_result(other),
+    }
+}
 
-            let allow_domains = joauth.get_allow_domains(self.env);
-            for i in 0..allow_domains.size(self.env) {
-                oidc.allow_domain(allow_domains.get_string(self.env, i));
-            }
+/// Maps the result of a write to the number of bytes written or a result code,
+/// leaving only unexpected errors to be raised as exceptions.
+fn write_result(res: std::io::Result<usize>) -> std::io::Result<i32> {
+    use std::io::ErrorKind;
+    match res {
+        Ok(sz) => Ok(sz.try_into().expect("size must be i32")),
+        Err(err) => match err.kind() {
+            ErrorKind::ConnectionReset => Ok(RESULT_RESET),
+            ErrorKind::NotConnected
+            | ErrorKind::ConnectionAborted
+            | ErrorKind::BrokenPipe
+            | ErrorKind::UnexpectedEof => Ok(RESULT_CLOSED),
+            _ => Err(err),
+        },
+    }
+}
 
-            let scopes: JavaUtilList<'_> = joauth.get_scopes(self.env);
-            for i in 0..scopes.size(self.env) {
-                oidc.scope(scopes.get_string(self.env, i));
-            }
+/// Returns the memory of a direct buffer in a form that can be moved into a
+/// task spawned on the runtime.
+fn direct_buffer(env: &JNIEnv<'_>, jbuff: JByteBuffer<'_>) -> (usize, usize) {
+    let addr = env
+        .get_direct_buffer_address(jbuff)
+        .expect("cannot get buff addr");
+    (addr.as_mut_ptr() as usize, addr.len())
+}
 
-            bldr.oidc(oidc);
+/// Splits a socket address into the binary form expected by the Java connections:
+/// the upper and lower halves of the IP address, the port, and whether it is IPv6.
+fn socket_addr(addr: SocketAddr) -> (i64, i64, i32, bool) {
+    match addr {
+        SocketAddr::V4(addr) => (0, u32::from(*addr.ip()) as i64, addr.port() as i32, false),
+        SocketAddr::V6(addr) => {
+            let bits = u128::from(*addr.ip());
+            (
+                (bits >> 64) as u64 as i64,
+                bits as u64 as i64,
+                addr.port() as i32,
+                true,
+            )
         }
+    }
+}
 
-        let jwv = jhtb.get_webhook_verification(self.env);
-        if !jwv.is_null() {
-            bldr.webhook_verification(jwv.get_provider(self.env), jwv.get_secret(self.env));
-        }
+fn endpoint_conn(env: JNIEnv<'_>, conn: EndpointConn) -> ComNgrokNativeEndpointConnection<'_> {
+    let (high, low, port, ipv6) = socket_addr(conn.remote_addr());
+    let proto = match conn.proto() {
+        "tcp" => 1,
+        "tls" => 2,
+        "http" => 3,
+        "https" => 4,
+        _ => 0,
+    };
+    let jconn = ComNgrokNativeEndpointConnection::new_1com_ngrok_native_endpoint_connection(
+        env,
+        high,
+        low,
+        port,
+        ipv6,
+        proto,
+    );
+    if proto == 0 {
+        // pass protocols without a code through as is
+        let jproto = env
+            .new_string(conn.proto())
+            .expect("cannot create proto string");
+        env.set_field(jconn, "proto", "Ljava/lang/String;", JValue::Object(jproto.into()))
+            .expect("cannot set proto");
+    }
+    env.set_rust_field(jconn, "native_address", NativeConn::new(conn))
+        .expect("cannot set native address");
+    jconn
+}
 
-        Ok(bldr)
-    }
+fn edge_conn(env: JNIEnv<'_>, conn: EdgeConn) -> ComNgrokNativeEdgeConnection<'_> {
+    let (high, low, port, ipv6) = socket_addr(conn.remote_addr());
+    let jconn = ComNgrokNativeEdgeConnection::new_1com_ngrok_native_edge_connection(
+        env,
+        high,
+        low,
+        port,
+        ipv6,
+        match conn.edge_type() {
+            ngrok::prelude::EdgeType::Https => 1,
+            ngrok::prelude::EdgeType::Tls => 2,
+            ngrok::prelude::EdgeType::Tcp => 3,
+            ngrok::prelude::EdgeType::Undefined => 0,
+        },
+        conn.passthrough_tls(),
+    );
+    env.set_rust_field(jconn, "native_address", NativeConn::new(conn))
+        .expect("cannot set native address");
+    jconn
+}
 
-    fn edge_builder(
-        &self,
-        sess: MutexGuard<Session>,
-        jltb: ComNgrokEdgeBuilder<'local>,
-    ) -> Result<LabeledTunnelBuilder, Error<IOExceptionErr>> {
-        let mut bldr = sess.labeled_tunnel();
+/// Endpoint configuration decoded from the buffer encoded by `BuilderCodec`.
+#[derive(Default)]
+struct BuilderConfig {
+    metadata: Option<String>,
+    forwards_to: Option<String>,
+    allow_cidr: Vec<String>,
+    deny_cidr: Vec<String>,
+    proxy_proto: i64,
+    traffic_policy: Option<String>,
+    remote_addr: Option<String>,
+    domain: Option<String>,
+    mutual_tlsca: Option<Bytes>,
+    termination: Option<(Bytes, Bytes)>,
+    scheme: Option<String>,
+    compression: bool,
+    websocket_tcp_conversion: bool,
+    circuit_breaker: Option<f64>,
+    request_headers: Vec<(String, String)>,
+    response_headers: Vec<(String, String)>,
+    remove_request_headers: Vec<String>,
+    remove_response_headers: Vec<String>,
+    basic_auth: Option<(String, String)>,
+    webhook_verification: Option<(String, String)>,
+    oauth: Option<OauthOptions>,
+    oidc: Option<OidcOptions>,
+    labels: Vec<(String, String)>,
+}
 
-        let jmb = jltb.as_com_ngrok_metadata_builder();
+// Field tags of an encoded builder configuration, must match BuilderCodec.
+const CFG_METADATA: u8 = 1;
+const CFG_FORWARDS_TO: u8 = 2;
+const CFG_ALLOW_CIDR: u8 = 3;
+const CFG_DENY_CIDR: u8 = 4;
+const CFG_PROXY_PROTO: u8 = 5;
+const CFG_TRAFFIC_POLICY: u8 = 6;
+const CFG_REMOTE_ADDR: u8 = 7;
+const CFG_DOMAIN: u8 = 8;
+const CFG_MUTUAL_TLS_CA: u8 = 9;
+const CFG_TERMINATION: u8 = 10;
+const CFG_SCHEME: u8 = 11;
+const CFG_COMPRESSION: u8 = 12;
+const CFG_WEBSOCKET_TCP_CONVERSION: u8 = 13;
+const CFG_CIRCUIT_BREAKER: u8 = 14;
+const CFG_REQUEST_HEADER: u8 = 15;
+const CFG_RESPONSE_HEADER: u8 = 16;
+const CFG_REMOVE_REQUEST_HEADER: u8 = 17;
+const CFG_REMOVE_RESPONSE_HEADER: u8 = 18;
+const CFG_BASIC_AUTH: u8 = 19;
+const CFG_WEBHOOK_VERIFICATION: u8 = 20;
+const CFG_OAUTH: u8 = 21;
+const CFG_OAUTH_CLIENT: u8 = 22;
+const CFG_OAUTH_ALLOW_EMAIL: u8 = 23;
+const CFG_OAUTH_ALLOW_DOMAIN: u8 = 24;
+const CFG_OAUTH_SCOPE: u8 = 25;
+const CFG_OIDC: u8 = 26;
+const CFG_OIDC_ALLOW_EMAIL: u8 = 27;
+const CFG_OIDC_ALLOW_DOMAIN: u8 = 28;
+const CFG_OIDC_SCOPE: u8 = 29;
+const CFG_LABEL: u8 = 30;
+
+/// Reads the values of an encoded builder configuration.
+struct ConfigReader<'a> {
+    buf: &'a [u8],
+}
 
-        // from MetadataBuilder
-        if let Some(metadata) = jmb.get_metadata(self.env).of_string(self.env) {
-            bldr.metadata(metadata);
+impl<'a> ConfigReader<'a> {
+    fn take(&mut self, len: usize) -> Result<&'a [u8], String> {
+        if self.buf.len() < len {
+            return Err("truncated builder configuration".into());
         }
+        let (head, tail) = self.buf.split_at(len);
+        self.buf = tail;
+        Ok(head)
+    }
 
-        if let Some(forwards_to) = jmb.get_forwards_to(self.env).of_string(self.env) {
-            bldr.forwards_to(forwards_to);
-        }
+    fn u8(&mut self) -> Result<u8, String> {
+        Ok(self.take(1)?[0])
+    }
 
-        // from EdgeBuilder
-        let labels = self
-            .env
-            .get_map(jltb.get_labels(self.env).into())
-            .expect("cannot get labels map");
-        labels
-            .iter()
-            .and_then(|iter| {
-                for e in iter {
-                    let key = self.env.get_string(e.0.into())?;
-                    let value = self.env.get_string(e.1.into())?;
-                    bldr.label(key, value);
-                }
-                Ok(())
-            })
-            .expect("cannot iterate over labels map");
+    fn f64(&mut self) -> Result<f64, String> {
+        let bits = self.take(8)?.try_into().expect("slice of 8 bytes");
+        Ok(f64::from_bits(u64::from_be_bytes(bits)))
+    }
 
-        Ok(bldr)
+    fn bytes(&mut self) -> Result<&'a [u8], String> {
+        let len = self.take(4)?.try_into().expect("slice of 4 bytes");
+        self.take(u32::from_be_bytes(len) as usize)
     }
 
-    fn labels_map(
-        &self,
-        labels: &HashMap<String, String>,
-    ) -> jaffi_support::jni::errors::Result<JavaUtilMap<'local>> {
-        let map_class = self.env.find_class("java/util/HashMap")?;
-        let map = self.env.new_object(map_class, "()V", &[])?;
-        let mmap = self.env.get_map(map)?;
-        for (key, value) in labels {
-            let jkey = self.env.new_string(key)?;
-            let jvalue = self.env.new_string(value)?;
-            mmap.put(jkey.into(), jvalue.into())?;
+    fn string(&mut self) -> Result<String, String> {
+        String::from_utf8(self.bytes()?.to_vec()).map_err(|e| e.to_string())
+    }
+}
+
+impl BuilderConfig {
+    /// Decodes a configuration in a single pass over the buffer.
+    fn decode(buf: &[u8]) -> Result<Self, String> {
+        let mut cfg = BuilderConfig::default();
+        let mut rd = ConfigReader { buf };
+        while !rd.buf.is_empty() {
+            match rd.u8()? {
+                CFG_METADATA => cfg.metadata = Some(rd.string()?),
+                CFG_FORWARDS_TO => cfg.forwards_to = Some(rd.string()?),
+                CFG_ALLOW_CIDR => cfg.allow_cidr.push(rd.string()?),
+                CFG_DENY_CIDR => cfg.deny_cidr.push(rd.string()?),
+                CFG_PROXY_PROTO => cfg.proxy_proto = rd.u8()? as i64,
+                CFG_TRAFFIC_POLICY => cfg.traffic_policy = Some(rd.string()?),
+                CFG_REMOTE_ADDR => cfg.remote_addr = Some(rd.string()?),
+                CFG_DOMAIN => cfg.domain = Some(rd.string()?),
+                CFG_MUTUAL_TLS_CA => cfg.mutual_tlsca = Some(Bytes::copy_from_slice(rd.bytes()?)),
+                CFG_TERMINATION => {
+                    let cert = Bytes::copy_from_slice(rd.bytes()?);
+                    let key = Bytes::copy_from_slice(rd.bytes()?);
+                    cfg.termination = Some((cert, key));
+                }
+                CFG_SCHEME => cfg.scheme = Some(rd.string()?),
+                CFG_COMPRESSION => cfg.compression = true,
+                CFG_WEBSOCKET_TCP_CONVERSION => cfg.websocket_tcp_conversion = true,
+                CFG_CIRCUIT_BREAKER => cfg.circuit_breaker = Some(rd.f64()?),
+                CFG_REQUEST_HEADER => cfg.request_headers.push((rd.string()?, rd.string()?)),
+                CFG_RESPONSE_HEADER => cfg.response_headers.push((rd.string()?, rd.string()?)),
+                CFG_REMOVE_REQUEST_HEADER => cfg.remove_request_headers.push(rd.string()?),
+                CFG_REMOVE_RESPONSE_HEADER => cfg.remove_response_headers.push(rd.string()?),
+                CFG_BASIC_AUTH => cfg.basic_auth = Some((rd.string()?, rd.string()?)),
+                CFG_WEBHOOK_VERIFICATION => {
+                    cfg.webhook_verification = Some((rd.string()?, rd.string()?))
+                }
+                CFG_OAUTH => cfg.oauth = Some(OauthOptions::new(rd.string()?)),
+                CFG_OAUTH_CLIENT => {
+                    let (id, secret) = (rd.string()?, rd.string()?);
+                    cfg.oauth_options()?.client_id(id).client_secret(secret);
+                }
+                CFG_OAUTH_ALLOW_EMAIL => {
+                    let email = rd.string()?;
+                    cfg.oauth_options()?.allow_email(email);
+                }
+                CFG_OAUTH_ALLOW_DOMAIN => {
+                    let domain = rd.string()?;
+                    cfg.oauth_options()?.allow_domain(domain);
+                }
+                CFG_OAUTH_SCOPE => {
+                    let scope = rd.string()?;
+                    cfg.oauth_options()?.scope(scope);
+                }
+                CFG_OIDC => {
+                    let (issuer_url, id, secret) = (rd.string()?, rd.string()?, rd.string()?);
+                    cfg.oidc = Some(OidcOptions::new(issuer_url, id, secret));
+                }
+                CFG_OIDC_ALLOW_EMAIL => {
+                    let email = rd.string()?;
+                    cfg.oidc_options()?.allow_email(email);
+                }
+                CFG_OIDC_ALLOW_DOMAIN => {
+                    let domain = rd.string()?;
+                    cfg.oidc_options()?.allow_domain(domain);
+                }
+                CFG_OIDC_SCOPE => {
+                    let scope = rd.string()?;
+                    cfg.oidc_options()?.scope(scope);
+                }
+                CFG_LABEL => cfg.labels.push((rd.string()?, rd.string()?)),
+                tag => return Err(format!("unknown builder configuration field {tag}")),
+            }
         }
-        Ok(map.into())
+        Ok(cfg)
     }
 
-    fn close_tunnel(
-        &self,
-        this: ComNgrokNativeSession<'local>,
-        tunnel_id: String,
-    ) -> Result<(), Error<IOExceptionErr>> {
-        let rt = RT.get().expect("runtime not initialized");
+    fn oauth_options(&mut self) -> Result<&mut OauthOptions, String> {
+        self.oauth
+            .as_mut()
+            .ok_or_else(|| "oauth field before oauth options".into())
+    }
 
-        let sess: MutexGuard<Session> = self.get_native(this);
-        rt.block_on(sess.close_tunnel(tunnel_id))
-            .or_else(|err| self.ngrok_exc_err_void(err))
+    fn oidc_options(&mut self) -> Result<&mut OidcOptions, String> {
+        self.oidc
+            .as_mut()
+            .ok_or_else(|| "oidc field before oidc options".into())
     }
 }
 
-impl<'local> JNIExt<'local> for NativeSessionRsImpl<'local> {
-    fn get_env(&self) -> &JNIEnv<'local> {
-        &self.env
+fn tcp_builder(sess: &Session, cfg: BuilderConfig) -> TcpTunnelBuilder {
+    let mut bldr = sess.tcp_endpoint();
+
+    // from MetadataBuilder
+    if let Some(metadata) = cfg.metadata {
+        bldr.metadata(metadata);
     }
-}
 
-impl<'local> com_ngrok::NativeSessionRs<'local> for NativeSessionRsImpl<'local> {
-    fn from_env(env: JNIEnv<'local>) -> Self {
-        Self { env }
+    if let Some(forwards_to) = cfg.forwards_to {
+        bldr.forwards_to(forwards_to);
     }
 
-    fn connect_native(
-        &self,
-        _class: ComNgrokNativeSessionClass<'local>,
-        jsb: ComNgrokSessionBuilder<'local>,
-    ) -> Result<ComNgrokNativeSession<'local>, Error<IOExceptionErr>> {
-        let rt = RT.get().expect("runtime not initialized");
+    // from EndpointBuilder
+    for cidr in cfg.allow_cidr {
+        bldr.allow_cidr(cidr);
+    }
 
-        let mut bldr = Session::builder();
+    for cidr in cfg.deny_cidr {
+        bldr.deny_cidr(cidr);
+    }
 
-        bldr.authtoken(jsb.get_authtoken(self.env));
+    bldr.proxy_proto(ProxyProto::from(cfg.proxy_proto));
 
-        if let Some(interval) = jsb
-            .get_heartbeat_interval(self.env)
+    if let Some(traffic_policy) = cfg.traffic_policy {
+        bldr.traffic_policy(traffic_policy);
+    }
+
+    // from TcpBuilder
+    if let Some(remote_addr) = cfg.remote_addr {
+        bldr.remote_addr(remote_addr);
+    }
+
+    bldr
+}
+
+fn tls_builder(sess: &Session, cfg: BuilderConfig) -> TlsTunnelBuilder {
+    let mut bldr = sess.tls_endpoint();
+
+    // from MetadataBuilder
+    if let Some(metadata) = cfg.metadata {
+        bldr.metadata(metadata);
+    }
+
+    if let Some(forwards_to) = cfg.forwards_to {
+        bldr.forwards_to(forwards_to);
+    }
+
+    // from EndpointBuilder
+    for cidr in cfg.allow_cidr {
+        bldr.allow_cidr(cidr);
+    }
+
+    for cidr in cfg.deny_cidr {
+        bldr.deny_cidr(cidr);
+    }
+
+    bldr.proxy_proto(ProxyProto::from(cfg.proxy_proto));
+
+    if let Some(traffic_policy) = cfg.traffic_policy {
+        bldr.traffic_policy(traffic_policy);
+    }
+
+    // from TlsBuilder
+    if let Some(domain) = cfg.domain {
+        bldr.domain(domain);
+    }
+
+    if let Some(mtls) = cfg.mutual_tlsca {
+        bldr.mutual_tlsca(mtls);
+    }
+
+    if let Some((cert, key)) = cfg.termination {
+        bldr.termination(cert, key);
+    }
+
+    bldr
+}
+
+fn http_builder(
+    sess: &Session,
+    cfg: BuilderConfig,
+) -> Result<HttpTunnelBuilder, Error<IOExceptionErr>> {
+    let mut bldr = sess.http_endpoint();
+
+    // from MetadataBuilder
+    if let Some(metadata) = cfg.metadata {
+        bldr.metadata(metadata);
+    }
+
+    if let Some(forwards_to) = cfg.forwards_to {
+        bldr.forwards_to(forwards_to);
+    }
+
+    // from EndpointBuilder
+    for cidr in cfg.allow_cidr {
+        bldr.allow_cidr(cidr);
+    }
+
+    for cidr in cfg.deny_cidr {
+        bldr.deny_cidr(cidr);
+    }
+
+    bldr.proxy_proto(ProxyProto::from(cfg.proxy_proto));
+
+    if let Some(traffic_policy) = cfg.traffic_policy {
+        bldr.traffic_policy(traffic_policy);
+    }
+
+    // from HttpBuilder
+    if let Some(scheme) = cfg.scheme {
+        let scheme = Scheme::from_str(scheme.as_str()).map_err(io_exc)?;
+        bldr.scheme(scheme);
+    }
+
+    if let Some(domain) = cfg.domain {
+        bldr.domain(domain);
+    }
+
+    if let Some(mtls) = cfg.mutual_tlsca {
+        bldr.mutual_tlsca(mtls);
+    }
+
+    if cfg.compression {
+        bldr.compression();
+    }
+
+    if cfg.websocket_tcp_conversion {
+        bldr.websocket_tcp_conversion();
+    }
+
+    if let Some(circuit_breaker) = cfg.circuit_breaker {
+        bldr.circuit_breaker(circuit_breaker);
+    }
+
+    for (name, value) in cfg.request_headers {
+        bldr.request_header(name, value);
+    }
+
+    for (name, value) in cfg.response_headers {
+        bldr.response_header(name, value);
+    }
+
+    for name in cfg.remove_request_headers {
+        bldr.remove_request_header(name);
+    }
+
+    for name in cfg.remove_response_headers {
+        bldr.remove_response_header(name);
+    }
+
+    if let Some((username, password)) = cfg.basic_auth {
+        bldr.basic_auth(username, password);
+    }
+
+    if let Some(oauth) = cfg.oauth {
+        bldr.oauth(oauth);
+    }
+
+    if let Some(oidc) = cfg.oidc {
+        bldr.oidc(oidc);
+    }
+
+    if let Some((provider, secret)) = cfg.webhook_verification {
+        bldr.webhook_verification(provider, secret);
+    }
+
+    Ok(bldr)
+}
+
+fn edge_builder(sess: &Session, cfg: BuilderConfig) -> LabeledTunnelBuilder {
+    let mut bldr = sess.labeled_tunnel();
+
+    // from MetadataBuilder
+    if let Some(metadata) = cfg.metadata {
+        bldr.metadata(metadata);
+    }
+
+    if let Some(forwards_to) = cfg.forwards_to {
+        bldr.forwards_to(forwards_to);
+    }
+
+    // from EdgeBuilder
+    for (key, value) in cfg.labels {
+        bldr.label(key, value);
+    }
+
+    bldr
+}
+
+struct NativeSessionRsImpl<'local> {
+    env: JNIEnv<'local>,
+}
+
+impl<'local> NativeSessionRsImpl<'local> {
+    /// Clones the session out of its Java object. The lock on the native field is
+    /// only held while cloning, so binds and closes on the same session run
+    /// concurrently instead of waiting on each other's round trips.
+    fn session(&self, this: ComNgrokNativeSession<'local>) -> Session {
+        let sess: MutexGuard<Session> = self.get_native(this);
+        sess.clone()
+    }
+
+    /// Decodes the builder configuration encoded by `BuilderCodec`, reading the
+    /// direct buffer in place.
+    fn builder_config(
+        &self,
+        jconfig: JByteBuffer<'local>,
+    ) -> Result<BuilderConfig, Error<IOExceptionErr>> {
+        let buf = self
+            .env
+            .get_direct_buffer_address(jconfig)
+            .expect("cannot get builder config");
+        BuilderConfig::decode(buf).map_err(io_exc)
+    }
+
+    /// Reads the session configuration from the Java builder, returning the
+    /// native builder and the session metadata.
+    fn session_builder(
+        &self,
+        jsb: ComNgrokSessionBuilder<'local>,
+    ) -> Result<(SessionBuilder, String), Error<IOExceptionErr>> {
+        let mut bldr = Session::builder();
+
+        bldr.authtoken(jsb.get_authtoken(self.env));
+
+        if let Some(interval) = jsb
+            .get_heartbeat_interval(self.env)
             .of_duration_ms(self.env)
         {
             bldr.heartbeat_interval(interval).map_err(io_exc)?;
@@ -813,16 +1658,71 @@ impl<'local> com_ngrok::NativeSessionRs<'local> for NativeSessionRsImpl<'local>
             bldr.server_addr(server_addr).map_err(io_exc)?;
         }
 
+        let mut tls = TlsSettings::default();
+
         let ca_cert = jsb.get_ca_cert(self.env);
         if !ca_cert.is_null() {
             let ca_cert_data = ca_cert
                 .as_slice(&self.env)
                 .expect("cannot get ca cert data");
             bldr.ca_cert(Bytes::copy_from_slice(&ca_cert_data));
+            tls.ca_cert = Some(ca_cert_data.to_vec());
         }
 
-        // TODO: tls_config
-        // TODO: connector?
+        tls.cipher_suites = jsb.get_tls_cipher_suites(self.env).strings(self.env);
+        tls.kx_groups = jsb.get_tls_key_exchange_groups(self.env).strings(self.env);
+        tls.min_version = jsb.get_tls_min_version(self.env).of_string(self.env);
+
+        let client_cert = jsb.get_tls_client_certificate(self.env);
+        let client_key = jsb.get_tls_client_key(self.env);
+        if !client_cert.is_null() && !client_key.is_null() {
+            let chain = client_cert
+                .as_slice(&self.env)
+                .expect("cannot get client certificate data");
+            let key = client_key
+                .as_slice(&self.env)
+                .expect("cannot get client key data");
+            tls.client_cert = Some((chain.to_vec(), key.to_vec()));
+        }
+
+        let jpolicy = jsb.get_reconnect_policy(self.env);
+        let policy = if jpolicy.is_null() {
+            None
+        } else {
+            Some(ReconnectPolicy {
+                initial_delay: jpolicy.get_initial_delay(self.env).as_duration(self.env),
+                max_delay: jpolicy.get_max_delay(self.env).as_duration(self.env),
+                multiplier: jpolicy.get_multiplier(self.env),
+                jitter: jpolicy.get_jitter(self.env),
+                connect_timeout: jpolicy.get_connect_timeout(self.env).of_duration_ms(self.env),
+            })
+        };
+
+        let lifecycle_obj = jsb.lifecycle_handler(self.env);
+        let handler = if lifecycle_obj.is_null() {
+            None
+        } else {
+            Some(Arc::new(
+                self.env
+                    .new_global_ref(lifecycle_obj)
+                    .expect("cannot get global reference"),
+            ))
+        };
+
+        let connector = Arc::new(SessionConnector {
+            tls: TlsOptions::new(tls).map_err(io_exc)?,
+            policy,
+            handler,
+            state: Default::default(),
+        });
+        bldr.connector(
+            move |host: String,
+                  port: u16,
+                  tls_config: Arc<ClientConfig>,
+                  err: Option<AcceptError>| {
+                connector.clone().connect(host, port, tls_config, err)
+            },
+        );
 
         let stop_obj = jsb.stop_callback(self.env);
         if !stop_obj.is_null() {
@@ -854,248 +1754,512 @@ impl<'local> com_ngrok::NativeSessionRs<'local> for NativeSessionRsImpl<'local>
             );
         }
 
+        Ok((bldr, session_metadata))
+    }
+
+    fn native_session(&self, sess: Session, metadata: String) -> ComNgrokNativeSession<'local> {
+        let jsess =
+            ComNgrokNativeSession::new_1com_ngrok_native_session(self.env, sess.id(), metadata);
+        self.set_native(jsess, sess);
+        jsess
+    }
+
+    fn tcp_listener(&self, tun: TcpTunnel) -> ComNgrokNativeTcpListener<'local> {
+        let jlistener = ComNgrokNativeTcpListener::new_1com_ngrok_native_tcp_listener(
+            self.env,
+            tun.id().into(),
+            tun.metadata().into(),
+            tun.forwards_to().into(),
+            tun.proto().to_string(),
+            tun.url().into(),
+        );
+        self.set_native(jlistener, NativeTunnel::new(tun));
+        jlistener
+    }
+
+    fn tcp_forwarder(&self, tun: Forwarder<TcpTunnel>) -> ComNgrokNativeTcpForwarder<'local> {
+        let jforwarder = ComNgrokNativeTcpForwarder::new_1com_ngrok_native_tcp_forwarder(
+            self.env,
+            tun.id().into(),
+            tun.metadata().into(),
+            tun.forwards_to().into(),
+            tun.proto().to_string(),
+            tun.url().into(),
+        );
+        self.set_native(jforwarder, NativeForwarder::new(tun));
+        jforwarder
+    }
+
+    fn tls_listener(&self, tun: TlsTunnel) -> ComNgrokNativeTlsListener<'local> {
+        let jlistener = ComNgrokNativeTlsListener::new_1com_ngrok_native_tls_listener(
+            self.env,
+            tun.id().into(),
+            tun.metadata().into(),
+            tun.forwards_to().into(),
+            tun.proto().to_string(),
+            tun.url().into(),
+        );
+        self.set_native(jlistener, NativeTunnel::new(tun));
+        jlistener
+    }
+
+    fn tls_forwarder(&self, tun: Forwarder<TlsTunnel>) -> ComNgrokNativeTlsForwarder<'local> {
+        let jforwarder = ComNgrokNativeTlsForwarder::new_1com_ngrok_native_tls_forwarder(
+            self.env,
+            tun.id().into(),
+            tun.metadata().into(),
+            tun.forwards_to().into(),
+            tun.proto().to_string(),
+            tun.url().into(),
+        );
+        self.set_native(jforwarder, NativeForwarder::new(tun));
+        jforwarder
+    }
+
+    fn http_listener(&self, tun: HttpTunnel) -> ComNgrokNativeHttpListener<'local> {
+        let jlistener = ComNgrokNativeHttpListener::new_1com_ngrok_native_http_listener(
+            self.env,
+            tun.id().into(),
+            tun.metadata().into(),
+            tun.forwards_to().into(),
+            tun.proto().to_string(),
+            tun.url().into(),
+        );
+        self.set_native(jlistener, NativeTunnel::new(tun));
+        jlistener
+    }
+
+    fn http_forwarder(&self, tun: Forwarder<HttpTunnel>) -> ComNgrokNativeHttpForwarder<'local> {
+        let jforwarder = ComNgrokNativeHttpForwarder::new_1com_ngrok_native_http_forwarder(
+            self.env,
+            tun.id().into(),
+            tun.metadata().into(),
+            tun.forwards_to().into(),
+            tun.proto().to_string(),
+            tun.url().into(),
+        );
+        self.set_native(jforwarder, NativeForwarder::new(tun));
+        jforwarder
+    }
+
+    fn edge_listener(&self, tun: LabeledTunnel) -> ComNgrokNativeEdgeListener<'local> {
+        let jlistener = ComNgrokNativeEdgeListener::new_1com_ngrok_native_edge_listener(
+            self.env,
+            tun.id().into(),
+            tun.metadata().into(),
+            tun.forwards_to().into(),
+            self.labels_map(tun.labels())
+                .expect("cannot get result labels"),
+        );
+        self.set_native(jlistener, NativeTunnel::new(tun));
+        jlistener
+    }
+
+    fn edge_forwarder(&self, tun: Forwarder<LabeledTunnel>) -> ComNgrokNativeEdgeForwarder<'local> {
+        let jforwarder = ComNgrokNativeEdgeForwarder::new_1com_ngrok_native_edge_forwarder(
+            self.env,
+            tun.id().into(),
+            tun.metadata().into(),
+            tun.forwards_to().into(),
+            self.labels_map(tun.labels())
+                .expect("cannot get result labels"),
+        );
+        self.set_native(jforwarder, NativeForwarder::new(tun));
+        jforwarder
+    }
+
+    fn labels_map(
+        &self,
+        labels: &HashMap<String, String>,
+    ) -> jaffi_support::jni::errors::Result<JavaUtilMap<'local>> {
+        let map_class = self.env.find_class("java/util/HashMap")?;
+        let map = self.env.new_object(map_class, "()V", &[])?;
+        let mmap = self.env.get_map(map)?;
+        for (key, value) in labels {
+            let jkey = self.env.new_string(key)?;
+            let jvalue = self.env.new_string(value)?;
+            mmap.put(jkey.into(), jvalue.into())?;
+        }
+        Ok(map.into())
+    }
+
+    fn close_tunnel(
+        &self,
+        this: ComNgrokNativeSession<'local>,
+        tunnel_id: String,
+    ) -> Result<(), Error<IOExceptionErr>> {
+        let rt = RT.get().expect("runtime not initialized");
+
+        let sess = self.session(this);
+        rt.block_on(sess.close_tunnel(tunnel_id))
+            .or_else(|err| self.ngrok_exc_err_void(err))
+    }
+}
+
+impl<'local> JNIExt<'local> for NativeSessionRsImpl<'local> {
+    fn get_env(&self) -> &JNIEnv<'local> {
+        &self.env
+    }
+}
+
+impl<'local> com_ngrok::NativeSessionRs<'local> for NativeSessionRsImpl<'local> {
+    fn from_env(env: JNIEnv<'local>) -> Self {
+        Self { env }
+    }
+
+    fn connect_native(
+        &self,
+        _class: ComNgrokNativeSessionClass<'local>,
+        jsb: ComNgrokSessionBuilder<'local>,
+    ) -> Result<ComNgrokNativeSession<'local>, Error<IOExceptionErr>> {
+        let rt = RT.get().expect("runtime not initialized");
+
+        let (bldr, metadata) = self.session_builder(jsb)?;
+
         match rt.block_on(bldr.connect()) {
-            Ok(sess) => {
-                let jsess = ComNgrokNativeSession::new_1com_ngrok_native_session(
-                    self.env,
-                    sess.id(),
-                    session_metadata,
-                );
-                self.set_native(jsess, sess);
-                Ok(jsess)
-            }
+            Ok(sess) => Ok(self.native_session(sess, metadata)),
             Err(err) => self.ngrok_exc_err(err),
         }
     }
 
-    fn listen_tcp(
+    fn tls_sessions_offered_native(&self, _class: ComNgrokNativeSessionClass<'local>) -> i64 {
+        TLS_SESSIONS.offered.load(Ordering::Relaxed) as i64
+    }
+
+    fn tls_sessions_not_offered_native(&self, _class: ComNgrokNativeSessionClass<'local>) -> i64 {
+        TLS_SESSIONS.not_offered.load(Ordering::Relaxed) as i64
+    }
+
+    fn connect_native_async(
+        &self,
+        _class: ComNgrokNativeSessionClass<'local>,
+        jsb: ComNgrokSessionBuilder<'local>,
+        jcompletion: ComNgrokNativeCompletion<'local>,
+    ) -> Result<(), Error<IOExceptionErr>> {
+        let rt = RT.get().expect("runtime not initialized");
+
+        let (bldr, metadata) = self.session_builder(jsb)?;
+
+        let completion = CompletionCallback::from(self.env, jcompletion, None);
+        rt.spawn(async move {
+            let res = bldr.connect().await;
+            completion.invoke(|env, cbk| match res {
+                Ok(sess) => {
+                    let jsess: JObject = NativeSessionRsImpl { env }
+                        .native_session(sess, metadata)
+                        .into();
+                    cbk.connected(env, ComNgrokSession::from(jsess))
+                }
+                Err(err) => fail_ngrok(env, cbk, err),
+            })
+        });
+        Ok(())
+    }
+
+    fn listen_tcp_native(
         &self,
         this: ComNgrokNativeSession<'local>,
-        jttb: ComNgrokTcpBuilder<'local>,
+        jconfig: JByteBuffer<'local>,
     ) -> Result<com_ngrok::ComNgrokNativeTcpListener<'local>, Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let sess: MutexGuard<Session> = self.get_native(this);
-        let bldr = self.tcp_builder(sess, jttb)?;
+        let sess = self.session(this);
+        let bldr = tcp_builder(&sess, self.builder_config(jconfig)?);
 
         match rt.block_on(bldr.listen()) {
-            Ok(tun) => {
-                let jlistener = ComNgrokNativeTcpListener::new_1com_ngrok_native_tcp_listener(
-                    self.env,
-                    tun.id().into(),
-                    tun.metadata().into(),
-                    tun.forwards_to().into(),
-                    tun.proto().to_string(),
-                    tun.url().into(),
-                );
-                self.set_native(jlistener, tun);
-                Ok(jlistener)
-            }
+            Ok(tun) => Ok(self.tcp_listener(tun)),
             Err(err) => self.ngrok_exc_err(err),
         }
     }
 
-    fn forward_tcp(
+    fn forward_tcp_native(
         &self,
         this: ComNgrokNativeSession<'local>,
-        jttb: ComNgrokTcpBuilder<'local>,
+        jconfig: JByteBuffer<'local>,
         jurl: com_ngrok::JavaNetUrl<'local>,
     ) -> Result<com_ngrok::ComNgrokNativeTcpForwarder<'local>, Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let sess: MutexGuard<Session> = self.get_native(this);
-        let bldr = self.tcp_builder(sess, jttb)?;
+        let sess = self.session(this);
+        let bldr = tcp_builder(&sess, self.builder_config(jconfig)?);
 
         let url = Url::parse(jurl.as_string(self.env).as_str()).map_err(io_exc)?;
 
         match rt.block_on(bldr.listen_and_forward(url)) {
-            Ok(tun) => {
-                let jforwarder = ComNgrokNativeTcpForwarder::new_1com_ngrok_native_tcp_forwarder(
-                    self.env,
-                    tun.id().into(),
-                    tun.metadata().into(),
-                    tun.forwards_to().into(),
-                    tun.proto().to_string(),
-                    tun.url().into(),
-                );
-                self.set_native(jforwarder, tun);
-                Ok(jforwarder)
-            }
+            Ok(tun) => Ok(self.tcp_forwarder(tun)),
             Err(err) => self.ngrok_exc_err(err),
         }
     }
 
-    fn listen_tls(
+    fn listen_tls_native(
         &self,
         this: ComNgrokNativeSession<'local>,
-        jttb: ComNgrokTlsBuilder<'local>,
+        jconfig: JByteBuffer<'local>,
     ) -> Result<com_ngrok::ComNgrokNativeTlsListener<'local>, Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let sess: MutexGuard<Session> = self.get_native(this);
-        let bldr = self.tls_builder(sess, jttb)?;
+        let sess = self.session(this);
+        let bldr = tls_builder(&sess, self.builder_config(jconfig)?);
 
         match rt.block_on(bldr.listen()) {
-            Ok(tun) => {
-                let jlistener = ComNgrokNativeTlsListener::new_1com_ngrok_native_tls_listener(
-                    self.env,
-                    tun.id().into(),
-                    tun.metadata().into(),
-                    tun.forwards_to().into(),
-                    tun.proto().to_string(),
-                    tun.url().into(),
-                );
-                self.set_native(jlistener, tun);
-                Ok(jlistener)
-            }
+            Ok(tun) => Ok(self.tls_listener(tun)),
             Err(err) => self.ngrok_exc_err(err),
         }
     }
 
-    fn forward_tls(
+    fn forward_tls_native(
         &self,
         this: ComNgrokNativeSession<'local>,
-        jttb: ComNgrokTlsBuilder<'local>,
+        jconfig: JByteBuffer<'local>,
         jurl: com_ngrok::JavaNetUrl<'local>,
     ) -> Result<com_ngrok::ComNgrokNativeTlsForwarder<'local>, Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let sess: MutexGuard<Session> = self.get_native(this);
-        let bldr = self.tls_builder(sess, jttb)?;
+        let sess = self.session(this);
+        let bldr = tls_builder(&sess, self.builder_config(jconfig)?);
 
         let url = Url::parse(jurl.as_string(self.env).as_str()).map_err(io_exc)?;
 
         match rt.block_on(bldr.listen_and_forward(url)) {
-            Ok(tun) => {
-                let jforwarder = ComNgrokNativeTlsForwarder::new_1com_ngrok_native_tls_forwarder(
-                    self.env,
-                    tun.id().into(),
-                    tun.metadata().into(),
-                    tun.forwards_to().into(),
-                    tun.proto().to_string(),
-                    tun.url().into(),
-                );
-                self.set_native(jforwarder, tun);
-                Ok(jforwarder)
-            }
+            Ok(tun) => Ok(self.tls_forwarder(tun)),
             Err(err) => self.ngrok_exc_err(err),
         }
     }
 
-    fn listen_http(
+    fn listen_http_native(
         &self,
         this: ComNgrokNativeSession<'local>,
-        jttb: ComNgrokHttpBuilder<'local>,
+        jconfig: JByteBuffer<'local>,
     ) -> Result<com_ngrok::ComNgrokNativeHttpListener<'local>, Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let sess: MutexGuard<Session> = self.get_native(this);
-        let bldr = self.http_builder(sess, jttb)?;
+        let sess = self.session(this);
+        let bldr = http_builder(&sess, self.builder_config(jconfig)?)?;
 
         match rt.block_on(bldr.listen()) {
-            Ok(tun) => {
-                let jlistener = ComNgrokNativeHttpListener::new_1com_ngrok_native_http_listener(
-                    self.env,
-                    tun.id().into(),
-                    tun.metadata().into(),
-                    tun.forwards_to().into(),
-                    tun.proto().to_string(),
-                    tun.url().into(),
-                );
-                self.set_native(jlistener, tun);
-                Ok(jlistener)
-            }
+            Ok(tun) => Ok(self.http_listener(tun)),
             Err(err) => self.ngrok_exc_err(err),
         }
     }
 
-    fn forward_http(
+    fn forward_http_native(
         &self,
         this: ComNgrokNativeSession<'local>,
-        jttb: ComNgrokHttpBuilder<'local>,
+        jconfig: JByteBuffer<'local>,
         jurl: com_ngrok::JavaNetUrl<'local>,
     ) -> Result<com_ngrok::ComNgrokNativeHttpForwarder<'local>, Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let sess: MutexGuard<Session> = self.get_native(this);
-        let bldr = self.http_builder(sess, jttb)?;
+        let sess = self.session(this);
+        let bldr = http_builder(&sess, self.builder_config(jconfig)?)?;
 
         let url = Url::parse(jurl.as_string(self.env).as_str()).map_err(io_exc)?;
 
         match rt.block_on(bldr.listen_and_forward(url)) {
-            Ok(tun) => {
-                let jforwarder = ComNgrokNativeHttpForwarder::new_1com_ngrok_native_http_forwarder(
-                    self.env,
-                    tun.id().into(),
-                    tun.metadata().into(),
-                    tun.forwards_to().into(),
-                    tun.proto().to_string(),
-                    tun.url().into(),
-                );
-                self.set_native(jforwarder, tun);
-                Ok(jforwarder)
-            }
+            Ok(tun) => Ok(self.http_forwarder(tun)),
             Err(err) => self.ngrok_exc_err(err),
         }
     }
 
-    fn listen_edge(
+    fn listen_edge_native(
         &self,
         this: ComNgrokNativeSession<'local>,
-        jttb: ComNgrokEdgeBuilder<'local>,
+        jconfig: JByteBuffer<'local>,
     ) -> Result<com_ngrok::ComNgrokNativeEdgeListener<'local>, Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let sess: MutexGuard<Session> = self.get_native(this);
-        let bldr = self.edge_builder(sess, jttb)?;
+        let sess = self.session(this);
+        let bldr = edge_builder(&sess, self.builder_config(jconfig)?);
 
         match rt.block_on(bldr.listen()) {
-            Ok(tun) => {
-                let jlistener = ComNgrokNativeEdgeListener::new_1com_ngrok_native_edge_listener(
-                    self.env,
-                    tun.id().into(),
-                    tun.metadata().into(),
-                    tun.forwards_to().into(),
-                    self.labels_map(tun.labels())
-                        .expect("cannot get result labels"),
-                );
-                self.set_native(jlistener, tun);
-                Ok(jlistener)
-            }
+            Ok(tun) => Ok(self.edge_listener(tun)),
             Err(err) => self.ngrok_exc_err(err),
         }
     }
 
-    fn forward_edge(
+    fn forward_edge_native(
         &self,
         this: ComNgrokNativeSession<'local>,
-        jttb: ComNgrokEdgeBuilder<'local>,
+        jconfig: JByteBuffer<'local>,
         jurl: com_ngrok::JavaNetUrl<'local>,
     ) -> Result<com_ngrok::ComNgrokNativeEdgeForwarder<'local>, Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let sess: MutexGuard<Session> = self.get_native(this);
-        let bldr = self.edge_builder(sess, jttb)?;
+        let sess = self.session(this);
+        let bldr = edge_builder(&sess, self.builder_config(jconfig)?);
 
         let url = Url::parse(jurl.as_string(self.env).as_str()).map_err(io_exc)?;
 
         match rt.block_on(bldr.listen_and_forward(url)) {
-            Ok(tun) => {
-                let jforwarder = ComNgrokNativeEdgeForwarder::new_1com_ngrok_native_edge_forwarder(
-                    self.env,
-                    tun.id().into(),
-                    tun.metadata().into(),
-                    tun.forwards_to().into(),
-                    self.labels_map(tun.labels())
-                        .expect("cannot get result labels"),
-                );
-                self.set_native(jforwarder, tun);
-                Ok(jforwarder)
-            }
+            Ok(tun) => Ok(self.edge_forwarder(tun)),
             Err(err) => self.ngrok_exc_err(err),
         }
     }
 
+    fn listen_tcp_native_async(
+        &self,
+        this: ComNgrokNativeSession<'local>,
+        jconfig: JByteBuffer<'local>,
+        jcompletion: ComNgrokNativeCompletion<'local>,
+    ) -> Result<(), Error<IOExceptionErr>> {
+        let rt = RT.get().expect("runtime not initialized");
+
+        let sess = self.session(this);
+        let bldr = tcp_builder(&sess, self.builder_config(jconfig)?);
+
+        let completion = CompletionCallback::from(self.env, jcompletion, None);
+        rt.spawn(async move {
+            let res = bldr.listen().await;
+            completion.complete_listen(res, |sess, tun| sess.tcp_listener(tun).into())
+        });
+        Ok(())
+    }
+
+    fn forward_tcp_native_async(
+        &self,
+        this: ComNgrokNativeSession<'local>,
+        jconfig: JByteBuffer<'local>,
+        jurl: com_ngrok::JavaNetUrl<'local>,
+        jcompletion: ComNgrokNativeCompletion<'local>,
+    ) -> Result<(), Error<IOExceptionErr>> {
+        let rt = RT.get().expect("runtime not initialized");
+
+        let sess = self.session(this);
+        let bldr = tcp_builder(&sess, self.builder_config(jconfig)?);
+
+        let url = Url::parse(jurl.as_string(self.env).as_str()).map_err(io_exc)?;
+
+        let completion = CompletionCallback::from(self.env, jcompletion, None);
+        rt.spawn(async move {
+            let res = bldr.listen_and_forward(url).await;
+            completion.complete_forward(res, |sess, tun| sess.tcp_forwarder(tun).into())
+        });
+        Ok(())
+    }
+
+    fn listen_tls_native_async(
+        &self,
+        this: ComNgrokNativeSession<'local>,
+        jconfig: JByteBuffer<'local>,
+        jcompletion: ComNgrokNativeCompletion<'local>,
+    ) -> Result<(), Error<IOExceptionErr>> {
+        let rt = RT.get().expect("runtime not initialized");
+
+        let sess = self.session(this);
+        let bldr = tls_builder(&sess, self.builder_config(jconfig)?);
+
+        let completion = CompletionCallback::from(self.env, jcompletion, None);
+        rt.spawn(async move {
+            let res = bldr.listen().await;
+            completion.complete_listen(res, |sess, tun| sess.tls_listener(tun).into())
+        });
+        Ok(())
+    }
+
+    fn forward_tls_native_async(
+        &self,
+        this: ComNgrokNativeSession<'local>,
+        jconfig: JByteBuffer<'local>,
+        jurl: com_ngrok::JavaNetUrl<'local>,
+        jcompletion: ComNgrokNativeCompletion<'local>,
+    ) -> Result<(), Error<IOExceptionErr>> {
+        let rt = RT.get().expect("runtime not initialized");
+
+        let sess = self.session(this);
+        let bldr = tls_builder(&sess, self.builder_config(jconfig)?);
+
+        let url = Url::parse(jurl.as_string(self.env).as_str()).map_err(io_exc)?;
+
+        let completion = CompletionCallback::from(self.env, jcompletion, None);
+        rt.spawn(async move {
+            let res = bldr.listen_and_forward(url).await;
+            completion.complete_forward(res, |sess, tun| sess.tls_forwarder(tun).into())
+        });
+        Ok(())
+    }
+
+    fn listen_http_native_async(
+        &self,
+        this: ComNgrokNativeSession<'local>,
+        jconfig: JByteBuffer<'local>,
+        jcompletion: ComNgrokNativeCompletion<'local>,
+    ) -> Result<(), Error<IOExceptionErr>> {
+        let rt = RT.get().expect("runtime not initialized");
+
+        let sess = self.session(this);
+        let bldr = http_builder(&sess, self.builder_config(jconfig)?)?;
+
+        let completion = CompletionCallback::from(self.env, jcompletion, None);
+        rt.spawn(async move {
+            let res = bldr.listen().await;
+            completion.complete_listen(res, |sess, tun| sess.http_listener(tun).into())
+        });
+        Ok(())
+    }
+
+    fn forward_http_native_async(
+        &self,
+        this: ComNgrokNativeSession<'local>,
+        jconfig: JByteBuffer<'local>,
+        jurl: com_ngrok::JavaNetUrl<'local>,
+        jcompletion: ComNgrokNativeCompletion<'local>,
+    ) -> Result<(), Error<IOExceptionErr>> {
+        let rt = RT.get().expect("runtime not initialized");
+
+        let sess = self.session(this);
+        let bldr = http_builder(&sess, self.builder_config(jconfig)?)?;
+
+        let url = Url::parse(jurl.as_string(self.env).as_str()).map_err(io_exc)?;
+
+        let completion = CompletionCallback::from(self.env, jcompletion, None);
+        rt.spawn(async move {
+            let res = bldr.listen_and_forward(url).await;
+            completion.complete_forward(res, |sess, tun| sess.http_forwarder(tun).into())
+        });
+        Ok(())
+    }
+
+    fn listen_edge_native_async(
+        &self,
+        this: ComNgrokNativeSession<'local>,
+        jconfig: JByteBuffer<'local>,
+        jcompletion: ComNgrokNativeCompletion<'local>,
+    ) -> Result<(), Error<IOExceptionErr>> {
+        let rt = RT.get().expect("runtime not initialized");
+
+        let sess = self.session(this);
+        let bldr = edge_builder(&sess, self.builder_config(jconfig)?);
+
+        let completion = CompletionCallback::from(self.env, jcompletion, None);
+        rt.spawn(async move {
+            let res = bldr.listen().await;
+            completion.complete_listen(res, |sess, tun| sess.edge_listener(tun).into())
+        });
+        Ok(())
+    }
+
+    fn forward_edge_native_async(
+        &self,
+        this: ComNgrokNativeSession<'local>,
+        jconfig: JByteBuffer<'local>,
+        jurl: com_ngrok::JavaNetUrl<'local>,
+        jcompletion: ComNgrokNativeCompletion<'local>,
+    ) -> Result<(), Error<IOExceptionErr>> {
+        let rt = RT.get().expect("runtime not initialized");
+
+        let sess = self.session(this);
+        let bldr = edge_builder(&sess, self.builder_config(jconfig)?);
+
+        let url = Url::parse(jurl.as_string(self.env).as_str()).map_err(io_exc)?;
+
+        let completion = CompletionCallback::from(self.env, jcompletion, None);
+        rt.spawn(async move {
+            let res = bldr.listen_and_forward(url).await;
+            completion.complete_forward(res, |sess, tun| sess.edge_forwarder(tun).into())
+        });
+        Ok(())
+    }
+
     fn close_listener(
         &self,
         this: ComNgrokNativeSession<'local>,
@@ -1104,6 +2268,21 @@ impl<'local> com_ngrok::NativeSessionRs<'local> for NativeSessionRsImpl<'local>
         self.close_tunnel(this, id)
     }
 
+    fn close_listener_native_async(
+        &self,
+        this: ComNgrokNativeSession<'local>,
+        id: String,
+        jcompletion: ComNgrokNativeCompletion<'local>,
+    ) -> Result<(), Error<IOExceptionErr>> {
+        let rt = RT.get().expect("runtime not initialized");
+
+        let sess = self.session(this);
+
+        let completion = CompletionCallback::from(self.env, jcompletion, None);
+        rt.spawn(async move { completion.complete_close(sess.close_tunnel(id).await) });
+        Ok(())
+    }
+
     fn close_forwarder(
         &self,
         this: ComNgrokNativeSession<'local>,
@@ -1142,18 +2321,9 @@ impl<'local> com_ngrok::NativeTcpListenerRs<'local> for NativeTcpListenerRsImpl<
     ) -> Result<ComNgrokNativeEndpointConnection<'local>, Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut tun: MutexGuard<TcpTunnel> = self.get_native(this);
-        match rt.block_on(tun.try_next()) {
-            Ok(Some(conn)) => {
-                let jconn: ComNgrokNativeEndpointConnection<'_> =
-                    ComNgrokNativeEndpointConnection::new_1com_ngrok_native_endpoint_connection(
-                        self.env,
-                        conn.remote_addr().to_string(),
-                        conn.proto().to_string(),
-                    );
-                self.set_native(jconn, conn);
-                Ok(jconn)
-            }
+        let tun: Arc<NativeTunnel<TcpTunnel>> = self.get_native_arc(this);
+        match rt.block_on(tun.accept()) {
+            Ok(Some(conn)) => Ok(endpoint_conn(self.env, conn)),
             Ok(None) => io_exc_err("could not get next conn"),
             Err(err) => self.accept_exc_err(err),
         }
@@ -1162,10 +2332,23 @@ impl<'local> com_ngrok::NativeTcpListenerRs<'local> for NativeTcpListenerRsImpl<
     fn close(&self, this: ComNgrokNativeTcpListener<'local>) -> Result<(), Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut tun: TcpTunnel = self.take_native(this);
-        rt.block_on(tun.close())
+        let tun: Arc<NativeTunnel<TcpTunnel>> = self.take_native(this);
+        tun.closed.cancel();
+        rt.block_on(async { tun.tunnel.lock().await.close().await })
             .or_else(|err| self.ngrok_exc_err_void(err))
     }
+
+    fn accept_native_async(
+        &self,
+        this: ComNgrokNativeTcpListener<'local>,
+        jcompletion: ComNgrokNativeCompletion<'local>,
+    ) {
+        let rt = RT.get().expect("runtime not initialized");
+
+        let tun: Arc<NativeTunnel<TcpTunnel>> = self.get_native_arc(this);
+        let completion = CompletionCallback::from(self.env, jcompletion, None);
+        rt.spawn(async move { completion.complete_endpoint(tun.accept().await) });
+    }
 }
 
 struct NativeTcpForwarderRsImpl<'local> {
@@ -1186,19 +2369,16 @@ impl<'local> com_ngrok::NativeTcpForwarderRs<'local> for NativeTcpForwarderRsImp
     fn join(&self, this: ComNgrokNativeTcpForwarder<'local>) -> Result<(), Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut tun: MutexGuard<Forwarder<TcpTunnel>> = self.get_native(this);
-        match rt.block_on(tun.join()) {
-            Ok(Ok(())) => Ok(()),
-            Ok(Err(e)) => io_exc_err(e),
-            Err(e) => io_exc_err(e),
-        }
+        let fwd: Arc<NativeForwarder<TcpTunnel>> = self.get_native_arc(this);
+        rt.block_on(fwd.join()).or_else(io_exc_err)
     }
 
     fn close(&self, this: ComNgrokNativeTcpForwarder<'local>) -> Result<(), Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut tun: Forwarder<TcpTunnel> = self.take_native(this);
-        rt.block_on(tun.close())
+        let fwd: Arc<NativeForwarder<TcpTunnel>> = self.take_native(this);
+        fwd.closed.cancel();
+        rt.block_on(async { fwd.forwarder.lock().await.close().await })
             .or_else(|err| self.ngrok_exc_err_void(err))
     }
 }
@@ -1224,18 +2404,9 @@ impl<'local> com_ngrok::NativeTlsListenerRs<'local> for NativeTlsListenerRsImpl<
     ) -> Result<ComNgrokNativeEndpointConnection<'local>, Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut tun: MutexGuard<TlsTunnel> = self.get_native(this);
-        match rt.block_on(tun.try_next()) {
-            Ok(Some(conn)) => {
-                let jconn =
-                    ComNgrokNativeEndpointConnection::new_1com_ngrok_native_endpoint_connection(
-                        self.env,
-                        conn.remote_addr().to_string(),
-                        conn.proto().to_string(),
-                    );
-                self.set_native(jconn, conn);
-                Ok(jconn)
-            }
+        let tun: Arc<NativeTunnel<TlsTunnel>> = self.get_native_arc(this);
+        match rt.block_on(tun.accept()) {
+            Ok(Some(conn)) => Ok(endpoint_conn(self.env, conn)),
             Ok(None) => io_exc_err("could not get next conn"),
             Err(err) => self.accept_exc_err(err),
         }
@@ -1244,10 +2415,23 @@ impl<'local> com_ngrok::NativeTlsListenerRs<'local> for NativeTlsListenerRsImpl<
     fn close(&self, this: ComNgrokNativeTlsListener<'local>) -> Result<(), Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut tun: TlsTunnel = self.take_native(this);
-        rt.block_on(tun.close())
+        let tun: Arc<NativeTunnel<TlsTunnel>> = self.take_native(this);
+        tun.closed.cancel();
+        rt.block_on(async { tun.tunnel.lock().await.close().await })
             .or_else(|err| self.ngrok_exc_err_void(err))
     }
+
+    fn accept_native_async(
+        &self,
+        this: ComNgrokNativeTlsListener<'local>,
+        jcompletion: ComNgrokNativeCompletion<'local>,
+    ) {
+        let rt = RT.get().expect("runtime not initialized");
+
+        let tun: Arc<NativeTunnel<TlsTunnel>> = self.get_native_arc(this);
+        let completion = CompletionCallback::from(self.env, jcompletion, None);
+        rt.spawn(async move { completion.complete_endpoint(tun.accept().await) });
+    }
 }
 
 struct NativeTlsForwarderRsImpl<'local> {
@@ -1268,19 +2452,16 @@ impl<'local> com_ngrok::NativeTlsForwarderRs<'local> for NativeTlsForwarderRsImp
     fn join(&self, this: ComNgrokNativeTlsForwarder<'local>) -> Result<(), Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut tun: MutexGuard<Forwarder<TlsTunnel>> = self.get_native(this);
-        match rt.block_on(tun.join()) {
-            Ok(Ok(())) => Ok(()),
-            Ok(Err(e)) => io_exc_err(e),
-            Err(e) => io_exc_err(e),
-        }
+        let fwd: Arc<NativeForwarder<TlsTunnel>> = self.get_native_arc(this);
+        rt.block_on(fwd.join()).or_else(io_exc_err)
     }
 
     fn close(&self, this: ComNgrokNativeTlsForwarder<'local>) -> Result<(), Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut tun: TlsTunnel = self.take_native(this);
-        rt.block_on(tun.close())
+        let fwd: Arc<NativeForwarder<TlsTunnel>> = self.take_native(this);
+        fwd.closed.cancel();
+        rt.block_on(async { fwd.forwarder.lock().await.close().await })
             .or_else(|err| self.ngrok_exc_err_void(err))
     }
 }
@@ -1306,18 +2487,9 @@ impl<'local> com_ngrok::NativeHttpListenerRs<'local> for NativeHttpListenerRsImp
     ) -> Result<ComNgrokNativeEndpointConnection<'local>, Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut tun: MutexGuard<HttpTunnel> = self.get_native(this);
-        match rt.block_on(tun.try_next()) {
-            Ok(Some(conn)) => {
-                let jconn =
-                    ComNgrokNativeEndpointConnection::new_1com_ngrok_native_endpoint_connection(
-                        self.env,
-                        conn.remote_addr().to_string(),
-                        conn.proto().to_string(),
-                    );
-                self.set_native(jconn, conn);
-                Ok(jconn)
-            }
+        let tun: Arc<NativeTunnel<HttpTunnel>> = self.get_native_arc(this);
+        match rt.block_on(tun.accept()) {
+            Ok(Some(conn)) => Ok(endpoint_conn(self.env, conn)),
             Ok(None) => io_exc_err("could not get next conn"),
             Err(err) => self.accept_exc_err(err),
         }
@@ -1329,10 +2501,23 @@ impl<'local> com_ngrok::NativeHttpListenerRs<'local> for NativeHttpListenerRsImp
     ) -> Result<(), jaffi_support::Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut tun: HttpTunnel = self.take_native(this);
-        rt.block_on(tun.close())
+        let tun: Arc<NativeTunnel<HttpTunnel>> = self.take_native(this);
+        tun.closed.cancel();
+        rt.block_on(async { tun.tunnel.lock().await.close().await })
             .or_else(|err| self.ngrok_exc_err_void(err))
     }
+
+    fn accept_native_async(
+        &self,
+        this: ComNgrokNativeHttpListener<'local>,
+        jcompletion: ComNgrokNativeCompletion<'local>,
+    ) {
+        let rt = RT.get().expect("runtime not initialized");
+
+        let tun: Arc<NativeTunnel<HttpTunnel>> = self.get_native_arc(this);
+        let completion = CompletionCallback::from(self.env, jcompletion, None);
+        rt.spawn(async move { completion.complete_endpoint(tun.accept().await) });
+    }
 }
 
 struct NativeHttpForwarderRsImpl<'local> {
@@ -1353,12 +2538,8 @@ impl<'local> com_ngrok::NativeHttpForwarderRs<'local> for NativeHttpForwarderRsI
     fn join(&self, this: ComNgrokNativeHttpForwarder<'local>) -> Result<(), Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut tun: MutexGuard<Forwarder<HttpTunnel>> = self.get_native(this);
-        match rt.block_on(tun.join()) {
-            Ok(Ok(())) => Ok(()),
-            Ok(Err(e)) => io_exc_err(e),
-            Err(e) => io_exc_err(e),
-        }
+        let fwd: Arc<NativeForwarder<HttpTunnel>> = self.get_native_arc(this);
+        rt.block_on(fwd.join()).or_else(io_exc_err)
     }
 
     fn close(
@@ -1367,8 +2548,9 @@ impl<'local> com_ngrok::NativeHttpForwarderRs<'local> for NativeHttpForwarderRsI
     ) -> Result<(), jaffi_support::Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut tun: HttpTunnel = self.take_native(this);
-        rt.block_on(tun.close())
+        let fwd: Arc<NativeForwarder<HttpTunnel>> = self.take_native(this);
+        fwd.closed.cancel();
+        rt.block_on(async { fwd.forwarder.lock().await.close().await })
             .or_else(|err| self.ngrok_exc_err_void(err))
     }
 }
@@ -1394,24 +2576,9 @@ impl<'local> com_ngrok::NativeEdgeListenerRs<'local> for NativeEdgeListenerRsImp
     ) -> Result<ComNgrokNativeEdgeConnection<'local>, Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut tun: MutexGuard<LabeledTunnel> = self.get_native(this);
-        match rt.block_on(tun.try_next()) {
-            Ok(Some(conn)) => {
-                let jconn = ComNgrokNativeEdgeConnection::new_1com_ngrok_native_edge_connection(
-                    self.env,
-                    conn.remote_addr().to_string(),
-                    match conn.edge_type() {
-                        ngrok::prelude::EdgeType::Https => "HTTPS",
-                        ngrok::prelude::EdgeType::Tls => "TLS",
-                        ngrok::prelude::EdgeType::Tcp => "TCP",
-                        ngrok::prelude::EdgeType::Undefined => "",
-                    }
-                    .to_string(),
-                    conn.passthrough_tls(),
-                );
-                self.set_native(jconn, conn);
-                Ok(jconn)
-            }
+        let tun: Arc<NativeTunnel<LabeledTunnel>> = self.get_native_arc(this);
+        match rt.block_on(tun.accept()) {
+            Ok(Some(conn)) => Ok(edge_conn(self.env, conn)),
             Ok(None) => io_exc_err("could not get next conn"),
             Err(err) => self.accept_exc_err(err),
         }
@@ -1423,10 +2590,23 @@ impl<'local> com_ngrok::NativeEdgeListenerRs<'local> for NativeEdgeListenerRsImp
     ) -> Result<(), jaffi_support::Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut tun: LabeledTunnel = self.take_native(this);
-        rt.block_on(tun.close())
+        let tun: Arc<NativeTunnel<LabeledTunnel>> = self.take_native(this);
+        tun.closed.cancel();
+        rt.block_on(async { tun.tunnel.lock().await.close().await })
             .or_else(|err| self.ngrok_exc_err_void(err))
     }
+
+    fn accept_native_async(
+        &self,
+        this: ComNgrokNativeEdgeListener<'local>,
+        jcompletion: ComNgrokNativeCompletion<'local>,
+    ) {
+        let rt = RT.get().expect("runtime not initialized");
+
+        let tun: Arc<NativeTunnel<LabeledTunnel>> = self.get_native_arc(this);
+        let completion = CompletionCallback::from(self.env, jcompletion, None);
+        rt.spawn(async move { completion.complete_edge(tun.accept().await) });
+    }
 }
 
 struct NativeEdgeForwarderRsImpl<'local> {
@@ -1447,12 +2627,8 @@ impl<'local> com_ngrok::NativeEdgeForwarderRs<'local> for NativeEdgeForwarderRsI
     fn join(&self, this: ComNgrokNativeEdgeForwarder<'local>) -> Result<(), Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut tun: MutexGuard<Forwarder<LabeledTunnel>> = self.get_native(this);
-        match rt.block_on(tun.join()) {
-            Ok(Ok(())) => Ok(()),
-            Ok(Err(e)) => io_exc_err(e),
-            Err(e) => io_exc_err(e),
-        }
+        let fwd: Arc<NativeForwarder<LabeledTunnel>> = self.get_native_arc(this);
+        rt.block_on(fwd.join()).or_else(io_exc_err)
     }
 
     fn close(
@@ -1461,8 +2637,9 @@ impl<'local> com_ngrok::NativeEdgeForwarderRs<'local> for NativeEdgeForwarderRsI
     ) -> Result<(), jaffi_support::Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut tun: LabeledTunnel = self.take_native(this);
-        rt.block_on(tun.close())
+        let fwd: Arc<NativeForwarder<LabeledTunnel>> = self.take_native(this);
+        fwd.closed.cancel();
+        rt.block_on(async { fwd.forwarder.lock().await.close().await })
             .or_else(|err| self.ngrok_exc_err_void(err))
     }
 }
@@ -1491,16 +2668,12 @@ impl<'local> com_ngrok::NativeEndpointConnectionRs<'local>
     ) -> Result<i32, Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut conn: MutexGuard<EndpointConn> = self.get_native(this);
+        let conn: Arc<NativeConn<EndpointConn>> = self.get_native_arc(this);
         let addr = self
             .env
             .get_direct_buffer_address(jbuff)
             .expect("cannot get buff addr");
-        match rt.block_on(conn.read(addr)) {
-            Ok(0) => Err(io_exc("closed")),
-            Ok(sz) => Ok(sz.try_into().expect("size must be i32")),
-            Err(err) => io_exc_err(err),
-        }
+        read_result(rt.block_on(conn.read(addr))).or_else(io_exc_err)
     }
 
     fn write_native(
@@ -1511,16 +2684,53 @@ impl<'local> com_ngrok::NativeEndpointConnectionRs<'local>
     ) -> Result<i32, Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut conn: MutexGuard<EndpointConn> = self.get_native(this);
+        let conn: Arc<NativeConn<EndpointConn>> = self.get_native_arc(this);
         let addr = self
             .env
             .get_direct_buffer_address(jbuff)
             .expect("cannot get buff addr");
         let act = &addr[..(limit as usize)];
-        match rt.block_on(conn.write(act)) {
-            Ok(sz) => Ok(sz.try_into().expect("cannot convert to i32")),
-            Err(err) => io_exc_err(err),
-        }
+        write_result(rt.block_on(conn.write(act))).or_else(io_exc_err)
+    }
+
+    fn read_native_async(
+        &self,
+        this: ComNgrokNativeEndpointConnection<'local>,
+        jbuff: JByteBuffer<'local>,
+        jcompletion: ComNgrokNativeCompletion<'local>,
+    ) {
+        let rt = RT.get().expect("runtime not initialized");
+
+        let conn: Arc<NativeConn<EndpointConn>> = self.get_native_arc(this);
+        let (addr, len) = direct_buffer(&self.env, jbuff);
+        let completion = CompletionCallback::from(self.env, jcompletion, Some(jbuff));
+        rt.spawn(async move {
+            // SAFETY: the completion keeps the buffer reachable until the read is done
+            let buf = unsafe { std::slice::from_raw_parts_mut(addr as *mut u8, len) };
+            let res = conn.read(buf).await;
+            completion.complete_read(res);
+        });
+    }
+
+    fn write_native_async(
+        &self,
+        this: ComNgrokNativeEndpointConnection<'local>,
+        jbuff: JByteBuffer<'local>,
+        limit: i32,
+        jcompletion: ComNgrokNativeCompletion<'local>,
+    ) {
+        let rt = RT.get().expect("runtime not initialized");
+
+        let conn: Arc<NativeConn<EndpointConn>> = self.get_native_arc(this);
+        let (addr, len) = direct_buffer(&self.env, jbuff);
+        let len = len.min(limit as usize);
+        let completion = CompletionCallback::from(self.env, jcompletion, Some(jbuff));
+        rt.spawn(async move {
+            // SAFETY: the completion keeps the buffer reachable until the write is done
+            let buf = unsafe { std::slice::from_raw_parts(addr as *const u8, len) };
+            let res = conn.write(buf).await;
+            completion.complete_write(res);
+        });
     }
 
     fn close(
@@ -1529,7 +2739,7 @@ impl<'local> com_ngrok::NativeEndpointConnectionRs<'local>
     ) -> Result<(), Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut conn: EndpointConn = self.take_native(this);
+        let conn: Arc<NativeConn<EndpointConn>> = self.take_native(this);
         rt.block_on(conn.shutdown()).map_err(io_exc)
     }
 }
@@ -1556,16 +2766,12 @@ impl<'local> com_ngrok::NativeEdgeConnectionRs<'local> for NativeEdgeConnectionR
     ) -> Result<i32, Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut conn: MutexGuard<EdgeConn> = self.get_native(this);
+        let conn: Arc<NativeConn<EdgeConn>> = self.get_native_arc(this);
         let addr = self
             .env
             .get_direct_buffer_address(jbuff)
             .expect("cannot get buff addr");
-        match rt.block_on(conn.read(addr)) {
-            Ok(0) => Err(io_exc("closed")),
-            Ok(sz) => Ok(sz.try_into().expect("size must be i32")),
-            Err(err) => io_exc_err(err),
-        }
+        read_result(rt.block_on(conn.read(addr))).or_else(io_exc_err)
     }
 
     fn write_native(
@@ -1576,16 +2782,53 @@ impl<'local> com_ngrok::NativeEdgeConnectionRs<'local> for NativeEdgeConnectionR
     ) -> Result<i32, Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut conn: MutexGuard<EdgeConn> = self.get_native(this);
+        let conn: Arc<NativeConn<EdgeConn>> = self.get_native_arc(this);
         let addr = self
             .env
             .get_direct_buffer_address(jbuff)
             .expect("cannot get buff addr");
         let act = &addr[..(limit as usize)];
-        match rt.block_on(conn.write(act)) {
-            Ok(sz) => Ok(sz.try_into().expect("cannot convert to i32")),
-            Err(err) => io_exc_err(err),
-        }
+        write_result(rt.block_on(conn.write(act))).or_else(io_exc_err)
+    }
+
+    fn read_native_async(
+        &self,
+        this: ComNgrokNativeEdgeConnection<'local>,
+        jbuff: JByteBuffer<'local>,
+        jcompletion: ComNgrokNativeCompletion<'local>,
+    ) {
+        let rt = RT.get().expect("runtime not initialized");
+
+        let conn: Arc<NativeConn<EdgeConn>> = self.get_native_arc(this);
+        let (addr, len) = direct_buffer(&self.env, jbuff);
+        let completion = CompletionCallback::from(self.env, jcompletion, Some(jbuff));
+        rt.spawn(async move {
+            // SAFETY: the completion keeps the buffer reachable until the read is done
+            let buf = unsafe { std::slice::from_raw_parts_mut(addr as *mut u8, len) };
+            let res = conn.read(buf).await;
+            completion.complete_read(res);
+        });
+    }
+
+    fn write_native_async(
+        &self,
+        this: ComNgrokNativeEdgeConnection<'local>,
+        jbuff: JByteBuffer<'local>,
+        limit: i32,
+        jcompletion: ComNgrokNativeCompletion<'local>,
+    ) {
+        let rt = RT.get().expect("runtime not initialized");
+
+        let conn: Arc<NativeConn<EdgeConn>> = self.get_native_arc(this);
+        let (addr, len) = direct_buffer(&self.env, jbuff);
+        let len = len.min(limit as usize);
+        let completion = CompletionCallback::from(self.env, jcompletion, Some(jbuff));
+        rt.spawn(async move {
+            // SAFETY: the completion keeps the buffer reachable until the write is done
+            let buf = unsafe { std::slice::from_raw_parts(addr as *const u8, len) };
+            let res = conn.write(buf).await;
+            completion.complete_write(res);
+        });
     }
 
     fn close(
@@ -1594,7 +2837,7 @@ impl<'local> com_ngrok::NativeEdgeConnectionRs<'local> for NativeEdgeConnectionR
     ) -> Result<(), Error<IOExceptionErr>> {
         let rt = RT.get().expect("runtime not initialized");
 
-        let mut conn: EdgeConn = self.take_native(this);
+        let conn: Arc<NativeConn<EdgeConn>> = self.take_native(this);
         rt.block_on(conn.shutdown()).map_err(io_exc)
     }
 }
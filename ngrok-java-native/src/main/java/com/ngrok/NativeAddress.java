@@ -0,0 +1,60 @@
+package com.ngrok;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Builds remote addresses from the binary form passed in by the native library,
+ * without parsing strings or resolving host names.
+ */
+final class NativeAddress {
+    private NativeAddress() {
+    }
+
+    /**
+     * Creates a socket address from its binary form.
+     *
+     * @param high the upper 64 bits of an IPv6 address, ignored for IPv4
+     * @param low  the lower 64 bits of an IPv6 address, or the IPv4 address in the lower 32 bits
+     * @param port the port
+     * @param ipv6 true if the address is an IPv6 address
+     * @return a socket address for the literal IP address
+     */
+    static InetSocketAddress of(long high, long low, int port, boolean ipv6) {
+        byte[] bytes;
+        if (ipv6) {
+            bytes = new byte[16];
+            for (int i = 0; i < 8; i++) {
+                bytes[i] = (byte) (high >>> (56 - 8 * i));
+                bytes[8 + i] = (byte) (low >>> (56 - 8 * i));
+            }
+        } else {
+            bytes = new byte[4];
+            for (int i = 0; i < 4; i++) {
+                bytes[i] = (byte) (low >>> (24 - 8 * i));
+            }
+        }
+
+        try {
+            return new InetSocketAddress(InetAddress.getByAddress(bytes), port);
+        } catch (UnknownHostException e) {
+            // only thrown for addresses of illegal length
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Formats a socket address in IP:port form, with IPv6 addresses in brackets.
+     *
+     * @param addr the address to format
+     * @return the formatted address
+     */
+    static String format(InetSocketAddress addr) {
+        var host = addr.getAddress().getHostAddress();
+        if (host.indexOf(':') >= 0) {
+            return "[" + host + "]:" + addr.getPort();
+        }
+        return host + ":" + addr.getPort();
+    }
+}
@@ -0,0 +1,148 @@
+package com.ngrok;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Passes the results of asynchronous native operations to a {@link CompletionHandler}.
+ * The native library invokes these methods on its runtime threads.
+ */
+class NativeCompletion {
+    private static final CompletionHandler<Object, CompletableFuture<Object>> FUTURE_HANDLER = new CompletionHandler<>() {
+        @Override
+        public void completed(Object result, CompletableFuture<Object> done) {
+            done.complete(result);
+        }
+
+        @Override
+        public void failed(Throwable exc, CompletableFuture<Object> done) {
+            done.completeExceptionally(exc);
+        }
+    };
+
+    private final ByteBuffer readBuffer;
+    private final Object attachment;
+    private final CompletionHandler<Object, Object> handler;
+
+    /**
+     * Creates a new completion for the given handler.
+     *
+     * @param readBuffer the buffer of a read operation, positioned as in a blocking read
+     *                   on completion, or {@code null} for other operations
+     * @param attachment the attachment to pass to the handler
+     * @param handler    the handler to complete
+     */
+    @SuppressWarnings("unchecked")
+    <A> NativeCompletion(ByteBuffer readBuffer, A attachment, CompletionHandler<?, ? super A> handler) {
+        this.readBuffer = readBuffer;
+        this.attachment = attachment;
+        // the native operation determines the result type, matching the handler it was started with
+        this.handler = (CompletionHandler<Object, Object>) handler;
+    }
+
+    /**
+     * Creates a new completion for the given future.
+     *
+     * @param done the future to complete
+     */
+    @SuppressWarnings("unchecked")
+    static NativeCompletion of(CompletableFuture<?> done) {
+        return new NativeCompletion(null, (CompletableFuture<Object>) done, FUTURE_HANDLER);
+    }
+
+    /**
+     * Called when a read or write operation completes.
+     *
+     * @param result the number of bytes read or written, or a negative
+     *               result code as interpreted by {@link NativeIO}
+     */
+    void completed(int result) {
+        try {
+            result = readBuffer != null ? NativeIO.read(readBuffer, result) : NativeIO.write(result);
+        } catch (ConnectionException e) {
+            fail(e);
+            return;
+        }
+        invoke(result);
+    }
+
+    /**
+     * Called when an accept operation completes.
+     *
+     * @param conn the accepted connection
+     */
+    void accepted(Connection conn) {
+        invoke(conn);
+    }
+
+    /**
+     * Called when a connect operation completes.
+     *
+     * @param session the connected session
+     */
+    void connected(Session session) {
+        invoke(session);
+    }
+
+    /**
+     * Called when a listen operation completes.
+     *
+     * @param listener the running listener
+     */
+    void listened(Listener<?> listener) {
+        invoke(listener);
+    }
+
+    /**
+     * Called when a forward operation completes.
+     *
+     * @param forwarder the running forwarder
+     */
+    void forwarded(Forwarder forwarder) {
+        invoke(forwarder);
+    }
+
+    /**
+     * Called when a close operation completes.
+     */
+    void closed() {
+        invoke(null);
+    }
+
+    /**
+     * Called when an operation fails.
+     *
+     * @param message the error message
+     */
+    void failed(String message) {
+        fail(new IOException(message));
+    }
+
+    /**
+     * Called when an operation fails with an ngrok error.
+     *
+     * @param code    the ngrok error code
+     * @param details the error details
+     */
+    void failedWithCode(String code, String details) {
+        fail(new NgrokException(code, details));
+    }
+
+    private void fail(IOException exc) {
+        try {
+            handler.failed(exc, attachment);
+        } catch (Throwable th) {
+            Runtime.getLogger().log("warn", "completion", "completion handler failed: " + th);
+        }
+    }
+
+    private void invoke(Object result) {
+        try {
+            handler.completed(result, attachment);
+        } catch (Throwable th) {
+            Runtime.getLogger().log("warn", "completion", "completion handler failed: " + th);
+        }
+    }
+}
@@ -1,27 +1,54 @@
 package com.ngrok;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
 
 /**
  * An implementation of {@link Connection.Edge} that delegates implementation to a native library.
  */
 public class NativeEdgeConnection implements Connection.Edge {
+    private static final String[] EDGE_TYPES = { "", "HTTPS", "TLS", "TCP" };
+
     private long native_address;
 
-    private final String remoteAddr;
+    private final InetSocketAddress inetAddress;
     private final String edgeType;
     private final boolean passthroughTls;
 
-    public NativeEdgeConnection(String remoteAddr, String edgeType, boolean passthroughTls) {
-        this.remoteAddr = remoteAddr;
-        this.edgeType = edgeType;
+    private String remoteAddr;
+
+    /**
+     * Creates a new connection from the binary remote address and edge type code
+     * provided by the native library.
+     *
+     * @param addressHigh    the upper 64 bits of an IPv6 remote address
+     * @param addressLow     the lower 64 bits of an IPv6 remote address, or an IPv4 remote address
+     * @param port           the remote port
+     * @param ipv6           true if the remote address is an IPv6 address
+     * @param edgeType       the edge type code, an index into the known edge types
+     * @param passthroughTls true if this is a passthrough TLS connection
+     */
+    public NativeEdgeConnection(long addressHigh, long addressLow, int port, boolean ipv6, int edgeType, boolean passthroughTls) {
+        this.inetAddress = NativeAddress.of(addressHigh, addressLow, port, ipv6);
+        this.edgeType = edgeType > 0 && edgeType < EDGE_TYPES.length ? EDGE_TYPES[edgeType] : "";
         this.passthroughTls = passthroughTls;
     }
 
     @Override
     public String getRemoteAddr() {
-        return remoteAddr;
+        var addr = remoteAddr;
+        if (addr == null) {
+            addr = NativeAddress.format(inetAddress);
+            remoteAddr = addr;
+        }
+        return addr;
+    }
+
+    @Override
+    public InetSocketAddress inetAddress() {
+        return inetAddress;
     }
 
     @Override
@@ -36,21 +63,38 @@ public class NativeEdgeConnection implements Connection.Edge {
 
     @Override
     public int read(ByteBuffer dst) throws IOException {
-        var sz = readNative(dst);
-        dst.position(0);
-        dst.limit(sz);
-        return sz;
+        return NativeIO.read(dst, readNative(dst));
     }
 
     private native int readNative(ByteBuffer dst) throws IOException;
 
     @Override
     public int write(ByteBuffer src) throws IOException {
-        return writeNative(src, src.limit());
+        return NativeIO.write(writeNative(src, src.limit()));
     }
 
     private native int writeNative(ByteBuffer src, int limit) throws IOException;
 
+    @Override
+    public <A> void readAsync(ByteBuffer dst, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        if (!dst.isDirect()) {
+            throw new IllegalArgumentException("direct buffer required");
+        }
+        readNativeAsync(dst, new NativeCompletion(dst, attachment, handler));
+    }
+
+    private native void readNativeAsync(ByteBuffer dst, NativeCompletion completion);
+
+    @Override
+    public <A> void writeAsync(ByteBuffer src, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        if (!src.isDirect()) {
+            throw new IllegalArgumentException("direct buffer required");
+        }
+        writeNativeAsync(src, src.limit(), new NativeCompletion(null, attachment, handler));
+    }
+
+    private native void writeNativeAsync(ByteBuffer src, int limit, NativeCompletion completion);
+
     @Override
     public native void close() throws IOException;
 }
@@ -1,6 +1,7 @@
 package com.ngrok;
 
 import java.io.IOException;
+import java.nio.channels.CompletionHandler;
 import java.util.Map;
 
 /**
@@ -16,6 +17,13 @@ public class NativeEdgeListener extends AbstractEdge implements Listener.Edge {
     @Override
     public native NativeEdgeConnection accept() throws IOException;
 
+    @Override
+    public <A> void acceptAsync(A attachment, CompletionHandler<? super Connection.Edge, ? super A> handler) {
+        acceptNativeAsync(new NativeCompletion(null, attachment, handler));
+    }
+
+    private native void acceptNativeAsync(NativeCompletion completion);
+
     @Override
     public native void close() throws IOException;
 }
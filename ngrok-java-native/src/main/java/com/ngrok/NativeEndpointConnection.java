@@ -1,21 +1,38 @@
 package com.ngrok;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
 
 /**
  * An implementation of {@link Connection.Endpoint} that delegates implementation to a native library.
  */
 public class NativeEndpointConnection implements Connection.Endpoint {
+    private static final String[] PROTOS = { "", "tcp", "tls", "http", "https" };
+
     private long native_address;
 
-    private final String proto;
+    private String proto;
+
+    private final InetSocketAddress inetAddress;
 
-    private final String remoteAddr;
+    private String remoteAddr;
 
-    public NativeEndpointConnection(String remoteAddr, String proto) {
-        this.proto = proto;
-        this.remoteAddr = remoteAddr;
+    /**
+     * Creates a new connection from the binary remote address and protocol code
+     * provided by the native library.
+     *
+     * @param addressHigh the upper 64 bits of an IPv6 remote address
+     * @param addressLow  the lower 64 bits of an IPv6 remote address, or an IPv4 remote address
+     * @param port        the remote port
+     * @param ipv6        true if the remote address is an IPv6 address
+     * @param proto       the protocol code, an index into the known protocols, or 0 for
+     *                    a protocol the native library then sets by name
+     */
+    public NativeEndpointConnection(long addressHigh, long addressLow, int port, boolean ipv6, int proto) {
+        this.inetAddress = NativeAddress.of(addressHigh, addressLow, port, ipv6);
+        this.proto = proto > 0 && proto < PROTOS.length ? PROTOS[proto] : "";
     }
 
     public String getProto() {
@@ -24,25 +41,52 @@ public class NativeEndpointConnection implements Connection.Endpoint {
 
     @Override
     public String getRemoteAddr() {
-        return remoteAddr;
+        var addr = remoteAddr;
+        if (addr == null) {
+            addr = NativeAddress.format(inetAddress);
+            remoteAddr = addr;
+        }
+        return addr;
+    }
+
+    @Override
+    public InetSocketAddress inetAddress() {
+        return inetAddress;
     }
 
     @Override
     public int read(ByteBuffer dst) throws IOException {
-        var sz = readNative(dst);
-        dst.position(0);
-        dst.limit(sz);
-        return sz;
+        return NativeIO.read(dst, readNative(dst));
     }
 
     private native int readNative(ByteBuffer dst) throws IOException;
 
     @Override
     public int write(ByteBuffer src) throws IOException {
-        return writeNative(src, src.limit());
+        return NativeIO.write(writeNative(src, src.limit()));
     }
 
     private native int writeNative(ByteBuffer src, int limit) throws IOException;
 
+    @Override
+    public <A> void readAsync(ByteBuffer dst, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        if (!dst.isDirect()) {
+            throw new IllegalArgumentException("direct buffer required");
+        }
+        readNativeAsync(dst, new NativeCompletion(dst, attachment, handler));
+    }
+
+    private native void readNativeAsync(ByteBuffer dst, NativeCompletion completion);
+
+    @Override
+    public <A> void writeAsync(ByteBuffer src, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        if (!src.isDirect()) {
+            throw new IllegalArgumentException("direct buffer required");
+        }
+        writeNativeAsync(src, src.limit(), new NativeCompletion(null, attachment, handler));
+    }
+
+    private native void writeNativeAsync(ByteBuffer src, int limit, NativeCompletion completion);
+
     public native void close() throws IOException;
 }
@@ -0,0 +1,58 @@
+package com.ngrok;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Interprets the results of native reads and writes. The native library returns
+ * end of stream and the common connection errors as negative result codes instead
+ * of throwing, so they can be handled without an exception crossing JNI.
+ */
+final class NativeIO {
+    static final int EOF = -1;
+    static final int RESET = -2;
+    static final int CLOSED = -3;
+
+    private NativeIO() {
+    }
+
+    /**
+     * Positions the buffer of a completed read over the bytes read.
+     *
+     * @param dst the buffer read into
+     * @param sz  the native result
+     * @return the number of bytes read, or -1 if the end of the stream has been reached
+     * @throws ConnectionException if the result is an error code
+     */
+    static int read(ByteBuffer dst, int sz) throws ConnectionException {
+        dst.position(0);
+        dst.limit(Math.max(sz, 0));
+        if (sz < EOF) {
+            throw error(sz);
+        }
+        return sz;
+    }
+
+    /**
+     * Checks the result of a completed write.
+     *
+     * @param sz the native result
+     * @return the number of bytes written
+     * @throws ConnectionException if the result is an error code
+     */
+    static int write(int sz) throws ConnectionException {
+        if (sz < 0) {
+            throw error(sz);
+        }
+        return sz;
+    }
+
+    /**
+     * Creates the exception for a native error code.
+     *
+     * @param code the native error code
+     * @return the exception
+     */
+    static ConnectionException error(int code) {
+        return new ConnectionException(code == RESET ? ConnectionException.RESET : ConnectionException.CLOSED);
+    }
+}
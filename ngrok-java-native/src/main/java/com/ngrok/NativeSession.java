@@ -2,7 +2,9 @@ package com.ngrok;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * An implementation of {@link Session} that delegates implementation to a native library.
@@ -40,13 +42,45 @@ public class NativeSession implements Session {
     }
 
     public static NativeSession connect(Session.Builder builder) throws IOException {
-        var jver = System.getProperty("java.version");
-        builder.getClientInfos().add(0, new ClientInfo("ngrok-java", version, jver));
+        addClientInfo(builder);
         return connectNative(builder);
     }
 
     private static native NativeSession connectNative(Session.Builder builder) throws IOException;
 
+    public static CompletableFuture<Session> connectAsync(Session.Builder builder) {
+        var done = new CompletableFuture<Session>();
+        try {
+            addClientInfo(builder);
+            connectNativeAsync(builder, NativeCompletion.of(done));
+        } catch (IOException | RuntimeException e) {
+            done.completeExceptionally(e);
+        }
+        return done;
+    }
+
+    /**
+     * Adds the client information of this library, unless a previous connect with the
+     * same builder already has.
+     */
+    private static void addClientInfo(Session.Builder builder) {
+        var infos = builder.getClientInfos();
+        if (infos.isEmpty() || !"ngrok-java".equals(infos.get(0).getType())) {
+            var jver = System.getProperty("java.version");
+            infos.add(0, new ClientInfo("ngrok-java", version, jver));
+        }
+    }
+
+    private static native void connectNativeAsync(Session.Builder builder, NativeCompletion completion) throws IOException;
+
+    public static TlsResumptionStats tlsResumptionStats() {
+        return new TlsResumptionStats(tlsSessionsOfferedNative(), tlsSessionsNotOfferedNative());
+    }
+
+    private static native long tlsSessionsOfferedNative();
+
+    private static native long tlsSessionsNotOfferedNative();
+
     @Override
     public String getId() {
         return id;
@@ -58,32 +92,137 @@ public class NativeSession implements Session {
     }
 
     @Override
-    public native NativeTcpListener listenTcp(TcpBuilder builder) throws IOException;
+    public NativeTcpListener listenTcp(TcpBuilder builder) throws IOException {
+        return listenTcpNative(builder.encoded());
+    }
+
+    private native NativeTcpListener listenTcpNative(ByteBuffer config) throws IOException;
+
+    @Override
+    public NativeTcpForwarder forwardTcp(TcpBuilder builder, URL url) throws IOException {
+        return forwardTcpNative(builder.encoded(), url);
+    }
+
+    private native NativeTcpForwarder forwardTcpNative(ByteBuffer config, URL url) throws IOException;
 
     @Override
-    public native NativeTcpForwarder forwardTcp(TcpBuilder builder, URL url) throws IOException;
+    public NativeTlsListener listenTls(TlsBuilder builder) throws IOException {
+        return listenTlsNative(builder.encoded());
+    }
+
+    private native NativeTlsListener listenTlsNative(ByteBuffer config) throws IOException;
 
     @Override
-    public native NativeTlsListener listenTls(TlsBuilder builder) throws IOException;
+    public NativeTlsForwarder forwardTls(TlsBuilder builder, URL url) throws IOException {
+        return forwardTlsNative(builder.encoded(), url);
+    }
+
+    private native NativeTlsForwarder forwardTlsNative(ByteBuffer config, URL url) throws IOException;
+
+    @Override
+    public NativeHttpListener listenHttp(HttpBuilder builder) throws IOException {
+        return listenHttpNative(builder.encoded());
+    }
+
+    private native NativeHttpListener listenHttpNative(ByteBuffer config) throws IOException;
 
     @Override
-    public native NativeTlsForwarder forwardTls(TlsBuilder builder, URL url) throws IOException;
+    public NativeHttpForwarder forwardHttp(HttpBuilder builder, URL url) throws IOException {
+        return forwardHttpNative(builder.encoded(), url);
+    }
+
+    private native NativeHttpForwarder forwardHttpNative(ByteBuffer config, URL url) throws IOException;
 
     @Override
-    public native NativeHttpListener listenHttp(HttpBuilder builder) throws IOException;
+    public NativeEdgeListener listenEdge(EdgeBuilder builder) throws IOException {
+        return listenEdgeNative(builder.encoded());
+    }
+
+    private native NativeEdgeListener listenEdgeNative(ByteBuffer config) throws IOException;
 
     @Override
-    public native NativeHttpForwarder forwardHttp(HttpBuilder builder, URL url) throws IOException;
+    public NativeEdgeForwarder forwardEdge(EdgeBuilder builder, URL url) throws IOException {
+        return forwardEdgeNative(builder.encoded(), url);
+    }
+
+    private native NativeEdgeForwarder forwardEdgeNative(ByteBuffer config, URL url) throws IOException;
 
     @Override
-    public native NativeEdgeListener listenEdge(EdgeBuilder builder) throws IOException;
+    public <L extends Listener<?>> CompletableFuture<L> listenAsync(Listener.Builder<L> builder) {
+        var done = new CompletableFuture<L>();
+        var completion = NativeCompletion.of(done);
+        try {
+            if (builder instanceof TcpBuilder) {
+                listenTcpNativeAsync(((TcpBuilder) builder).encoded(), completion);
+            } else if (builder instanceof TlsBuilder) {
+                listenTlsNativeAsync(((TlsBuilder) builder).encoded(), completion);
+            } else if (builder instanceof HttpBuilder) {
+                listenHttpNativeAsync(((HttpBuilder) builder).encoded(), completion);
+            } else if (builder instanceof EdgeBuilder) {
+                listenEdgeNativeAsync(((EdgeBuilder) builder).encoded(), completion);
+            } else {
+                return Session.super.listenAsync(builder);
+            }
+        } catch (IOException | RuntimeException e) {
+            done.completeExceptionally(e);
+        }
+        return done;
+    }
 
     @Override
-    public native NativeEdgeForwarder forwardEdge(EdgeBuilder builder, URL url) throws IOException;
+    public <F extends Forwarder> CompletableFuture<F> forwardAsync(Forwarder.Builder<F> builder, URL url) {
+        var done = new CompletableFuture<F>();
+        var completion = NativeCompletion.of(done);
+        try {
+            if (builder instanceof TcpBuilder) {
+                forwardTcpNativeAsync(((TcpBuilder) builder).encoded(), url, completion);
+            } else if (builder instanceof TlsBuilder) {
+                forwardTlsNativeAsync(((TlsBuilder) builder).encoded(), url, completion);
+            } else if (builder instanceof HttpBuilder) {
+                forwardHttpNativeAsync(((HttpBuilder) builder).encoded(), url, completion);
+            } else if (builder instanceof EdgeBuilder) {
+                forwardEdgeNativeAsync(((EdgeBuilder) builder).encoded(), url, completion);
+            } else {
+                return Session.super.forwardAsync(builder, url);
+            }
+        } catch (IOException | RuntimeException e) {
+            done.completeExceptionally(e);
+        }
+        return done;
+    }
+
+    private native void listenTcpNativeAsync(ByteBuffer config, NativeCompletion completion) throws IOException;
+
+    private native void forwardTcpNativeAsync(ByteBuffer config, URL url, NativeCompletion completion) throws IOException;
+
+    private native void listenTlsNativeAsync(ByteBuffer config, NativeCompletion completion) throws IOException;
+
+    private native void forwardTlsNativeAsync(ByteBuffer config, URL url, NativeCompletion completion) throws IOException;
+
+    private native void listenHttpNativeAsync(ByteBuffer config, NativeCompletion completion) throws IOException;
+
+    private native void forwardHttpNativeAsync(ByteBuffer config, URL url, NativeCompletion completion) throws IOException;
+
+    private native void listenEdgeNativeAsync(ByteBuffer config, NativeCompletion completion) throws IOException;
+
+    private native void forwardEdgeNativeAsync(ByteBuffer config, URL url, NativeCompletion completion) throws IOException;
 
     @Override
     public native void closeListener(String id) throws IOException;
 
+    @Override
+    public CompletableFuture<Void> closeListenerAsync(String id) {
+        var done = new CompletableFuture<Void>();
+        try {
+            closeListenerNativeAsync(id, NativeCompletion.of(done));
+        } catch (IOException | RuntimeException e) {
+            done.completeExceptionally(e);
+        }
+        return done;
+    }
+
+    private native void closeListenerNativeAsync(String id, NativeCompletion completion) throws IOException;
+
     @Override
     public native void closeForwarder(String id) throws IOException;
 
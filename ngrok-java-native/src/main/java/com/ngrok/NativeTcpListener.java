@@ -1,6 +1,7 @@
 package com.ngrok;
 
 import java.io.IOException;
+import java.nio.channels.CompletionHandler;
 
 /**
  * An implementation of {@link Listener.Endpoint} that delegates implementation to a native library.
@@ -15,6 +16,13 @@ public class NativeTcpListener extends AbstractEndpoint implements Listener.Endp
     @Override
     public native NativeEndpointConnection accept() throws IOException;
 
+    @Override
+    public <A> void acceptAsync(A attachment, CompletionHandler<? super Connection.Endpoint, ? super A> handler) {
+        acceptNativeAsync(new NativeCompletion(null, attachment, handler));
+    }
+
+    private native void acceptNativeAsync(NativeCompletion completion);
+
     @Override
     public native void close() throws IOException;
 }
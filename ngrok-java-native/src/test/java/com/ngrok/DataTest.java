@@ -3,7 +3,14 @@ package com.ngrok;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -30,6 +37,130 @@ public class DataTest {
         }
     }
 
+    @Test
+    public void testConnectAsync() throws Exception {
+        var pending = Session.withAuthtokenFromEnv().metadata("java-async-session").connectAsync();
+        try (var session = pending.get(30, TimeUnit.SECONDS)) {
+            assertEquals("java-async-session", session.getMetadata());
+
+            var listener = session.httpEndpoint().metadata("java-async-endpoint").listenAsync().get(30, TimeUnit.SECONDS);
+            assertEquals("java-async-endpoint", listener.getMetadata());
+            listener.close();
+        }
+    }
+
+    @Test
+    public void testTlsResumption() throws Exception {
+        Session.withAuthtokenFromEnv().connect().close();
+        var before = Session.tlsResumptionStats();
+        Session.withAuthtokenFromEnv().connect().close();
+        var after = Session.tlsResumptionStats();
+
+        assertEquals(before.getOffered() + 1, after.getOffered());
+        assertEquals(before.getNotOffered(), after.getNotOffered());
+    }
+
+    @Test
+    public void testLifecycleEvents() throws Exception {
+        var events = new LinkedBlockingQueue<String>();
+        var builder = Session.withAuthtokenFromEnv()
+                .reconnectPolicy(ReconnectPolicy.exponentialBackoff(Duration.ofMillis(100), Duration.ofSeconds(5))
+                        .withJitter(0.5)
+                        .withConnectTimeout(Duration.ofSeconds(10)))
+                .lifecycleHandler(new Session.LifecycleHandler() {
+                    @Override
+                    public void connecting(int attempt) {
+                        events.add("connecting " + attempt);
+                    }
+
+                    @Override
+                    public void connected(int attempt, long durationMs) {
+                        events.add("connected " + attempt);
+                    }
+                });
+        try (var session = builder.connect()) {
+            assertEquals("connecting 1", events.poll(5, TimeUnit.SECONDS));
+            assertEquals("connected 1", events.poll(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testUnsupportedTlsCipherSuite() {
+        var builder = Session.withAuthtokenFromEnv().tlsCipherSuites(List.of("TLS_RSA_WITH_RC4_128_MD5"));
+        var err = assertThrows(IOException.class, builder::connect);
+        assertTrue(err.getMessage().contains("TLS_RSA_WITH_RC4_128_MD5"));
+    }
+
+    @Test
+    public void testTlsMinVersionTrustsNgrokRoot() throws Exception {
+        try (var session = Session.withAuthtokenFromEnv().tlsMinVersion("TLSv1.3").connect()) {
+            assertNotNull(session.getId());
+        }
+    }
+
+    @Test
+    public void testTlsSettingsRejectBogusCaCert() {
+        var builder = Session.withAuthtokenFromEnv()
+                .caCert("not a certificate".getBytes(StandardCharsets.UTF_8))
+                .tlsMinVersion("TLSv1.3");
+        var err = assertThrows(IOException.class, builder::connect);
+        var message = err.getMessage().toLowerCase();
+        assertTrue(message, message.contains("invalid ca certificate") || message.contains("handshake"));
+    }
+
+    @Test
+    public void testWarmStandby() throws Exception {
+        try (var session = Session.withAuthtokenFromEnv().metadata("java-standby").warmStandby(true).connect()) {
+            var sessions = ((SessionPool) session).getSessions();
+            assertEquals(2, sessions.size());
+            assertEquals("java-standby", sessions.get(1).getMetadata());
+
+            var listener = session.httpEndpoint().listen();
+            assertEquals(sessions.get(0).getId(), session.getId());
+            listener.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentListen() throws Exception {
+        final int count = 10;
+        try (var session = Session.withAuthtokenFromEnv().connect()) {
+            // serial baseline, one bind waiting for the previous one
+            var start = System.nanoTime();
+            var serialIds = new ArrayList<String>();
+            for (int i = 0; i < count; i++) {
+                serialIds.add(session.httpEndpoint().metadata("java-serial-" + i).listen().getId());
+            }
+            var serial = System.nanoTime() - start;
+            for (var closed : session.closeListeners(serialIds)) {
+                assertTrue(closed.isSuccess());
+            }
+
+            var builders = new ArrayList<HttpBuilder>();
+            for (int i = 0; i < count; i++) {
+                builders.add(session.httpEndpoint().metadata("java-endpoint-" + i));
+            }
+
+            start = System.nanoTime();
+            var listeners = session.listenAll(builders);
+            var ids = new ArrayList<String>();
+            for (var listener : listeners) {
+                ids.add(listener.get().getId());
+            }
+            var parallel = System.nanoTime() - start;
+            Runtime.getLogger().log("info", "session", String.format("bound %d endpoints in %dms serially, %dms in parallel (%.1fx)",
+                    count, TimeUnit.NANOSECONDS.toMillis(serial), TimeUnit.NANOSECONDS.toMillis(parallel), (double) serial / parallel));
+            assertEquals(count, ids.stream().distinct().count());
+            // each bind is a round trip to ngrok, overlapping them must beat waiting for
+            // each in turn, the exact ratio depends on the network and is only logged
+            assertTrue("parallel binds are not faster than serial ones", parallel < serial);
+
+            for (var closed : session.closeListeners(ids)) {
+                assertTrue(closed.isSuccess());
+            }
+        }
+    }
+
     // @Test
     public void testPingPong() throws Exception {
         var session = Session.withAuthtokenFromEnv().connect();
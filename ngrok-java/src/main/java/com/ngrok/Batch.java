@@ -0,0 +1,42 @@
+package com.ngrok;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Collects the results of a bulk operation whose items were started as asynchronous
+ * operations, so that they run concurrently on the native runtime, with a
+ * {@link BatchResult} per item.
+ */
+class Batch {
+    private Batch() {}
+
+    /**
+     * Waits for each of the futures, returning their results in order.
+     */
+    static <T> List<BatchResult<T>> join(List<? extends CompletableFuture<? extends T>> futures) {
+        var results = new ArrayList<BatchResult<T>>(futures.size());
+        var interrupted = false;
+        for (var future : futures) {
+            for (;;) {
+                try {
+                    results.add(BatchResult.success(future.get()));
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    var cause = e.getCause();
+                    results.add(BatchResult.failure(cause instanceof IOException ? (IOException) cause : new IOException(cause)));
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return results;
+    }
+}
@@ -0,0 +1,83 @@
+package com.ngrok;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The outcome of one item of a bulk operation on a {@link Session}, either a value
+ * or the error that item failed with.
+ *
+ * @param <T> the type of the value
+ */
+public final class BatchResult<T> {
+    private final T value;
+    private final IOException error;
+
+    private BatchResult(T value, IOException error) {
+        this.value = value;
+        this.error = error;
+    }
+
+    /**
+     * Creates a successful result.
+     *
+     * @param value the value, may be {@code null} for operations without one
+     * @param <T>   the type of the value
+     * @return the result
+     */
+    public static <T> BatchResult<T> success(T value) {
+        return new BatchResult<>(value, null);
+    }
+
+    /**
+     * Creates a failed result.
+     *
+     * @param error the error the item failed with
+     * @param <T>   the type of the value
+     * @return the result
+     */
+    public static <T> BatchResult<T> failure(IOException error) {
+        return new BatchResult<>(null, Objects.requireNonNull(error));
+    }
+
+    /**
+     * Returns whether the item succeeded.
+     *
+     * @return true if the item succeeded
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * Returns the value of the item, or throws the error it failed with.
+     *
+     * @return the value
+     * @throws IOException if the item failed
+     */
+    public T get() throws IOException {
+        if (error != null) {
+            throw error;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value of the item, if it succeeded.
+     *
+     * @return the value, empty if the item failed or has no value
+     */
+    public Optional<T> getValue() {
+        return Optional.ofNullable(value);
+    }
+
+    /**
+     * Returns the error the item failed with.
+     *
+     * @return the error, empty if the item succeeded
+     */
+    public Optional<IOException> getError() {
+        return Optional.ofNullable(error);
+    }
+}
@@ -0,0 +1,73 @@
+package com.ngrok;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs the blocking fallbacks of asynchronous operations on the common pool.
+ */
+final class Blocking {
+    /**
+     * A blocking operation producing a result.
+     *
+     * @param <T> the type of the result
+     */
+    interface Operation<T> {
+        T run() throws IOException;
+    }
+
+    private Blocking() {
+    }
+
+    /**
+     * Runs a blocking operation on the common pool, completing the returned future
+     * with its result.
+     *
+     * @param op the operation to run
+     * @param <T> the type of the result
+     * @return a future completed with the result of the operation
+     */
+    static <T> CompletableFuture<T> async(Operation<? extends T> op) {
+        var done = new CompletableFuture<T>();
+        submit(() -> {
+            try {
+                done.complete(op.run());
+            } catch (Throwable th) {
+                done.completeExceptionally(th);
+            }
+        });
+        return done;
+    }
+
+    /**
+     * Runs a blocking operation on the common pool as a managed block, so that the pool
+     * adds a spare thread while it waits. Otherwise a single blocked accept could hold
+     * the only worker of a small pool, and starve the reads and writes queued behind it.
+     *
+     * @param op the operation to run
+     */
+    static void submit(Runnable op) {
+        ForkJoinPool.commonPool().execute(() -> {
+            try {
+                ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                    private boolean done;
+
+                    @Override
+                    public boolean block() {
+                        op.run();
+                        done = true;
+                        return true;
+                    }
+
+                    @Override
+                    public boolean isReleasable() {
+                        return done;
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+}
@@ -0,0 +1,160 @@
+package com.ngrok;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Encodes the configuration of a listener builder into a single buffer, which the
+ * native library decodes in one pass instead of calling back into Java for every
+ * field and list element.
+ *
+ * The buffer is a sequence of fields, each a one byte tag followed by its values.
+ * Strings and byte arrays are written as a big-endian 32 bit length followed by their
+ * bytes, strings in UTF-8. Fields that take several values, such as CIDRs or headers,
+ * are repeated once per value. The tags must match the native decoder.
+ */
+final class BuilderCodec {
+    // from MetadataBuilder
+    static final byte METADATA = 1;
+    static final byte FORWARDS_TO = 2;
+
+    // from EndpointBuilder
+    static final byte ALLOW_CIDR = 3;
+    static final byte DENY_CIDR = 4;
+    static final byte PROXY_PROTO = 5;
+    static final byte TRAFFIC_POLICY = 6;
+
+    // from TcpBuilder
+    static final byte REMOTE_ADDR = 7;
+
+    // from TlsBuilder and HttpBuilder
+    static final byte DOMAIN = 8;
+    static final byte MUTUAL_TLS_CA = 9;
+    static final byte TERMINATION = 10;
+
+    // from HttpBuilder
+    static final byte SCHEME = 11;
+    static final byte COMPRESSION = 12;
+    static final byte WEBSOCKET_TCP_CONVERSION = 13;
+    static final byte CIRCUIT_BREAKER = 14;
+    static final byte REQUEST_HEADER = 15;
+    static final byte RESPONSE_HEADER = 16;
+    static final byte REMOVE_REQUEST_HEADER = 17;
+    static final byte REMOVE_RESPONSE_HEADER = 18;
+    static final byte BASIC_AUTH = 19;
+    static final byte WEBHOOK_VERIFICATION = 20;
+
+    // from Http.OAuth, the fields following OAUTH apply to it
+    static final byte OAUTH = 21;
+    static final byte OAUTH_CLIENT = 22;
+    static final byte OAUTH_ALLOW_EMAIL = 23;
+    static final byte OAUTH_ALLOW_DOMAIN = 24;
+    static final byte OAUTH_SCOPE = 25;
+
+    // from Http.OIDC, the fields following OIDC apply to it
+    static final byte OIDC = 26;
+    static final byte OIDC_ALLOW_EMAIL = 27;
+    static final byte OIDC_ALLOW_DOMAIN = 28;
+    static final byte OIDC_SCOPE = 29;
+
+    // from EdgeBuilder
+    static final byte LABEL = 30;
+
+    private byte[] buf;
+    private int size;
+
+    BuilderCodec() {
+        this.buf = new byte[256];
+    }
+
+    /**
+     * Creates a codec continuing an already encoded configuration.
+     */
+    BuilderCodec(ByteBuffer encoded) {
+        this.size = encoded.remaining();
+        this.buf = new byte[Math.max(256, size * 2)];
+        encoded.duplicate().get(buf, 0, size);
+    }
+
+    void flag(byte tag) {
+        ensure(1);
+        buf[size++] = tag;
+    }
+
+    void u8(byte tag, int value) {
+        flag(tag);
+        ensure(1);
+        buf[size++] = (byte) value;
+    }
+
+    void f64(byte tag, double value) {
+        flag(tag);
+        var bits = Double.doubleToLongBits(value);
+        ensure(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buf[size++] = (byte) (bits >>> shift);
+        }
+    }
+
+    void string(byte tag, String value) {
+        flag(tag);
+        value(value);
+    }
+
+    void strings(byte tag, String first, String second) {
+        flag(tag);
+        value(first);
+        value(second);
+    }
+
+    void strings(byte tag, String first, String second, String third) {
+        flag(tag);
+        value(first);
+        value(second);
+        value(third);
+    }
+
+    void bytes(byte tag, byte[] value) {
+        flag(tag);
+        value(value);
+    }
+
+    void bytes(byte tag, byte[] first, byte[] second) {
+        flag(tag);
+        value(first);
+        value(second);
+    }
+
+    private void value(String value) {
+        value(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void value(byte[] value) {
+        ensure(4 + value.length);
+        var len = value.length;
+        buf[size++] = (byte) (len >>> 24);
+        buf[size++] = (byte) (len >>> 16);
+        buf[size++] = (byte) (len >>> 8);
+        buf[size++] = (byte) len;
+        System.arraycopy(value, 0, buf, size, len);
+        size += len;
+    }
+
+    private void ensure(int more) {
+        if (size + more > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + more));
+        }
+    }
+
+    /**
+     * Returns the encoded configuration, in a direct buffer of exactly its size so the
+     * native library can read it in place. The buffer must not be modified.
+     */
+    ByteBuffer toBuffer() {
+        var encoded = ByteBuffer.allocateDirect(size);
+        encoded.put(buf, 0, size);
+        encoded.flip();
+        return encoded;
+    }
+}
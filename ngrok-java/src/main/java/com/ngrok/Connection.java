@@ -3,6 +3,7 @@ package com.ngrok;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
 
 /**
  * Represents a connection established over a listener.
@@ -18,6 +19,10 @@ public interface Connection extends AutoCloseable {
     /**
      * Creates an {@link InetSocketAddress} for this connection's remote address.
      *
+     * The default implementation parses {@link #getRemoteAddr()} on each call. Native
+     * connections return an address built once from the binary form of the remote
+     * address, without any parsing or name resolution.
+     *
      * @return {@link InetSocketAddress} representing the internet address
      */
     default InetSocketAddress inetAddress() {
@@ -46,6 +51,62 @@ public interface Connection extends AutoCloseable {
      */
     int write(ByteBuffer src) throws IOException;
 
+    /**
+     * Reads the next available bytes from this connection asynchronously. The buffer
+     * is handled as in {@link #read(ByteBuffer)}, and the handler receives the number
+     * of bytes read, or -1 if the end of the stream has been reached.
+     *
+     * The default implementation performs a blocking read on the common pool, as a
+     * managed block. Native connections complete the read from the native runtime
+     * instead, without blocking a Java thread. The handler may be invoked on a runtime
+     * thread and should hand off any long-running work.
+     *
+     * @param dst        the direct buffer to read bytes into
+     * @param attachment the object to attach to the operation, can be {@code null}
+     * @param handler    the handler for consuming the result
+     * @param <A>        the type of the attachment
+     */
+    default <A> void readAsync(ByteBuffer dst, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        Blocking.submit(() -> {
+            int sz;
+            try {
+                sz = read(dst);
+            } catch (Throwable th) {
+                handler.failed(th, attachment);
+                return;
+            }
+            handler.completed(sz, attachment);
+        });
+    }
+
+    /**
+     * Writes a sequence of bytes to this connection asynchronously. The buffer
+     * is handled as in {@link #write(ByteBuffer)}, and the handler receives
+     * the number of bytes written.
+     *
+     * The default implementation performs a blocking write on the common pool, as a
+     * managed block. Native connections complete the write from the native runtime
+     * instead, without blocking a Java thread. The handler may be invoked on a runtime
+     * thread and should hand off any long-running work.
+     *
+     * @param src        the direct buffer containing bytes to write
+     * @param attachment the object to attach to the operation, can be {@code null}
+     * @param handler    the handler for consuming the result
+     * @param <A>        the type of the attachment
+     */
+    default <A> void writeAsync(ByteBuffer src, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        Blocking.submit(() -> {
+            int sz;
+            try {
+                sz = write(src);
+            } catch (Throwable th) {
+                handler.failed(th, attachment);
+                return;
+            }
+            handler.completed(sz, attachment);
+        });
+    }
+
     /**
      * Closes this connection and releases any system resources associated with it.
      *
@@ -0,0 +1,53 @@
+package com.ngrok;
+
+import java.io.IOException;
+
+/**
+ * Signals that a connection failed with one of the common, expected errors, such
+ * as a reset by the remote peer or the loss of the session. These are raised on the
+ * data path of busy connections, so no stack trace is captured.
+ */
+public class ConnectionException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The connection was reset by the remote peer.
+     */
+    public static final int RESET = 1;
+
+    /**
+     * The connection was closed, locally or by the loss of its session.
+     */
+    public static final int CLOSED = 2;
+
+    private final int code;
+
+    /**
+     * Creates a new exception for the given error code.
+     *
+     * @param code the error code, one of {@link #RESET} or {@link #CLOSED}
+     */
+    public ConnectionException(int code) {
+        super(code == RESET ? "connection reset" : "connection closed");
+        this.code = code;
+    }
+
+    /**
+     * Returns the error code of this exception.
+     *
+     * @return the error code, one of {@link #RESET} or {@link #CLOSED}
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Does not capture a stack trace, the error code identifies the failure.
+     *
+     * @return this exception
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
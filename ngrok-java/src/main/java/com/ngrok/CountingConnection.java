@@ -0,0 +1,115 @@
+package com.ngrok;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A connection accepted by a {@link SessionPool} listener, counting itself and the
+ * bytes it transfers towards the session it arrived on, for placing new listeners.
+ */
+class CountingConnection implements Connection {
+    private final Connection conn;
+    private final SessionPool.Slot slot;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    CountingConnection(Connection conn, SessionPool.Slot slot) {
+        this.conn = conn;
+        this.slot = slot;
+        slot.connections.incrementAndGet();
+    }
+
+    @Override
+    public String getRemoteAddr() {
+        return conn.getRemoteAddr();
+    }
+
+    @Override
+    public InetSocketAddress inetAddress() {
+        return conn.inetAddress();
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        return count(conn.read(dst));
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        return count(conn.write(src));
+    }
+
+    @Override
+    public <A> void readAsync(ByteBuffer dst, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        conn.readAsync(dst, attachment, counting(handler));
+    }
+
+    @Override
+    public <A> void writeAsync(ByteBuffer src, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        conn.writeAsync(src, attachment, counting(handler));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed.compareAndSet(false, true)) {
+            slot.connections.decrementAndGet();
+        }
+        conn.close();
+    }
+
+    private int count(int sz) {
+        if (sz > 0) {
+            slot.bytes.addAndGet(sz);
+        }
+        return sz;
+    }
+
+    private <A> CompletionHandler<Integer, A> counting(CompletionHandler<Integer, ? super A> handler) {
+        return new CompletionHandler<>() {
+            @Override
+            public void completed(Integer sz, A attachment) {
+                handler.completed(count(sz), attachment);
+            }
+
+            @Override
+            public void failed(Throwable exc, A attachment) {
+                handler.failed(exc, attachment);
+            }
+        };
+    }
+
+    static class Endpoint extends CountingConnection implements Connection.Endpoint {
+        private final Connection.Endpoint endpoint;
+
+        Endpoint(Connection.Endpoint endpoint, SessionPool.Slot slot) {
+            super(endpoint, slot);
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public String getProto() {
+            return endpoint.getProto();
+        }
+    }
+
+    static class Edge extends CountingConnection implements Connection.Edge {
+        private final Connection.Edge edge;
+
+        Edge(Connection.Edge edge, SessionPool.Slot slot) {
+            super(edge, slot);
+            this.edge = edge;
+        }
+
+        @Override
+        public String getEdgeType() {
+            return edge.getEdgeType();
+        }
+
+        @Override
+        public boolean isPassthroughTls() {
+            return edge.isPassthroughTls();
+        }
+    }
+}
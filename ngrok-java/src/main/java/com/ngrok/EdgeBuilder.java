@@ -6,6 +6,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A builder for creating an edge listener
@@ -37,6 +38,7 @@ public class EdgeBuilder extends MetadataBuilder<EdgeBuilder>
      */
     public EdgeBuilder label(String key, String value) {
         labels.put(Objects.requireNonNull(key), Objects.requireNonNull(value));
+        changed();
         return this;
     }
 
@@ -49,6 +51,14 @@ public class EdgeBuilder extends MetadataBuilder<EdgeBuilder>
         return Collections.unmodifiableMap(labels);
     }
 
+    @Override
+    void encode(BuilderCodec codec) {
+        super.encode(codec);
+        for (var label : labels.entrySet()) {
+            codec.strings(BuilderCodec.LABEL, label.getKey(), label.getValue());
+        }
+    }
+
     @Override
     public Listener.Edge listen() throws IOException {
         return session.listenEdge(this);
@@ -58,4 +68,14 @@ public class EdgeBuilder extends MetadataBuilder<EdgeBuilder>
     public Forwarder.Edge forward(URL url) throws IOException {
         return session.forwardEdge(this, url);
     }
+
+    @Override
+    public CompletableFuture<Listener.Edge> listenAsync() {
+        return session.listenAsync(this);
+    }
+
+    @Override
+    public CompletableFuture<Forwarder.Edge> forwardAsync(URL url) {
+        return session.forwardAsync(this, url);
+    }
 }
@@ -1,6 +1,7 @@
 package com.ngrok;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -29,6 +30,7 @@ public abstract class EndpointBuilder<T extends EndpointBuilder<T>> extends Meta
      */
     public T allowCIDR(String allowCIDR) {
         this.allowCIDR.add(allowCIDR);
+        changed();
         return (T) this;
     }
 
@@ -45,6 +47,7 @@ public abstract class EndpointBuilder<T extends EndpointBuilder<T>> extends Meta
      */
     public T denyCIDR(String denyCIDR) {
         this.denyCIDR.add(denyCIDR);
+        changed();
         return (T) this;
     }
 
@@ -56,6 +59,7 @@ public abstract class EndpointBuilder<T extends EndpointBuilder<T>> extends Meta
      */
     public T proxyProto(ProxyProto proxyProto) {
         this.proxyProto = Objects.requireNonNull(proxyProto);
+        changed();
         return (T) this;
     }
 
@@ -67,6 +71,7 @@ public abstract class EndpointBuilder<T extends EndpointBuilder<T>> extends Meta
      */
     public T policy(final String policy) {
         this.trafficPolicy = Optional.ofNullable(policy);
+        changed();
         return (T) this;
     }
 
@@ -78,6 +83,7 @@ public abstract class EndpointBuilder<T extends EndpointBuilder<T>> extends Meta
      */
     public T trafficPolicy(final String trafficPolicy) {
         this.trafficPolicy = Optional.ofNullable(trafficPolicy);
+        changed();
         return (T) this;
     }
 
@@ -87,7 +93,7 @@ public abstract class EndpointBuilder<T extends EndpointBuilder<T>> extends Meta
      * @return the currently set allow CIDR addresses
      */
     public List<String> getAllowCIDR() {
-        return allowCIDR;
+        return Collections.unmodifiableList(allowCIDR);
     }
 
     /**
@@ -96,7 +102,7 @@ public abstract class EndpointBuilder<T extends EndpointBuilder<T>> extends Meta
      * @return the currently set deny CIDR addresses
      */
     public List<String> getDenyCIDR() {
-        return denyCIDR;
+        return Collections.unmodifiableList(denyCIDR);
     }
 
     /**
@@ -134,4 +140,17 @@ public abstract class EndpointBuilder<T extends EndpointBuilder<T>> extends Meta
     public Optional<String> getTrafficPolicy() {
         return this.trafficPolicy;
     }
+
+    @Override
+    void encode(BuilderCodec codec) {
+        super.encode(codec);
+        for (var cidr : allowCIDR) {
+            codec.string(BuilderCodec.ALLOW_CIDR, cidr);
+        }
+        for (var cidr : denyCIDR) {
+            codec.string(BuilderCodec.DENY_CIDR, cidr);
+        }
+        codec.u8(BuilderCodec.PROXY_PROTO, (int) proxyProto.version());
+        trafficPolicy.ifPresent(value -> codec.string(BuilderCodec.TRAFFIC_POLICY, value));
+    }
 }
@@ -2,6 +2,7 @@ package com.ngrok;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Forwarder is a type of listener which automatically forwards the
@@ -38,6 +39,20 @@ public interface Forwarder extends ListenerInfo, AutoCloseable {
          * @throws IOException if an I/O error occurs
          */
         F forward(URL url) throws IOException;
+
+        /**
+         * Starts listening and forwarding connections to given url asynchronously.
+         *
+         * The default implementation performs a blocking forward on the common pool.
+         * Builders associated with a native session complete the future from the
+         * native runtime instead.
+         *
+         * @param url to forward connections to
+         * @return a future completed with the concrete {@link Forwarder} instance
+         */
+        default CompletableFuture<F> forwardAsync(URL url) {
+            return Blocking.async(() -> forward(url));
+        }
     }
 
     /**
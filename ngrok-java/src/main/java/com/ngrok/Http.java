@@ -232,6 +232,22 @@ public interface Http {
         public List<String> getScopes() {
             return scopes;
         }
+
+        void encode(BuilderCodec codec) {
+            codec.string(BuilderCodec.OAUTH, provider);
+            if (hasClientConfigured()) {
+                codec.strings(BuilderCodec.OAUTH_CLIENT, clientId, clientSecret);
+            }
+            for (var email : allowEmails) {
+                codec.string(BuilderCodec.OAUTH_ALLOW_EMAIL, email);
+            }
+            for (var domain : allowDomains) {
+                codec.string(BuilderCodec.OAUTH_ALLOW_DOMAIN, domain);
+            }
+            for (var scope : scopes) {
+                codec.string(BuilderCodec.OAUTH_SCOPE, scope);
+            }
+        }
     }
 
     /**
@@ -348,6 +364,19 @@ public interface Http {
         public List<String> getScope() {
             return scopes;
         }
+
+        void encode(BuilderCodec codec) {
+            codec.strings(BuilderCodec.OIDC, issuerUrl, clientId, clientSecret);
+            for (var email : allowEmails) {
+                codec.string(BuilderCodec.OIDC_ALLOW_EMAIL, email);
+            }
+            for (var domain : allowDomains) {
+                codec.string(BuilderCodec.OIDC_ALLOW_DOMAIN, domain);
+            }
+            for (var scope : scopes) {
+                codec.string(BuilderCodec.OIDC_SCOPE, scope);
+            }
+        }
     }
 
     /**
@@ -2,10 +2,13 @@ package com.ngrok;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A builder for creating a HTTP endpoint listener
@@ -49,6 +52,7 @@ public class HttpBuilder extends EndpointBuilder<HttpBuilder>
      */
     public HttpBuilder scheme(Http.Scheme scheme) {
         this.scheme = Objects.requireNonNull(scheme);
+        changed();
         return this;
     }
 
@@ -63,6 +67,7 @@ public class HttpBuilder extends EndpointBuilder<HttpBuilder>
      */
     public HttpBuilder domain(String domain) {
         this.domain = Optional.of(domain);
+        changed();
         return this;
     }
 
@@ -77,6 +82,7 @@ public class HttpBuilder extends EndpointBuilder<HttpBuilder>
      */
     public HttpBuilder mutualTLSCA(byte[] mutualTLSCA) {
         this.mutualTLSCA = Objects.requireNonNull(mutualTLSCA);
+        changed();
         return this;
     }
 
@@ -90,6 +96,7 @@ public class HttpBuilder extends EndpointBuilder<HttpBuilder>
      */
     public HttpBuilder compression() {
         this.compression = true;
+        changed();
         return this;
     }
 
@@ -103,6 +110,7 @@ public class HttpBuilder extends EndpointBuilder<HttpBuilder>
      */
     public HttpBuilder websocketTcpConversion() {
         this.websocketTcpConversion = true;
+        changed();
         return this;
     }
 
@@ -118,6 +126,7 @@ public class HttpBuilder extends EndpointBuilder<HttpBuilder>
      */
     public HttpBuilder circuitBreaker(double value) {
         this.circuitBreaker = Optional.of(value);
+        changed();
         return this;
     }
 
@@ -133,6 +142,7 @@ public class HttpBuilder extends EndpointBuilder<HttpBuilder>
      */
     public HttpBuilder addRequestHeader(String name, String value) {
         this.requestHeaders.add(new Http.Header(name, value));
+        changed();
         return this;
     }
 
@@ -148,6 +158,7 @@ public class HttpBuilder extends EndpointBuilder<HttpBuilder>
      */
     public HttpBuilder addResponseHeader(String name, String value) {
         this.responseHeaders.add(new Http.Header(name, value));
+        changed();
         return this;
     }
 
@@ -162,6 +173,7 @@ public class HttpBuilder extends EndpointBuilder<HttpBuilder>
      */
     public HttpBuilder removeRequestHeader(String name) {
         this.removeRequestHeaders.add(Objects.requireNonNull(name));
+        changed();
         return this;
     }
 
@@ -176,6 +188,7 @@ public class HttpBuilder extends EndpointBuilder<HttpBuilder>
      */
     public HttpBuilder removeResponseHeader(String name) {
         this.removeResponseHeaders.add(Objects.requireNonNull(name));
+        changed();
         return this;
     }
 
@@ -190,6 +203,7 @@ public class HttpBuilder extends EndpointBuilder<HttpBuilder>
      */
     public HttpBuilder basicAuthOptions(Http.BasicAuth options) {
         this.basicAuthOptions = options;
+        changed();
         return this;
     }
 
@@ -204,6 +218,7 @@ public class HttpBuilder extends EndpointBuilder<HttpBuilder>
      */
     public HttpBuilder oauthOptions(Http.OAuth options) {
         this.oauthOptions = options;
+        changed();
         return this;
     }
 
@@ -218,6 +233,7 @@ public class HttpBuilder extends EndpointBuilder<HttpBuilder>
      */
     public HttpBuilder oidcOptions(Http.OIDC options) {
         this.oidcOptions = options;
+        changed();
         return this;
     }
 
@@ -232,6 +248,7 @@ public class HttpBuilder extends EndpointBuilder<HttpBuilder>
      */
     public HttpBuilder webhookVerification(Http.WebhookVerification webhookVerification) {
         this.webhookVerification = webhookVerification;
+        changed();
         return this;
     }
 
@@ -304,7 +321,7 @@ public class HttpBuilder extends EndpointBuilder<HttpBuilder>
      * @return the list of headers
      */
     public List<Http.Header> getRequestHeaders() {
-        return requestHeaders;
+        return Collections.unmodifiableList(requestHeaders);
     }
 
     /**
@@ -313,7 +330,7 @@ public class HttpBuilder extends EndpointBuilder<HttpBuilder>
      * @return the list of headers
      */
     public List<Http.Header> getResponseHeaders() {
-        return responseHeaders;
+        return Collections.unmodifiableList(responseHeaders);
     }
 
     /**
@@ -322,7 +339,7 @@ public class HttpBuilder extends EndpointBuilder<HttpBuilder>
      * @return the list of headers
      */
     public List<String> getRemoveRequestHeaders() {
-        return removeRequestHeaders;
+        return Collections.unmodifiableList(removeRequestHeaders);
     }
 
     /**
@@ -331,7 +348,7 @@ public class HttpBuilder extends EndpointBuilder<HttpBuilder>
      * @return the list of headers
      */
     public List<String> getRemoveResponseHeaders() {
-        return removeResponseHeaders;
+        return Collections.unmodifiableList(removeResponseHeaders);
     }
 
     /**
@@ -370,6 +387,59 @@ public class HttpBuilder extends EndpointBuilder<HttpBuilder>
         return webhookVerification;
     }
 
+    @Override
+    ByteBuffer encoded() {
+        var encoded = super.encoded();
+        if (oauthOptions == null && oidcOptions == null) {
+            return encoded;
+        }
+
+        // the options can change without the builder knowing, so they are encoded on every bind
+        var codec = new BuilderCodec(encoded);
+        if (oauthOptions != null) {
+            oauthOptions.encode(codec);
+        }
+        if (oidcOptions != null) {
+            oidcOptions.encode(codec);
+        }
+        return codec.toBuffer();
+    }
+
+    @Override
+    void encode(BuilderCodec codec) {
+        super.encode(codec);
+        getSchemeName().ifPresent(value -> codec.string(BuilderCodec.SCHEME, value));
+        domain.ifPresent(value -> codec.string(BuilderCodec.DOMAIN, value));
+        if (mutualTLSCA != null) {
+            codec.bytes(BuilderCodec.MUTUAL_TLS_CA, mutualTLSCA);
+        }
+        if (compression) {
+            codec.flag(BuilderCodec.COMPRESSION);
+        }
+        if (websocketTcpConversion) {
+            codec.flag(BuilderCodec.WEBSOCKET_TCP_CONVERSION);
+        }
+        circuitBreaker.ifPresent(value -> codec.f64(BuilderCodec.CIRCUIT_BREAKER, value));
+        for (var header : requestHeaders) {
+            codec.strings(BuilderCodec.REQUEST_HEADER, header.getName(), header.getValue());
+        }
+        for (var header : responseHeaders) {
+            codec.strings(BuilderCodec.RESPONSE_HEADER, header.getName(), header.getValue());
+        }
+        for (var name : removeRequestHeaders) {
+            codec.string(BuilderCodec.REMOVE_REQUEST_HEADER, name);
+        }
+        for (var name : removeResponseHeaders) {
+            codec.string(BuilderCodec.REMOVE_RESPONSE_HEADER, name);
+        }
+        if (basicAuthOptions != null) {
+            codec.strings(BuilderCodec.BASIC_AUTH, basicAuthOptions.getUsername(), basicAuthOptions.getPassword());
+        }
+        if (webhookVerification != null) {
+            codec.strings(BuilderCodec.WEBHOOK_VERIFICATION, webhookVerification.getProvider(), webhookVerification.getSecret());
+        }
+    }
+
     @Override
     public Listener.Endpoint listen() throws IOException {
         return session.listenHttp(this);
@@ -379,4 +449,14 @@ public class HttpBuilder extends EndpointBuilder<HttpBuilder>
     public Forwarder.Endpoint forward(URL url) throws IOException {
         return session.forwardHttp(this, url);
     }
+
+    @Override
+    public CompletableFuture<Listener.Endpoint> listenAsync() {
+        return session.listenAsync(this);
+    }
+
+    @Override
+    public CompletableFuture<Forwarder.Endpoint> forwardAsync(URL url) {
+        return session.forwardAsync(this, url);
+    }
 }
@@ -1,6 +1,8 @@
 package com.ngrok;
 
 import java.io.IOException;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Listener enables applications to handle incoming traffic proxied by ngrok. Each
@@ -18,6 +20,31 @@ public interface Listener<C extends Connection> extends ListenerInfo, AutoClosea
      */
     C accept() throws IOException;
 
+    /**
+     * Waits for the next connection asynchronously and passes it to the handler.
+     *
+     * The default implementation performs a blocking accept on the common pool, as a
+     * managed block. Native listeners complete the accept from the native runtime
+     * instead, without blocking a Java thread. The handler may be invoked on a runtime
+     * thread and should hand off any long-running work.
+     *
+     * @param attachment the object to attach to the operation, can be {@code null}
+     * @param handler    the handler for consuming the result
+     * @param <A>        the type of the attachment
+     */
+    default <A> void acceptAsync(A attachment, CompletionHandler<? super C, ? super A> handler) {
+        Blocking.submit(() -> {
+            C conn;
+            try {
+                conn = accept();
+            } catch (Throwable th) {
+                handler.failed(th, attachment);
+                return;
+            }
+            handler.completed(conn, attachment);
+        });
+    }
+
     /**
      * Closes this {@link Listener}.
      *
@@ -39,6 +66,20 @@ public interface Listener<C extends Connection> extends ListenerInfo, AutoClosea
          * @throws IOException if an I/O error occurs
          */
         L listen() throws IOException;
+
+        /**
+         * Starts listening asynchronously.
+         *
+         * The default implementation performs a blocking listen on the common pool.
+         * Builders associated with a native session complete the future from the
+         * native runtime instead, so many binds can be in flight at once without
+         * blocking a Java thread each.
+         *
+         * @return a future completed with the concrete {@link Listener} instance
+         */
+        default CompletableFuture<L> listenAsync() {
+            return Blocking.async(() -> listen());
+        }
     }
 
     /**
@@ -1,6 +1,7 @@
 package com.ngrok;
 
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.Optional;
 
 /**
@@ -12,6 +13,8 @@ public abstract class MetadataBuilder<T extends MetadataBuilder> {
     private Optional<String> metadata = Optional.empty();
     private Optional<String> forwardsTo = Optional.empty();
 
+    private volatile ByteBuffer encoded;
+
     /**
      * Sets the metadata for this endpoint.
      *
@@ -20,6 +23,7 @@ public abstract class MetadataBuilder<T extends MetadataBuilder> {
      */
     public T metadata(String metadata) {
         this.metadata = Optional.of(metadata);
+        changed();
         return (T) this;
     }
 
@@ -38,6 +42,7 @@ public abstract class MetadataBuilder<T extends MetadataBuilder> {
      */
     public T forwardsTo(String forwardsTo) {
         this.forwardsTo = Optional.of(forwardsTo);
+        changed();
         return (T) this;
     }
 
@@ -58,4 +63,38 @@ public abstract class MetadataBuilder<T extends MetadataBuilder> {
     public Optional<String> getForwardsTo() {
         return forwardsTo;
     }
+
+    /**
+     * Returns the configuration of this builder encoded by {@link BuilderCodec}, for
+     * the native library to read in a single pass. The encoded form is kept until a
+     * setter is called, so repeated binds from the same builder encode it only once.
+     *
+     * @return the encoded configuration, which must not be modified
+     */
+    ByteBuffer encoded() {
+        var buf = encoded;
+        if (buf == null) {
+            var codec = new BuilderCodec();
+            encode(codec);
+            encoded = buf = codec.toBuffer();
+        }
+        return buf;
+    }
+
+    /**
+     * Encodes the fields of this builder, subclasses add their own.
+     *
+     * @param codec the codec to encode into
+     */
+    void encode(BuilderCodec codec) {
+        metadata.ifPresent(value -> codec.string(BuilderCodec.METADATA, value));
+        forwardsTo.ifPresent(value -> codec.string(BuilderCodec.FORWARDS_TO, value));
+    }
+
+    /**
+     * Drops the encoded configuration, every setter calls this.
+     */
+    void changed() {
+        encoded = null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+package com.ngrok;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A forwarder of a {@link SessionPool}, bound on one of the pooled sessions. Unlike
+ * listeners, forwarders stay on their session, the pool only tracks them until they
+ * close so that it can release the session of a failed slot kept for them.
+ *
+ * @param <F> the type of the underlying forwarder
+ */
+abstract class PooledForwarder<F extends Forwarder> implements Forwarder {
+    private final SessionPool.Slot slot;
+    private final F forwarder;
+
+    PooledForwarder(PooledListener.Binder<F> binder, SessionPool.Slot slot) throws IOException {
+        this.slot = slot;
+        this.forwarder = binder.bind(slot.session);
+    }
+
+    F forwarder() {
+        return forwarder;
+    }
+
+    SessionPool.Slot slot() {
+        return slot;
+    }
+
+    @Override
+    public String getId() {
+        return forwarder.getId();
+    }
+
+    @Override
+    public String getMetadata() {
+        return forwarder.getMetadata();
+    }
+
+    @Override
+    public String getForwardsTo() {
+        return forwarder.getForwardsTo();
+    }
+
+    @Override
+    public void join() throws IOException {
+        try {
+            forwarder.join();
+        } finally {
+            slot.forwarderClosed(getId());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            forwarder.close();
+        } finally {
+            slot.forwarderClosed(getId());
+        }
+    }
+
+    static class Endpoint extends PooledForwarder<Forwarder.Endpoint> implements Forwarder.Endpoint {
+        Endpoint(PooledListener.Binder<Forwarder.Endpoint> binder, SessionPool.Slot slot) throws IOException {
+            super(binder, slot);
+        }
+
+        @Override
+        public String getProto() {
+            return forwarder().getProto();
+        }
+
+        @Override
+        public String getUrl() {
+            return forwarder().getUrl();
+        }
+    }
+
+    static class Edge extends PooledForwarder<Forwarder.Edge> implements Forwarder.Edge {
+        Edge(PooledListener.Binder<Forwarder.Edge> binder, SessionPool.Slot slot) throws IOException {
+            super(binder, slot);
+        }
+
+        @Override
+        public Map<String, String> getLabels() {
+            return forwarder().getLabels();
+        }
+    }
+}
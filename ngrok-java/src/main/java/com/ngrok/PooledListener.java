@@ -0,0 +1,356 @@
+package com.ngrok;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A listener of a {@link SessionPool}, bound on one of the pooled sessions and bound
+ * again on another when that session fails. Accepts waiting on the old listener
+ * carry on with the new one. A listener released from a failed session that could
+ * not be bound again is stranded, and its accepts wait until the pool binds it on
+ * another session or closes.
+ *
+ * @param <C> the type of {@link Connection}s this listener accepts
+ * @param <L> the type of the underlying listener
+ */
+abstract class PooledListener<C extends Connection, L extends Listener<C>> implements Listener<C> {
+    /**
+     * Binds the listener on a session.
+     *
+     * @param <L> the type of the listener
+     */
+    interface Binder<L> {
+        L bind(Session session) throws IOException;
+    }
+
+    private final Binder<L> binder;
+    private volatile Bound<L> bound;
+    private volatile boolean closed;
+    private volatile boolean stranded;
+
+    private final Object moveLock = new Object();
+    private boolean moving;
+    private final List<Runnable> afterMove = new ArrayList<>();
+
+    PooledListener(Binder<L> binder, SessionPool.Slot slot) throws IOException {
+        this.binder = binder;
+        this.bound = new Bound<>(slot, binder.bind(slot.session));
+        slot.listeners.add(this);
+    }
+
+    /**
+     * Wraps an accepted connection to count it towards its session.
+     */
+    abstract C wrap(C conn, SessionPool.Slot slot);
+
+    L listener() {
+        return bound.listener;
+    }
+
+    SessionPool.Slot slot() {
+        return bound.slot;
+    }
+
+    /**
+     * Returns whether the listener was released from a failed session without being
+     * bound again. Its accepts wait until the pool binds it on another session with
+     * {@link #rebind(SessionPool.Slot)}, or until the pool closes.
+     */
+    boolean isStranded() {
+        return stranded;
+    }
+
+    /**
+     * Binds this listener on the session of the given slot and closes the current one.
+     *
+     * A reserved domain, TCP address or edge can only be bound once, and the service
+     * rejects a second bind while the old listener still holds it. Listeners of a
+     * failing session are therefore released before binding on the new one. Listeners
+     * of a healthy session are bound on the new one first, so that ephemeral endpoints
+     * move without a gap, and released and bound again if that is rejected. If binding
+     * after the release fails, the listener is bound again on its own session if that
+     * session is still healthy, and is stranded otherwise.
+     *
+     * @param target the slot to move to
+     * @throws IOException if binding on the new session fails, the listener then stays
+     *                     on its own session, or is stranded if it could not be bound
+     *                     there again
+     */
+    synchronized void moveTo(SessionPool.Slot target) throws IOException {
+        if (closed || stranded) {
+            return;
+        }
+        var old = bound;
+        IOException rejected = null;
+        if (old.slot.healthy) {
+            try {
+                bound = new Bound<>(target, binder.bind(target.session));
+            } catch (IOException e) {
+                rejected = e;
+            }
+        }
+        if (bound == old) {
+            rebindReleased(old, target, rejected);
+        } else {
+            closeQuietly(old.listener);
+        }
+        old.slot.listeners.remove(this);
+        target.listeners.add(this);
+    }
+
+    /**
+     * Releases the old listener and binds on the target session, falling back to the
+     * old session if it is still healthy. Accepts failing in the meantime wait for
+     * the outcome instead of reporting the release.
+     */
+    private void rebindReleased(Bound<L> old, SessionPool.Slot target, IOException rejected) throws IOException {
+        synchronized (moveLock) {
+            moving = true;
+        }
+        closeQuietly(old.listener);
+        try {
+            bound = new Bound<>(target, binder.bind(target.session));
+        } catch (IOException e) {
+            if (rejected != null) {
+                e.addSuppressed(rejected);
+            }
+            if (old.slot.healthy) {
+                try {
+                    bound = new Bound<>(old.slot, binder.bind(old.slot.session));
+                } catch (IOException restore) {
+                    e.addSuppressed(restore);
+                }
+            }
+            if (bound == old) {
+                // the accepts keep waiting until the pool binds the listener elsewhere
+                stranded = true;
+                old.slot.listeners.remove(this);
+            } else {
+                moved();
+            }
+            throw e;
+        }
+        moved();
+    }
+
+    /**
+     * Releases the listener from the failed session of its slot, which is about to be
+     * closed, leaving it stranded.
+     *
+     * @return false if the listener is closed or already stranded
+     */
+    synchronized boolean release() {
+        if (closed || stranded) {
+            return false;
+        }
+        synchronized (moveLock) {
+            moving = true;
+        }
+        stranded = true;
+        bound.slot.listeners.remove(this);
+        closeQuietly(bound.listener);
+        return true;
+    }
+
+    /**
+     * Binds a stranded listener on the session of the given slot. Does nothing if the
+     * listener is no longer stranded.
+     *
+     * @param target the slot to bind on
+     * @throws IOException if binding fails, the listener then stays stranded
+     */
+    synchronized void rebind(SessionPool.Slot target) throws IOException {
+        if (closed || !stranded) {
+            return;
+        }
+        bound = new Bound<>(target, binder.bind(target.session));
+        stranded = false;
+        target.listeners.add(this);
+        moved();
+    }
+
+    /**
+     * Gives up on a stranded listener once the pool has closed, failing its accepts.
+     */
+    synchronized void abandon() {
+        closed = true;
+        if (stranded) {
+            stranded = false;
+            moved();
+        }
+    }
+
+    /**
+     * Ends a move, waking the accepts that waited for it.
+     */
+    private void moved() {
+        List<Runnable> waiting;
+        synchronized (moveLock) {
+            moving = false;
+            moveLock.notifyAll();
+            waiting = new ArrayList<>(afterMove);
+            afterMove.clear();
+        }
+        waiting.forEach(Runnable::run);
+    }
+
+    private void closeQuietly(L listener) {
+        try {
+            listener.close();
+        } catch (IOException ignored) {
+            // the session is failing, the listener goes away with it
+        }
+    }
+
+    /**
+     * Waits until a move that released the old listener has bound the new one, or the
+     * listener has closed.
+     */
+    private void awaitMove() throws IOException {
+        synchronized (moveLock) {
+            while (moving) {
+                try {
+                    moveLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while the listener was moving");
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the given action once a move that released the old listener is done.
+     *
+     * @return false if no such move is in progress, and the action was not deferred
+     */
+    private boolean deferUntilMoved(Runnable action) {
+        synchronized (moveLock) {
+            if (!moving) {
+                return false;
+            }
+            afterMove.add(action);
+            return true;
+        }
+    }
+
+    @Override
+    public C accept() throws IOException {
+        for (;;) {
+            var current = bound;
+            try {
+                return wrap(current.listener.accept(), current.slot);
+            } catch (IOException e) {
+                awaitMove();
+                if (closed || bound == current) {
+                    throw e;
+                }
+                // moved while waiting, accept on the new listener instead
+            }
+        }
+    }
+
+    @Override
+    public <A> void acceptAsync(A attachment, CompletionHandler<? super C, ? super A> handler) {
+        var current = bound;
+        current.listener.acceptAsync(attachment, new CompletionHandler<C, A>() {
+            @Override
+            public void completed(C conn, A attachment) {
+                handler.completed(wrap(conn, current.slot), attachment);
+            }
+
+            @Override
+            public void failed(Throwable exc, A attachment) {
+                // never wait here, this runs on a runtime thread the move may need
+                if (deferUntilMoved(() -> failed(exc, attachment))) {
+                    return;
+                }
+                if (closed || bound == current) {
+                    handler.failed(exc, attachment);
+                } else {
+                    acceptAsync(attachment, handler);
+                }
+            }
+        });
+    }
+
+    @Override
+    public String getId() {
+        return bound.listener.getId();
+    }
+
+    @Override
+    public String getMetadata() {
+        return bound.listener.getMetadata();
+    }
+
+    @Override
+    public String getForwardsTo() {
+        return bound.listener.getForwardsTo();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        var current = bound;
+        current.slot.listeners.remove(this);
+        if (stranded) {
+            // the listener was closed when it was released
+            stranded = false;
+            moved();
+            return;
+        }
+        current.listener.close();
+    }
+
+    private static class Bound<L> {
+        final SessionPool.Slot slot;
+        final L listener;
+
+        Bound(SessionPool.Slot slot, L listener) {
+            this.slot = slot;
+            this.listener = listener;
+        }
+    }
+
+    static class Endpoint extends PooledListener<Connection.Endpoint, Listener.Endpoint> implements Listener.Endpoint {
+        Endpoint(Binder<Listener.Endpoint> binder, SessionPool.Slot slot) throws IOException {
+            super(binder, slot);
+        }
+
+        @Override
+        Connection.Endpoint wrap(Connection.Endpoint conn, SessionPool.Slot slot) {
+            return new CountingConnection.Endpoint(conn, slot);
+        }
+
+        @Override
+        public String getProto() {
+            return listener().getProto();
+        }
+
+        @Override
+        public String getUrl() {
+            return listener().getUrl();
+        }
+    }
+
+    static class Edge extends PooledListener<Connection.Edge, Listener.Edge> implements Listener.Edge {
+        Edge(Binder<Listener.Edge> binder, SessionPool.Slot slot) throws IOException {
+            super(binder, slot);
+        }
+
+        @Override
+        Connection.Edge wrap(Connection.Edge conn, SessionPool.Slot slot) {
+            return new CountingConnection.Edge(conn, slot);
+        }
+
+        @Override
+        public Map<String, String> getLabels() {
+            return listener().getLabels();
+        }
+    }
+}
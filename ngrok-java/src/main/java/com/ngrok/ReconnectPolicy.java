@@ -0,0 +1,146 @@
+package com.ngrok;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * How a session reconnects to the ngrok service after losing its connection. The
+ * delay before each attempt grows exponentially from the initial delay up to the
+ * maximum delay, and is shortened by a random share of up to the jitter, so that
+ * many agents losing their connection at once do not reconnect in lockstep:
+ *
+ * <pre>
+ * var policy = ReconnectPolicy.exponentialBackoff(Duration.ofMillis(200), Duration.ofSeconds(30))
+ *         .withJitter(0.5)
+ *         .withConnectTimeout(Duration.ofSeconds(10));
+ * var session = Session.withAuthtokenFromEnv().reconnectPolicy(policy).connect();
+ * </pre>
+ *
+ * A policy is immutable, each {@code with} method returns a changed copy.
+ *
+ * @see Session.Builder#reconnectPolicy(ReconnectPolicy)
+ */
+public final class ReconnectPolicy {
+    private final Duration initialDelay;
+    private final Duration maxDelay;
+    private final double multiplier;
+    private final double jitter;
+    private final Optional<Duration> connectTimeout;
+
+    private ReconnectPolicy(Duration initialDelay, Duration maxDelay, double multiplier, double jitter,
+            Optional<Duration> connectTimeout) {
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Creates a policy doubling the delay after each failed attempt, without jitter
+     * or connect timeout.
+     *
+     * @param initialDelay the delay before the first reconnect attempt
+     * @param maxDelay     the longest delay between attempts
+     * @return the policy
+     */
+    public static ReconnectPolicy exponentialBackoff(Duration initialDelay, Duration maxDelay) {
+        Objects.requireNonNull(initialDelay);
+        Objects.requireNonNull(maxDelay);
+        if (initialDelay.isNegative()) {
+            throw new IllegalArgumentException("initial delay must not be negative");
+        }
+        if (maxDelay.compareTo(initialDelay) < 0) {
+            throw new IllegalArgumentException("max delay must not be shorter than the initial delay");
+        }
+        return new ReconnectPolicy(initialDelay, maxDelay, 2, 0, Optional.empty());
+    }
+
+    /**
+     * Returns a copy of this policy growing the delay by the given factor after each
+     * failed attempt.
+     *
+     * @param multiplier the growth factor, at least 1
+     * @return the changed policy
+     */
+    public ReconnectPolicy withMultiplier(double multiplier) {
+        if (!(multiplier >= 1)) {
+            throw new IllegalArgumentException("multiplier must be at least 1");
+        }
+        return new ReconnectPolicy(initialDelay, maxDelay, multiplier, jitter, connectTimeout);
+    }
+
+    /**
+     * Returns a copy of this policy shortening each delay by a random share of up to
+     * the given jitter.
+     *
+     * @param jitter the largest share of a delay to take off, between 0 and 1
+     * @return the changed policy
+     */
+    public ReconnectPolicy withJitter(double jitter) {
+        if (!(jitter >= 0 && jitter <= 1)) {
+            throw new IllegalArgumentException("jitter must be between 0 and 1");
+        }
+        return new ReconnectPolicy(initialDelay, maxDelay, multiplier, jitter, connectTimeout);
+    }
+
+    /**
+     * Returns a copy of this policy giving up on a connection attempt that has not
+     * completed its TCP connect and TLS handshake within the given timeout.
+     *
+     * @param timeout the connect timeout
+     * @return the changed policy
+     */
+    public ReconnectPolicy withConnectTimeout(Duration timeout) {
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("connect timeout must be positive");
+        }
+        return new ReconnectPolicy(initialDelay, maxDelay, multiplier, jitter, Optional.of(timeout));
+    }
+
+    /**
+     * Returns the delay before the first reconnect attempt.
+     *
+     * @return the initial delay
+     */
+    public Duration getInitialDelay() {
+        return initialDelay;
+    }
+
+    /**
+     * Returns the longest delay between reconnect attempts.
+     *
+     * @return the max delay
+     */
+    public Duration getMaxDelay() {
+        return maxDelay;
+    }
+
+    /**
+     * Returns the factor the delay grows by after each failed attempt.
+     *
+     * @return the multiplier
+     */
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * Returns the largest share of a delay taken off at random.
+     *
+     * @return the jitter
+     */
+    public double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * Returns the timeout of a single connection attempt, if any.
+     *
+     * @return the connect timeout
+     */
+    public Optional<Duration> getConnectTimeout() {
+        return connectTimeout;
+    }
+}
@@ -5,9 +5,11 @@ import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A session with the ngrok service.
@@ -41,6 +43,9 @@ public interface Session extends AutoCloseable {
      * @throws IOException if an I/O error occurs
      */
     static Session connect(Builder builder) throws IOException {
+        if (builder.isWarmStandby()) {
+            return SessionPool.connect(builder, 2, SessionPool.Placement.PRIMARY);
+        }
         try {
             var clazz = Class.forName("com.ngrok.NativeSession");
             var method = clazz.getMethod("connect", Builder.class);
@@ -56,6 +61,50 @@ public interface Session extends AutoCloseable {
         }
     }
 
+    /**
+     * Connects a session with specified {@link Builder} asynchronously. The returned
+     * future is completed from the native runtime once the session is established, so
+     * the caller can carry on with the rest of its startup in the meantime.
+     *
+     * @param builder the builder
+     * @return a future completed with the newly created session
+     */
+    @SuppressWarnings("unchecked")
+    static CompletableFuture<Session> connectAsync(Builder builder) {
+        if (builder.isWarmStandby()) {
+            return Blocking.async(() -> SessionPool.connect(builder, 2, SessionPool.Placement.PRIMARY));
+        }
+        try {
+            var clazz = Class.forName("com.ngrok.NativeSession");
+            var method = clazz.getMethod("connectAsync", Builder.class);
+            return (CompletableFuture<Session>) method.invoke(null, builder);
+        } catch (InvocationTargetException e) {
+            var cause = e.getCause();
+            return CompletableFuture.failedFuture(cause instanceof IOException ? cause : new RuntimeException(cause));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(new RuntimeException(e));
+        }
+    }
+
+    /**
+     * Returns how often connecting to the ngrok service offered an earlier TLS session
+     * for resumption. Sessions are offered from a cache in the native library, shared
+     * by all sessions in the process, for connects as well as reconnects.
+     *
+     * @return the current offer counts
+     */
+    static TlsResumptionStats tlsResumptionStats() {
+        try {
+            var clazz = Class.forName("com.ngrok.NativeSession");
+            var method = clazz.getMethod("tlsResumptionStats");
+            return (TlsResumptionStats) method.invoke(null);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Returns the ID of this session
      *
@@ -198,6 +247,104 @@ public interface Session extends AutoCloseable {
      */
     void closeForwarder(String forwarderId) throws IOException;
 
+    /**
+     * Configures and starts a listener asynchronously.
+     *
+     * The default implementation performs a blocking listen on the common pool.
+     * Native sessions start the bind on the native runtime and complete the future
+     * from there, without blocking a Java thread.
+     *
+     * @param builder the builder, associated with this session
+     * @param <L> the type of the listener
+     * @return a future completed with the running listener
+     */
+    default <L extends Listener<?>> CompletableFuture<L> listenAsync(Listener.Builder<L> builder) {
+        return Blocking.async(() -> builder.listen());
+    }
+
+    /**
+     * Configures and starts a forwarder asynchronously.
+     *
+     * The default implementation performs a blocking forward on the common pool.
+     * Native sessions start the bind on the native runtime and complete the future
+     * from there, without blocking a Java thread.
+     *
+     * @param builder the builder, associated with this session
+     * @param url the url to forward to
+     * @param <F> the type of the forwarder
+     * @return a future completed with the running forwarder
+     */
+    default <F extends Forwarder> CompletableFuture<F> forwardAsync(Forwarder.Builder<F> builder, URL url) {
+        return Blocking.async(() -> builder.forward(url));
+    }
+
+    /**
+     * Configures and starts a listener for each of the given builders. The listeners
+     * are bound concurrently, and a failing builder does not stop the others.
+     *
+     * @param builders the builders, associated with this session
+     * @param <L> the type of the listeners
+     * @return the result for each builder, in the same order
+     */
+    default <L extends Listener<?>> List<BatchResult<L>> listenAll(List<? extends Listener.Builder<? extends L>> builders) {
+        var futures = new ArrayList<CompletableFuture<? extends L>>(builders.size());
+        for (var builder : builders) {
+            futures.add(builder.listenAsync());
+        }
+        return Batch.join(futures);
+    }
+
+    /**
+     * Configures and starts a forwarder to the given url for each of the given builders.
+     * The forwarders are bound concurrently, and a failing builder does not stop the
+     * others.
+     *
+     * @param builders the builders, associated with this session
+     * @param url the url to forward to
+     * @param <F> the type of the forwarders
+     * @return the result for each builder, in the same order
+     */
+    default <F extends Forwarder> List<BatchResult<F>> forwardAll(List<? extends Forwarder.Builder<? extends F>> builders, URL url) {
+        Objects.requireNonNull(url);
+        var futures = new ArrayList<CompletableFuture<? extends F>>(builders.size());
+        for (var builder : builders) {
+            futures.add(builder.forwardAsync(url));
+        }
+        return Batch.join(futures);
+    }
+
+    /**
+     * Closes a listener by its ID asynchronously.
+     *
+     * The default implementation performs a blocking close on the common pool.
+     * Native sessions start the close on the native runtime and complete the future
+     * from there, without blocking a Java thread.
+     *
+     * @param listenerId the listener ID
+     * @return a future completed once the listener is closed
+     */
+    default CompletableFuture<Void> closeListenerAsync(String listenerId) {
+        return Blocking.async(() -> {
+            closeListener(listenerId);
+            return null;
+        });
+    }
+
+    /**
+     * Closes the listeners with the given IDs. The listeners are closed concurrently,
+     * and a failing ID does not stop the others.
+     *
+     * @param listenerIds the listener IDs
+     * @return the result for each ID, in iteration order
+     */
+    default List<BatchResult<Void>> closeListeners(Collection<String> listenerIds) {
+        var futures = new ArrayList<CompletableFuture<Void>>(listenerIds.size());
+        for (var id : listenerIds) {
+            futures.add(closeListenerAsync(id));
+        }
+        return Batch.join(futures);
+    }
+
     @Override
     void close() throws IOException;
 
@@ -229,6 +376,81 @@ public interface Session extends AutoCloseable {
         default void timeout() {}
     }
 
+    /**
+     * Provides a way to follow a session's connection to the ngrok service as it is
+     * lost and re-established. Events are delivered in order on a dedicated thread,
+     * not on the native runtime's, so a slow handler delays later events but not the
+     * session itself.
+     *
+     * @see Builder#reconnectPolicy(ReconnectPolicy)
+     */
+    interface LifecycleHandler {
+        /**
+         * Called when the session starts connecting for the first time.
+         *
+         * @param attempt the number of the attempt, starting at 1
+         */
+        default void connecting(int attempt) {}
+
+        /**
+         * Called when the connection to the ngrok service is established, on the first
+         * connect as well as after reconnecting.
+         *
+         * @param attempt    the number of the attempt that succeeded
+         * @param durationMs the time the TCP connect and TLS handshake took
+         */
+        default void connected(int attempt, long durationMs) {}
+
+        /**
+         * Called when the session lost its connection to the ngrok service.
+         *
+         * @param cause the reason the connection was lost
+         */
+        default void disconnected(String cause) {}
+
+        /**
+         * Called before each attempt to reconnect.
+         *
+         * @param attempt the number of the attempt, starting at 1 after each disconnect
+         * @param delayMs the time waited before the attempt, by the reconnect policy
+         * @param cause   the error of the previous attempt, or the reason the
+         *                connection was lost
+         */
+        default void reconnecting(int attempt, long delayMs, String cause) {}
+    }
+
+    /**
+     * Provides a way to follow a session with a warm standby as it fails over.
+     *
+     * @see Builder#warmStandby(boolean)
+     */
+    interface FailoverHandler {
+        /**
+         * Called when the primary session failed and its listeners moved to the standby,
+         * which is the primary session from now on.
+         *
+         * @param failedId  the ID of the failed session
+         * @param primaryId the ID of the new primary session
+         */
+        void failover(String failedId, String primaryId);
+
+        /**
+         * Called when a new standby session is connected in place of one that failed or
+         * was promoted.
+         *
+         * @param standbyId the ID of the new standby session
+         */
+        default void standbyConnected(String standbyId) {}
+
+        /**
+         * Called when connecting a new standby session fails. It is retried with a
+         * growing delay.
+         *
+         * @param error the reason connecting failed
+         */
+        default void standbyFailed(IOException error) {}
+    }
+
     /**
      * Represents additional information about the client. Use it to describe your application.
      *
@@ -297,12 +519,24 @@ public interface Session extends AutoCloseable {
         private Optional<String> serverAddr = Optional.empty();
         private byte[] caCert;
 
+        private List<String> tlsCipherSuites = List.of();
+        private List<String> tlsKeyExchangeGroups = List.of();
+        private Optional<String> tlsMinVersion = Optional.empty();
+        private byte[] tlsClientCertificate;
+        private byte[] tlsClientKey;
+
         private CommandHandler stopCallback;
         private CommandHandler restartCallback;
         private CommandHandler updateCallback;
 
         private HeartbeatHandler heartbeatHandler;
 
+        private ReconnectPolicy reconnectPolicy;
+        private LifecycleHandler lifecycleHandler;
+
+        private boolean warmStandby;
+        private FailoverHandler failoverHandler;
+
         private final List<ClientInfo> clientInfos = new ArrayList<>();
 
         private Builder(String authtoken) {
@@ -364,6 +598,64 @@ public interface Session extends AutoCloseable {
             return this;
         }
 
+        /**
+         * Sets the cipher suites for the connection to the ngrok service, in order of
+         * preference. Suites are named as by IANA, for example
+         * {@code TLS_CHACHA20_POLY1305_SHA256} or
+         * {@code TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384}. On machines without AES
+         * instructions, preferring ChaCha20-Poly1305 makes the session cheaper.
+         *
+         * The server certificate is verified against the {@link #caCert(byte[])} if one
+         * is set, or the CA of the ngrok service otherwise, as without these settings.
+         *
+         * @param suites the cipher suites, an empty list for the defaults
+         * @return the builder instance
+         */
+        public Builder tlsCipherSuites(List<String> suites) {
+            this.tlsCipherSuites = List.copyOf(suites);
+            return this;
+        }
+
+        /**
+         * Sets the key exchange groups for the connection to the ngrok service, in order
+         * of preference: {@code X25519}, {@code secp256r1} or {@code secp384r1}.
+         *
+         * @param groups the key exchange groups, an empty list for the defaults
+         * @return the builder instance
+         */
+        public Builder tlsKeyExchangeGroups(List<String> groups) {
+            this.tlsKeyExchangeGroups = List.copyOf(groups);
+            return this;
+        }
+
+        /**
+         * Sets the minimum TLS version for the connection to the ngrok service.
+         *
+         * @param version either {@code TLSv1.2} or {@code TLSv1.3}
+         * @return the builder instance
+         */
+        public Builder tlsMinVersion(String version) {
+            if (!"TLSv1.2".equals(version) && !"TLSv1.3".equals(version)) {
+                throw new IllegalArgumentException("unsupported TLS version: " + version);
+            }
+            this.tlsMinVersion = Optional.of(version);
+            return this;
+        }
+
+        /**
+         * Sets the client certificate to present to the ngrok service, for example to a
+         * proxy in between that requires one.
+         *
+         * @param certificateChain the certificate chain, PEM encoded
+         * @param privateKey the private key of the certificate, PEM encoded
+         * @return the builder instance
+         */
+        public Builder tlsClientCertificate(byte[] certificateChain, byte[] privateKey) {
+            this.tlsClientCertificate = Objects.requireNonNull(certificateChain);
+            this.tlsClientKey = Objects.requireNonNull(privateKey);
+            return this;
+        }
+
         /**
          * Sets the stop callback handler for this builder
          *
@@ -408,6 +700,58 @@ public interface Session extends AutoCloseable {
             return this;
         }
 
+        /**
+         * Sets the policy for reconnecting after the session loses its connection to
+         * the ngrok service. Without one, the native library's own retry schedule
+         * applies.
+         *
+         * @param policy the reconnect policy
+         * @return the builder instance
+         */
+        public Builder reconnectPolicy(ReconnectPolicy policy) {
+            this.reconnectPolicy = policy;
+            return this;
+        }
+
+        /**
+         * Sets the lifecycle handler for this builder
+         *
+         * @param lifecycleHandler the lifecycle callback
+         * @return the builder instance
+         */
+        public Builder lifecycleHandler(LifecycleHandler lifecycleHandler) {
+            this.lifecycleHandler = lifecycleHandler;
+            return this;
+        }
+
+        /**
+         * Sets whether to keep a second session connected and idle next to the primary
+         * one. When the primary session misses its heartbeats, its listeners are bound
+         * again on the standby at once, instead of waiting for it to reconnect, and a
+         * new standby is connected in the background. Listeners without a fixed domain,
+         * address or edge get a new URL when they move. Forwarders stay on the failed
+         * session.
+         *
+         * @param warmStandby whether to keep a standby session
+         * @return the builder instance
+         */
+        public Builder warmStandby(boolean warmStandby) {
+            this.warmStandby = warmStandby;
+            return this;
+        }
+
+        /**
+         * Sets the failover handler for this builder, which is only called with
+         * {@link #warmStandby(boolean)} enabled.
+         *
+         * @param failoverHandler the failover callback
+         * @return the builder instance
+         */
+        public Builder failoverHandler(FailoverHandler failoverHandler) {
+            this.failoverHandler = failoverHandler;
+            return this;
+        }
+
         /**
          * Adds a client info to the list of client info objects for this builder
          *
@@ -487,6 +831,51 @@ public interface Session extends AutoCloseable {
             return caCert;
         }
 
+        /**
+         * Returns the TLS cipher suites for this builder.
+         *
+         * @return the cipher suites
+         */
+        public List<String> getTlsCipherSuites() {
+            return tlsCipherSuites;
+        }
+
+        /**
+         * Returns the TLS key exchange groups for this builder.
+         *
+         * @return the key exchange groups
+         */
+        public List<String> getTlsKeyExchangeGroups() {
+            return tlsKeyExchangeGroups;
+        }
+
+        /**
+         * Returns the minimum TLS version for this builder.
+         *
+         * @return the minimum version
+         */
+        public Optional<String> getTlsMinVersion() {
+            return tlsMinVersion;
+        }
+
+        /**
+         * Returns the TLS client certificate chain for this builder.
+         *
+         * @return the certificate chain
+         */
+        public byte[] getTlsClientCertificate() {
+            return tlsClientCertificate;
+        }
+
+        /**
+         * Returns the private key of the TLS client certificate for this builder.
+         *
+         * @return the private key
+         */
+        public byte[] getTlsClientKey() {
+            return tlsClientKey;
+        }
+
         /**
          * Returns the stop callback handler for this builder.
          *
@@ -523,6 +912,42 @@ public interface Session extends AutoCloseable {
             return heartbeatHandler;
         }
 
+        /**
+         * Returns the reconnect policy for this builder.
+         *
+         * @return the reconnect policy
+         */
+        public ReconnectPolicy getReconnectPolicy() {
+            return reconnectPolicy;
+        }
+
+        /**
+         * Returns the lifecycle handler for this builder.
+         *
+         * @return the lifecycle handler
+         */
+        public LifecycleHandler lifecycleHandler() {
+            return lifecycleHandler;
+        }
+
+        /**
+         * Returns whether this builder keeps a warm standby session.
+         *
+         * @return whether to keep a standby session
+         */
+        public boolean isWarmStandby() {
+            return warmStandby;
+        }
+
+        /**
+         * Returns the failover handler for this builder.
+         *
+         * @return the failover handler
+         */
+        public FailoverHandler failoverHandler() {
+            return failoverHandler;
+        }
+
         /**
          * Returns the list of client info objects to add for this builder
          *
@@ -532,6 +957,34 @@ public interface Session extends AutoCloseable {
             return clientInfos;
         }
 
+        /**
+         * Returns a copy of this builder, for connecting several sessions with the same
+         * settings but their own handlers.
+         */
+        Builder copy() {
+            var copy = new Builder(authtoken);
+            copy.heartbeatInterval = heartbeatInterval;
+            copy.heartbeatTolerance = heartbeatTolerance;
+            copy.metadata = metadata;
+            copy.serverAddr = serverAddr;
+            copy.caCert = caCert;
+            copy.tlsCipherSuites = tlsCipherSuites;
+            copy.tlsKeyExchangeGroups = tlsKeyExchangeGroups;
+            copy.tlsMinVersion = tlsMinVersion;
+            copy.tlsClientCertificate = tlsClientCertificate;
+            copy.tlsClientKey = tlsClientKey;
+            copy.stopCallback = stopCallback;
+            copy.restartCallback = restartCallback;
+            copy.updateCallback = updateCallback;
+            copy.heartbeatHandler = heartbeatHandler;
+            copy.reconnectPolicy = reconnectPolicy;
+            copy.lifecycleHandler = lifecycleHandler;
+            copy.warmStandby = warmStandby;
+            copy.failoverHandler = failoverHandler;
+            copy.clientInfos.addAll(clientInfos);
+            return copy;
+        }
+
         /**
          * Connects a session with the current {@link Builder}
          *
@@ -541,5 +994,14 @@ public interface Session extends AutoCloseable {
         public Session connect() throws IOException {
             return Session.connect(this);
         }
+
+        /**
+         * Connects a session with the current {@link Builder} asynchronously
+         *
+         * @return a future completed with the newly created session
+         */
+        public CompletableFuture<Session> connectAsync() {
+            return Session.connectAsync(this);
+        }
     }
 }
\ No newline at end of file
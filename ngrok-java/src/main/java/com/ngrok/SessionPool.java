@@ -0,0 +1,825 @@
+package com.ngrok;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Session} spreading its listeners and forwarders across several sessions
+ * with the same settings. Each session is its own multiplexed connection to the ngrok
+ * service, so traffic of listeners on different sessions does not share a congestion
+ * window or block behind each other's streams:
+ *
+ * <pre>
+ * try (var pool = SessionPool.connect(Session.withAuthtokenFromEnv(), 4, SessionPool.Placement.LEAST_CONNECTIONS)) {
+ *     var listener = pool.httpEndpoint().domain("example.ngrok.app").listen();
+ *     ...
+ * }
+ * </pre>
+ *
+ * Each new listener or forwarder is placed on one of the sessions by the pool's
+ * {@link Placement}. Connections accepted from pool listeners are counted towards
+ * their session, along with the bytes they transfer.
+ *
+ * When a session misses its heartbeats, its listeners are bound again on the healthy
+ * sessions and accepts carry on there. Listeners without a fixed domain, address or
+ * edge get a new URL when they move. A listener that cannot be bound anywhere for
+ * the moment is retried as sessions become healthy or are replaced, and its accepts
+ * wait until then. Forwarders are placed like listeners, but stay
+ * on their session, which is kept until they have all closed.
+ *
+ * A pool connected with {@link #connect(Session.Builder, List)} holds one session per
+ * server address instead, and keeps its listeners on the session with the lowest
+ * latency:
+ *
+ * <pre>
+ * var pool = SessionPool.connect(Session.withAuthtokenFromEnv(),
+ *         List.of("connect.us.ngrok-agent.com:443", "connect.eu.ngrok-agent.com:443"));
+ * </pre>
+ */
+public class SessionPool implements Session {
+    private static final System.Logger LOG = System.getLogger(SessionPool.class.getName());
+
+    /**
+     * Policies for choosing the session of a new listener or forwarder. Sessions that
+     * missed their last heartbeat are avoided while any other is healthy.
+     */
+    public enum Placement {
+        /**
+         * Takes the sessions in turn.
+         */
+        ROUND_ROBIN,
+
+        /**
+         * Takes the session with the fewest open connections, then the fewest listeners.
+         */
+        LEAST_CONNECTIONS,
+
+        /**
+         * Takes the session that has transferred the fewest bytes.
+         */
+        LEAST_BYTES,
+
+        /**
+         * Takes the session with the lowest smoothed latency, measured by its handshake
+         * and then by its heartbeats. Listeners move to another session once it is
+         * clearly faster than theirs.
+         */
+        LOWEST_LATENCY,
+
+        /**
+         * Takes the first healthy session, keeping the others connected but idle as warm
+         * standbys. A session that fails is replaced by a new one in the background.
+         *
+         * @see Session.Builder#warmStandby(boolean)
+         */
+        PRIMARY
+    }
+
+    /**
+     * The weight of a new heartbeat in the smoothed latency, as for TCP's smoothed
+     * round-trip time.
+     */
+    static final double LATENCY_GAIN = 0.125;
+
+    /**
+     * How much faster another session has to be for listeners to move to it, so that
+     * they do not go back and forth between sessions of about the same latency.
+     */
+    static final double MOVE_RATIO = 0.75;
+
+    /**
+     * The longest delay between attempts to connect a replacement session, in seconds.
+     */
+    static final long MAX_RETRY_DELAY_SECONDS = 32;
+
+    private final Placement placement;
+    private final List<Slot> slots = new CopyOnWriteArrayList<>();
+    private final List<Slot> retired = new CopyOnWriteArrayList<>();
+    private final Map<String, Slot> forwarders = new ConcurrentHashMap<>();
+    private final Set<PooledListener<?, ?>> stranded = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean retrying = new AtomicBoolean();
+    private final AtomicInteger next = new AtomicInteger();
+    private final ExecutorService rebalancer = Executors.newSingleThreadExecutor(r -> {
+        var thread = new Thread(r, "ngrok-session-pool");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Session.Builder builder;
+    private volatile boolean closed;
+
+    SessionPool(Placement placement) {
+        this.placement = placement;
+    }
+
+    /**
+     * Connects a pool of sessions with round-robin placement.
+     *
+     * @param builder the settings of each session
+     * @param size    the number of sessions
+     * @return the connected pool
+     * @throws IOException if an I/O error occurs
+     */
+    public static SessionPool connect(Session.Builder builder, int size) throws IOException {
+        return connect(builder, size, Placement.ROUND_ROBIN);
+    }
+
+    /**
+     * Connects a pool of sessions. The sessions are connected concurrently, and if any
+     * of them fails the others are closed again.
+     *
+     * A heartbeat handler set on the builder receives the heartbeats of every session.
+     *
+     * @param builder   the settings of each session
+     * @param size      the number of sessions
+     * @param placement the policy for placing new listeners and forwarders
+     * @return the connected pool
+     * @throws IOException if an I/O error occurs
+     */
+    public static SessionPool connect(Session.Builder builder, int size, Placement placement) throws IOException {
+        if (size < 1) {
+            throw new IllegalArgumentException("a session pool needs at least one session");
+        }
+
+        var pool = new SessionPool(placement);
+        pool.builder = builder;
+        var pending = new ArrayList<CompletableFuture<Session>>();
+        var connecting = new ArrayList<Slot>();
+        for (int i = 0; i < size; i++) {
+            var slot = pool.new Slot(builder.heartbeatHandler());
+            connecting.add(slot);
+            pending.add(member(builder, slot).connectAsync());
+        }
+
+        IOException failure = null;
+        for (int i = 0; i < size; i++) {
+            try {
+                var slot = connecting.get(i);
+                slot.session = pending.get(i).get();
+                pool.slots.add(slot);
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    var cause = e.getCause();
+                    failure = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (failure == null) {
+                    failure = new IOException("interrupted while connecting", e);
+                }
+            }
+        }
+        if (failure != null) {
+            abandon(pool, connecting, pending);
+            try {
+                pool.close();
+            } catch (IOException e) {
+                failure.addSuppressed(e);
+            }
+            throw failure;
+        }
+        return pool;
+    }
+
+    /**
+     * Connects one session to each of the given server addresses, with
+     * {@link Placement#LOWEST_LATENCY} placement. The sessions race each other, and the
+     * time each takes to connect is its latency until its first heartbeat. Addresses
+     * that cannot be reached are left out of the pool.
+     *
+     * A server address or heartbeat handler set on the builder is replaced, the
+     * builder's heartbeat handler still receives the heartbeats of every session. A
+     * CA certificate set on the builder applies to all addresses.
+     *
+     * @param builder     the settings of each session
+     * @param serverAddrs the addresses of the ngrok servers to connect to
+     * @return the connected pool
+     * @throws IOException if none of the addresses can be reached
+     */
+    public static SessionPool connect(Session.Builder builder, List<String> serverAddrs) throws IOException {
+        if (serverAddrs.isEmpty()) {
+            throw new IllegalArgumentException("a session pool needs at least one server address");
+        }
+
+        var pool = new SessionPool(Placement.LOWEST_LATENCY);
+        var pending = new ArrayList<CompletableFuture<Session>>();
+        var connecting = new ArrayList<Slot>();
+        for (var addr : serverAddrs) {
+            var slot = pool.new Slot(builder.heartbeatHandler());
+            var started = System.nanoTime();
+            connecting.add(slot);
+            pending.add(member(builder, slot).serverAddr(addr).connectAsync()
+                    .whenComplete((session, err) -> slot.connected((System.nanoTime() - started) / 1e6)));
+        }
+
+        IOException failure = null;
+        for (int i = 0; i < connecting.size(); i++) {
+            try {
+                var slot = connecting.get(i);
+                slot.session = pending.get(i).get();
+                pool.slots.add(slot);
+            } catch (ExecutionException e) {
+                var cause = e.getCause();
+                LOG.log(System.Logger.Level.WARNING, "connecting to ngrok server " + serverAddrs.get(i) + " failed", cause);
+                if (failure == null) {
+                    failure = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abandon(pool, connecting, pending);
+                try {
+                    pool.close();
+                } catch (IOException ignored) {
+                    // interrupted already
+                }
+                throw new IOException("interrupted while connecting", e);
+            }
+        }
+        if (pool.slots.isEmpty()) {
+            throw failure;
+        }
+        return pool;
+    }
+
+    /**
+     * Closes the sessions of connects given up on, which did not make it into the pool,
+     * once they complete.
+     */
+    private static void abandon(SessionPool pool, List<Slot> connecting, List<CompletableFuture<Session>> pending) {
+        for (int i = 0; i < connecting.size(); i++) {
+            if (!pool.slots.contains(connecting.get(i))) {
+                pending.get(i).thenAccept(session -> {
+                    try {
+                        session.close();
+                    } catch (IOException e) {
+                        LOG.log(System.Logger.Level.DEBUG, "closing abandoned ngrok session failed", e);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Returns the builder of a single session of a pool.
+     */
+    private static Session.Builder member(Session.Builder builder, Slot slot) {
+        return builder.copy().warmStandby(false).heartbeatHandler(slot);
+    }
+
+    /**
+     * Adds an already connected session to this pool.
+     *
+     * @return the slot of the session, which must receive its heartbeats
+     */
+    Slot add(Session session, HeartbeatHandler handler) {
+        var slot = new Slot(handler);
+        slot.session = session;
+        slots.add(slot);
+        return slot;
+    }
+
+    /**
+     * Returns the sessions of this pool.
+     *
+     * @return the sessions, in the order they were connected
+     */
+    public List<Session> getSessions() {
+        var sessions = new ArrayList<Session>(slots.size());
+        for (var slot : slots) {
+            sessions.add(slot.session);
+        }
+        return Collections.unmodifiableList(sessions);
+    }
+
+    /**
+     * Returns the placement policy of this pool.
+     *
+     * @return the placement policy
+     */
+    public Placement getPlacement() {
+        return placement;
+    }
+
+    /**
+     * Returns the ID of the first session of this pool.
+     *
+     * @return session ID, or an empty string if the pool has no sessions at the moment
+     */
+    @Override
+    public String getId() {
+        var first = first();
+        return first != null ? first.session.getId() : "";
+    }
+
+    /**
+     * Returns the metadata of the first session of this pool.
+     *
+     * @return session metadata, or an empty string if the pool has no sessions at the
+     *         moment
+     */
+    @Override
+    public String getMetadata() {
+        var first = first();
+        return first != null ? first.session.getMetadata() : "";
+    }
+
+    /**
+     * Returns the first slot of this pool, or null if there is none. Iterates over a
+     * snapshot, as a slot may be removed between checking the size and getting it.
+     */
+    private Slot first() {
+        var it = slots.iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    @Override
+    public Listener.Endpoint listenTcp(TcpBuilder builder) throws IOException {
+        return new PooledListener.Endpoint(session -> session.listenTcp(builder), place());
+    }
+
+    @Override
+    public Forwarder.Endpoint forwardTcp(TcpBuilder builder, URL url) throws IOException {
+        return forward(new PooledForwarder.Endpoint(session -> session.forwardTcp(builder, url), place()));
+    }
+
+    @Override
+    public Listener.Endpoint listenTls(TlsBuilder builder) throws IOException {
+        return new PooledListener.Endpoint(session -> session.listenTls(builder), place());
+    }
+
+    @Override
+    public Forwarder.Endpoint forwardTls(TlsBuilder builder, URL url) throws IOException {
+        return forward(new PooledForwarder.Endpoint(session -> session.forwardTls(builder, url), place()));
+    }
+
+    @Override
+    public Listener.Endpoint listenHttp(HttpBuilder builder) throws IOException {
+        return new PooledListener.Endpoint(session -> session.listenHttp(builder), place());
+    }
+
+    @Override
+    public Forwarder.Endpoint forwardHttp(HttpBuilder builder, URL url) throws IOException {
+        return forward(new PooledForwarder.Endpoint(session -> session.forwardHttp(builder, url), place()));
+    }
+
+    @Override
+    public Listener.Edge listenEdge(EdgeBuilder builder) throws IOException {
+        return new PooledListener.Edge(session -> session.listenEdge(builder), place());
+    }
+
+    @Override
+    public Forwarder.Edge forwardEdge(EdgeBuilder builder, URL url) throws IOException {
+        return forward(new PooledForwarder.Edge(session -> session.forwardEdge(builder, url), place()));
+    }
+
+    private <F extends PooledForwarder<?>> F forward(F forwarder) {
+        forwarders.put(forwarder.getId(), forwarder.slot());
+        return forwarder;
+    }
+
+    @Override
+    public void closeListener(String listenerId) throws IOException {
+        for (var slot : slots) {
+            for (var listener : slot.listeners) {
+                if (listener.getId().equals(listenerId)) {
+                    listener.close();
+                    return;
+                }
+            }
+        }
+        for (var listener : stranded) {
+            if (listener.getId().equals(listenerId)) {
+                stranded.remove(listener);
+                listener.close();
+                return;
+            }
+        }
+        throw new IOException("no listener with ID " + listenerId + " in this pool");
+    }
+
+    @Override
+    public void closeForwarder(String forwarderId) throws IOException {
+        var slot = forwarders.get(forwarderId);
+        if (slot == null) {
+            throw new IOException("no forwarder with ID " + forwarderId + " in this pool");
+        }
+        try {
+            slot.session.closeForwarder(forwarderId);
+        } finally {
+            forget(forwarderId, slot);
+        }
+    }
+
+    /**
+     * Stops tracking a closed forwarder. A failed session kept only for its forwarders
+     * is closed once the last of them has closed.
+     */
+    private void forget(String forwarderId, Slot slot) {
+        synchronized (forwarders) {
+            if (!forwarders.remove(forwarderId, slot) || forwarders.containsValue(slot) || !retired.remove(slot)) {
+                return;
+            }
+        }
+        try {
+            slot.session.close();
+        } catch (IOException e) {
+            LOG.log(System.Logger.Level.DEBUG, "closing failed ngrok session " + slot.session.getId() + " failed", e);
+        }
+    }
+
+    /**
+     * Closes all sessions of this pool, and with them all listeners and forwarders.
+     *
+     * @throws IOException if closing any of the sessions fails
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+        }
+        rebalancer.shutdownNow();
+        for (var listener : stranded) {
+            listener.abandon();
+        }
+        stranded.clear();
+
+        var closing = new ArrayList<>(slots);
+        closing.addAll(retired);
+        IOException failure = null;
+        for (var slot : closing) {
+            try {
+                slot.session.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private Slot place() throws IOException {
+        if (closed) {
+            throw new IOException("session pool is closed");
+        }
+        var slot = place(null);
+        if (slot == null) {
+            throw new IOException("session pool has no sessions");
+        }
+        return slot;
+    }
+
+    /**
+     * Chooses a session by the placement policy, preferring healthy ones.
+     *
+     * @param failed a failing slot to leave out, in which case only healthy slots are
+     *               considered
+     * @return the chosen slot, or {@code null} if there is none
+     */
+    private Slot place(Slot failed) {
+        var candidates = new ArrayList<Slot>(slots.size());
+        for (var slot : slots) {
+            if (slot.healthy && slot != failed) {
+                candidates.add(slot);
+            }
+        }
+        if (candidates.isEmpty()) {
+            if (failed != null) {
+                return null;
+            }
+            candidates.addAll(slots);
+            if (candidates.isEmpty()) {
+                return null;
+            }
+        }
+
+        switch (placement) {
+            case LEAST_CONNECTIONS:
+                return Collections.min(candidates, Comparator
+                        .comparingLong((Slot slot) -> slot.connections.get())
+                        .thenComparingInt(slot -> slot.listeners.size()));
+            case LEAST_BYTES:
+                return Collections.min(candidates, Comparator.comparingLong(slot -> slot.bytes.get()));
+            case LOWEST_LATENCY:
+                // sessions without a measurement yet sort last
+                return Collections.min(candidates, Comparator.comparingDouble(slot -> slot.latency));
+            case PRIMARY:
+                return candidates.get(0);
+            default:
+                return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+        }
+    }
+
+    /**
+     * Moves the listeners of a failing session to healthy ones.
+     */
+    private void rebalance(Slot failed) {
+        for (var listener : failed.listeners) {
+            if (closed || failed.healthy) {
+                return;
+            }
+            var target = place(failed);
+            if (target == null) {
+                LOG.log(System.Logger.Level.WARNING, "no healthy ngrok session to move listener {0} to", listener.getId());
+                return;
+            }
+            try {
+                listener.moveTo(target);
+            } catch (IOException e) {
+                moveFailed(listener, e);
+            }
+        }
+    }
+
+    /**
+     * Moves the listeners of a session to a clearly faster one, if there is any.
+     */
+    private void relocate(Slot slow) {
+        for (var listener : slow.listeners) {
+            if (closed || !slow.healthy) {
+                return;
+            }
+            var target = place(slow);
+            if (target == null || !(target.latency < slow.latency * MOVE_RATIO)) {
+                return;
+            }
+            try {
+                listener.moveTo(target);
+            } catch (IOException e) {
+                moveFailed(listener, e);
+                return;
+            }
+        }
+    }
+
+    private void moveFailed(PooledListener<?, ?> listener, IOException e) {
+        LOG.log(System.Logger.Level.WARNING, "moving ngrok listener " + listener.getId() + " failed", e);
+        if (listener.isStranded()) {
+            strand(listener);
+        }
+    }
+
+    /**
+     * Keeps a listener that could not be bound on any session, to bind it on the next
+     * healthy one. Once the pool has closed, the listener is given up on instead.
+     */
+    private void strand(PooledListener<?, ?> listener) {
+        boolean abandoned;
+        synchronized (this) {
+            abandoned = closed;
+            if (!abandoned) {
+                stranded.add(listener);
+            }
+        }
+        if (abandoned) {
+            listener.abandon();
+        }
+    }
+
+    /**
+     * Binds stranded listeners on healthy sessions, leaving those that fail again for
+     * the next attempt.
+     */
+    private void retryStranded() {
+        for (var listener : stranded) {
+            if (closed) {
+                return;
+            }
+            var target = place(null);
+            if (target == null || !target.healthy) {
+                return;
+            }
+            try {
+                listener.rebind(target);
+                stranded.remove(listener);
+            } catch (IOException e) {
+                LOG.log(System.Logger.Level.WARNING, "binding stranded ngrok listener " + listener.getId() + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * Retries the stranded listeners in the background, unless a retry is running.
+     */
+    private void scheduleRetry() {
+        if (!closed && !stranded.isEmpty() && retrying.compareAndSet(false, true)) {
+            submit(() -> {
+                try {
+                    retryStranded();
+                } finally {
+                    retrying.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Takes a failed session out of the pool and connects a new one in its place.
+     * Listeners that could not move off the failed session are stranded, and bound on
+     * the new session once it has connected.
+     */
+    private void replace(Slot failed, boolean primary) {
+        var builder = this.builder;
+        if (closed || builder == null || failed.healthy) {
+            return;
+        }
+
+        slots.remove(failed);
+        for (var listener : failed.listeners) {
+            if (listener.release()) {
+                strand(listener);
+            }
+        }
+        boolean retire;
+        synchronized (forwarders) {
+            // forwarders do not move, keep their session until they have all closed
+            retire = forwarders.containsValue(failed);
+            if (retire) {
+                retired.add(failed);
+            }
+        }
+        if (!retire) {
+            try {
+                failed.session.close();
+            } catch (IOException e) {
+                LOG.log(System.Logger.Level.DEBUG, "closing failed ngrok session " + failed.session.getId() + " failed", e);
+            }
+        }
+
+        var handler = builder.failoverHandler();
+        var first = first();
+        if (primary && handler != null && first != null) {
+            handler.failover(failed.session.getId(), first.session.getId());
+        }
+        replenish(builder, 0);
+    }
+
+    /**
+     * Connects a new session for the pool, retrying with a growing delay.
+     */
+    private void replenish(Session.Builder builder, int attempt) {
+        if (closed) {
+            return;
+        }
+        var slot = new Slot(builder.heartbeatHandler());
+        member(builder, slot).connectAsync().whenComplete((session, err) -> {
+            var handler = builder.failoverHandler();
+            if (err != null) {
+                var cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+                var error = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                LOG.log(System.Logger.Level.WARNING, "connecting ngrok standby session failed", error);
+                if (handler != null) {
+                    handler.standbyFailed(error);
+                }
+                var delay = Math.min(MAX_RETRY_DELAY_SECONDS, 1L << Math.min(attempt, 6));
+                CompletableFuture.delayedExecutor(delay, TimeUnit.SECONDS).execute(() -> replenish(builder, attempt + 1));
+                return;
+            }
+
+            slot.session = session;
+            boolean added;
+            synchronized (this) {
+                added = !closed;
+                if (added) {
+                    slots.add(slot);
+                }
+            }
+            if (!added) {
+                try {
+                    session.close();
+                } catch (IOException e) {
+                    // the pool closed while connecting, nothing else to do
+                }
+            } else {
+                if (handler != null) {
+                    handler.standbyConnected(session.getId());
+                }
+                scheduleRetry();
+            }
+        });
+    }
+
+    private void submit(Runnable task) {
+        try {
+            rebalancer.execute(task);
+        } catch (RejectedExecutionException e) {
+            // the pool is closing
+        }
+    }
+
+    /**
+     * A session of the pool, with the load placed on it. Receives the heartbeats of its
+     * session to tell whether it is healthy.
+     */
+    final class Slot implements HeartbeatHandler {
+        private final HeartbeatHandler handler;
+
+        volatile Session session;
+        volatile boolean healthy = true;
+        volatile double latency = Double.NaN;
+        final AtomicLong connections = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        final Set<PooledListener<?, ?>> listeners = ConcurrentHashMap.newKeySet();
+
+        private boolean sampled;
+        private final AtomicBoolean relocating = new AtomicBoolean();
+
+        Slot(HeartbeatHandler handler) {
+            this.handler = handler;
+        }
+
+        /**
+         * Forgets a forwarder of this slot's session once it has closed.
+         */
+        void forwarderClosed(String forwarderId) {
+            forget(forwarderId, this);
+        }
+
+        @Override
+        public void heartbeat(long durationMs) {
+            healthy = true;
+            measured(durationMs);
+            scheduleRetry();
+            if (placement == Placement.LOWEST_LATENCY && !closed && !listeners.isEmpty()
+                    && relocating.compareAndSet(false, true)) {
+                submit(() -> {
+                    try {
+                        relocate(this);
+                    } finally {
+                        relocating.set(false);
+                    }
+                });
+            }
+            if (handler != null) {
+                handler.heartbeat(durationMs);
+            }
+        }
+
+        @Override
+        public void timeout() {
+            if (healthy) {
+                healthy = false;
+                if (!closed) {
+                    // heartbeats are reported on runtime threads, binds block
+                    submit(() -> {
+                        var primary = first() == this;
+                        rebalance(this);
+                        if (placement == Placement.PRIMARY) {
+                            replace(this, primary);
+                        }
+                    });
+                }
+            }
+            if (handler != null) {
+                handler.timeout();
+            }
+        }
+
+        /**
+         * Records the time the session took to connect, as its latency until the first
+         * heartbeat.
+         */
+        synchronized void connected(double durationMs) {
+            if (!sampled) {
+                latency = durationMs;
+            }
+        }
+
+        /**
+         * Adds a heartbeat round trip to the smoothed latency. The first one replaces
+         * the handshake time, which spans several round trips.
+         */
+        synchronized void measured(long durationMs) {
+            if (!sampled) {
+                sampled = true;
+                latency = durationMs;
+            } else {
+                latency += LATENCY_GAIN * (durationMs - latency);
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.ngrok;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A builder for creating a TCP endpoint listener
@@ -34,6 +35,7 @@ public class TcpBuilder extends EndpointBuilder<TcpBuilder>
      */
     public TcpBuilder remoteAddress(String remoteAddress) {
         this.remoteAddress = Optional.of(remoteAddress);
+        changed();
         return this;
     }
 
@@ -46,6 +48,12 @@ public class TcpBuilder extends EndpointBuilder<TcpBuilder>
         return remoteAddress;
     }
 
+    @Override
+    void encode(BuilderCodec codec) {
+        super.encode(codec);
+        remoteAddress.ifPresent(value -> codec.string(BuilderCodec.REMOTE_ADDR, value));
+    }
+
     @Override
     public Listener.Endpoint listen() throws IOException {
         return session.listenTcp(this);
@@ -55,4 +63,14 @@ public class TcpBuilder extends EndpointBuilder<TcpBuilder>
     public Forwarder.Endpoint forward(URL url) throws IOException {
         return session.forwardTcp(this, url);
     }
+
+    @Override
+    public CompletableFuture<Listener.Endpoint> listenAsync() {
+        return session.listenAsync(this);
+    }
+
+    @Override
+    public CompletableFuture<Forwarder.Endpoint> forwardAsync(URL url) {
+        return session.forwardAsync(this, url);
+    }
 }
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A builder for creating a TLS endpoint listener
@@ -42,6 +43,7 @@ public class TlsBuilder extends EndpointBuilder<TlsBuilder>
      */
     public TlsBuilder domain(String domain) {
         this.domain = Optional.of(domain);
+        changed();
         return this;
     }
 
@@ -56,6 +58,7 @@ public class TlsBuilder extends EndpointBuilder<TlsBuilder>
      */
     public TlsBuilder mutualTLSCA(byte[] mutualTLSCA) {
         this.mutualTLSCA = Objects.requireNonNull(mutualTLSCA);
+        changed();
         return this;
     }
 
@@ -72,6 +75,7 @@ public class TlsBuilder extends EndpointBuilder<TlsBuilder>
     public TlsBuilder termination(byte[] terminationCertPEM, byte[] terminationKeyPEM) {
         this.terminationCertPEM = Objects.requireNonNull(terminationCertPEM);
         this.terminationKeyPEM = Objects.requireNonNull(terminationKeyPEM);
+        changed();
         return this;
     }
 
@@ -111,6 +115,18 @@ public class TlsBuilder extends EndpointBuilder<TlsBuilder>
         return terminationKeyPEM;
     }
 
+    @Override
+    void encode(BuilderCodec codec) {
+        super.encode(codec);
+        domain.ifPresent(value -> codec.string(BuilderCodec.DOMAIN, value));
+        if (mutualTLSCA != null) {
+            codec.bytes(BuilderCodec.MUTUAL_TLS_CA, mutualTLSCA);
+        }
+        if (terminationCertPEM != null && terminationKeyPEM != null) {
+            codec.bytes(BuilderCodec.TERMINATION, terminationCertPEM, terminationKeyPEM);
+        }
+    }
+
     @Override
     public Listener.Endpoint listen() throws IOException {
         return session.listenTls(this);
@@ -120,4 +136,14 @@ public class TlsBuilder extends EndpointBuilder<TlsBuilder>
     public Forwarder.Endpoint forward(URL url) throws IOException {
         return session.forwardTls(this, url);
     }
+
+    @Override
+    public CompletableFuture<Listener.Endpoint> listenAsync() {
+        return session.listenAsync(this);
+    }
+
+    @Override
+    public CompletableFuture<Forwarder.Endpoint> forwardAsync(URL url) {
+        return session.forwardAsync(this, url);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+package com.ngrok;
+
+/**
+ * Counts of TLS handshakes to the ngrok service that offered an earlier TLS session
+ * for resumption, and of those that had none to offer. Sessions are shared by all
+ * sessions in the process, so a connect or reconnect after the first one usually
+ * offers one.
+ *
+ * An offered session is not necessarily resumed, the ngrok service may still decline
+ * it and do a full handshake. A handshake without a session to offer is always full.
+ *
+ * @see Session#tlsResumptionStats()
+ */
+public final class TlsResumptionStats {
+    private final long offered;
+    private final long notOffered;
+
+    /**
+     * Creates stats with the given counts.
+     *
+     * @param offered    the number of handshakes that offered a session to resume
+     * @param notOffered the number of handshakes that had none to offer
+     */
+    public TlsResumptionStats(long offered, long notOffered) {
+        this.offered = offered;
+        this.notOffered = notOffered;
+    }
+
+    /**
+     * Returns the number of handshakes that offered a TLS session to resume.
+     *
+     * @return the number of offers
+     */
+    public long getOffered() {
+        return offered;
+    }
+
+    /**
+     * Returns the number of handshakes that had no TLS session to offer.
+     *
+     * @return the number of handshakes without an offer
+     */
+    public long getNotOffered() {
+        return notOffered;
+    }
+
+    /**
+     * Returns the share of handshakes that offered a TLS session to resume.
+     *
+     * @return the offer ratio, between 0 and 1, or 0 without any handshake
+     */
+    public double getOfferRatio() {
+        var total = offered + notOffered;
+        return total == 0 ? 0 : (double) offered / total;
+    }
+
+    @Override
+    public String toString() {
+        return "TlsResumptionStats{offered=" + offered + ", notOffered=" + notOffered + "}";
+    }
+}
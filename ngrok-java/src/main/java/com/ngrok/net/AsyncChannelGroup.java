@@ -0,0 +1,103 @@
+package com.ngrok.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.ShutdownChannelGroupException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link AsynchronousChannelGroup} for channels backed by ngrok listeners and connections.
+ *
+ * Asynchronous operations are completed by the native runtime, the group only supplies the
+ * threads on which completion handlers are invoked. Like the JDK groups, a group that is
+ * shut down keeps completing operations on its open channels, and terminates once the last
+ * of them is closed. Create instances through
+ * {@link AsyncChannelProvider#openAsynchronousChannelGroup(int, java.util.concurrent.ThreadFactory)}
+ * or {@link AsyncChannelProvider#openAsynchronousChannelGroup(ExecutorService, int)}.
+ */
+public class AsyncChannelGroup extends AsynchronousChannelGroup {
+    private final ExecutorService executor;
+
+    private final Set<Closeable> channels = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean shutdown;
+
+    AsyncChannelGroup(AsyncChannelProvider provider, ExecutorService executor) {
+        super(provider);
+        this.executor = executor;
+    }
+
+    /**
+     * Runs the given completion task on one of the threads of this group. Once the
+     * group has terminated, operations failed by closing their channel complete on
+     * the calling thread instead, so that their handlers are still invoked.
+     */
+    void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    synchronized void register(Closeable channel) {
+        if (shutdown) {
+            throw new ShutdownChannelGroupException();
+        }
+        channels.add(channel);
+    }
+
+    synchronized void unregister(Closeable channel) {
+        channels.remove(channel);
+        if (shutdown && channels.isEmpty()) {
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return executor.isTerminated();
+    }
+
+    /**
+     * Shuts down this group. No new channels can be opened in it, while operations on
+     * its open channels keep completing until those are closed.
+     */
+    @Override
+    public synchronized void shutdown() {
+        shutdown = true;
+        if (channels.isEmpty()) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Shuts down this group and closes all of its open channels, failing their
+     * outstanding operations with {@link java.nio.channels.AsynchronousCloseException}.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void shutdownNow() throws IOException {
+        shutdown();
+        for (var ch : List.copyOf(channels)) {
+            ch.close();
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+}
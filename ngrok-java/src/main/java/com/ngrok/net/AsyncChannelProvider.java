@@ -0,0 +1,113 @@
+package com.ngrok.net;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.IllegalChannelGroupException;
+import java.nio.channels.spi.AsynchronousChannelProvider;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link AsynchronousChannelProvider} for channels backed by ngrok listeners and connections.
+ *
+ * ngrok channels are never bound to a local address, so this provider cannot open unbound
+ * channels. Use {@link AsyncListenerChannel#open(com.ngrok.Listener, AsynchronousChannelGroup)}
+ * to create a channel for a running listener instead.
+ */
+public class AsyncChannelProvider extends AsynchronousChannelProvider {
+    private static final AsyncChannelProvider INSTANCE = new AsyncChannelProvider();
+
+    private volatile AsyncChannelGroup defaultGroup;
+
+    /**
+     * Returns the provider instance.
+     *
+     * @return the provider
+     */
+    public static AsyncChannelProvider provider() {
+        return INSTANCE;
+    }
+
+    private AsyncChannelProvider() {
+    }
+
+    /**
+     * Creates a new group with a fixed thread pool for invoking completion handlers.
+     *
+     * @param nThreads      the number of threads in the pool
+     * @param threadFactory the factory to use when creating new threads
+     * @return the new group
+     */
+    @Override
+    public AsyncChannelGroup openAsynchronousChannelGroup(int nThreads, ThreadFactory threadFactory) {
+        return new AsyncChannelGroup(this, Executors.newFixedThreadPool(nThreads, threadFactory));
+    }
+
+    /**
+     * Creates a new group that invokes completion handlers on the given executor service.
+     *
+     * @param executor    the executor service
+     * @param initialSize ignored, completion threads are managed by the executor
+     * @return the new group
+     */
+    @Override
+    public AsyncChannelGroup openAsynchronousChannelGroup(ExecutorService executor, int initialSize) {
+        return new AsyncChannelGroup(this, executor);
+    }
+
+    /**
+     * Throws an {@link UnsupportedOperationException}, as ngrok channels cannot be opened unbound.
+     *
+     * @throws UnsupportedOperationException if the method is called
+     */
+    @Override
+    public AsynchronousServerSocketChannel openAsynchronousServerSocketChannel(AsynchronousChannelGroup group) throws IOException {
+        throw new UnsupportedOperationException("use AsyncListenerChannel.open with a running listener");
+    }
+
+    /**
+     * Throws an {@link UnsupportedOperationException}, as ngrok channels cannot be opened unbound.
+     *
+     * @throws UnsupportedOperationException if the method is called
+     */
+    @Override
+    public AsynchronousSocketChannel openAsynchronousSocketChannel(AsynchronousChannelGroup group) throws IOException {
+        throw new UnsupportedOperationException("connections are accepted through AsyncListenerChannel");
+    }
+
+    /**
+     * Resolves the group to use for a new channel, falling back to the default group.
+     */
+    AsyncChannelGroup group(AsynchronousChannelGroup group) {
+        if (group == null) {
+            return defaultGroup();
+        }
+        if (!(group instanceof AsyncChannelGroup) || group.provider() != this) {
+            throw new IllegalChannelGroupException();
+        }
+        return (AsyncChannelGroup) group;
+    }
+
+    private AsyncChannelGroup defaultGroup() {
+        var group = defaultGroup;
+        if (group == null) {
+            synchronized (this) {
+                group = defaultGroup;
+                if (group == null) {
+                    var counter = new AtomicInteger();
+                    group = new AsyncChannelGroup(this, Executors.newCachedThreadPool(r -> {
+                        var th = new Thread(r, "ngrok-async-" + counter.incrementAndGet());
+                        th.setDaemon(true);
+                        return th;
+                    }));
+                    defaultGroup = group;
+                }
+            }
+        }
+        return group;
+    }
+}
@@ -0,0 +1,488 @@
+package com.ngrok.net;
+
+import com.ngrok.Connection;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.nio.ByteBuffer;
+import java.nio.channels.AlreadyBoundException;
+import java.nio.channels.AlreadyConnectedException;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.InterruptedByTimeoutException;
+import java.nio.channels.ReadPendingException;
+import java.nio.channels.WritePendingException;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongFunction;
+
+/**
+ * An {@link AsynchronousSocketChannel} for reading and writing data over a {@link Connection}.
+ *
+ * Reads and writes are issued through {@link Connection#readAsync} and {@link Connection#writeAsync},
+ * which native connections complete from the native runtime. Completion handlers are then invoked on
+ * one of the threads of this channel's group. Direct buffers that are positioned at the start of their
+ * capacity are handed to the connection as is, all other buffers are staged through internal direct buffers.
+ */
+public class AsyncConnectionChannel extends AsynchronousSocketChannel {
+    private static final int BUFFER_SIZE = 16384;
+
+    private final Connection connection;
+
+    private final AsyncChannelGroup group;
+
+    private final ByteBuffer readBuffer;
+    private final ByteBuffer writeBuffer;
+
+    private final AtomicBoolean reading = new AtomicBoolean();
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    private volatile boolean open = true;
+    private volatile boolean inputShutdown;
+    private volatile boolean outputShutdown;
+    private volatile boolean readTimedOut;
+    private volatile boolean writeTimedOut;
+
+    AsyncConnectionChannel(AsyncChannelProvider provider, AsyncChannelGroup group, Connection connection) {
+        super(provider);
+        this.group = group;
+        this.connection = Objects.requireNonNull(connection);
+        this.readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.readBuffer.flip();
+        this.writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        group.register(this);
+    }
+
+    /**
+     * Returns the connection backing this channel.
+     *
+     * @return the connection
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Throws an {@link AlreadyBoundException}, as connections are bound when accepted.
+     *
+     * @throws AlreadyBoundException if the method is called
+     */
+    @Override
+    public AsynchronousSocketChannel bind(SocketAddress local) throws IOException {
+        throw new AlreadyBoundException();
+    }
+
+    @Override
+    public <T> AsynchronousSocketChannel setOption(SocketOption<T> name, T value) throws IOException {
+        throw new UnsupportedOperationException("'" + name + "' not supported");
+    }
+
+    @Override
+    public <T> T getOption(SocketOption<T> name) throws IOException {
+        throw new UnsupportedOperationException("'" + name + "' not supported");
+    }
+
+    @Override
+    public Set<SocketOption<?>> supportedOptions() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Shuts down the input side of this channel, further reads return -1.
+     *
+     * @return the channel
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public AsynchronousSocketChannel shutdownInput() throws IOException {
+        ensureOpen();
+        inputShutdown = true;
+        return this;
+    }
+
+    /**
+     * Shuts down the output side of this channel, further writes fail with {@link ClosedChannelException}.
+     * ngrok connections cannot be half-closed, so this only takes effect locally: the remote
+     * peer does not see the end of the stream until the channel is closed.
+     *
+     * @return the channel
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public AsynchronousSocketChannel shutdownOutput() throws IOException {
+        ensureOpen();
+        outputShutdown = true;
+        return this;
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() throws IOException {
+        ensureOpen();
+        return connection.inetAddress();
+    }
+
+    /**
+     * Returns {@code null}, as ngrok connections are not bound to a local address.
+     *
+     * @return {@code null}
+     */
+    @Override
+    public SocketAddress getLocalAddress() throws IOException {
+        ensureOpen();
+        return null;
+    }
+
+    /**
+     * Throws an {@link AlreadyConnectedException}, as the channel is connected when accepted.
+     *
+     * @throws AlreadyConnectedException if the method is called
+     */
+    @Override
+    public <A> void connect(SocketAddress remote, A attachment, CompletionHandler<Void, ? super A> handler) {
+        throw new AlreadyConnectedException();
+    }
+
+    /**
+     * Throws an {@link AlreadyConnectedException}, as the channel is connected when accepted.
+     *
+     * @throws AlreadyConnectedException if the method is called
+     */
+    @Override
+    public Future<Void> connect(SocketAddress remote) {
+        throw new AlreadyConnectedException();
+    }
+
+    @Override
+    public <A> void read(ByteBuffer dst, long timeout, TimeUnit unit, A attachment,
+                         CompletionHandler<Integer, ? super A> handler) {
+        if (dst.isReadOnly()) {
+            throw new IllegalArgumentException("read-only buffer");
+        }
+        doRead(new ByteBuffer[] { dst }, 0, 1, sz -> (int) sz, timeout, unit, attachment, handler);
+    }
+
+    @Override
+    public Future<Integer> read(ByteBuffer dst) {
+        var future = new CompletableFuture<Integer>();
+        read(dst, 0, TimeUnit.MILLISECONDS, null, futureHandler(future));
+        return future;
+    }
+
+    @Override
+    public <A> void read(ByteBuffer[] dsts, int offset, int length, long timeout, TimeUnit unit, A attachment,
+                         CompletionHandler<Long, ? super A> handler) {
+        Objects.checkFromIndexSize(offset, length, dsts.length);
+        for (int i = offset; i < offset + length; i++) {
+            if (dsts[i].isReadOnly()) {
+                throw new IllegalArgumentException("read-only buffer");
+            }
+        }
+        doRead(dsts, offset, length, sz -> sz, timeout, unit, attachment, handler);
+    }
+
+    @Override
+    public <A> void write(ByteBuffer src, long timeout, TimeUnit unit, A attachment,
+                          CompletionHandler<Integer, ? super A> handler) {
+        doWrite(new ByteBuffer[] { src }, 0, 1, sz -> (int) sz, timeout, unit, attachment, handler);
+    }
+
+    @Override
+    public Future<Integer> write(ByteBuffer src) {
+        var future = new CompletableFuture<Integer>();
+        write(src, 0, TimeUnit.MILLISECONDS, null, futureHandler(future));
+        return future;
+    }
+
+    @Override
+    public <A> void write(ByteBuffer[] srcs, int offset, int length, long timeout, TimeUnit unit, A attachment,
+                          CompletionHandler<Long, ? super A> handler) {
+        Objects.checkFromIndexSize(offset, length, srcs.length);
+        doWrite(srcs, offset, length, sz -> sz, timeout, unit, attachment, handler);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Closes this channel and the underlying connection. Outstanding operations
+     * fail with {@link AsynchronousCloseException}.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        group.unregister(this);
+        connection.close();
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private <V, A> void doRead(ByteBuffer[] dsts, int offset, int length, LongFunction<V> result,
+                               long timeout, TimeUnit unit, A attachment, CompletionHandler<V, ? super A> handler) {
+        Objects.requireNonNull(handler);
+        if (!open) {
+            group.execute(() -> handler.failed(new ClosedChannelException(), attachment));
+            return;
+        }
+        if (readTimedOut) {
+            throw new IllegalStateException("reading not allowed due to timeout");
+        }
+        if (!reading.compareAndSet(false, true)) {
+            throw new ReadPendingException();
+        }
+
+        var op = new Operation<>(reading, result, attachment, handler);
+        if (inputShutdown) {
+            op.complete(-1);
+            return;
+        }
+        if (!hasRemaining(dsts, offset, length)) {
+            op.complete(0);
+            return;
+        }
+        if (readBuffer.hasRemaining()) {
+            op.complete(transfer(readBuffer, dsts, offset, length));
+            return;
+        }
+
+        op.scheduleTimeout(timeout, unit, () -> readTimedOut = true);
+
+        var dst = dsts[offset];
+        if (length == 1 && dst.isDirect() && dst.position() == 0 && dst.limit() == dst.capacity()) {
+            connection.readAsync(dst, null, new CompletionHandler<Integer, Object>() {
+                @Override
+                public void completed(Integer sz, Object ignored) {
+                    if (sz < 0) {
+                        dst.clear();
+                    } else {
+                        dst.limit(dst.capacity());
+                        dst.position(sz);
+                    }
+                    op.complete(sz);
+                }
+
+                @Override
+                public void failed(Throwable exc, Object ignored) {
+                    op.fail(exc);
+                }
+            });
+            return;
+        }
+
+        readBuffer.clear();
+        connection.readAsync(readBuffer, null, new CompletionHandler<Integer, Object>() {
+            @Override
+            public void completed(Integer sz, Object ignored) {
+                if (sz < 0) {
+                    readBuffer.position(0).limit(0);
+                    op.complete(-1);
+                    return;
+                }
+                if (op.isDone()) {
+                    // timed out, the data is unavailable to further reads
+                    readBuffer.position(0).limit(0);
+                    return;
+                }
+                op.complete(transfer(readBuffer, dsts, offset, length));
+            }
+
+            @Override
+            public void failed(Throwable exc, Object ignored) {
+                readBuffer.position(0).limit(0);
+                op.fail(exc);
+            }
+        });
+    }
+
+    private <V, A> void doWrite(ByteBuffer[] srcs, int offset, int length, LongFunction<V> result,
+                                long timeout, TimeUnit unit, A attachment, CompletionHandler<V, ? super A> handler) {
+        Objects.requireNonNull(handler);
+        if (!open || outputShutdown) {
+            group.execute(() -> handler.failed(new ClosedChannelException(), attachment));
+            return;
+        }
+        if (writeTimedOut) {
+            throw new IllegalStateException("writing not allowed due to timeout");
+        }
+        if (!writing.compareAndSet(false, true)) {
+            throw new WritePendingException();
+        }
+
+        var op = new Operation<>(writing, result, attachment, handler);
+        if (!hasRemaining(srcs, offset, length)) {
+            op.complete(0);
+            return;
+        }
+
+        op.scheduleTimeout(timeout, unit, () -> writeTimedOut = true);
+
+        var src = srcs[offset];
+        if (length == 1 && src.isDirect() && src.position() == 0) {
+            connection.writeAsync(src, null, new CompletionHandler<Integer, Object>() {
+                @Override
+                public void completed(Integer sz, Object ignored) {
+                    src.position(sz);
+                    op.complete(sz);
+                }
+
+                @Override
+                public void failed(Throwable exc, Object ignored) {
+                    op.fail(exc);
+                }
+            });
+            return;
+        }
+
+        writeBuffer.clear();
+        for (int i = offset; i < offset + length && writeBuffer.hasRemaining(); i++) {
+            var from = srcs[i].duplicate();
+            if (from.remaining() > writeBuffer.remaining()) {
+                from.limit(from.position() + writeBuffer.remaining());
+            }
+            writeBuffer.put(from);
+        }
+        writeBuffer.flip();
+
+        connection.writeAsync(writeBuffer, null, new CompletionHandler<Integer, Object>() {
+            @Override
+            public void completed(Integer sz, Object ignored) {
+                long left = sz;
+                for (int i = offset; i < offset + length && left > 0; i++) {
+                    var step = (int) Math.min(left, srcs[i].remaining());
+                    srcs[i].position(srcs[i].position() + step);
+                    left -= step;
+                }
+                op.complete(sz);
+            }
+
+            @Override
+            public void failed(Throwable exc, Object ignored) {
+                op.fail(exc);
+            }
+        });
+    }
+
+    private static <A> CompletionHandler<Integer, A> futureHandler(CompletableFuture<Integer> future) {
+        return new CompletionHandler<>() {
+            @Override
+            public void completed(Integer result, A attachment) {
+                future.complete(result);
+            }
+
+            @Override
+            public void failed(Throwable exc, A attachment) {
+                future.completeExceptionally(exc);
+            }
+        };
+    }
+
+    private static long transfer(ByteBuffer from, ByteBuffer[] dsts, int offset, int length) {
+        long total = 0;
+        for (int i = offset; i < offset + length && from.hasRemaining(); i++) {
+            var dst = dsts[i];
+            var len = Math.min(from.remaining(), dst.remaining());
+            var oldLimit = from.limit();
+            from.limit(from.position() + len);
+            dst.put(from);
+            from.limit(oldLimit);
+            total += len;
+        }
+        return total;
+    }
+
+    private static boolean hasRemaining(ByteBuffer[] bufs, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (bufs[i].hasRemaining()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tracks a single outstanding read or write, making sure the user handler is
+     * invoked exactly once and on one of the group's threads.
+     */
+    private class Operation<V, A> {
+        private final AtomicBoolean pending;
+        private final LongFunction<V> result;
+        private final A attachment;
+        private final CompletionHandler<V, ? super A> handler;
+
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        Operation(AtomicBoolean pending, LongFunction<V> result, A attachment, CompletionHandler<V, ? super A> handler) {
+            this.pending = pending;
+            this.result = result;
+            this.attachment = attachment;
+            this.handler = handler;
+        }
+
+        boolean isDone() {
+            return done.get();
+        }
+
+        void scheduleTimeout(long timeout, TimeUnit unit, Runnable onTimeout) {
+            if (timeout <= 0) {
+                return;
+            }
+            Timeouts.SCHEDULER.schedule(() -> {
+                if (done.compareAndSet(false, true)) {
+                    onTimeout.run();
+                    pending.set(false);
+                    group.execute(() -> handler.failed(new InterruptedByTimeoutException(), attachment));
+                }
+            }, timeout, unit);
+        }
+
+        void complete(long value) {
+            if (done.compareAndSet(false, true)) {
+                pending.set(false);
+                if (!open) {
+                    // the connection was closed under the operation, whatever it
+                    // returned is not data or end of stream
+                    group.execute(() -> handler.failed(new AsynchronousCloseException(), attachment));
+                    return;
+                }
+                var v = result.apply(value);
+                group.execute(() -> handler.completed(v, attachment));
+            }
+        }
+
+        void fail(Throwable exc) {
+            if (done.compareAndSet(false, true)) {
+                pending.set(false);
+                var cause = open ? exc : new AsynchronousCloseException();
+                group.execute(() -> handler.failed(cause, attachment));
+            }
+        }
+    }
+
+    private static class Timeouts {
+        private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+            var th = new Thread(r, "ngrok-async-timeout");
+            th.setDaemon(true);
+            return th;
+        });
+    }
+}
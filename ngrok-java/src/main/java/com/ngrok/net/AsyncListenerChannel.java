@@ -0,0 +1,212 @@
+package com.ngrok.net;
+
+import com.ngrok.Connection;
+import com.ngrok.Listener;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.nio.channels.AcceptPendingException;
+import java.nio.channels.AlreadyBoundException;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.ShutdownChannelGroupException;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An {@link AsynchronousServerSocketChannel} for accepting connections from a {@link Listener}.
+ * Accepted connections are returned as {@link AsyncConnectionChannel}s in the same group.
+ */
+public class AsyncListenerChannel extends AsynchronousServerSocketChannel {
+    private final Listener<? extends Connection> listener;
+
+    private final AsyncChannelGroup group;
+
+    private final AtomicBoolean accepting = new AtomicBoolean();
+
+    private volatile boolean open = true;
+
+    /**
+     * Opens a channel for the given listener in the default group.
+     *
+     * @param listener the listener to accept connections from
+     * @return the new channel
+     */
+    public static AsyncListenerChannel open(Listener<? extends Connection> listener) {
+        return open(listener, null);
+    }
+
+    /**
+     * Opens a channel for the given listener in the given group.
+     *
+     * @param listener the listener to accept connections from
+     * @param group    the group, created by {@link AsyncChannelProvider}, or {@code null} for the default group
+     * @return the new channel
+     * @throws ShutdownChannelGroupException if the group has been shut down
+     */
+    public static AsyncListenerChannel open(Listener<? extends Connection> listener, AsynchronousChannelGroup group) {
+        var provider = AsyncChannelProvider.provider();
+        return new AsyncListenerChannel(provider, provider.group(group), listener);
+    }
+
+    private AsyncListenerChannel(AsyncChannelProvider provider, AsyncChannelGroup group, Listener<? extends Connection> listener) {
+        super(provider);
+        this.group = group;
+        this.listener = Objects.requireNonNull(listener);
+        group.register(this);
+    }
+
+    /**
+     * Returns the listener backing this channel.
+     *
+     * @return the listener
+     */
+    public Listener<? extends Connection> getListener() {
+        return listener;
+    }
+
+    /**
+     * Throws an {@link AlreadyBoundException}, as the listener is bound when created.
+     *
+     * @throws AlreadyBoundException if the method is called
+     */
+    @Override
+    public AsynchronousServerSocketChannel bind(SocketAddress local, int backlog) throws IOException {
+        throw new AlreadyBoundException();
+    }
+
+    @Override
+    public <T> AsynchronousServerSocketChannel setOption(SocketOption<T> name, T value) throws IOException {
+        throw new UnsupportedOperationException("'" + name + "' not supported");
+    }
+
+    @Override
+    public <T> T getOption(SocketOption<T> name) throws IOException {
+        throw new UnsupportedOperationException("'" + name + "' not supported");
+    }
+
+    @Override
+    public Set<SocketOption<?>> supportedOptions() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Accepts the next connection from the listener. The handler is invoked on
+     * one of the threads of this channel's group.
+     *
+     * @param attachment the object to attach to the operation, can be {@code null}
+     * @param handler    the handler for consuming the result
+     * @param <A>        the type of the attachment
+     */
+    @Override
+    public <A> void accept(A attachment, CompletionHandler<AsynchronousSocketChannel, ? super A> handler) {
+        Objects.requireNonNull(handler);
+        if (!open) {
+            group.execute(() -> handler.failed(new ClosedChannelException(), attachment));
+            return;
+        }
+        if (!accepting.compareAndSet(false, true)) {
+            throw new AcceptPendingException();
+        }
+
+        listener.acceptAsync(null, new CompletionHandler<Connection, Object>() {
+            @Override
+            public void completed(Connection conn, Object ignored) {
+                accepting.set(false);
+                if (!open) {
+                    closeQuietly(conn);
+                    group.execute(() -> handler.failed(new AsynchronousCloseException(), attachment));
+                    return;
+                }
+                var provider = (AsyncChannelProvider) provider();
+                AsyncConnectionChannel ch;
+                try {
+                    ch = new AsyncConnectionChannel(provider, group, conn);
+                } catch (ShutdownChannelGroupException e) {
+                    closeQuietly(conn);
+                    group.execute(() -> handler.failed(e, attachment));
+                    return;
+                }
+                group.execute(() -> handler.completed(ch, attachment));
+            }
+
+            @Override
+            public void failed(Throwable exc, Object ignored) {
+                accepting.set(false);
+                var cause = open ? exc : new AsynchronousCloseException();
+                group.execute(() -> handler.failed(cause, attachment));
+            }
+        });
+    }
+
+    /**
+     * Accepts the next connection from the listener.
+     *
+     * @return a future representing the result
+     */
+    @Override
+    public Future<AsynchronousSocketChannel> accept() {
+        var future = new CompletableFuture<AsynchronousSocketChannel>();
+        accept(null, new CompletionHandler<AsynchronousSocketChannel, Object>() {
+            @Override
+            public void completed(AsynchronousSocketChannel result, Object attachment) {
+                future.complete(result);
+            }
+
+            @Override
+            public void failed(Throwable exc, Object attachment) {
+                future.completeExceptionally(exc);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Returns {@code null}, as ngrok listeners are not bound to a local address.
+     *
+     * @return {@code null}
+     */
+    @Override
+    public SocketAddress getLocalAddress() throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Closes this channel and the underlying listener.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        group.unregister(this);
+        listener.close();
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
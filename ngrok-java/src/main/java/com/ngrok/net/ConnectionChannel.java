@@ -0,0 +1,288 @@
+package com.ngrok.net;
+
+import com.ngrok.Connection;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.util.Objects;
+
+/**
+ * A {@link ByteChannel} for reading and writing data over a {@link Connection}.
+ * Supports scattering reads and gathering writes, and follows the usual channel
+ * contract of advancing the position of the buffers passed in.
+ *
+ * Direct buffers that are positioned at the start of their capacity are handed
+ * to the connection as is, all other buffers are staged through an internal direct buffer.
+ */
+public class ConnectionChannel implements ByteChannel, ScatteringByteChannel, GatheringByteChannel {
+    private final Connection connection;
+
+    private final Object readLock = new Object();
+    private final Object writeLock = new Object();
+
+    private final ByteBuffer readBuffer;
+    private final ByteBuffer writeBuffer;
+
+    private volatile boolean open = true;
+
+    /**
+     * Creates a new channel for the given connection, with the default staging buffer size.
+     *
+     * @param connection the connection to read from and write to
+     */
+    public ConnectionChannel(Connection connection) {
+        this(connection, 4096);
+    }
+
+    /**
+     * Creates a new channel for the given connection with the specified staging buffer size.
+     *
+     * @param connection the connection to read from and write to
+     * @param bufferSize the size of the buffers used to stage data that cannot be
+     *                   passed to the connection directly
+     */
+    public ConnectionChannel(Connection connection, int bufferSize) {
+        this.connection = Objects.requireNonNull(connection);
+        this.readBuffer = ByteBuffer.allocateDirect(bufferSize);
+        this.readBuffer.flip();
+        this.writeBuffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Returns the connection backing this channel.
+     *
+     * @return the connection
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Reads a sequence of bytes from this channel into the given buffer.
+     *
+     * @param dst the buffer to read bytes into
+     * @return the number of bytes read, or -1 if the end of the stream has been reached
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        synchronized (readLock) {
+            ensureOpen();
+            if (!dst.hasRemaining()) {
+                return 0;
+            }
+
+            if (readBuffer.hasRemaining()) {
+                return transfer(readBuffer, dst);
+            }
+
+            if (dst.isDirect() && dst.position() == 0 && dst.limit() == dst.capacity()) {
+                var sz = connection.read(dst);
+                if (sz < 0) {
+                    dst.clear();
+                    return -1;
+                }
+                dst.limit(dst.capacity());
+                dst.position(sz);
+                return sz;
+            }
+
+            if (!fill()) {
+                return -1;
+            }
+            return transfer(readBuffer, dst);
+        }
+    }
+
+    /**
+     * Reads a sequence of bytes from this channel into a subsequence of the given buffers.
+     *
+     * @param dsts   the buffers to read bytes into
+     * @param offset the offset within the buffer array of the first buffer
+     * @param length the maximum number of buffers to be accessed
+     * @return the number of bytes read, or -1 if the end of the stream has been reached
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        Objects.checkFromIndexSize(offset, length, dsts.length);
+        synchronized (readLock) {
+            ensureOpen();
+            if (!hasRemaining(dsts, offset, length)) {
+                return 0;
+            }
+
+            if (!readBuffer.hasRemaining() && !fill()) {
+                return -1;
+            }
+
+            long total = 0;
+            for (int i = offset; i < offset + length && readBuffer.hasRemaining(); i++) {
+                total += transfer(readBuffer, dsts[i]);
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Reads a sequence of bytes from this channel into the given buffers.
+     *
+     * @param dsts the buffers to read bytes into
+     * @return the number of bytes read, or -1 if the end of the stream has been reached
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public long read(ByteBuffer[] dsts) throws IOException {
+        return read(dsts, 0, dsts.length);
+    }
+
+    /**
+     * Writes a sequence of bytes to this channel from the given buffer.
+     *
+     * @param src the buffer containing bytes to write
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        synchronized (writeLock) {
+            ensureOpen();
+            return writeBuffered(src);
+        }
+    }
+
+    /**
+     * Writes a sequence of bytes to this channel from a subsequence of the given buffers.
+     *
+     * @param srcs   the buffers containing bytes to write
+     * @param offset the offset within the buffer array of the first buffer
+     * @param length the maximum number of buffers to be accessed
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        Objects.checkFromIndexSize(offset, length, srcs.length);
+        synchronized (writeLock) {
+            ensureOpen();
+
+            long total = 0;
+            for (int i = offset; i < offset + length; i++) {
+                var src = srcs[i];
+                while (src.hasRemaining()) {
+                    var sz = writeBuffered(src);
+                    if (sz == 0) {
+                        return total;
+                    }
+                    total += sz;
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Writes a sequence of bytes to this channel from the given buffers.
+     *
+     * @param srcs the buffers containing bytes to write
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException {
+        return write(srcs, 0, srcs.length);
+    }
+
+    /**
+     * Returns whether this channel is open.
+     *
+     * @return {@code true} if the channel is open, {@code false} otherwise
+     */
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Closes this channel and the underlying connection.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        connection.close();
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    /**
+     * Reads the next chunk of data from the connection into the staging buffer.
+     *
+     * @return {@code false} if the end of the stream has been reached
+     * @throws IOException if an I/O error occurs
+     */
+    private boolean fill() throws IOException {
+        readBuffer.clear();
+        var sz = connection.read(readBuffer);
+        if (sz < 0) {
+            readBuffer.position(0).limit(0);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes as much of the source buffer as fits in a single connection write,
+     * advancing its position by the number of bytes written.
+     */
+    private int writeBuffered(ByteBuffer src) throws IOException {
+        if (!src.hasRemaining()) {
+            return 0;
+        }
+
+        if (src.isDirect() && src.position() == 0) {
+            var sz = connection.write(src);
+            src.position(sz);
+            return sz;
+        }
+
+        var len = Math.min(src.remaining(), writeBuffer.capacity());
+        writeBuffer.clear();
+        writeBuffer.put(src.slice().limit(len));
+        writeBuffer.flip();
+
+        var sz = connection.write(writeBuffer);
+        src.position(src.position() + sz);
+        return sz;
+    }
+
+    private static int transfer(ByteBuffer from, ByteBuffer to) {
+        var len = Math.min(from.remaining(), to.remaining());
+        var oldLimit = from.limit();
+        from.limit(from.position() + len);
+        to.put(from);
+        from.limit(oldLimit);
+        return len;
+    }
+
+    private static boolean hasRemaining(ByteBuffer[] bufs, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (bufs[i].hasRemaining()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
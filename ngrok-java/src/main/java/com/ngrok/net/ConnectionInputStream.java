@@ -33,15 +33,20 @@ public class ConnectionInputStream extends InputStream {
      * connection into the buffer. Ignored if the buffer is not empty.
      * Automatically called by {@link #read()} and {@link #read(byte[], int, int)}.
      * 
+     * @return false if the end of the stream has been reached, true otherwise
      * @throws IOException if an I/O error occurs
      */
-    private void prepare() throws IOException {
+    private boolean prepare() throws IOException {
         if (buffer.hasRemaining()) {
-            return;
+            return true;
         }
 
         buffer.clear();
-        connection.read(buffer);
+        if (connection.read(buffer) < 0) {
+            buffer.position(0).limit(0);
+            return false;
+        }
+        return true;
     }
 
     /**
@@ -52,8 +57,10 @@ public class ConnectionInputStream extends InputStream {
      */
     @Override
     public int read() throws IOException {
-        prepare();
-        return buffer.get();
+        if (!prepare()) {
+            return -1;
+        }
+        return buffer.get() & 0xff;
     }
 
     /**
@@ -68,7 +75,12 @@ public class ConnectionInputStream extends InputStream {
      */
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
-        prepare();
+        if (len == 0) {
+            return 0;
+        }
+        if (!prepare()) {
+            return -1;
+        }
 
         var readLen = Math.min(len, buffer.remaining());
         buffer.get(b, off, readLen);
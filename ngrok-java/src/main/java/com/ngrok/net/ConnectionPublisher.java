@@ -0,0 +1,175 @@
+package com.ngrok.net;
+
+import com.ngrok.Connection;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Flow.Publisher} of the data read from a {@link Connection}. Reads are
+ * only issued while the subscriber has outstanding demand, with at most one read in flight.
+ *
+ * Each item is a direct buffer positioned over the bytes read. The buffer is owned by
+ * the publisher and recycled for the next read once {@link Flow.Subscriber#onNext}
+ * returns, so subscribers must consume or copy it before returning. Signals are
+ * delivered on the thread completing the read, and subscribers should hand off any
+ * long-running work.
+ *
+ * A publisher supports a single subscriber. Cancelling the subscription stops
+ * reading, but does not close the connection.
+ */
+public class ConnectionPublisher implements Flow.Publisher<ByteBuffer> {
+    private final Connection connection;
+    private final int bufferSize;
+
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * Creates a new publisher for the given connection, with the default buffer size.
+     *
+     * @param connection the connection to read from
+     */
+    public ConnectionPublisher(Connection connection) {
+        this(connection, 16384);
+    }
+
+    /**
+     * Creates a new publisher for the given connection with the specified buffer size.
+     *
+     * @param connection the connection to read from
+     * @param bufferSize the size of the buffer each read is issued with
+     */
+    public ConnectionPublisher(Connection connection, int bufferSize) {
+        this.connection = Objects.requireNonNull(connection);
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Returns the connection backing this publisher.
+     *
+     * @return the connection
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        Objects.requireNonNull(subscriber);
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("publisher already subscribed"));
+            return;
+        }
+        subscriber.onSubscribe(new ReadSubscription(subscriber));
+    }
+
+    private class ReadSubscription implements Flow.Subscription, CompletionHandler<Integer, ByteBuffer> {
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicBoolean reading = new AtomicBoolean();
+
+        private ByteBuffer buffer;
+        private volatile Throwable error;
+        private volatile boolean done;
+
+        ReadSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (done) {
+                return;
+            }
+            if (n <= 0) {
+                error = new IllegalArgumentException("non-positive request: " + n);
+                done = true;
+                // a read in flight delivers the error on completion
+                if (reading.compareAndSet(false, true)) {
+                    subscriber.onError(error);
+                }
+                return;
+            }
+            demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+            readNext();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+        }
+
+        private void readNext() {
+            while (!done && demand.get() > 0 && reading.compareAndSet(false, true)) {
+                if (done || demand.get() == 0) {
+                    // lost the race with a cancel or the last item
+                    reading.set(false);
+                    continue;
+                }
+                if (buffer == null) {
+                    buffer = ByteBuffer.allocateDirect(bufferSize);
+                }
+                buffer.clear();
+                connection.readAsync(buffer, buffer, this);
+                return;
+            }
+        }
+
+        @Override
+        public void completed(Integer sz, ByteBuffer buff) {
+            if (done) {
+                finish();
+                return;
+            }
+            if (sz < 0) {
+                done = true;
+                subscriber.onComplete();
+                return;
+            }
+            if (sz > 0) {
+                demand.decrementAndGet();
+                try {
+                    subscriber.onNext(buff);
+                } catch (Throwable th) {
+                    done = true;
+                    subscriber.onError(th);
+                    return;
+                }
+            }
+            reading.set(false);
+            readNext();
+        }
+
+        @Override
+        public void failed(Throwable exc, ByteBuffer buff) {
+            if (done) {
+                finish();
+                return;
+            }
+            done = true;
+            subscriber.onError(exc);
+        }
+
+        private void finish() {
+            var err = error;
+            if (err != null) {
+                error = null;
+                subscriber.onError(err);
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.ngrok.net;
+
+import com.ngrok.Connection;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * A {@link Flow.Subscriber} writing the buffers it receives to a {@link Connection}.
+ * Items are requested one at a time, and the next item is only requested once the
+ * previous one has been fully written.
+ *
+ * Direct buffers that are positioned at the start of their capacity are handed
+ * to the connection as is, all other buffers are staged through an internal direct buffer.
+ * The subscriber does not close the connection, use {@link #getCompletion()} to find
+ * out when all data has been written.
+ */
+public class ConnectionSubscriber implements Flow.Subscriber<ByteBuffer> {
+    private final Connection connection;
+    private final ByteBuffer writeBuffer;
+
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final CompletionHandler<Integer, ByteBuffer> writeHandler = new CompletionHandler<>() {
+        @Override
+        public void completed(Integer sz, ByteBuffer src) {
+            written(src, sz);
+        }
+
+        @Override
+        public void failed(Throwable exc, ByteBuffer src) {
+            subscription.cancel();
+            completion.completeExceptionally(exc);
+        }
+    };
+
+    private Flow.Subscription subscription;
+    private ByteBuffer pending;
+    private boolean writing;
+    private boolean upstreamDone;
+
+    /**
+     * Creates a new subscriber for the given connection, with the default staging buffer size.
+     *
+     * @param connection the connection to write to
+     */
+    public ConnectionSubscriber(Connection connection) {
+        this(connection, 16384);
+    }
+
+    /**
+     * Creates a new subscriber for the given connection with the specified staging buffer size.
+     *
+     * @param connection the connection to write to
+     * @param bufferSize the size of the buffer used to stage data that cannot be
+     *                   passed to the connection directly
+     */
+    public ConnectionSubscriber(Connection connection, int bufferSize) {
+        this.connection = Objects.requireNonNull(connection);
+        this.writeBuffer = ByteBuffer.allocateDirect(bufferSize);
+        this.writeBuffer.flip();
+    }
+
+    /**
+     * Returns a future completed once the publisher has completed and all received
+     * data has been written, or completed exceptionally if the publisher or a write fails.
+     *
+     * @return the completion future
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (this) {
+            if (this.subscription != null) {
+                subscription.cancel();
+                return;
+            }
+            this.subscription = subscription;
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(ByteBuffer item) {
+        synchronized (this) {
+            pending = item;
+            writing = true;
+        }
+        writeNext();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        completion.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            upstreamDone = true;
+            if (writing) {
+                return;
+            }
+        }
+        completion.complete(null);
+    }
+
+    private void writeNext() {
+        ByteBuffer src;
+        synchronized (this) {
+            if (writeBuffer.hasRemaining()) {
+                src = writeBuffer;
+            } else if (pending.isDirect() && pending.position() == 0) {
+                src = pending;
+            } else if (pending.hasRemaining()) {
+                var from = pending.duplicate();
+                writeBuffer.clear();
+                from.limit(from.position() + Math.min(from.remaining(), writeBuffer.remaining()));
+                writeBuffer.put(from);
+                writeBuffer.flip();
+                pending.position(from.position());
+                src = writeBuffer;
+            } else {
+                src = null;
+            }
+
+            if (src == null || !src.hasRemaining()) {
+                pending = null;
+                writing = false;
+                if (upstreamDone) {
+                    completion.complete(null);
+                    return;
+                }
+            }
+        }
+
+        if (src == null || !src.hasRemaining()) {
+            subscription.request(1);
+        } else {
+            connection.writeAsync(src, src, writeHandler);
+        }
+    }
+
+    private void written(ByteBuffer src, int sz) {
+        synchronized (this) {
+            if (src == writeBuffer) {
+                writeBuffer.position(sz);
+                writeBuffer.compact();
+                writeBuffer.flip();
+            } else {
+                pending.position(sz);
+            }
+        }
+        writeNext();
+    }
+}
@@ -0,0 +1,89 @@
+package com.ngrok.net;
+
+import com.ngrok.Connection;
+import com.ngrok.Listener;
+
+import java.io.IOException;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.util.Objects;
+
+/**
+ * A {@link Channel} for accepting connections from a {@link Listener}, in the
+ * style of {@link java.nio.channels.ServerSocketChannel}. Each accepted connection
+ * is returned as a {@link ConnectionChannel}.
+ */
+public class ListenerChannel implements Channel {
+    private final Listener<? extends Connection> listener;
+
+    private final int bufferSize;
+
+    private volatile boolean open = true;
+
+    /**
+     * Creates a new channel for the given listener.
+     *
+     * @param listener the listener to accept connections from
+     */
+    public ListenerChannel(Listener<? extends Connection> listener) {
+        this(listener, 4096);
+    }
+
+    /**
+     * Creates a new channel for the given listener, with the specified staging
+     * buffer size for accepted connection channels.
+     *
+     * @param listener   the listener to accept connections from
+     * @param bufferSize the staging buffer size of accepted connection channels
+     */
+    public ListenerChannel(Listener<? extends Connection> listener, int bufferSize) {
+        this.listener = Objects.requireNonNull(listener);
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Returns the listener backing this channel.
+     *
+     * @return the listener
+     */
+    public Listener<? extends Connection> getListener() {
+        return listener;
+    }
+
+    /**
+     * Waits for the next connection and returns a channel for it.
+     *
+     * @return the channel for the accepted connection
+     * @throws IOException if an I/O error occurs
+     */
+    public ConnectionChannel accept() throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        return new ConnectionChannel(listener.accept(), bufferSize);
+    }
+
+    /**
+     * Returns whether this channel is open.
+     *
+     * @return {@code true} if the channel is open, {@code false} otherwise
+     */
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Closes this channel and the underlying listener.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        listener.close();
+    }
+}
@@ -0,0 +1,127 @@
+package com.ngrok.net;
+
+import com.ngrok.Connection;
+import com.ngrok.Listener;
+import com.ngrok.Session;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A fixed group of listeners on one session, for servers that accept from several
+ * listeners with a pool of acceptor threads, such as the Jetty connectors.
+ *
+ * The listeners are opened together, and if one fails to open the others are closed
+ * again. Acceptors are spread evenly over the listeners by their index. Closing the
+ * group closes every listener once, which releases the acceptors waiting on them.
+ */
+public class ListenerGroup implements AutoCloseable {
+    private final List<Listener<?>> listeners;
+
+    private boolean open = true;
+
+    private ListenerGroup(List<Listener<?>> listeners) {
+        this.listeners = List.copyOf(listeners);
+    }
+
+    /**
+     * Opens a listener for each of the given functions.
+     *
+     * @param session           the session to open the listeners on
+     * @param listenerFunctions the functions for creating the listeners
+     * @return the group of opened listeners
+     * @throws IllegalArgumentException if no listener functions are given
+     */
+    public static ListenerGroup open(Session session, List<? extends Function<Session, ? extends Listener<?>>> listenerFunctions) {
+        if (listenerFunctions.isEmpty()) {
+            throw new IllegalArgumentException("at least one listener is required");
+        }
+        var opened = new ArrayList<Listener<?>>();
+        try {
+            for (var listenerFunction : listenerFunctions) {
+                opened.add(listenerFunction.apply(session));
+            }
+        } catch (RuntimeException e) {
+            new ListenerGroup(opened).abort(e);
+            throw e;
+        }
+        return new ListenerGroup(opened);
+    }
+
+    /**
+     * Returns the listeners in this group.
+     *
+     * @return an unmodifiable list of listeners
+     */
+    public List<Listener<?>> getListeners() {
+        return listeners;
+    }
+
+    /**
+     * Accepts the next connection for the given acceptor, from the listener the
+     * acceptor is assigned to.
+     *
+     * @param acceptor the index of the acceptor
+     * @return the accepted connection
+     * @throws IOException if the accept failed, or the listener has been closed
+     */
+    public Connection accept(int acceptor) throws IOException {
+        return listeners.get(acceptor % listeners.size()).accept();
+    }
+
+    /**
+     * Returns whether this group has not been closed yet.
+     *
+     * @return whether the group is open
+     */
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Closes every listener in this group, unless the group was already closed.
+     *
+     * @throws IOException if closing any of the listeners failed, with the failures
+     *                     of the other listeners suppressed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (!open) {
+                return;
+            }
+            open = false;
+        }
+        IOException failure = null;
+        for (var listener : listeners) {
+            try {
+                listener.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Closes this group after a server failed to start with it, adding any failure to
+     * close to the failure to start.
+     *
+     * @param cause the failure to start
+     */
+    public void abort(Throwable cause) {
+        try {
+            close();
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.ngrok.net;
+
+import com.ngrok.Connection;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.util.Objects;
+
+/**
+ * Non-blocking fill and flush over a {@link Connection}, for server integrations whose
+ * endpoints must never wait on the network, such as the Jetty connectors.
+ *
+ * Fill interest starts a {@link Connection#readAsync} into a buffer acquired from the
+ * subclass, and {@link #onFillable()} is called once data, the end of the stream or a
+ * failure has arrived. {@link #fill} then appends the data after whatever the target
+ * buffer already holds, so the native read resetting the buffer position does not matter.
+ * Flushed data is copied into an acquired buffer and written with {@link Connection#writeAsync},
+ * continuing partial writes until the buffer is drained. Buffers are only held while
+ * data is in flight, and released as soon as they are drained, so idle connections
+ * hold no buffers.
+ *
+ * Callbacks are invoked on the thread completing the native operation, and should hand
+ * off any work that may block.
+ *
+ * @param <B> the type of the buffers acquired from the subclass, such as a pooled buffer
+ *            wrapping a {@link ByteBuffer}
+ */
+public abstract class NonBlockingConnectionIO<B> {
+    private final Connection conn;
+
+    private final CompletionHandler<Integer, Void> readHandler = new CompletionHandler<>() {
+        @Override
+        public void completed(Integer sz, Void attachment) {
+            onRead(sz, null);
+        }
+
+        @Override
+        public void failed(Throwable exc, Void attachment) {
+            onRead(0, exc);
+        }
+    };
+    private final CompletionHandler<Integer, Void> writeHandler = new CompletionHandler<>() {
+        @Override
+        public void completed(Integer sz, Void attachment) {
+            onWritten(sz, null);
+        }
+
+        @Override
+        public void failed(Throwable exc, Void attachment) {
+            onWritten(0, exc);
+        }
+    };
+
+    private final Object lock = new Object();
+
+    private B readBuffer;
+    private boolean reading;
+    private boolean endOfStream;
+    private Throwable readFailure;
+
+    private B writeBuffer;
+    private boolean writing;
+    private boolean flushPending;
+    private Throwable writeFailure;
+
+    private boolean closed;
+
+    /**
+     * Creates non-blocking I/O over the given connection.
+     *
+     * @param conn the connection to read from and write to
+     */
+    protected NonBlockingConnectionIO(Connection conn) {
+        this.conn = Objects.requireNonNull(conn);
+    }
+
+    /**
+     * Returns the connection this I/O is performed on.
+     *
+     * @return the connection
+     */
+    public Connection getConnection() {
+        return conn;
+    }
+
+    /**
+     * Acquires a buffer for a read or a write. The buffer must be direct.
+     *
+     * @return the buffer
+     */
+    protected abstract B acquire();
+
+    /**
+     * Returns the byte buffer of an acquired buffer.
+     *
+     * @param buffer the acquired buffer
+     * @return the byte buffer to read into or write from
+     */
+    protected abstract ByteBuffer byteBuffer(B buffer);
+
+    /**
+     * Releases a buffer that is no longer in use.
+     *
+     * @param buffer the acquired buffer
+     */
+    protected abstract void release(B buffer);
+
+    /**
+     * Called once a {@link #fill} will not return 0, as data, the end of the stream or
+     * a failure has arrived, or the connection has been closed.
+     */
+    protected abstract void onFillable();
+
+    /**
+     * Called once the write in flight is done, if a {@link #flushInterested()} is
+     * waiting for it.
+     */
+    protected abstract void onFlushed();
+
+    /**
+     * Called whenever data moves, to postpone idle timeouts.
+     */
+    protected abstract void onActivity();
+
+    /**
+     * Starts reading from the connection, if no read is in flight and there is no data
+     * already waiting to be filled. Calls {@link #onFillable()} once the read completes,
+     * or right away if there is nothing to wait for.
+     */
+    public void fillInterested() {
+        ByteBuffer dst;
+        synchronized (lock) {
+            if (reading) {
+                return;
+            }
+            if (closed || endOfStream || readFailure != null || (readBuffer != null && byteBuffer(readBuffer).hasRemaining())) {
+                dst = null;
+            } else {
+                if (readBuffer == null) {
+                    readBuffer = acquire();
+                }
+                dst = byteBuffer(readBuffer);
+                dst.clear();
+                reading = true;
+            }
+        }
+        if (dst == null) {
+            onFillable();
+        } else {
+            conn.readAsync(dst, null, readHandler);
+        }
+    }
+
+    private void onRead(int sz, Throwable failure) {
+        synchronized (lock) {
+            reading = false;
+            if (failure != null) {
+                readFailure = failure;
+            } else if (sz < 0) {
+                endOfStream = true;
+            }
+            if (closed || failure != null || sz < 0) {
+                releaseReadBuffer();
+            }
+        }
+        onActivity();
+        onFillable();
+    }
+
+    /**
+     * Fills the given buffer with data already read from the connection, appending it
+     * after any data the buffer holds. Never waits for data to arrive.
+     *
+     * @param buffer the buffer to fill, in flush mode
+     * @return the number of bytes filled, 0 if no data is available, or -1 if
+     *         the end of the stream has been reached
+     * @throws IOException if reading from the connection failed
+     */
+    public int fill(ByteBuffer buffer) throws IOException {
+        int sz;
+        synchronized (lock) {
+            if (readBuffer != null && !reading && byteBuffer(readBuffer).hasRemaining()) {
+                var src = byteBuffer(readBuffer);
+                sz = append(buffer, src);
+                if (!src.hasRemaining()) {
+                    releaseReadBuffer();
+                }
+            } else if (readFailure != null) {
+                throw readFailure instanceof IOException ? (IOException) readFailure : new IOException(readFailure);
+            } else {
+                return endOfStream ? -1 : 0;
+            }
+        }
+        onActivity();
+        return sz;
+    }
+
+    /**
+     * Flushes the given buffers to the connection. As much data as fits is copied
+     * into an acquired buffer, consuming it from the given buffers, and written
+     * asynchronously.
+     *
+     * @param buffers the buffers to flush
+     * @return true if there was nothing to write, false if a write is in flight
+     * @throws IOException if a previous write failed
+     */
+    public boolean flush(ByteBuffer... buffers) throws IOException {
+        ByteBuffer src;
+        synchronized (lock) {
+            if (writeFailure != null) {
+                throw writeFailure instanceof IOException ? (IOException) writeFailure : new IOException(writeFailure);
+            }
+            if (writing) {
+                return false;
+            }
+            if (isEmpty(buffers)) {
+                return true;
+            }
+
+            if (writeBuffer == null) {
+                writeBuffer = acquire();
+            }
+            src = byteBuffer(writeBuffer);
+            src.clear();
+            for (var b : buffers) {
+                if (!src.hasRemaining()) {
+                    break;
+                }
+                var from = b.duplicate();
+                from.limit(from.position() + Math.min(from.remaining(), src.remaining()));
+                src.put(from);
+                b.position(from.position());
+            }
+            src.flip();
+
+            writing = true;
+        }
+
+        onActivity();
+        conn.writeAsync(src, null, writeHandler);
+        return false;
+    }
+
+    /**
+     * Calls {@link #onFlushed()} once the write in flight is done, or right away
+     * if it already has.
+     */
+    public void flushInterested() {
+        synchronized (lock) {
+            if (writing) {
+                flushPending = true;
+                return;
+            }
+        }
+        onFlushed();
+    }
+
+    private void onWritten(int sz, Throwable failure) {
+        ByteBuffer src = null;
+        synchronized (lock) {
+            var buffer = byteBuffer(writeBuffer);
+            if (failure == null && !closed && sz < buffer.limit()) {
+                // continue with the rest of a partial write
+                buffer.position(sz);
+                buffer.compact();
+                buffer.flip();
+                src = buffer;
+            } else {
+                writeFailure = failure;
+                writing = false;
+                release(writeBuffer);
+                writeBuffer = null;
+                if (!flushPending) {
+                    return;
+                }
+                flushPending = false;
+            }
+        }
+
+        if (src != null) {
+            conn.writeAsync(src, null, writeHandler);
+        } else {
+            onActivity();
+            onFlushed();
+        }
+    }
+
+    /**
+     * Closes the connection. Buffers still in use by a pending read or write are
+     * released once the operation has been aborted.
+     */
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            if (!reading) {
+                releaseReadBuffer();
+            }
+        }
+        try {
+            conn.close();
+        } catch (IOException ignored) {
+            // the connection is gone either way
+        }
+    }
+
+    private void releaseReadBuffer() {
+        if (readBuffer != null) {
+            release(readBuffer);
+            readBuffer = null;
+        }
+    }
+
+    private static boolean isEmpty(ByteBuffer[] buffers) {
+        for (var b : buffers) {
+            if (b != null && b.hasRemaining()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int append(ByteBuffer to, ByteBuffer from) {
+        // switch to fill mode after the data already in the buffer, compacting
+        // it if there is no room left at the end
+        var pos = to.position();
+        if (pos == to.limit()) {
+            pos = 0;
+            to.clear();
+        } else if (to.limit() == to.capacity()) {
+            to.compact();
+            pos = 0;
+        } else {
+            to.position(to.limit());
+            to.limit(to.capacity());
+        }
+
+        var len = Math.min(from.remaining(), to.remaining());
+        var oldLimit = from.limit();
+        from.limit(from.position() + len);
+        to.put(from);
+        from.limit(oldLimit);
+
+        to.flip();
+        to.position(pos);
+        return len;
+    }
+}
@@ -0,0 +1,55 @@
+package com.ngrok;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchTest {
+    @Test
+    public void testCloseListenersStartsAllClosesFirst() throws Exception {
+        var pending = new ArrayList<CompletableFuture<Void>>();
+        var session = new SessionPoolTest.FakeSession("s") {
+            @Override
+            public CompletableFuture<Void> closeListenerAsync(String listenerId) {
+                var done = new CompletableFuture<Void>();
+                pending.add(done);
+                if (listenerId.equals("c")) {
+                    // every close has been started by now, so they run concurrently
+                    pending.get(0).complete(null);
+                    pending.get(1).completeExceptionally(new IOException("close failed"));
+                    done.complete(null);
+                }
+                return done;
+            }
+        };
+
+        var results = session.closeListeners(List.of("a", "b", "c"));
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertEquals("close failed", results.get(1).getError().get().getMessage());
+        assertTrue(results.get(2).isSuccess());
+    }
+
+    @Test
+    public void testJoinKeepsOrderAndUnwrapsFailures() throws Exception {
+        var results = Batch.join(List.of(
+                Blocking.async(() -> {
+                    throw new IOException("bind failed");
+                }),
+                Blocking.async(() -> "async"),
+                CompletableFuture.completedFuture("done")));
+
+        assertEquals("bind failed", results.get(0).getError().get().getMessage());
+        assertEquals("async", results.get(1).get());
+        assertEquals("done", results.get(2).get());
+    }
+}
@@ -0,0 +1,65 @@
+package com.ngrok;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BuilderCodecTest {
+    @Test
+    public void testEncodesFieldsInOrder() {
+        var encoded = new TcpBuilder(null)
+                .metadata("meta")
+                .allowCIDR("10.0.0.0/8")
+                .allowCIDR("192.168.0.0/16")
+                .remoteAddress("1.tcp.ngrok.io:12345")
+                .encoded()
+                .duplicate();
+
+        assertTrue(encoded.isDirect());
+        assertEquals("meta", readString(encoded, BuilderCodec.METADATA));
+        assertEquals("10.0.0.0/8", readString(encoded, BuilderCodec.ALLOW_CIDR));
+        assertEquals("192.168.0.0/16", readString(encoded, BuilderCodec.ALLOW_CIDR));
+        assertEquals(BuilderCodec.PROXY_PROTO, encoded.get());
+        assertEquals(0, encoded.get());
+        assertEquals("1.tcp.ngrok.io:12345", readString(encoded, BuilderCodec.REMOTE_ADDR));
+        assertEquals(0, encoded.remaining());
+    }
+
+    @Test
+    public void testCachesUntilChanged() {
+        var builder = new HttpBuilder(null).domain("example.ngrok.app").trafficPolicy("{}");
+        var encoded = builder.encoded();
+        assertSame(encoded, builder.encoded());
+
+        builder.addRequestHeader("x-tenant", "a");
+        var changed = builder.encoded();
+        assertNotSame(encoded, changed);
+        assertTrue(changed.capacity() > encoded.capacity());
+        assertSame(changed, builder.encoded());
+    }
+
+    @Test
+    public void testOptionsAreEncodedOnEveryBind() {
+        var oauth = new Http.OAuth("google");
+        var builder = new HttpBuilder(null).oauthOptions(oauth);
+        var encoded = builder.encoded();
+
+        // the builder cannot see this, the options are re-read anyway
+        oauth.allowEmail("someone@example.com");
+        var changed = builder.encoded();
+        assertTrue(changed.capacity() > encoded.capacity());
+    }
+
+    private static String readString(ByteBuffer buf, byte tag) {
+        assertEquals(tag, buf.get());
+        var value = new byte[buf.getInt()];
+        buf.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,37 @@
+package com.ngrok;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class ReconnectPolicyTest {
+    @Test
+    public void testCopiesKeepSettings() {
+        var base = ReconnectPolicy.exponentialBackoff(Duration.ofMillis(100), Duration.ofSeconds(10));
+        var policy = base.withJitter(0.5).withMultiplier(1.5).withConnectTimeout(Duration.ofSeconds(3));
+
+        assertEquals(Duration.ofMillis(100), policy.getInitialDelay());
+        assertEquals(Duration.ofSeconds(10), policy.getMaxDelay());
+        assertEquals(1.5, policy.getMultiplier(), 0.0);
+        assertEquals(0.5, policy.getJitter(), 0.0);
+        assertEquals(Optional.of(Duration.ofSeconds(3)), policy.getConnectTimeout());
+
+        assertEquals(2.0, base.getMultiplier(), 0.0);
+        assertEquals(0.0, base.getJitter(), 0.0);
+        assertEquals(Optional.empty(), base.getConnectTimeout());
+    }
+
+    @Test
+    public void testRejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ReconnectPolicy.exponentialBackoff(Duration.ofSeconds(2), Duration.ofSeconds(1)));
+        var policy = ReconnectPolicy.exponentialBackoff(Duration.ZERO, Duration.ofSeconds(1));
+        assertThrows(IllegalArgumentException.class, () -> policy.withJitter(1.5));
+        assertThrows(IllegalArgumentException.class, () -> policy.withMultiplier(0.5));
+        assertThrows(IllegalArgumentException.class, () -> policy.withConnectTimeout(Duration.ZERO));
+    }
+}
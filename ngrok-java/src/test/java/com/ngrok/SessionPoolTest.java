@@ -0,0 +1,579 @@
+package com.ngrok;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SessionPoolTest {
+    @Test
+    public void testRoundRobinSpreadsListeners() throws Exception {
+        var pool = new SessionPool(SessionPool.Placement.ROUND_ROBIN);
+        var sessions = List.of(new FakeSession("a"), new FakeSession("b"), new FakeSession("c"));
+        for (var session : sessions) {
+            pool.add(session, null);
+        }
+
+        for (int i = 0; i < 6; i++) {
+            pool.tcpEndpoint().listen();
+        }
+
+        for (var session : sessions) {
+            assertEquals(2, session.listeners.size());
+        }
+    }
+
+    @Test
+    public void testLeastConnectionsAvoidsBusySession() throws Exception {
+        var pool = new SessionPool(SessionPool.Placement.LEAST_CONNECTIONS);
+        var busy = new FakeSession("busy");
+        var idle = new FakeSession("idle");
+        pool.add(busy, null);
+        pool.add(idle, null);
+
+        var first = pool.tcpEndpoint().listen();
+        assertEquals(1, busy.listeners.size());
+        busy.listeners.get(0).pending.add(new FakeConnection());
+        var conn = first.accept();
+
+        pool.tcpEndpoint().listen();
+        pool.tcpEndpoint().listen();
+        assertEquals(1, busy.listeners.size());
+        assertEquals(2, idle.listeners.size());
+
+        conn.close();
+        pool.tcpEndpoint().listen();
+        assertEquals(2, busy.listeners.size());
+    }
+
+    @Test
+    public void testTimeoutMovesListeners() throws Exception {
+        var pool = new SessionPool(SessionPool.Placement.ROUND_ROBIN);
+        var failing = new FakeSession("failing");
+        var healthy = new FakeSession("healthy");
+        var slot = pool.add(failing, null);
+        pool.add(healthy, null);
+
+        var listener = pool.tcpEndpoint().listen();
+        var originalId = listener.getId();
+        assertTrue(originalId.startsWith("failing"));
+
+        slot.timeout();
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (listener.getId().equals(originalId) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertNotEquals(originalId, listener.getId());
+        assertTrue(listener.getId().startsWith("healthy"));
+        assertTrue(failing.listeners.get(0).closed);
+
+        // new listeners avoid the failing session until it heartbeats again
+        pool.tcpEndpoint().listen();
+        assertEquals(1, failing.listeners.size());
+        slot.heartbeat(10);
+        pool.tcpEndpoint().listen();
+        pool.tcpEndpoint().listen();
+        assertEquals(2, failing.listeners.size());
+
+        healthy.listeners.get(0).pending.add(new FakeConnection());
+        listener.accept().close();
+    }
+
+    @Test
+    public void testLowestLatencyPlacesAndMovesListeners() throws Exception {
+        var pool = new SessionPool(SessionPool.Placement.LOWEST_LATENCY);
+        var near = new FakeSession("near");
+        var far = new FakeSession("far");
+        var nearSlot = pool.add(near, null);
+        var farSlot = pool.add(far, null);
+        nearSlot.connected(120);
+        farSlot.connected(300);
+
+        var listener = pool.tcpEndpoint().listen();
+        assertTrue(listener.getId().startsWith("near"));
+
+        // the first heartbeat replaces the handshake time, within the margin nothing moves
+        nearSlot.heartbeat(20);
+        farSlot.heartbeat(18);
+        Thread.sleep(50);
+        assertTrue(listener.getId().startsWith("near"));
+
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (listener.getId().startsWith("near") && System.nanoTime() < deadline) {
+            nearSlot.heartbeat(80);
+            Thread.sleep(10);
+        }
+
+        assertTrue(listener.getId().startsWith("far"));
+        assertTrue(near.listeners.get(0).closed);
+        assertTrue(pool.tcpEndpoint().listen().getId().startsWith("far"));
+    }
+
+    @Test
+    public void testPrimaryFailsOverToStandby() throws Exception {
+        var pool = new SessionPool(SessionPool.Placement.PRIMARY);
+        var primary = new FakeSession("primary");
+        var standby = new FakeSession("standby");
+        var primarySlot = pool.add(primary, null);
+        pool.add(standby, null);
+
+        var first = pool.tcpEndpoint().listen();
+        var second = pool.tcpEndpoint().listen();
+        assertEquals(2, primary.listeners.size());
+        assertTrue(standby.listeners.isEmpty());
+
+        primarySlot.timeout();
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (standby.listeners.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(first.getId().startsWith("standby"));
+        assertTrue(second.getId().startsWith("standby"));
+        assertTrue(pool.tcpEndpoint().listen().getId().startsWith("standby"));
+    }
+
+    @Test
+    public void testFailoverMovesReservedAddress() throws Exception {
+        var pool = new SessionPool(SessionPool.Placement.PRIMARY);
+        var online = ConcurrentHashMap.<String>newKeySet();
+        var primary = new ReservedSession("primary", online);
+        var standby = new ReservedSession("standby", online);
+        var primarySlot = pool.add(primary, null);
+        pool.add(standby, null);
+
+        var listener = pool.tcpEndpoint().listen();
+        assertTrue(listener.getId().startsWith("primary"));
+
+        // the failing session still holds the address, so the standby can only bind
+        // it once the old listener has been released, which happens first
+        primarySlot.timeout();
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (standby.listeners.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(listener.getId().startsWith("standby"));
+        assertTrue(primary.listeners.get(0).closed);
+        assertEquals(0, standby.rejected);
+    }
+
+    @Test
+    public void testMoveRetriesReservedAddressAfterRelease() throws Exception {
+        var pool = new SessionPool(SessionPool.Placement.ROUND_ROBIN);
+        var online = ConcurrentHashMap.<String>newKeySet();
+        var from = new ReservedSession("from", online);
+        var to = new ReservedSession("to", online);
+        pool.add(from, null);
+        var target = pool.add(to, null);
+
+        var listener = (PooledListener<?, ?>) pool.tcpEndpoint().listen();
+        assertTrue(listener.getId().startsWith("from"));
+
+        // both sessions are healthy, so the bind on the target is tried first
+        listener.moveTo(target);
+
+        assertTrue(listener.getId().startsWith("to"));
+        assertTrue(from.listeners.get(0).closed);
+        assertEquals(1, to.rejected);
+    }
+
+    @Test
+    public void testFailedMoveRebindsOnHealthySession() throws Exception {
+        var pool = new SessionPool(SessionPool.Placement.ROUND_ROBIN);
+        var from = new ReservedSession("from", ConcurrentHashMap.newKeySet());
+        // the target sees the address held elsewhere, and cannot bind it at all
+        var taken = new ReservedSession("taken", new HashSet<>(Set.of(ReservedSession.ADDRESS)));
+        pool.add(from, null);
+        var target = pool.add(taken, null);
+
+        var listener = (PooledListener<?, ?>) pool.tcpEndpoint().listen();
+        try {
+            listener.moveTo(target);
+            fail("moved to a session that rejects the address");
+        } catch (IOException e) {
+            assertEquals(1, e.getSuppressed().length);
+        }
+
+        assertEquals(2, from.listeners.size());
+        assertTrue(from.listeners.get(0).closed);
+        assertEquals(from.listeners.get(1).id, listener.getId());
+    }
+
+    @Test
+    public void testStrandedListenerRebindsOnNextHealthySession() throws Exception {
+        var pool = new SessionPool(SessionPool.Placement.ROUND_ROBIN);
+        var online = ConcurrentHashMap.<String>newKeySet();
+        var from = new ReservedSession("from", online);
+        var taken = new ReservedSession("taken", new HashSet<>(Set.of(ReservedSession.ADDRESS)));
+        var fromSlot = pool.add(from, null);
+        var takenSlot = pool.add(taken, null);
+
+        var listener = (PooledListener<?, ?>) pool.tcpEndpoint().listen();
+        assertTrue(listener.getId().startsWith("from"));
+
+        // the only healthy session rejects the address, and the failing one is not
+        // bound again, so the listener is left without a session
+        fromSlot.timeout();
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!listener.isStranded() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(listener.isStranded());
+        assertTrue(from.listeners.get(0).closed);
+
+        var accepted = CompletableFuture.supplyAsync(() -> {
+            try {
+                return listener.accept();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(accepted.isDone());
+
+        takenSlot.timeout();
+        var fresh = new ReservedSession("fresh", online);
+        var freshSlot = pool.add(fresh, null);
+        while (listener.isStranded() && System.nanoTime() < deadline) {
+            freshSlot.heartbeat(10);
+            Thread.sleep(10);
+        }
+
+        assertTrue(listener.getId().startsWith("fresh"));
+        fresh.listeners.get(0).pending.add(new FakeConnection());
+        accepted.get(5, TimeUnit.SECONDS).close();
+    }
+
+    @Test
+    public void testStrandedListenerFailsOnceClosed() throws Exception {
+        var pool = new SessionPool(SessionPool.Placement.ROUND_ROBIN);
+        var from = new ReservedSession("from", ConcurrentHashMap.newKeySet());
+        var taken = new ReservedSession("taken", new HashSet<>(Set.of(ReservedSession.ADDRESS)));
+        var fromSlot = pool.add(from, null);
+        pool.add(taken, null);
+
+        var listener = (PooledListener<?, ?>) pool.tcpEndpoint().listen();
+        fromSlot.timeout();
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!listener.isStranded() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(listener.isStranded());
+
+        var accepted = CompletableFuture.supplyAsync(() -> {
+            try {
+                return listener.accept();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(accepted.isDone());
+
+        pool.close();
+        try {
+            accepted.get(5, TimeUnit.SECONDS);
+            fail("accepted on a listener of a closed pool");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testEmptyPoolHasNoId() {
+        var pool = new SessionPool(SessionPool.Placement.ROUND_ROBIN);
+        assertEquals("", pool.getId());
+        assertEquals("", pool.getMetadata());
+    }
+
+    @Test
+    public void testClosedForwardersAreForgotten() throws Exception {
+        var pool = new SessionPool(SessionPool.Placement.ROUND_ROBIN);
+        var session = new FakeSession("a");
+        pool.add(session, null);
+
+        var url = new URL("http://localhost:8080");
+        var closedDirectly = pool.tcpEndpoint().forward(url);
+        var closedByPool = pool.tcpEndpoint().forward(url);
+        closedDirectly.close();
+        assertTrue(session.forwarders.get(0).closed);
+
+        try {
+            pool.closeForwarder(closedDirectly.getId());
+            fail("closed forwarder still tracked");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains(closedDirectly.getId()));
+        }
+        pool.closeForwarder(closedByPool.getId());
+        assertTrue(session.forwarders.get(1).closed);
+    }
+
+    @Test
+    public void testSmoothedLatency() {
+        var pool = new SessionPool(SessionPool.Placement.LOWEST_LATENCY);
+        var slot = pool.add(new FakeSession("a"), null);
+        assertTrue(Double.isNaN(slot.latency));
+
+        slot.connected(500);
+        assertEquals(500.0, slot.latency, 0.0);
+        slot.measured(100);
+        assertEquals(100.0, slot.latency, 0.0);
+        slot.measured(180);
+        assertEquals(110.0, slot.latency, 0.001);
+        slot.connected(500);
+        assertEquals(110.0, slot.latency, 0.001);
+    }
+
+    static class FakeSession implements Session {
+        final String id;
+        final List<FakeListener> listeners = new ArrayList<>();
+        final List<FakeForwarder> forwarders = new ArrayList<>();
+
+        FakeSession(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getMetadata() {
+            return "";
+        }
+
+        @Override
+        public synchronized Listener.Endpoint listenTcp(TcpBuilder builder) throws IOException {
+            var listener = new FakeListener(id + "-" + listeners.size());
+            listeners.add(listener);
+            return listener;
+        }
+
+        @Override
+        public synchronized Forwarder.Endpoint forwardTcp(TcpBuilder builder, URL url) {
+            var forwarder = new FakeForwarder(id + "-fwd-" + forwarders.size());
+            forwarders.add(forwarder);
+            return forwarder;
+        }
+
+        @Override
+        public Listener.Endpoint listenTls(TlsBuilder builder) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Forwarder.Endpoint forwardTls(TlsBuilder builder, URL url) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Listener.Endpoint listenHttp(HttpBuilder builder) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Forwarder.Endpoint forwardHttp(HttpBuilder builder, URL url) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Listener.Edge listenEdge(EdgeBuilder builder) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Forwarder.Edge forwardEdge(EdgeBuilder builder, URL url) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void closeListener(String listenerId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized void closeForwarder(String forwarderId) {
+            forwarders.stream().filter(f -> f.id.equals(forwarderId)).forEach(FakeForwarder::close);
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    /**
+     * A session binding a reserved TCP address, which the service only lets one
+     * listener hold at a time.
+     */
+    static class ReservedSession extends FakeSession {
+        static final String ADDRESS = "1.tcp.ngrok.io:20000";
+
+        final Set<String> online;
+        volatile int rejected;
+
+        ReservedSession(String id, Set<String> online) {
+            super(id);
+            this.online = online;
+        }
+
+        @Override
+        public synchronized Listener.Endpoint listenTcp(TcpBuilder builder) throws IOException {
+            if (!online.add(ADDRESS)) {
+                rejected++;
+                throw new IOException("address " + ADDRESS + " is already online");
+            }
+            var listener = new FakeListener(id + "-" + listeners.size()) {
+                @Override
+                public void close() {
+                    super.close();
+                    online.remove(ADDRESS);
+                }
+            };
+            listeners.add(listener);
+            return listener;
+        }
+    }
+
+    static class FakeListener implements Listener.Endpoint {
+        final String id;
+        final BlockingQueue<Connection.Endpoint> pending = new LinkedBlockingQueue<>();
+        volatile boolean closed;
+
+        FakeListener(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public Connection.Endpoint accept() throws IOException {
+            if (closed) {
+                throw new IOException("listener is closed");
+            }
+            try {
+                var conn = pending.poll(5, TimeUnit.SECONDS);
+                if (conn == null) {
+                    throw new IOException("no connection");
+                }
+                return conn;
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getMetadata() {
+            return "";
+        }
+
+        @Override
+        public String getForwardsTo() {
+            return "";
+        }
+
+        @Override
+        public String getProto() {
+            return "tcp";
+        }
+
+        @Override
+        public String getUrl() {
+            return "tcp://" + id;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    static class FakeForwarder implements Forwarder.Endpoint {
+        final String id;
+        volatile boolean closed;
+
+        FakeForwarder(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public void join() {}
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getMetadata() {
+            return "";
+        }
+
+        @Override
+        public String getForwardsTo() {
+            return "";
+        }
+
+        @Override
+        public String getProto() {
+            return "tcp";
+        }
+
+        @Override
+        public String getUrl() {
+            return "tcp://" + id;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    static class FakeConnection implements Connection.Endpoint {
+        @Override
+        public String getRemoteAddr() {
+            return "127.0.0.1:1234";
+        }
+
+        @Override
+        public String getProto() {
+            return "tcp";
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            return -1;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            return src.remaining();
+        }
+
+        @Override
+        public void close() {}
+    }
+}
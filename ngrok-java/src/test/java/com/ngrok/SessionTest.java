@@ -0,0 +1,26 @@
+package com.ngrok;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SessionTest {
+    @Test
+    public void testConnectAsyncFailsFuture() throws Exception {
+        // the native session is not on the classpath of this module, so the connect
+        // fails, and it must do so through the future rather than by throwing
+        var pending = Session.withAuthtoken("token").connectAsync();
+
+        try {
+            pending.get(5, TimeUnit.SECONDS);
+            fail("connect succeeded without a native session");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RuntimeException);
+            assertTrue(e.getCause().getCause() instanceof ClassNotFoundException);
+        }
+    }
+}
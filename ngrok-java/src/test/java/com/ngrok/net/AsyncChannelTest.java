@@ -0,0 +1,205 @@
+package com.ngrok.net;
+
+import com.ngrok.Connection;
+import com.ngrok.Listener;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ShutdownChannelGroupException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncChannelTest {
+    @Test
+    public void testAcceptReadWrite() throws Exception {
+        var conn = new EchoConnection();
+        var group = AsyncChannelProvider.provider().openAsynchronousChannelGroup(Executors.newSingleThreadExecutor(), 0);
+
+        try (var listener = AsyncListenerChannel.open(new QueueListener(conn), group)) {
+            var ch = listener.accept().get(5, TimeUnit.SECONDS);
+
+            var src = ByteBuffer.wrap("hello ngrok".getBytes(StandardCharsets.UTF_8));
+            assertEquals(11, (int) ch.write(src).get(5, TimeUnit.SECONDS));
+            assertEquals(0, src.remaining());
+
+            var dst = ByteBuffer.allocate(5);
+            assertEquals(5, (int) ch.read(dst).get(5, TimeUnit.SECONDS));
+            var rest = ByteBuffer.allocate(16);
+            assertEquals(6, (int) ch.read(rest).get(5, TimeUnit.SECONDS));
+
+            dst.flip();
+            rest.flip();
+            assertEquals("hello", StandardCharsets.UTF_8.decode(dst).toString());
+            assertEquals(" ngrok", StandardCharsets.UTF_8.decode(rest).toString());
+
+            ch.close();
+            assertTrue(conn.isClosed());
+        } finally {
+            group.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testShutdownFailsPendingOperations() throws Exception {
+        var conn = new BlockingConnection();
+        var group = AsyncChannelProvider.provider().openAsynchronousChannelGroup(Executors.newSingleThreadExecutor(), 0);
+
+        var listener = AsyncListenerChannel.open(new QueueListener(conn), group);
+        var ch = listener.accept().get(5, TimeUnit.SECONDS);
+        listener.close();
+
+        group.shutdown();
+        assertTrue(group.isShutdown());
+        try {
+            AsyncListenerChannel.open(new QueueListener(), group);
+            fail("expected shutdown group");
+        } catch (ShutdownChannelGroupException ignored) {
+        }
+
+        // the open channel keeps the group running
+        var read = ch.read(ByteBuffer.allocate(16));
+        conn.feed("hi".getBytes(StandardCharsets.UTF_8));
+        assertEquals(2, (int) read.get(5, TimeUnit.SECONDS));
+        assertFalse(group.awaitTermination(50, TimeUnit.MILLISECONDS));
+
+        var pending = ch.read(ByteBuffer.allocate(16));
+        group.shutdownNow();
+        try {
+            pending.get(5, TimeUnit.SECONDS);
+            fail("expected asynchronous close");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AsynchronousCloseException);
+        }
+        assertTrue(group.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    private static class EchoConnection implements Connection {
+        private final ByteBuffer data = ByteBuffer.allocate(1024);
+        private volatile boolean closed;
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public String getRemoteAddr() {
+            return "local";
+        }
+
+        @Override
+        public synchronized int read(ByteBuffer dst) throws IOException {
+            data.flip();
+            var len = Math.min(dst.capacity(), data.remaining());
+            dst.clear();
+            dst.put(data.slice().limit(len));
+            dst.flip();
+            data.position(data.position() + len);
+            data.compact();
+            return len;
+        }
+
+        @Override
+        public synchronized int write(ByteBuffer src) throws IOException {
+            var sz = src.limit();
+            for (int i = 0; i < sz; i++) {
+                data.put(src.get(i));
+            }
+            return sz;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+        }
+    }
+
+    private static class BlockingConnection implements Connection {
+        private static final byte[] END = new byte[0];
+
+        private final LinkedBlockingQueue<byte[]> input = new LinkedBlockingQueue<>();
+
+        void feed(byte[] chunk) {
+            input.add(chunk);
+        }
+
+        @Override
+        public String getRemoteAddr() {
+            return "local";
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            byte[] chunk;
+            try {
+                chunk = input.take();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (chunk == END) {
+                input.add(END);
+                return -1;
+            }
+            dst.clear();
+            dst.put(chunk);
+            dst.flip();
+            return chunk.length;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.add(END);
+        }
+    }
+
+    private static class QueueListener implements Listener<Connection> {
+        private final LinkedBlockingQueue<Connection> connections = new LinkedBlockingQueue<>();
+
+        QueueListener(Connection... conns) {
+            connections.addAll(List.of(conns));
+        }
+
+        @Override
+        public Connection accept() throws IOException {
+            try {
+                return connections.take();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public String getId() {
+            return "id";
+        }
+
+        @Override
+        public String getMetadata() {
+            return "";
+        }
+
+        @Override
+        public String getForwardsTo() {
+            return "";
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
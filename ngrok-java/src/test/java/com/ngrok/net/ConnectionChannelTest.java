@@ -0,0 +1,121 @@
+package com.ngrok.net;
+
+import com.ngrok.Connection;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class ConnectionChannelTest {
+    @Test
+    public void testReadHeapBuffer() throws Exception {
+        var conn = new ScriptConnection("0123456789");
+        var ch = new ConnectionChannel(conn, 4);
+
+        var dst = ByteBuffer.allocate(16);
+        dst.put((byte) 'x');
+        assertEquals(4, ch.read(dst));
+        assertEquals(4, ch.read(dst));
+        assertEquals(2, ch.read(dst));
+        assertEquals(-1, ch.read(dst));
+
+        dst.flip();
+        assertEquals("x0123456789", StandardCharsets.UTF_8.decode(dst).toString());
+    }
+
+    @Test
+    public void testScatteringRead() throws Exception {
+        var conn = new ScriptConnection("0123456789");
+        var ch = new ConnectionChannel(conn, 8);
+
+        var dsts = new ByteBuffer[] { ByteBuffer.allocate(3), ByteBuffer.allocate(3), ByteBuffer.allocate(8) };
+        assertEquals(8, ch.read(dsts));
+        assertEquals(2, ch.read(dsts));
+        assertEquals(-1, ch.read(dsts));
+
+        assertEquals(0, dsts[0].remaining());
+        assertEquals(0, dsts[1].remaining());
+        assertEquals(4, dsts[2].position());
+    }
+
+    @Test
+    public void testGatheringWrite() throws Exception {
+        var conn = new ScriptConnection("");
+        var ch = new ConnectionChannel(conn, 4);
+
+        var srcs = new ByteBuffer[] {
+                ByteBuffer.wrap("0123".getBytes(StandardCharsets.UTF_8)).position(1),
+                ByteBuffer.wrap("456789".getBytes(StandardCharsets.UTF_8)),
+        };
+        assertEquals(9, ch.write(srcs));
+        assertEquals(0, srcs[0].remaining());
+        assertEquals(0, srcs[1].remaining());
+
+        assertEquals("123456789", conn.written());
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        var conn = new ScriptConnection("");
+        var ch = new ConnectionChannel(conn);
+        ch.close();
+        assertFalse(ch.isOpen());
+
+        try {
+            ch.read(ByteBuffer.allocate(1));
+            fail("expected closed channel");
+        } catch (ClosedChannelException ignored) {
+        }
+    }
+
+    private static class ScriptConnection implements Connection {
+        private final ByteBuffer input;
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        ScriptConnection(String script) {
+            this.input = ByteBuffer.wrap(script.getBytes(StandardCharsets.UTF_8));
+        }
+
+        String written() {
+            return output.toString(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String getRemoteAddr() {
+            return "local";
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (!input.hasRemaining()) {
+                return -1;
+            }
+            var len = Math.min(dst.capacity(), input.remaining());
+            dst.clear();
+            dst.put(input.slice().limit(len));
+            dst.flip();
+            input.position(input.position() + len);
+            return len;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            var sz = src.limit();
+            for (int i = 0; i < sz; i++) {
+                output.write(src.get(i));
+            }
+            return sz;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.ngrok.net;
+
+import com.ngrok.Connection;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConnectionFlowTest {
+    @Test
+    public void testPublisherDemand() throws Exception {
+        var conn = new ScriptConnection("0123456789");
+        var publisher = new ConnectionPublisher(conn, 4);
+
+        var received = new StringBuffer();
+        var done = new CompletableFuture<Void>();
+        var subscription = new CompletableFuture<Flow.Subscription>();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription.complete(s);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                received.append(StandardCharsets.UTF_8.decode(item));
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+
+        var s = subscription.get(5, TimeUnit.SECONDS);
+        assertEquals(0, conn.reads());
+
+        s.request(1);
+        waitFor(() -> received.length() == 4);
+        // no demand left, so no further reads are issued
+        Thread.sleep(50);
+        assertEquals(1, conn.reads());
+
+        s.request(Long.MAX_VALUE);
+        done.get(5, TimeUnit.SECONDS);
+        assertEquals("0123456789", received.toString());
+    }
+
+    @Test
+    public void testSubscriberWrites() throws Exception {
+        var conn = new ScriptConnection("");
+        var subscriber = new ConnectionSubscriber(conn, 4);
+
+        try (var publisher = new SubmissionPublisher<ByteBuffer>()) {
+            publisher.subscribe(subscriber);
+            publisher.submit(ByteBuffer.wrap("0123".getBytes(StandardCharsets.UTF_8)).position(1));
+            publisher.submit(ByteBuffer.wrap("456789".getBytes(StandardCharsets.UTF_8)));
+        }
+        subscriber.getCompletion().get(5, TimeUnit.SECONDS);
+
+        assertEquals("123456789", conn.written());
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static class ScriptConnection implements Connection {
+        private final ByteBuffer input;
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private final AtomicInteger reads = new AtomicInteger();
+
+        ScriptConnection(String script) {
+            this.input = ByteBuffer.wrap(script.getBytes(StandardCharsets.UTF_8));
+        }
+
+        int reads() {
+            return reads.get();
+        }
+
+        synchronized String written() {
+            return output.toString(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String getRemoteAddr() {
+            return "local";
+        }
+
+        @Override
+        public synchronized int read(ByteBuffer dst) throws IOException {
+            reads.incrementAndGet();
+            if (!input.hasRemaining()) {
+                return -1;
+            }
+            var len = Math.min(dst.capacity(), input.remaining());
+            dst.clear();
+            dst.put(input.slice().limit(len));
+            dst.flip();
+            input.position(input.position() + len);
+            return len;
+        }
+
+        @Override
+        public synchronized int write(ByteBuffer src) throws IOException {
+            var sz = src.limit();
+            for (int i = 0; i < sz; i++) {
+                output.write(src.get(i));
+            }
+            return sz;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.ngrok.net;
+
+import com.ngrok.Connection;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConnectionInputStreamTest {
+    @Test
+    public void testEndOfStream() throws Exception {
+        var conn = new ScriptConnection(new byte[] { 1, (byte) 0xff, 3, 4, 5 });
+        var is = new ConnectionInputStream(conn, 4);
+
+        assertEquals(1, is.read());
+        assertEquals(0xff, is.read());
+
+        var b = new byte[8];
+        assertEquals(2, is.read(b, 0, b.length));
+        assertEquals(1, is.read(b, 0, b.length));
+        assertEquals(5, b[0]);
+        assertEquals(-1, is.read(b, 0, b.length));
+        assertEquals(-1, is.read());
+    }
+
+    private static class ScriptConnection implements Connection {
+        private final ByteBuffer input;
+
+        ScriptConnection(byte[] script) {
+            this.input = ByteBuffer.wrap(script);
+        }
+
+        @Override
+        public String getRemoteAddr() {
+            return "local";
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (!input.hasRemaining()) {
+                return -1;
+            }
+            var len = Math.min(dst.capacity(), input.remaining());
+            dst.clear();
+            dst.put(input.slice().limit(len));
+            dst.flip();
+            input.position(input.position() + len);
+            return len;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.ngrok.net;
+
+import com.ngrok.Connection;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NonBlockingConnectionIOTest {
+    @Test
+    public void testFillAppends() throws Exception {
+        var io = new TestIO(new ShortConnection("0123456789", 4));
+
+        var dst = ByteBuffer.allocate(16);
+        dst.put("ab".getBytes(StandardCharsets.UTF_8)).flip();
+        assertEquals(0, io.fill(dst));
+
+        io.fillInterested();
+        assertEquals(1, io.fillable.get());
+        assertEquals(4, io.fill(dst));
+        io.fillInterested();
+        assertEquals(4, io.fill(dst));
+        io.fillInterested();
+        assertEquals(2, io.fill(dst));
+        io.fillInterested();
+        assertEquals(-1, io.fill(dst));
+
+        assertEquals("ab0123456789", StandardCharsets.UTF_8.decode(dst).toString());
+        assertEquals(0, io.held.get());
+    }
+
+    @Test
+    public void testPartialWrites() throws Exception {
+        var conn = new ShortConnection("", 3);
+        var io = new TestIO(conn);
+
+        var srcs = new ByteBuffer[] {
+                ByteBuffer.wrap("0123".getBytes(StandardCharsets.UTF_8)),
+                ByteBuffer.wrap("456789".getBytes(StandardCharsets.UTF_8)),
+        };
+        io.flushInterested();
+        assertEquals(1, io.flushed.get());
+
+        // the writes complete right away, continuing until the buffer is drained
+        assertFalse(io.flush(srcs));
+        assertEquals(0, srcs[0].remaining());
+        assertEquals(0, srcs[1].remaining());
+        assertEquals(4, conn.writes.get());
+        assertEquals("0123456789", conn.written());
+
+        assertTrue(io.flush(srcs));
+        assertEquals(0, io.held.get());
+    }
+
+    private static class TestIO extends NonBlockingConnectionIO<ByteBuffer> {
+        final AtomicInteger held = new AtomicInteger();
+        final AtomicInteger fillable = new AtomicInteger();
+        final AtomicInteger flushed = new AtomicInteger();
+
+        TestIO(Connection conn) {
+            super(conn);
+        }
+
+        @Override
+        protected ByteBuffer acquire() {
+            held.incrementAndGet();
+            return ByteBuffer.allocateDirect(16);
+        }
+
+        @Override
+        protected ByteBuffer byteBuffer(ByteBuffer buffer) {
+            return buffer;
+        }
+
+        @Override
+        protected void release(ByteBuffer buffer) {
+            held.decrementAndGet();
+        }
+
+        @Override
+        protected void onFillable() {
+            fillable.incrementAndGet();
+        }
+
+        @Override
+        protected void onFlushed() {
+            flushed.incrementAndGet();
+        }
+
+        @Override
+        protected void onActivity() {
+        }
+    }
+
+    private static class ShortConnection implements Connection {
+        private final ByteBuffer input;
+        private final int maxOp;
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private final AtomicInteger writes = new AtomicInteger();
+
+        ShortConnection(String script, int maxOp) {
+            this.input = ByteBuffer.wrap(script.getBytes(StandardCharsets.UTF_8));
+            this.maxOp = maxOp;
+        }
+
+        String written() {
+            return output.toString(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String getRemoteAddr() {
+            return "local";
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (!input.hasRemaining()) {
+                return -1;
+            }
+            var len = Math.min(Math.min(dst.capacity(), input.remaining()), maxOp);
+            dst.clear();
+            dst.put(input.slice().limit(len));
+            dst.flip();
+            input.position(input.position() + len);
+            return len;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            writes.incrementAndGet();
+            var sz = Math.min(src.limit(), maxOp);
+            for (int i = 0; i < sz; i++) {
+                output.write(src.get(i));
+            }
+            return sz;
+        }
+
+        @Override
+        public <A> void readAsync(ByteBuffer dst, A attachment, CompletionHandler<Integer, ? super A> handler) {
+            try {
+                handler.completed(read(dst), attachment);
+            } catch (IOException e) {
+                handler.failed(e, attachment);
+            }
+        }
+
+        @Override
+        public <A> void writeAsync(ByteBuffer src, A attachment, CompletionHandler<Integer, ? super A> handler) {
+            try {
+                handler.completed(write(src), attachment);
+            } catch (IOException e) {
+                handler.failed(e, attachment);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
@@ -1,39 +1,112 @@
 package com.ngrok.jetty;
 
 import com.ngrok.Session;
+import com.ngrok.net.ListenerGroup;
 
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.server.AbstractConnector;
+import org.eclipse.jetty.server.ConnectionFactory;
 import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.NegotiatingServerConnectionFactory;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.SslConnectionFactory;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
  * A class representing a connector implementation for ngrok listeners.
+ *
+ * The connector serves HTTP/1.1 by default, other protocols are served by passing in
+ * their connection factories. For example, HTTP/2 with prior knowledge over
+ * TCP and TLS-terminated listeners is served with:
+ *
+ * <pre>
+ * var http = new HttpConfiguration();
+ * new NgrokConnector(server, sessionSupplier, listenerFunction,
+ *         new HttpConnectionFactory(http), new HTTP2CServerConnectionFactory(http));
+ * </pre>
+ *
+ * Passthrough TLS edge connections start with the {@link SslConnectionFactory}, if one
+ * is configured, so that HTTP/2 can be negotiated with ALPN. All other connections start
+ * with the first factory that does not negotiate TLS or ALPN.
+ *
+ * A connector can serve several listeners from the same session, each with its own
+ * acceptor threads. Accepted endpoints are tracked, so a graceful shutdown of the server
+ * closes the ngrok listeners to stop accepting, and then waits for in-flight exchanges
+ * up to the server's stop timeout.
  */
 public class NgrokConnector extends AbstractConnector {
     private final Supplier<Session> sessionSupplier;
-    private final Function<Session, com.ngrok.Listener> listenerFunction;
+    private final List<Function<Session, com.ngrok.Listener>> listenerFunctions;
     private Session session;
-    private com.ngrok.Listener listener;
+    private final Object lock = new Object();
+    private volatile ListenerGroup listeners;
+    private IOException closeFailure;
+    private ConnectionFactory tlsFactory;
+    private ConnectionFactory plainFactory;
 
     /**
      * Constructs a new ngrok connector with the specified server, session supplier,
-     * and listener function.
+     * and listener function, serving HTTP/1.1.
      *
      * @param server           the server to use for the connector
      * @param sessionSupplier  the supplier for the session used by the connector
      * @param listenerFunction the function for creating the listener
      */
     public NgrokConnector(Server server, Supplier<Session> sessionSupplier, Function<Session, com.ngrok.Listener> listenerFunction) {
-        super(server, null, null, null, -1, new HttpConnectionFactory());
+        this(server, sessionSupplier, listenerFunction, new HttpConnectionFactory());
         setDefaultProtocol(HttpVersion.HTTP_1_1.asString());
+    }
+
+    /**
+     * Constructs a new ngrok connector with the specified server, session supplier,
+     * listener function and connection factories.
+     *
+     * @param server           the server to use for the connector
+     * @param sessionSupplier  the supplier for the session used by the connector
+     * @param listenerFunction the function for creating the listener
+     * @param factories        the connection factories for the protocols to serve
+     */
+    public NgrokConnector(Server server, Supplier<Session> sessionSupplier, Function<Session, com.ngrok.Listener> listenerFunction,
+                          ConnectionFactory... factories) {
+        this(server, sessionSupplier, List.of(listenerFunction), -1, factories);
+    }
+
+    /**
+     * Constructs a new ngrok connector serving several listeners, with the specified
+     * number of acceptor threads for each listener.
+     *
+     * @param server               the server to use for the connector
+     * @param sessionSupplier      the supplier for the session used by the connector
+     * @param listenerFunctions    the functions for creating the listeners
+     * @param acceptorsPerListener the number of acceptor threads for each listener, or -1 for
+     *                             the default of Jetty's acceptor count for a single listener,
+     *                             and one acceptor per listener otherwise
+     * @param factories            the connection factories for the protocols to serve
+     */
+    public NgrokConnector(Server server, Supplier<Session> sessionSupplier, List<Function<Session, com.ngrok.Listener>> listenerFunctions,
+                          int acceptorsPerListener, ConnectionFactory... factories) {
+        super(server, null, null, null, acceptors(listenerFunctions.size(), acceptorsPerListener), factories);
 
         this.sessionSupplier = sessionSupplier;
-        this.listenerFunction = listenerFunction;
+        this.listenerFunctions = List.copyOf(listenerFunctions);
+    }
+
+    private static int acceptors(int listeners, int acceptorsPerListener) {
+        if (listeners == 0) {
+            throw new IllegalArgumentException("at least one listener is required");
+        }
+        if (acceptorsPerListener == 0) {
+            throw new IllegalArgumentException("at least one acceptor per listener is required");
+        }
+        if (acceptorsPerListener < 0) {
+            return listeners == 1 ? -1 : listeners;
+        }
+        return listeners * acceptorsPerListener;
     }
 
     /**
@@ -43,38 +116,108 @@ public class NgrokConnector extends AbstractConnector {
      */
     @Override
     protected void doStart() throws Exception {
+        this.tlsFactory = getConnectionFactory(SslConnectionFactory.class);
+        this.plainFactory = getConnectionFactories().stream()
+                .filter(f -> !(f instanceof SslConnectionFactory || f instanceof NegotiatingServerConnectionFactory))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("no connection factory for plain connections"));
+
         this.session = sessionSupplier.get();
-        this.listener = listenerFunction.apply(this.session);
-        super.doStart();
+        var group = ListenerGroup.open(this.session, listenerFunctions.stream()
+                .<Function<Session, com.ngrok.Listener<?>>>map(f -> f::apply)
+                .collect(Collectors.toList()));
+        this.listeners = group;
+        try {
+            super.doStart();
+        } catch (Throwable th) {
+            // a failed start is not stopped, so don't leave the listeners open
+            group.abort(th);
+            throw th;
+        }
     }
 
     /**
-     * Accepts a new connection on this ngrok connector.
+     * Accepts a new connection on this ngrok connector. Acceptor threads are spread
+     * evenly over the listeners.
      *
-     * @param i the ID of the connection
+     * @param i the ID of the acceptor
      * @throws IOException          if an I/O error occurs
-     * @throws InterruptedException if the thread is interrupted
+     * @throws InterruptedException if the thread is interrupted, or the listeners have
+     *                              been closed by a graceful shutdown
      */
     @Override
     protected void accept(int i) throws IOException, InterruptedException {
-        var ngrokConnection = listener.accept();
-        var ep = new NgrokEndpoint(getScheduler(), ngrokConnection);
+        com.ngrok.Connection ngrokConnection;
+        try {
+            ngrokConnection = listeners.accept(i);
+        } catch (IOException e) {
+            if (isShutdown()) {
+                // the listener was closed to stop accepting, let the acceptor exit quietly
+                throw new InterruptedException("listener closed");
+            }
+            throw e;
+        }
+        var ep = new NgrokEndpoint(getScheduler(), getExecutor(), ngrokConnection, getByteBufferPool()) {
+            @Override
+            public void onClose(Throwable cause) {
+                super.onClose(cause);
+                onEndPointClosed(this);
+            }
+        };
+        ep.setIdleTimeout(getIdleTimeout());
+        onEndPointOpened(ep);
 
-        var connection = getDefaultConnectionFactory().newConnection(this, ep);
+        var connection = connectionFactory(ngrokConnection).newConnection(this, ep);
         ep.setConnection(connection);
 
         connection.onOpen();
     }
 
+    private ConnectionFactory connectionFactory(com.ngrok.Connection conn) {
+        if (tlsFactory != null && conn instanceof com.ngrok.Connection.Edge && ((com.ngrok.Connection.Edge) conn).isPassthroughTls()) {
+            return tlsFactory;
+        }
+        return plainFactory;
+    }
+
     /**
-     * Stops this ngrok connector.
+     * Closes the ngrok listeners, which releases the acceptor threads waiting for new
+     * connections. Jetty calls this when a graceful shutdown starts, and again when the
+     * connector stops.
+     */
+    @Override
+    protected void interruptAcceptors() {
+        var current = listeners;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                synchronized (lock) {
+                    closeFailure = e;
+                }
+            }
+        }
+        super.interruptAcceptors();
+    }
+
+    /**
+     * Stops this ngrok connector, closing the listeners unless a graceful shutdown
+     * already has.
      *
      * @throws Exception if an error occurs while stopping the connector
      */
     @Override
     protected void doStop() throws Exception {
         super.doStop();
-        this.listener.close();
+
+        IOException failure;
+        synchronized (lock) {
+            failure = closeFailure;
+            closeFailure = null;
+        }
+        if (failure != null) {
+            throw failure;
+        }
     }
 
     /**
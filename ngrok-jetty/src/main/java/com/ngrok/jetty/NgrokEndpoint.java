@@ -1,83 +1,167 @@
 package com.ngrok.jetty;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import org.eclipse.jetty.io.AbstractEndPoint;
+import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.util.thread.Scheduler;
 
 import com.ngrok.Connection;
+import com.ngrok.net.NonBlockingConnectionIO;
 
 /**
  * A class representing an endpoint for ngrok connection.
+ *
+ * Reads and flushes are asynchronous, so Jetty threads never wait on slow clients. Fill
+ * interest starts a read into a direct buffer from the connector's {@link ByteBufferPool},
+ * and the endpoint is fillable once data has arrived. Flushed data is copied to a pooled
+ * direct buffer and written by the native runtime, completing the
+ * {@link org.eclipse.jetty.io.WriteFlusher} once the write is done. Buffers are only held
+ * while data is in flight, and returned to the pool when the endpoint is idle. The I/O
+ * itself is done by a {@link NonBlockingConnectionIO}.
+ *
+ * Fill and write completions are dispatched to the connector's executor, as they run
+ * application code that may block, such as a servlet writing its response.
+ *
+ * Idle endpoints are expired according to the idle timeout, which closes the connection
+ * and aborts any read still pending on it.
  */
 public class NgrokEndpoint extends AbstractEndPoint {
-    private final Connection conn;
+    private static final int BUFFER_SIZE = 16384;
+
+    private final InetSocketAddress remoteAddress;
+    private final NonBlockingConnectionIO<ByteBuffer> io;
 
     /**
      * Constructs a new ngrok endpoint with the specified scheduler and connection.
+     * Buffers are allocated for the endpoint alone, and completions are dispatched
+     * to the common pool.
      *
      * @param scheduler the scheduler to use for the endpoint
      * @param conn      the connection to use for the endpoint
      */
     public NgrokEndpoint(Scheduler scheduler, Connection conn) {
+        this(scheduler, ForkJoinPool.commonPool(), conn, null);
+    }
+
+    /**
+     * Constructs a new ngrok endpoint with the specified scheduler, executor, connection
+     * and buffer pool.
+     *
+     * @param scheduler  the scheduler to use for idle timeouts
+     * @param executor   the executor to dispatch fill and write completions to
+     * @param conn       the connection to use for the endpoint
+     * @param bufferPool the pool to acquire read and write buffers from, or {@code null}
+     *                   to allocate buffers for the endpoint alone
+     */
+    public NgrokEndpoint(Scheduler scheduler, Executor executor, Connection conn, ByteBufferPool bufferPool) {
         super(scheduler);
-        this.conn = conn;
+        this.remoteAddress = conn.inetAddress();
+        this.io = new NonBlockingConnectionIO<>(conn) {
+            @Override
+            protected ByteBuffer acquire() {
+                if (bufferPool == null) {
+                    return ByteBuffer.allocateDirect(BUFFER_SIZE);
+                }
+                return bufferPool.acquire(BUFFER_SIZE, true);
+            }
+
+            @Override
+            protected ByteBuffer byteBuffer(ByteBuffer buffer) {
+                return buffer;
+            }
+
+            @Override
+            protected void release(ByteBuffer buffer) {
+                if (bufferPool != null) {
+                    bufferPool.release(buffer);
+                }
+            }
+
+            @Override
+            protected void onFillable() {
+                executor.execute(() -> getFillInterest().fillable());
+            }
+
+            @Override
+            protected void onFlushed() {
+                executor.execute(() -> getWriteFlusher().completeWrite());
+            }
+
+            @Override
+            protected void onActivity() {
+                notIdle();
+            }
+        };
 
         onOpen();
     }
 
     /**
-     * Throws an {@link UnsupportedOperationException}, as incomplete flush is not supported
-     * by ngrok endpoints.
-     *
-     * @throws UnsupportedOperationException if the method is called
+     * Completes the pending write once the write in flight is done, or right away
+     * if it already has.
      */
     @Override
     protected void onIncompleteFlush() {
-        throw new UnsupportedOperationException("noful");
+        io.flushInterested();
     }
 
     /**
-     * Schedules the endpoint to be filled with interest.
+     * Starts reading from the connection, if there is no data already waiting to
+     * be filled. The endpoint is fillable once the read completes.
      *
      * @throws IOException if an I/O error occurs
      */
     @Override
     protected void needsFillInterest() throws IOException {
-        getScheduler().schedule(() -> getFillInterest().fillable(), 0, TimeUnit.NANOSECONDS);
+        io.fillInterested();
     }
 
     /**
-     * Fills the endpoint with data from the connection.
+     * Fills the given buffer with data already read from the connection, appending it
+     * after any data the buffer holds. Never waits for data to arrive.
      *
      * @param buffer the buffer to fill with data
-     * @return the number of bytes read from the connection
-     * @throws IOException if an I/O error occurs
+     * @return the number of bytes filled, 0 if no data is available, or -1 if
+     *         the end of the stream has been reached
+     * @throws IOException if reading from the connection failed
      */
     @Override
     public int fill(ByteBuffer buffer) throws IOException {
-        return conn.read(buffer);
+        var sz = io.fill(buffer);
+        if (sz < 0) {
+            shutdownInput();
+        }
+        return sz;
     }
 
     /**
-     * Flushes the endpoint with data from the connection.
+     * Flushes the given buffers to the connection. As much data as fits is copied
+     * into a pooled write buffer, consuming it from the given buffers, and
+     * written asynchronously.
      *
-     * @param buffer the buffer to flush with data
-     * @return true if the buffer was completely flushed, false otherwise
-     * @throws IOException if an I/O error occurs
+     * @param buffer the buffers to flush
+     * @return true if all data has been written, false if a write is still in flight
+     * @throws IOException if a previous write failed
      */
     @Override
     public boolean flush(ByteBuffer... buffer) throws IOException {
-        for (var b : buffer) {
-            int sz = conn.write(b);
-            if (sz < b.limit()) {
-                return false;
-            }
-        }
-        return true;
+        return io.flush(buffer);
+    }
+
+    /**
+     * Closes the connection. Buffers still in use by a pending read or write are
+     * returned to the pool once the operation has been aborted.
+     */
+    @Override
+    protected void doClose() {
+        io.close();
+        super.doClose();
     }
 
     /**
@@ -98,6 +182,6 @@ public class NgrokEndpoint extends AbstractEndPoint {
 
     @Override
     public SocketAddress getRemoteSocketAddress() {
-        return conn.inetAddress();
+        return remoteAddress;
     }
 }
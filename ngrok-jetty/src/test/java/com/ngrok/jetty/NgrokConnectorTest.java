@@ -0,0 +1,183 @@
+package com.ngrok.jetty;
+
+import com.ngrok.Connection;
+import com.ngrok.Listener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NgrokConnectorTest {
+    @Test
+    public void testServesRequest() throws Exception {
+        var conn = new ScriptConnection("GET /hello HTTP/1.1\r\nHost: example.ngrok.app\r\nConnection: close\r\n\r\n");
+        var listener = new QueueListener(conn);
+
+        var server = new Server();
+        server.addConnector(new NgrokConnector(server, () -> null, session -> listener));
+        server.setHandler(new HelloHandler());
+        server.start();
+
+        try {
+            assertTrue(conn.awaitClose(5, TimeUnit.SECONDS));
+        } finally {
+            server.stop();
+        }
+        assertTrue(listener.isClosed());
+
+        var response = conn.written();
+        assertTrue(response, response.startsWith("HTTP/1.1 200 OK\r\n"));
+        assertTrue(response, response.endsWith("\r\n\r\nhello /hello"));
+    }
+
+    @Test
+    public void testFailedStartClosesListeners() throws Exception {
+        var first = new QueueListener();
+        var server = new Server();
+        server.addConnector(new NgrokConnector(server, () -> null, List.of(
+                session -> first,
+                session -> {
+                    throw new IllegalStateException("bind failed");
+                }), 1, new HttpConnectionFactory()));
+
+        try {
+            server.start();
+            fail("expected start to fail");
+        } catch (IllegalStateException e) {
+            assertEquals("bind failed", e.getMessage());
+        } finally {
+            server.stop();
+        }
+        assertTrue(first.isClosed());
+    }
+
+    private static class HelloHandler extends AbstractHandler {
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+                throws IOException {
+            var body = ("hello " + target).getBytes(StandardCharsets.US_ASCII);
+            response.setStatus(200);
+            response.setContentType("text/plain");
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+            baseRequest.setHandled(true);
+        }
+    }
+
+    private static class ScriptConnection implements Connection {
+        private final ByteBuffer input;
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        ScriptConnection(String script) {
+            this.input = ByteBuffer.wrap(script.getBytes(StandardCharsets.ISO_8859_1));
+        }
+
+        synchronized String written() {
+            return output.toString(StandardCharsets.ISO_8859_1);
+        }
+
+        boolean awaitClose(long timeout, TimeUnit unit) throws InterruptedException {
+            return closed.await(timeout, unit);
+        }
+
+        @Override
+        public String getRemoteAddr() {
+            return "127.0.0.1:1234";
+        }
+
+        @Override
+        public synchronized int read(ByteBuffer dst) throws IOException {
+            if (!input.hasRemaining()) {
+                return -1;
+            }
+            var len = Math.min(dst.capacity(), input.remaining());
+            dst.clear();
+            dst.put(input.slice().limit(len));
+            dst.flip();
+            input.position(input.position() + len);
+            return len;
+        }
+
+        @Override
+        public synchronized int write(ByteBuffer src) throws IOException {
+            var sz = src.limit();
+            for (int i = 0; i < sz; i++) {
+                output.write(src.get(i));
+            }
+            return sz;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed.countDown();
+        }
+    }
+
+    private static class QueueListener implements Listener<Connection> {
+        private static final Connection CLOSED = new ScriptConnection("");
+
+        private final LinkedBlockingQueue<Connection> connections = new LinkedBlockingQueue<>();
+        private volatile boolean closed;
+
+        QueueListener(Connection... conns) {
+            connections.addAll(List.of(conns));
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public Connection accept() throws IOException {
+            Connection conn;
+            try {
+                conn = connections.take();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (conn == CLOSED) {
+                connections.add(CLOSED);
+                throw new IOException("listener closed");
+            }
+            return conn;
+        }
+
+        @Override
+        public String getId() {
+            return "id";
+        }
+
+        @Override
+        public String getMetadata() {
+            return "";
+        }
+
+        @Override
+        public String getForwardsTo() {
+            return "";
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            connections.add(CLOSED);
+        }
+    }
+}
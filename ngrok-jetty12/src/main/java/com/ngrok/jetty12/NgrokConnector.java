@@ -0,0 +1,198 @@
+package com.ngrok.jetty12;
+
+import com.ngrok.Session;
+import com.ngrok.net.ListenerGroup;
+
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.server.AbstractConnector;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.NegotiatingServerConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.SslConnectionFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A Jetty 12 connector for ngrok listeners, behaving like the {@code NgrokConnector}
+ * of the ngrok-jetty module: it serves HTTP/1.1 or the given connection factories,
+ * starts passthrough TLS edge connections with the {@link SslConnectionFactory}, and
+ * closes its listeners when a graceful shutdown starts.
+ *
+ * Endpoints read and write without blocking, and dispatch to the connector's executor.
+ * To handle requests on virtual threads, create the server with a
+ * {@link org.eclipse.jetty.util.thread.VirtualThreadPool}:
+ *
+ * <pre>
+ * var server = new Server(new VirtualThreadPool());
+ * server.addConnector(new NgrokConnector(server, sessionSupplier, listenerFunction));
+ * </pre>
+ */
+public class NgrokConnector extends AbstractConnector {
+    private final Supplier<Session> sessionSupplier;
+    private final List<Function<Session, ? extends com.ngrok.Listener<?>>> listenerFunctions;
+    private Session session;
+    private final Object lock = new Object();
+    private volatile ListenerGroup listeners;
+    private IOException closeFailure;
+    private ConnectionFactory tlsFactory;
+    private ConnectionFactory plainFactory;
+
+    /**
+     * Constructs a new ngrok connector serving HTTP/1.1.
+     *
+     * @param server           the server to use for the connector
+     * @param sessionSupplier  the supplier for the session used by the connector
+     * @param listenerFunction the function for creating the listener
+     */
+    public NgrokConnector(Server server, Supplier<Session> sessionSupplier, Function<Session, ? extends com.ngrok.Listener<?>> listenerFunction) {
+        this(server, sessionSupplier, listenerFunction, new HttpConnectionFactory());
+        setDefaultProtocol(HttpVersion.HTTP_1_1.asString());
+    }
+
+    /**
+     * Constructs a new ngrok connector serving the given connection factories.
+     *
+     * @param server           the server to use for the connector
+     * @param sessionSupplier  the supplier for the session used by the connector
+     * @param listenerFunction the function for creating the listener
+     * @param factories        the connection factories for the protocols to serve
+     */
+    public NgrokConnector(Server server, Supplier<Session> sessionSupplier, Function<Session, ? extends com.ngrok.Listener<?>> listenerFunction,
+                          ConnectionFactory... factories) {
+        this(server, sessionSupplier, List.of(listenerFunction), -1, factories);
+    }
+
+    /**
+     * Constructs a new ngrok connector serving several listeners, with the specified
+     * number of acceptor threads for each listener.
+     *
+     * @param server               the server to use for the connector
+     * @param sessionSupplier      the supplier for the session used by the connector
+     * @param listenerFunctions    the functions for creating the listeners
+     * @param acceptorsPerListener the number of acceptor threads for each listener, or -1 for
+     *                             the default of Jetty's acceptor count for a single listener,
+     *                             and one acceptor per listener otherwise
+     * @param factories            the connection factories for the protocols to serve
+     */
+    public NgrokConnector(Server server, Supplier<Session> sessionSupplier, List<Function<Session, ? extends com.ngrok.Listener<?>>> listenerFunctions,
+                          int acceptorsPerListener, ConnectionFactory... factories) {
+        super(server, null, null, null, acceptors(listenerFunctions.size(), acceptorsPerListener), factories);
+
+        this.sessionSupplier = sessionSupplier;
+        this.listenerFunctions = List.copyOf(listenerFunctions);
+    }
+
+    private static int acceptors(int listeners, int acceptorsPerListener) {
+        if (listeners == 0) {
+            throw new IllegalArgumentException("at least one listener is required");
+        }
+        if (acceptorsPerListener == 0) {
+            throw new IllegalArgumentException("at least one acceptor per listener is required");
+        }
+        if (acceptorsPerListener < 0) {
+            return listeners == 1 ? -1 : listeners;
+        }
+        return listeners * acceptorsPerListener;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        this.tlsFactory = getConnectionFactory(SslConnectionFactory.class);
+        this.plainFactory = getConnectionFactories().stream()
+                .filter(f -> !(f instanceof SslConnectionFactory || f instanceof NegotiatingServerConnectionFactory))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("no connection factory for plain connections"));
+
+        this.session = sessionSupplier.get();
+        var group = ListenerGroup.open(this.session, listenerFunctions);
+        this.listeners = group;
+        try {
+            super.doStart();
+        } catch (Throwable th) {
+            // a failed start is not stopped, so don't leave the listeners open
+            group.abort(th);
+            throw th;
+        }
+    }
+
+    @Override
+    protected void accept(int i) throws IOException, InterruptedException {
+        com.ngrok.Connection ngrokConnection;
+        try {
+            ngrokConnection = listeners.accept(i);
+        } catch (IOException e) {
+            if (isShutdown()) {
+                // the listener was closed to stop accepting, let the acceptor exit quietly
+                throw new InterruptedException("listener closed");
+            }
+            throw e;
+        }
+        var ep = new NgrokEndpoint(getScheduler(), getExecutor(), ngrokConnection, getByteBufferPool()) {
+            @Override
+            public void onClose(Throwable cause) {
+                super.onClose(cause);
+                onEndPointClosed(this);
+            }
+        };
+        ep.setIdleTimeout(getIdleTimeout());
+        onEndPointOpened(ep);
+
+        var connection = connectionFactory(ngrokConnection).newConnection(this, ep);
+        ep.setConnection(connection);
+
+        connection.onOpen();
+    }
+
+    private ConnectionFactory connectionFactory(com.ngrok.Connection conn) {
+        if (tlsFactory != null && conn instanceof com.ngrok.Connection.Edge edge && edge.isPassthroughTls()) {
+            return tlsFactory;
+        }
+        return plainFactory;
+    }
+
+    /**
+     * Closes the ngrok listeners, which releases the blocked acceptor threads.
+     */
+    @Override
+    protected void interruptAcceptors() {
+        var current = listeners;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                synchronized (lock) {
+                    closeFailure = e;
+                }
+            }
+        }
+        super.interruptAcceptors();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+
+        IOException failure;
+        synchronized (lock) {
+            failure = closeFailure;
+            closeFailure = null;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Throws an {@link UnsupportedOperationException}, ngrok connectors have no transport.
+     *
+     * @throws UnsupportedOperationException if the method is called
+     */
+    @Override
+    public Object getTransport() {
+        throw new UnsupportedOperationException("ohnoe");
+    }
+}
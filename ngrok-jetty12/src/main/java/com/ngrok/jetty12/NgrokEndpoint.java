@@ -0,0 +1,126 @@
+package com.ngrok.jetty12;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
+import org.eclipse.jetty.io.AbstractEndPoint;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.util.thread.Scheduler;
+
+import com.ngrok.Connection;
+import com.ngrok.net.NonBlockingConnectionIO;
+
+/**
+ * A Jetty 12 endpoint for an ngrok connection, reading and flushing asynchronously like
+ * the {@code NgrokEndpoint} of the ngrok-jetty module. Buffers are
+ * {@link RetainableByteBuffer}s from the connector's {@link ByteBufferPool}, and fill and
+ * write completions run on the connector's executor, which uses virtual threads when the
+ * server has a {@link org.eclipse.jetty.util.thread.VirtualThreadPool}. The I/O itself is
+ * done by the same {@link NonBlockingConnectionIO} as in the Jetty 11 endpoint.
+ */
+public class NgrokEndpoint extends AbstractEndPoint {
+    private static final int BUFFER_SIZE = 16384;
+
+    private final InetSocketAddress remoteAddress;
+    private final NonBlockingConnectionIO<RetainableByteBuffer> io;
+
+    /**
+     * Constructs a new ngrok endpoint.
+     *
+     * @param scheduler  the scheduler to use for idle timeouts
+     * @param executor   the executor to dispatch fill and write completions to
+     * @param conn       the connection to use for the endpoint
+     * @param bufferPool the pool to acquire read and write buffers from
+     */
+    public NgrokEndpoint(Scheduler scheduler, Executor executor, Connection conn, ByteBufferPool bufferPool) {
+        super(scheduler);
+        this.remoteAddress = conn.inetAddress();
+        this.io = new NonBlockingConnectionIO<>(conn) {
+            @Override
+            protected RetainableByteBuffer acquire() {
+                return bufferPool.acquire(BUFFER_SIZE, true);
+            }
+
+            @Override
+            protected ByteBuffer byteBuffer(RetainableByteBuffer buffer) {
+                return buffer.getByteBuffer();
+            }
+
+            @Override
+            protected void release(RetainableByteBuffer buffer) {
+                buffer.release();
+            }
+
+            @Override
+            protected void onFillable() {
+                executor.execute(() -> getFillInterest().fillable());
+            }
+
+            @Override
+            protected void onFlushed() {
+                executor.execute(() -> getWriteFlusher().completeWrite());
+            }
+
+            @Override
+            protected void onActivity() {
+                notIdle();
+            }
+        };
+
+        onOpen();
+    }
+
+    @Override
+    protected void onIncompleteFlush() {
+        io.flushInterested();
+    }
+
+    @Override
+    protected void needsFillInterest() throws IOException {
+        io.fillInterested();
+    }
+
+    @Override
+    public int fill(ByteBuffer buffer) throws IOException {
+        var sz = io.fill(buffer);
+        if (sz < 0) {
+            shutdownInput();
+        }
+        return sz;
+    }
+
+    @Override
+    public boolean flush(ByteBuffer... buffer) throws IOException {
+        return io.flush(buffer);
+    }
+
+    @Override
+    protected void doClose() {
+        io.close();
+        super.doClose();
+    }
+
+    /**
+     * Throws an {@link UnsupportedOperationException}, ngrok endpoints have no transport.
+     *
+     * @throws UnsupportedOperationException if the method is called
+     */
+    @Override
+    public Object getTransport() {
+        throw new UnsupportedOperationException("ohnoe");
+    }
+
+    @Override
+    public SocketAddress getLocalSocketAddress() {
+        return null;
+    }
+
+    @Override
+    public SocketAddress getRemoteSocketAddress() {
+        return remoteAddress;
+    }
+}
@@ -0,0 +1,288 @@
+package com.ngrok.netty;
+
+import com.ngrok.Connection;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.AbstractChannel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultChannelConfig;
+import io.netty.channel.EventLoop;
+import io.netty.channel.RecvByteBufAllocator;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A Netty {@link io.netty.channel.Channel} for a {@link Connection} accepted by an
+ * {@link NgrokServerChannel}.
+ *
+ * Reads go straight into direct buffers from the channel's allocator, sized by its
+ * {@link RecvByteBufAllocator}, and are only issued while the pipeline requests them,
+ * following the {@code autoRead} setting. Writes are taken from the outbound buffer one
+ * at a time and only removed from it once written, so the write buffer watermarks
+ * reflect the data still waiting for the client. Reads and writes complete on the
+ * native runtime and are handed to the channel's event loop.
+ */
+public class NgrokChannel extends AbstractChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false, 16);
+
+    private final Connection conn;
+    private final ChannelConfig config = new DefaultChannelConfig(this);
+
+    private volatile boolean open = true;
+    private boolean reading;
+    private boolean writing;
+
+    /**
+     * Creates a new channel for the given connection.
+     *
+     * @param parent the server channel that accepted the connection
+     * @param conn   the connection
+     */
+    public NgrokChannel(NgrokServerChannel parent, Connection conn) {
+        super(parent);
+        this.conn = conn;
+    }
+
+    /**
+     * Returns the connection backing this channel.
+     *
+     * @return the connection
+     */
+    public Connection connection() {
+        return conn;
+    }
+
+    @Override
+    public NgrokServerChannel parent() {
+        return (NgrokServerChannel) super.parent();
+    }
+
+    @Override
+    public ChannelConfig config() {
+        return config;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isActive() {
+        return open;
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    protected AbstractUnsafe newUnsafe() {
+        return new NgrokUnsafe();
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return true;
+    }
+
+    /**
+     * Returns the placeholder address of the server channel, as ngrok connections are
+     * not bound to a local address.
+     */
+    @Override
+    protected SocketAddress localAddress0() {
+        return parent().localAddress();
+    }
+
+    @Override
+    protected SocketAddress remoteAddress0() {
+        return conn.inetAddress();
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        throw new UnsupportedOperationException("ngrok channels cannot be bound");
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        doClose();
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        open = false;
+        conn.close();
+    }
+
+    @Override
+    protected void doBeginRead() throws Exception {
+        if (reading) {
+            return;
+        }
+        reading = true;
+
+        var handle = unsafe().recvBufAllocHandle();
+        handle.reset(config());
+        var buf = handle.allocate(alloc());
+        if (!buf.isDirect()) {
+            buf.release();
+            buf = alloc().directBuffer(handle.guess());
+        }
+        handle.attemptedBytesRead(buf.writableBytes());
+
+        var dst = buf.nioBuffer(buf.writerIndex(), buf.writableBytes());
+        var target = buf;
+        conn.readAsync(dst, null, new CompletionHandler<Integer, Object>() {
+            @Override
+            public void completed(Integer sz, Object attachment) {
+                completeRead(target, handle, sz, null);
+            }
+
+            @Override
+            public void failed(Throwable exc, Object attachment) {
+                completeRead(target, handle, 0, exc);
+            }
+        });
+    }
+
+    private void completeRead(ByteBuf buf, RecvByteBufAllocator.Handle handle, int sz, Throwable failure) {
+        try {
+            eventLoop().execute(() -> read(buf, handle, sz, failure));
+        } catch (RejectedExecutionException e) {
+            // the event loop is gone, and the channel with it
+            buf.release();
+        }
+    }
+
+    private void read(ByteBuf buf, RecvByteBufAllocator.Handle handle, int sz, Throwable failure) {
+        reading = false;
+        if (!isOpen()) {
+            buf.release();
+            return;
+        }
+
+        var pipeline = pipeline();
+        if (failure != null || sz < 0) {
+            buf.release();
+            handle.lastBytesRead(-1);
+            handle.readComplete();
+            pipeline.fireChannelReadComplete();
+            if (failure != null) {
+                pipeline.fireExceptionCaught(failure);
+            }
+            unsafe().close(unsafe().voidPromise());
+            return;
+        }
+
+        buf.writerIndex(buf.writerIndex() + sz);
+        handle.lastBytesRead(sz);
+        handle.incMessagesRead(1);
+        pipeline.fireChannelRead(buf);
+        handle.readComplete();
+        pipeline.fireChannelReadComplete();
+    }
+
+    /**
+     * Accepts {@link ByteBuf}s, copying them to a direct buffer if they cannot be
+     * handed to the connection as is.
+     */
+    @Override
+    protected Object filterOutboundMessage(Object msg) throws Exception {
+        if (msg instanceof ByteBuf) {
+            var buf = (ByteBuf) msg;
+            if (buf.isDirect() && buf.nioBufferCount() == 1) {
+                return buf;
+            }
+            var direct = alloc().directBuffer(buf.readableBytes());
+            direct.writeBytes(buf, buf.readerIndex(), buf.readableBytes());
+            buf.release();
+            return direct;
+        }
+        throw new UnsupportedOperationException("unsupported message type: " + msg.getClass().getName());
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        if (writing) {
+            return;
+        }
+
+        for (;;) {
+            var msg = in.current();
+            if (msg == null) {
+                return;
+            }
+
+            var buf = (ByteBuf) msg;
+            var readable = buf.readableBytes();
+            if (readable == 0) {
+                in.remove();
+                continue;
+            }
+
+            writing = true;
+            // keep the buffer alive while the native runtime writes from it, even if a
+            // close fails and releases the outbound buffer in the meantime
+            buf.retain();
+            ByteBuffer src = buf.nioBuffer(buf.readerIndex(), readable);
+            conn.writeAsync(src, null, new CompletionHandler<Integer, Object>() {
+                @Override
+                public void completed(Integer sz, Object attachment) {
+                    complete(buf, sz, null);
+                }
+
+                @Override
+                public void failed(Throwable exc, Object attachment) {
+                    complete(buf, 0, exc);
+                }
+            });
+            return;
+        }
+    }
+
+    private void complete(ByteBuf buf, int sz, Throwable failure) {
+        try {
+            eventLoop().execute(() -> written(buf, sz, failure));
+        } catch (RejectedExecutionException e) {
+            buf.release();
+        }
+    }
+
+    private void written(ByteBuf buf, int sz, Throwable failure) {
+        buf.release();
+        writing = false;
+        var in = unsafe().outboundBuffer();
+        if (in == null) {
+            // closed while the write was in flight
+            return;
+        }
+        if (failure != null) {
+            pipeline().fireExceptionCaught(failure);
+            unsafe().close(unsafe().voidPromise());
+            return;
+        }
+
+        in.removeBytes(sz);
+        ((NgrokUnsafe) unsafe()).flushNow();
+    }
+
+    private class NgrokUnsafe extends AbstractUnsafe {
+        @Override
+        public void connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) {
+            promise.setFailure(new UnsupportedOperationException("ngrok channels cannot connect"));
+        }
+
+        void flushNow() {
+            flush0();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.ngrok.netty;
+
+import com.ngrok.Connection;
+import com.ngrok.Listener;
+
+import io.netty.channel.AbstractServerChannel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.DefaultChannelConfig;
+import io.netty.channel.EventLoop;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.nio.channels.CompletionHandler;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A Netty server {@link io.netty.channel.Channel} accepting connections from an ngrok {@link Listener}.
+ * Accepted connections are passed down the pipeline as {@link NgrokChannel}s, so the channel
+ * can be used with a {@link io.netty.bootstrap.ServerBootstrap}:
+ *
+ * <pre>
+ * new ServerBootstrap()
+ *         .group(bossGroup, workerGroup)
+ *         .channelFactory(() -&gt; new NgrokServerChannel(listener))
+ *         .childHandler(initializer)
+ *         .bind(new InetSocketAddress(0));
+ * </pre>
+ *
+ * The listener is bound when created, so the address passed to bind is ignored. Accepts
+ * complete on the native runtime and are handed to the channel's event loop, so the channel
+ * is compatible with any {@link EventLoop}. Connections are only accepted while the pipeline
+ * requests reads, which follows the {@code autoRead} setting.
+ */
+public class NgrokServerChannel extends AbstractServerChannel {
+    private final Listener<? extends Connection> listener;
+    private final InetSocketAddress address;
+    private final ChannelConfig config = new DefaultChannelConfig(this);
+
+    private volatile boolean open = true;
+    private boolean accepting;
+
+    /**
+     * Creates a new server channel for the given listener.
+     *
+     * @param listener the listener to accept connections from
+     */
+    public NgrokServerChannel(Listener<? extends Connection> listener) {
+        this.listener = Objects.requireNonNull(listener);
+        this.address = placeholderAddress(listener);
+    }
+
+    /**
+     * Derives an unresolved address from the listener's URL, or from its ID if it has
+     * no URL, as servers like gRPC's expect a bound channel to report an address.
+     */
+    private static InetSocketAddress placeholderAddress(Listener<?> listener) {
+        if (listener instanceof Listener.Endpoint) {
+            try {
+                var url = URI.create(((Listener.Endpoint) listener).getUrl());
+                if (url.getHost() != null) {
+                    return InetSocketAddress.createUnresolved(url.getHost(), Math.max(url.getPort(), 0));
+                }
+            } catch (IllegalArgumentException ignored) {
+                // fall back to the ID
+            }
+        }
+        return InetSocketAddress.createUnresolved(listener.getId(), 0);
+    }
+
+    /**
+     * Returns the listener backing this channel.
+     *
+     * @return the listener
+     */
+    public Listener<? extends Connection> listener() {
+        return listener;
+    }
+
+    @Override
+    public ChannelConfig config() {
+        return config;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isActive() {
+        return open;
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return true;
+    }
+
+    /**
+     * Returns an unresolved placeholder address, as ngrok listeners are not bound to a
+     * local address. It is taken from the listener's URL, or its ID if it has none.
+     */
+    @Override
+    protected SocketAddress localAddress0() {
+        return address;
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        // the listener is bound when created
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        open = false;
+        listener.close();
+    }
+
+    @Override
+    protected void doBeginRead() throws Exception {
+        if (accepting) {
+            return;
+        }
+        accepting = true;
+
+        listener.acceptAsync(null, new CompletionHandler<Connection, Object>() {
+            @Override
+            public void completed(Connection conn, Object attachment) {
+                completeAccept(conn, null);
+            }
+
+            @Override
+            public void failed(Throwable exc, Object attachment) {
+                completeAccept(null, exc);
+            }
+        });
+    }
+
+    private void completeAccept(Connection conn, Throwable failure) {
+        try {
+            eventLoop().execute(() -> accepted(conn, failure));
+        } catch (RejectedExecutionException e) {
+            // the event loop is gone, and the channel with it. accepting stays set, so
+            // no further accept is started
+            if (conn != null) {
+                closeQuietly(conn);
+            }
+        }
+    }
+
+    private void accepted(Connection conn, Throwable failure) {
+        accepting = false;
+        if (!isOpen()) {
+            if (conn != null) {
+                closeQuietly(conn);
+            }
+            return;
+        }
+        if (failure != null) {
+            // the listener is no longer usable
+            pipeline().fireExceptionCaught(failure);
+            unsafe().close(unsafe().voidPromise());
+            return;
+        }
+
+        pipeline().fireChannelRead(new NgrokChannel(this, conn));
+        pipeline().fireChannelReadComplete();
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (IOException ignored) {
+            // the connection was never used
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.ngrok.netty;
+
+import com.ngrok.Connection;
+import com.ngrok.Listener;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NgrokChannelTest {
+    private final DefaultEventLoopGroup group = new DefaultEventLoopGroup(1);
+
+    @After
+    public void shutdown() throws Exception {
+        group.shutdownGracefully(0, 5, TimeUnit.SECONDS).sync();
+    }
+
+    @Test
+    public void testReadFillsSliceAndRereads() throws Exception {
+        var conn = new PendingConnection();
+        var reads = new LinkedBlockingQueue<String>();
+        var ch = register(conn, true, reads);
+
+        var read = conn.reads.poll(5, TimeUnit.SECONDS);
+        assertNotNull(read);
+        // the native read fills the buffer from position 0, so it gets a slice of the
+        // writable region of the ByteBuf
+        assertEquals(0, read.buffer.position());
+        read.complete("hello");
+        assertEquals("hello", reads.poll(5, TimeUnit.SECONDS));
+
+        // autoRead issues the next read once the previous one has been delivered
+        read = conn.reads.poll(5, TimeUnit.SECONDS);
+        assertNotNull(read);
+        read.complete(" ngrok");
+        assertEquals(" ngrok", reads.poll(5, TimeUnit.SECONDS));
+
+        ch.close().sync();
+    }
+
+    @Test
+    public void testReadsFollowDemandWithoutAutoRead() throws Exception {
+        var conn = new PendingConnection();
+        var reads = new LinkedBlockingQueue<String>();
+        var ch = register(conn, false, reads);
+
+        assertNull(conn.reads.poll(50, TimeUnit.MILLISECONDS));
+
+        ch.read();
+        var read = conn.reads.poll(5, TimeUnit.SECONDS);
+        assertNotNull(read);
+        // a second request while the read is in flight issues nothing more
+        ch.read();
+        read.complete("hello");
+        assertEquals("hello", reads.poll(5, TimeUnit.SECONDS));
+        assertNull(conn.reads.poll(50, TimeUnit.MILLISECONDS));
+
+        ch.read();
+        assertNotNull(conn.reads.poll(5, TimeUnit.SECONDS));
+
+        ch.close().sync();
+    }
+
+    @Test
+    public void testPartialWriteContinues() throws Exception {
+        var conn = new PendingConnection();
+        var ch = register(conn, false, new LinkedBlockingQueue<>());
+
+        // a heap buffer is copied to a direct buffer before writing
+        var future = ch.writeAndFlush(Unpooled.copiedBuffer("0123456789", StandardCharsets.UTF_8));
+
+        var write = conn.writes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(write);
+        assertTrue(write.buffer.isDirect());
+        assertEquals("0123456789", write.contents());
+        write.handler.completed(4, null);
+
+        // the rest of the buffer is written next, and the write only completes then
+        write = conn.writes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(write);
+        assertEquals("456789", write.contents());
+        assertFalse(future.isDone());
+        write.handler.completed(6, null);
+
+        assertTrue(future.await(5, TimeUnit.SECONDS));
+        assertTrue(future.isSuccess());
+        assertNull(conn.writes.poll(50, TimeUnit.MILLISECONDS));
+
+        ch.close().sync();
+    }
+
+    @Test
+    public void testEndOfStreamCloses() throws Exception {
+        var conn = new PendingConnection();
+        var ch = register(conn, true, new LinkedBlockingQueue<>());
+
+        var read = conn.reads.poll(5, TimeUnit.SECONDS);
+        assertNotNull(read);
+        read.handler.completed(-1, null);
+
+        assertTrue(ch.closeFuture().await(5, TimeUnit.SECONDS));
+        assertTrue(conn.closed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCloseAbortsPendingRead() throws Exception {
+        var conn = new PendingConnection();
+        var errors = new LinkedBlockingQueue<Throwable>();
+        var ch = register(conn, true, new LinkedBlockingQueue<>());
+        ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                errors.add(cause);
+            }
+        });
+
+        var read = conn.reads.poll(5, TimeUnit.SECONDS);
+        assertNotNull(read);
+        ch.close().sync();
+        assertFalse(ch.isOpen());
+        assertTrue(conn.closed.await(5, TimeUnit.SECONDS));
+
+        // the read aborted by the close is not reported to the closed pipeline
+        read.handler.failed(new IOException("closed"), null);
+        assertNull(errors.poll(50, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testLocalAddressIsServerPlaceholder() throws Exception {
+        var ch = register(new PendingConnection(), false, new LinkedBlockingQueue<>());
+
+        assertEquals(InetSocketAddress.createUnresolved("listener-id", 0), ch.localAddress());
+        assertEquals(ch.parent().localAddress(), ch.localAddress());
+        assertEquals(InetSocketAddress.createUnresolved("127.0.0.1", 1234), ch.remoteAddress());
+
+        ch.close().sync();
+    }
+
+    @Test
+    public void testServerPlaceholderFromUrl() throws Exception {
+        var server = new NgrokServerChannel(new UrlListener("tcp://1.tcp.ngrok.io:20000"));
+        assertEquals(InetSocketAddress.createUnresolved("1.tcp.ngrok.io", 20000), server.localAddress());
+    }
+
+    @Test
+    public void testAcceptAfterLoopShutdownClosesConnection() throws Exception {
+        var listener = new PendingListener();
+        var loop = new DefaultEventLoopGroup(1);
+        var server = new NgrokServerChannel(listener);
+        loop.register(server).sync();
+        server.read();
+
+        var accept = listener.accepts.poll(5, TimeUnit.SECONDS);
+        assertNotNull(accept);
+        loop.shutdownGracefully(0, 5, TimeUnit.SECONDS).sync();
+
+        // the connection cannot be handed to the loop any more, so it is closed, and
+        // no further accept is started
+        var conn = new PendingConnection();
+        accept.completed(conn, null);
+        assertTrue(conn.closed.await(5, TimeUnit.SECONDS));
+        assertNull(listener.accepts.poll(50, TimeUnit.MILLISECONDS));
+    }
+
+    private NgrokChannel register(PendingConnection conn, boolean autoRead, BlockingQueue<String> reads) throws Exception {
+        var ch = new NgrokChannel(new NgrokServerChannel(new IdListener()), conn);
+        ch.config().setAutoRead(autoRead);
+        ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                try {
+                    reads.add(((ByteBuf) msg).toString(StandardCharsets.UTF_8));
+                } finally {
+                    ReferenceCountUtil.release(msg);
+                }
+            }
+        });
+        group.register(ch).sync();
+        return ch;
+    }
+
+    private static class Op {
+        final ByteBuffer buffer;
+        final CompletionHandler<Integer, Object> handler;
+
+        Op(ByteBuffer buffer, CompletionHandler<Integer, Object> handler) {
+            this.buffer = buffer;
+            this.handler = handler;
+        }
+
+        void complete(String data) {
+            var bytes = data.getBytes(StandardCharsets.UTF_8);
+            buffer.clear();
+            buffer.put(bytes);
+            buffer.flip();
+            handler.completed(bytes.length, null);
+        }
+
+        String contents() {
+            var bytes = new byte[buffer.limit()];
+            buffer.duplicate().position(0).get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Holds on to asynchronous reads and writes until the test completes them.
+     */
+    private static class PendingConnection implements Connection {
+        final BlockingQueue<Op> reads = new LinkedBlockingQueue<>();
+        final BlockingQueue<Op> writes = new LinkedBlockingQueue<>();
+        final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public String getRemoteAddr() {
+            return "127.0.0.1:1234";
+        }
+
+        @Override
+        public InetSocketAddress inetAddress() {
+            return InetSocketAddress.createUnresolved("127.0.0.1", 1234);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <A> void readAsync(ByteBuffer dst, A attachment, CompletionHandler<Integer, ? super A> handler) {
+            reads.add(new Op(dst, (CompletionHandler<Integer, Object>) handler));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <A> void writeAsync(ByteBuffer src, A attachment, CompletionHandler<Integer, ? super A> handler) {
+            writes.add(new Op(src, (CompletionHandler<Integer, Object>) handler));
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed.countDown();
+        }
+    }
+
+    private static class IdListener implements Listener<Connection> {
+        @Override
+        public Connection accept() throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getId() {
+            return "listener-id";
+        }
+
+        @Override
+        public String getMetadata() {
+            return "";
+        }
+
+        @Override
+        public String getForwardsTo() {
+            return "";
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    /**
+     * Holds on to asynchronous accepts until the test completes them.
+     */
+    private static class PendingListener extends IdListener {
+        final BlockingQueue<CompletionHandler<Connection, Object>> accepts = new LinkedBlockingQueue<>();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <A> void acceptAsync(A attachment, CompletionHandler<? super Connection, ? super A> handler) {
+            accepts.add((CompletionHandler<Connection, Object>) handler);
+        }
+    }
+
+    private static class UrlListener implements Listener.Endpoint {
+        private final String url;
+
+        UrlListener(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public Connection.Endpoint accept() throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getProto() {
+            return "tcp";
+        }
+
+        @Override
+        public String getUrl() {
+            return url;
+        }
+
+        @Override
+        public String getId() {
+            return "listener-id";
+        }
+
+        @Override
+        public String getMetadata() {
+            return "";
+        }
+
+        @Override
+        public String getForwardsTo() {
+            return "";
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.ngrok.tomcat;
+
+import com.ngrok.Connection;
+import com.ngrok.Listener;
+import com.ngrok.Session;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.net.AbstractEndpoint;
+import org.apache.tomcat.util.net.SSLHostConfig;
+import org.apache.tomcat.util.net.SocketEvent;
+import org.apache.tomcat.util.net.SocketProcessorBase;
+import org.apache.tomcat.util.net.SocketWrapperBase;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A Tomcat endpoint accepting connections from an ngrok {@link Listener}.
+ *
+ * The session and listener are created when the endpoint starts, and the listener is
+ * closed when it stops. Accepted connections are wrapped in {@link NgrokSocketWrapper}s
+ * and processed on the endpoint's executor, which may be a virtual thread executor.
+ * Connections waiting for a request do not hold an executor thread, they are
+ * dispatched once data has arrived.
+ *
+ * TLS is terminated by ngrok, so the endpoint does not support SSL host configs.
+ */
+public class NgrokEndpoint extends AbstractEndpoint<Connection, Connection> {
+    private static final Log log = LogFactory.getLog(NgrokEndpoint.class);
+
+    private final Supplier<Session> sessionSupplier;
+    private final Function<Session, Listener> listenerFunction;
+    private volatile Listener listener;
+
+    /**
+     * Constructs a new ngrok endpoint with the specified session supplier and listener function.
+     *
+     * @param sessionSupplier  the supplier for the session used by the endpoint
+     * @param listenerFunction the function for creating the listener
+     */
+    public NgrokEndpoint(Supplier<Session> sessionSupplier, Function<Session, Listener> listenerFunction) {
+        this.sessionSupplier = sessionSupplier;
+        this.listenerFunction = listenerFunction;
+
+        setBindOnInit(false);
+        setUseSendfile(false);
+        // WebSocket and HTTP/2 writes must take the blocking path, as the socket
+        // wrapper does not implement Tomcat's asynchronous vectored I/O
+        setUseAsyncIO(false);
+    }
+
+    /**
+     * Creates the session and the listener to accept connections from.
+     */
+    @Override
+    public void bind() throws Exception {
+        listener = listenerFunction.apply(sessionSupplier.get());
+    }
+
+    @Override
+    public void unbind() throws Exception {
+        if (running) {
+            stop();
+        }
+        doCloseServerSocket();
+        if (getHandler() != null) {
+            getHandler().recycle();
+        }
+    }
+
+    @Override
+    public void startInternal() throws Exception {
+        if (!running) {
+            running = true;
+            paused = false;
+
+            if (getExecutor() == null) {
+                createExecutor();
+            }
+            initializeConnectionLatch();
+            startAcceptorThread();
+        }
+    }
+
+    /**
+     * Stops accepting and closes all open connections. The listener is closed first,
+     * which releases the acceptor thread waiting for new connections.
+     */
+    @Override
+    public void stopInternal() throws Exception {
+        if (!paused) {
+            pause();
+        }
+        if (running) {
+            running = false;
+            doCloseServerSocket();
+            acceptor.stop(10);
+            for (var wrapper : connections.values()) {
+                wrapper.close();
+            }
+            shutdownExecutor();
+        }
+    }
+
+    @Override
+    protected void doCloseServerSocket() throws IOException {
+        var l = listener;
+        listener = null;
+        if (l != null) {
+            l.close();
+        }
+    }
+
+    /**
+     * Does nothing, the acceptor is released by closing the listener.
+     */
+    @Override
+    protected void unlockAccept() {
+    }
+
+    @Override
+    protected Connection serverSocketAccept() throws Exception {
+        var l = listener;
+        if (l == null) {
+            throw new IOException("listener is closed");
+        }
+        return l.accept();
+    }
+
+    /**
+     * Wraps the accepted connection and waits for its first request.
+     */
+    @Override
+    protected boolean setSocketOptions(Connection conn) {
+        try {
+            var wrapper = new NgrokSocketWrapper(conn, this);
+            connections.put(conn, wrapper);
+            wrapper.setReadTimeout(getConnectionTimeout());
+            wrapper.setWriteTimeout(getConnectionTimeout());
+            wrapper.setKeepAliveLeft(getMaxKeepAliveRequests());
+            wrapper.registerReadInterest();
+            return true;
+        } catch (RuntimeException e) {
+            log.error("failed to set up ngrok connection", e);
+            return false;
+        }
+    }
+
+    @Override
+    protected void destroySocket(Connection conn) {
+        countDownConnection();
+        try {
+            conn.close();
+        } catch (IOException ignored) {
+            // the connection was never used
+        }
+    }
+
+    /**
+     * Stops tracking a closed connection. The connection count is counted down by the
+     * wrapper itself when it closes.
+     */
+    void closed(Connection conn) {
+        connections.remove(conn);
+    }
+
+    @Override
+    protected SocketProcessorBase<Connection> createSocketProcessor(SocketWrapperBase<Connection> socketWrapper, SocketEvent event) {
+        return new SocketProcessor(socketWrapper, event);
+    }
+
+    /**
+     * Returns {@code null}, as ngrok connections are not bound to a local address.
+     */
+    @Override
+    protected InetSocketAddress getLocalAddress() throws IOException {
+        return null;
+    }
+
+    @Override
+    protected boolean getDeferAccept() {
+        return false;
+    }
+
+    /**
+     * Throws an {@link UnsupportedOperationException}, as TLS is terminated by ngrok.
+     *
+     * @throws UnsupportedOperationException if the method is called
+     */
+    @Override
+    protected void createSSLContext(SSLHostConfig sslHostConfig) throws Exception {
+        throw new UnsupportedOperationException("TLS is terminated by ngrok");
+    }
+
+    @Override
+    protected Log getLog() {
+        return log;
+    }
+
+    private class SocketProcessor extends SocketProcessorBase<Connection> {
+        SocketProcessor(SocketWrapperBase<Connection> socketWrapper, SocketEvent event) {
+            super(socketWrapper, event);
+        }
+
+        @Override
+        protected void doRun() {
+            var state = getHandler().process(socketWrapper, event);
+            if (state == Handler.SocketState.CLOSED) {
+                socketWrapper.close();
+            }
+        }
+    }
+}
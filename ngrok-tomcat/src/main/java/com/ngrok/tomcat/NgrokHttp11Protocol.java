@@ -0,0 +1,50 @@
+package com.ngrok.tomcat;
+
+import com.ngrok.Connection;
+import com.ngrok.Listener;
+import com.ngrok.Session;
+
+import org.apache.coyote.http11.AbstractHttp11Protocol;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A Coyote HTTP/1.1 protocol handler serving an ngrok {@link Listener}, so requests are
+ * read from the tunnel directly instead of being forwarded to a local port. It is
+ * added to a Tomcat server as a connector:
+ *
+ * <pre>
+ * var connector = new Connector(new NgrokHttp11Protocol(sessionSupplier, listenerFunction));
+ * tomcat.getService().addConnector(connector);
+ * </pre>
+ *
+ * Requests are processed on the connector's executor. On Tomcat versions supporting
+ * them, virtual threads are used by setting {@code useVirtualThreads} on the protocol
+ * handler, or by configuring a virtual thread executor for the connector.
+ */
+public class NgrokHttp11Protocol extends AbstractHttp11Protocol<Connection> {
+    private static final Log log = LogFactory.getLog(NgrokHttp11Protocol.class);
+
+    /**
+     * Constructs a new protocol handler with the specified session supplier and listener function.
+     *
+     * @param sessionSupplier  the supplier for the session used by the protocol handler
+     * @param listenerFunction the function for creating the listener
+     */
+    public NgrokHttp11Protocol(Supplier<Session> sessionSupplier, Function<Session, Listener> listenerFunction) {
+        super(new NgrokEndpoint(sessionSupplier, listenerFunction));
+    }
+
+    @Override
+    protected Log getLog() {
+        return log;
+    }
+
+    @Override
+    protected String getNamePrefix() {
+        return "http-ngrok";
+    }
+}
@@ -0,0 +1,462 @@
+package com.ngrok.tomcat;
+
+import com.ngrok.Connection;
+
+import org.apache.tomcat.util.net.ApplicationBufferHandler;
+import org.apache.tomcat.util.net.SSLSupport;
+import org.apache.tomcat.util.net.SendfileDataBase;
+import org.apache.tomcat.util.net.SendfileState;
+import org.apache.tomcat.util.net.SocketBufferHandler;
+import org.apache.tomcat.util.net.SocketEvent;
+import org.apache.tomcat.util.net.SocketWrapperBase;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A Tomcat socket wrapper for an ngrok {@link Connection}.
+ *
+ * All I/O uses the connection's asynchronous operations, so threads waiting for data
+ * park instead of blocking inside the native runtime, which keeps virtual threads
+ * unpinned. Reads go into the wrapper's direct read buffer: a non-blocking read starts
+ * a read and returns right away, and read interest dispatches the wrapper to the
+ * endpoint's executor once the read completes, or fails it once the read timeout
+ * expires. Writes always complete before returning, so write interest is dispatched
+ * right away.
+ */
+public class NgrokSocketWrapper extends SocketWrapperBase<Connection> {
+    private static final CompletionHandler<Integer, CompletableFuture<Integer>> WRITE_HANDLER = new CompletionHandler<>() {
+        @Override
+        public void completed(Integer sz, CompletableFuture<Integer> done) {
+            done.complete(sz);
+        }
+
+        @Override
+        public void failed(Throwable exc, CompletableFuture<Integer> done) {
+            done.completeExceptionally(exc);
+        }
+    };
+
+    private final InetSocketAddress remoteAddress;
+
+    private final CompletionHandler<Integer, Void> readHandler = new CompletionHandler<>() {
+        @Override
+        public void completed(Integer sz, Void attachment) {
+            onRead(sz, null);
+        }
+
+        @Override
+        public void failed(Throwable exc, Void attachment) {
+            onRead(0, exc);
+        }
+    };
+
+    private final ReentrantLock readLock = new ReentrantLock();
+    private final Condition readDone = readLock.newCondition();
+    private boolean reading;
+    private boolean readInterest;
+    private Future<?> readTimeout;
+    private boolean endOfStream;
+    private Throwable readFailure;
+
+    private ByteBuffer writeBuffer;
+
+    /**
+     * Constructs a new socket wrapper for the given connection.
+     *
+     * @param conn     the connection to wrap
+     * @param endpoint the endpoint that accepted the connection
+     */
+    public NgrokSocketWrapper(Connection conn, NgrokEndpoint endpoint) {
+        super(conn, endpoint);
+        this.remoteAddress = conn.inetAddress();
+
+        var props = endpoint.getSocketProperties();
+        socketBufferHandler = new SocketBufferHandler(props.getAppReadBufSize(), props.getAppWriteBufSize(), true);
+    }
+
+    @Override
+    protected void populateRemoteHost() {
+        if (remoteAddress != null) {
+            remoteHost = remoteAddress.getAddress().getHostName();
+        }
+    }
+
+    @Override
+    protected void populateRemoteAddr() {
+        if (remoteAddress != null) {
+            remoteAddr = remoteAddress.getAddress().getHostAddress();
+        }
+    }
+
+    @Override
+    protected void populateRemotePort() {
+        if (remoteAddress != null) {
+            remotePort = remoteAddress.getPort();
+        }
+    }
+
+    /**
+     * Does nothing, as ngrok connections have no local socket.
+     */
+    @Override
+    protected void populateLocalName() {
+    }
+
+    /**
+     * Does nothing, as ngrok connections have no local socket.
+     */
+    @Override
+    protected void populateLocalAddr() {
+    }
+
+    /**
+     * Does nothing, as ngrok connections have no local socket.
+     */
+    @Override
+    protected void populateLocalPort() {
+    }
+
+    @Override
+    public int read(boolean block, byte[] b, int off, int len) throws IOException {
+        readLock.lock();
+        try {
+            if (!reading) {
+                var n = populateReadBuffer(b, off, len);
+                if (n > 0) {
+                    return n;
+                }
+            }
+            var n = fillReadBuffer(block);
+            if (n > 0) {
+                n = populateReadBuffer(b, off, len);
+            }
+            return n;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public int read(boolean block, ByteBuffer to) throws IOException {
+        readLock.lock();
+        try {
+            if (!reading) {
+                var n = populateReadBuffer(to);
+                if (n > 0) {
+                    return n;
+                }
+            }
+            var n = fillReadBuffer(block);
+            if (n > 0) {
+                n = populateReadBuffer(to);
+            }
+            return n;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Waits for data to arrive in the empty read buffer, or starts a read and returns
+     * right away if not blocking. Must be called with the read lock held.
+     */
+    private int fillReadBuffer(boolean block) throws IOException {
+        if (!reading) {
+            if (readFailure == null && !endOfStream) {
+                startRead();
+            }
+        }
+        if (!block) {
+            return reading ? 0 : available();
+        }
+
+        var timeout = getReadTimeout();
+        var nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+        try {
+            while (reading) {
+                if (timeout <= 0) {
+                    readDone.await();
+                } else if (nanos <= 0) {
+                    throw new SocketTimeoutException();
+                } else {
+                    nanos = readDone.awaitNanos(nanos);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        return available();
+    }
+
+    private int available() throws IOException {
+        if (readFailure != null) {
+            throw readFailure instanceof IOException ? (IOException) readFailure : new IOException(readFailure);
+        }
+        socketBufferHandler.configureReadBufferForRead();
+        var remaining = socketBufferHandler.getReadBuffer().remaining();
+        if (remaining == 0 && endOfStream) {
+            return -1;
+        }
+        return remaining;
+    }
+
+    private void startRead() {
+        socketBufferHandler.configureReadBufferForWrite();
+        var dst = socketBufferHandler.getReadBuffer();
+        dst.clear();
+        reading = true;
+        getSocket().readAsync(dst, null, readHandler);
+    }
+
+    private void onRead(int sz, Throwable failure) {
+        boolean dispatch;
+        readLock.lock();
+        try {
+            reading = false;
+            if (failure != null) {
+                readFailure = failure;
+            } else if (sz < 0) {
+                endOfStream = true;
+            } else {
+                // the connection leaves the data at the start of the buffer, while
+                // the buffer handler expects it to be ready for more writes
+                var dst = socketBufferHandler.getReadBuffer();
+                dst.limit(dst.capacity());
+                dst.position(sz);
+            }
+
+            dispatch = readInterest;
+            readInterest = false;
+            cancelReadTimeout();
+            readDone.signalAll();
+        } finally {
+            readLock.unlock();
+        }
+
+        if (dispatch && !isClosed()) {
+            getEndpoint().processSocket(this, SocketEvent.OPEN_READ, true);
+        }
+    }
+
+    @Override
+    public boolean isReadyForRead() throws IOException {
+        readLock.lock();
+        try {
+            if (reading) {
+                return false;
+            }
+            socketBufferHandler.configureReadBufferForRead();
+            if (socketBufferHandler.getReadBuffer().hasRemaining() || endOfStream || readFailure != null) {
+                return true;
+            }
+            startRead();
+            return false;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Dispatches the wrapper once data is available, starting a read if none is pending.
+     * The wrapper fails with a {@link SocketTimeoutException} if no data arrives within
+     * the read timeout.
+     */
+    @Override
+    public void registerReadInterest() {
+        readLock.lock();
+        try {
+            if (!reading) {
+                socketBufferHandler.configureReadBufferForRead();
+                if (socketBufferHandler.getReadBuffer().hasRemaining() || endOfStream || readFailure != null) {
+                    getEndpoint().processSocket(this, SocketEvent.OPEN_READ, true);
+                    return;
+                }
+                readInterest = true;
+                startRead();
+            } else {
+                readInterest = true;
+            }
+
+            var timeout = getReadTimeout();
+            if (readInterest && timeout > 0 && readTimeout == null) {
+                readTimeout = getEndpoint().getUtilityExecutor().schedule(this::expireRead, timeout, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private void expireRead() {
+        readLock.lock();
+        try {
+            readTimeout = null;
+            if (!readInterest) {
+                return;
+            }
+            readInterest = false;
+        } finally {
+            readLock.unlock();
+        }
+
+        setError(new SocketTimeoutException());
+        getEndpoint().processSocket(this, SocketEvent.ERROR, true);
+    }
+
+    private void cancelReadTimeout() {
+        if (readTimeout != null) {
+            readTimeout.cancel(false);
+            readTimeout = null;
+        }
+    }
+
+    /**
+     * Does nothing, as reads always go through the wrapper's read buffer.
+     */
+    @Override
+    public void setAppReadBufHandler(ApplicationBufferHandler handler) {
+    }
+
+    /**
+     * Writes all remaining data in the given buffer, whether blocking or not. Data that
+     * is not in a direct buffer starting at position zero is copied to a direct buffer first.
+     */
+    @Override
+    protected void doWrite(boolean block, ByteBuffer from) throws IOException {
+        while (from.hasRemaining()) {
+            ByteBuffer src;
+            if (from.isDirect() && from.position() == 0) {
+                src = from;
+            } else {
+                if (writeBuffer == null) {
+                    writeBuffer = ByteBuffer.allocateDirect(socketBufferHandler.getWriteBuffer().capacity());
+                }
+                writeBuffer.clear();
+                var chunk = from.duplicate();
+                chunk.limit(chunk.position() + Math.min(chunk.remaining(), writeBuffer.remaining()));
+                writeBuffer.put(chunk);
+                writeBuffer.flip();
+                src = writeBuffer;
+            }
+
+            var sz = write(src);
+            from.position(from.position() + sz);
+        }
+    }
+
+    private int write(ByteBuffer src) throws IOException {
+        var done = new CompletableFuture<Integer>();
+        getSocket().writeAsync(src, done, WRITE_HANDLER);
+
+        var timeout = getWriteTimeout();
+        try {
+            return timeout > 0 ? done.get(timeout, TimeUnit.MILLISECONDS) : done.get();
+        } catch (TimeoutException e) {
+            // the buffer may still be in use by the native runtime
+            writeBuffer = null;
+            throw new SocketTimeoutException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * Writes all buffered data, as writes always complete before returning.
+     *
+     * @return {@code false}, as no data is left to write
+     */
+    @Override
+    protected boolean flushNonBlocking() throws IOException {
+        flushBlocking();
+        return false;
+    }
+
+    /**
+     * Dispatches the wrapper right away, as writes always complete before returning.
+     */
+    @Override
+    public void registerWriteInterest() {
+        getEndpoint().processSocket(this, SocketEvent.OPEN_WRITE, true);
+    }
+
+    /**
+     * Closes the connection, aborting any read still pending on it.
+     */
+    @Override
+    protected void doClose() {
+        readLock.lock();
+        try {
+            readInterest = false;
+            cancelReadTimeout();
+        } finally {
+            readLock.unlock();
+        }
+
+        ((NgrokEndpoint) getEndpoint()).closed(getSocket());
+        try {
+            getSocket().close();
+        } catch (IOException ignored) {
+            // the connection is gone either way
+        }
+    }
+
+    /**
+     * Returns {@code null}, as sendfile is disabled on ngrok endpoints.
+     */
+    @Override
+    public SendfileDataBase createSendfileData(String filename, long pos, long length) {
+        return null;
+    }
+
+    @Override
+    public SendfileState processSendfile(SendfileDataBase sendfileData) {
+        return SendfileState.ERROR;
+    }
+
+    /**
+     * Does nothing, as TLS is terminated by ngrok.
+     */
+    @Override
+    public void doClientAuth(SSLSupport sslSupport) throws IOException {
+    }
+
+    /**
+     * Returns {@code null}, as TLS is terminated by ngrok.
+     */
+    @Override
+    public SSLSupport getSslSupport() {
+        return null;
+    }
+
+    /**
+     * Throws an {@link UnsupportedOperationException}, as the wrapper does not support
+     * Tomcat's asynchronous vectored I/O. Not called, as {@link NgrokEndpoint} disables
+     * asynchronous I/O.
+     *
+     * @throws UnsupportedOperationException if the method is called
+     */
+    @Override
+    protected <A> OperationState<A> newOperationState(boolean read, ByteBuffer[] buffers, int offset, int length,
+                                                      BlockingMode block, long timeout, TimeUnit unit, A attachment,
+                                                      CompletionCheck check, CompletionHandler<Long, ? super A> handler,
+                                                      Semaphore semaphore, VectoredIOCompletionHandler<A> completion) {
+        throw new UnsupportedOperationException("asynchronous vectored I/O is not supported");
+    }
+}
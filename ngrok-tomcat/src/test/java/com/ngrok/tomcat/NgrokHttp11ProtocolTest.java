@@ -0,0 +1,197 @@
+package com.ngrok.tomcat;
+
+import com.ngrok.Connection;
+import com.ngrok.Listener;
+import org.apache.coyote.Adapter;
+import org.apache.coyote.Request;
+import org.apache.coyote.Response;
+import org.apache.tomcat.util.net.SocketEvent;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NgrokHttp11ProtocolTest {
+    @Test
+    public void testServesRequest() throws Exception {
+        var conn = new ScriptConnection("GET /hello HTTP/1.1\r\nHost: example.ngrok.app\r\nConnection: close\r\n\r\n");
+        var listener = new QueueListener(conn);
+        var protocol = new NgrokHttp11Protocol(() -> null, session -> listener);
+        protocol.setAdapter(new HelloAdapter());
+        protocol.init();
+        protocol.start();
+
+        try {
+            assertTrue(conn.awaitClose(5, TimeUnit.SECONDS));
+            // the connection is counted down before it is closed, and the acceptor takes
+            // a count before waiting for the next connection, leaving only that count
+            assertTrue(listener.awaitWaiting(5, TimeUnit.SECONDS));
+            assertEquals(1, protocol.getConnectionCount());
+        } finally {
+            protocol.stop();
+            protocol.destroy();
+        }
+
+        var response = conn.written();
+        assertTrue(response, response.startsWith("HTTP/1.1 200 \r\n"));
+        assertTrue(response, response.endsWith("\r\n\r\nhello /hello"));
+    }
+
+    @Test
+    public void testBlockingWritesOnly() {
+        // WebSocket and HTTP/2 writes only take the vectored path if the wrapper
+        // reports asynchronous I/O
+        var endpoint = new NgrokEndpoint(() -> null, session -> null);
+        var wrapper = new NgrokSocketWrapper(new ScriptConnection(""), endpoint);
+        assertFalse(wrapper.hasAsyncIO());
+    }
+
+    private static class HelloAdapter implements Adapter {
+        @Override
+        public void service(Request req, Response res) throws Exception {
+            var body = ("hello " + req.requestURI()).getBytes(StandardCharsets.US_ASCII);
+            res.setStatus(200);
+            res.setContentType("text/plain");
+            res.setContentLength(body.length);
+            res.doWrite(ByteBuffer.wrap(body));
+        }
+
+        @Override
+        public boolean prepare(Request req, Response res) {
+            return true;
+        }
+
+        @Override
+        public boolean asyncDispatch(Request req, Response res, SocketEvent status) {
+            return false;
+        }
+
+        @Override
+        public void log(Request req, Response res, long time) {
+        }
+
+        @Override
+        public void checkRecycled(Request req, Response res) {
+        }
+
+        @Override
+        public String getDomain() {
+            return null;
+        }
+    }
+
+    private static class ScriptConnection implements Connection {
+        private final ByteBuffer input;
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        ScriptConnection(String script) {
+            this.input = ByteBuffer.wrap(script.getBytes(StandardCharsets.ISO_8859_1));
+        }
+
+        synchronized String written() {
+            return output.toString(StandardCharsets.ISO_8859_1);
+        }
+
+        boolean awaitClose(long timeout, TimeUnit unit) throws InterruptedException {
+            return closed.await(timeout, unit);
+        }
+
+        @Override
+        public String getRemoteAddr() {
+            return "127.0.0.1:1234";
+        }
+
+        @Override
+        public synchronized int read(ByteBuffer dst) throws IOException {
+            if (!input.hasRemaining()) {
+                return -1;
+            }
+            var len = Math.min(dst.capacity(), input.remaining());
+            dst.clear();
+            dst.put(input.slice().limit(len));
+            dst.flip();
+            input.position(input.position() + len);
+            return len;
+        }
+
+        @Override
+        public synchronized int write(ByteBuffer src) throws IOException {
+            var sz = src.limit();
+            for (int i = 0; i < sz; i++) {
+                output.write(src.get(i));
+            }
+            return sz;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed.countDown();
+        }
+    }
+
+    private static class QueueListener implements Listener<Connection> {
+        private static final Connection CLOSED = new ScriptConnection("");
+
+        private final LinkedBlockingQueue<Connection> connections = new LinkedBlockingQueue<>();
+        private final CountDownLatch waiting = new CountDownLatch(1);
+
+        QueueListener(Connection conn) {
+            connections.add(conn);
+        }
+
+        /**
+         * Waits until an accept finds no connection queued.
+         */
+        boolean awaitWaiting(long timeout, TimeUnit unit) throws InterruptedException {
+            return waiting.await(timeout, unit);
+        }
+
+        @Override
+        public Connection accept() throws IOException {
+            if (connections.isEmpty()) {
+                waiting.countDown();
+            }
+            Connection conn;
+            try {
+                conn = connections.take();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (conn == CLOSED) {
+                connections.add(CLOSED);
+                throw new IOException("listener closed");
+            }
+            return conn;
+        }
+
+        @Override
+        public String getId() {
+            return "id";
+        }
+
+        @Override
+        public String getMetadata() {
+            return "";
+        }
+
+        @Override
+        public String getForwardsTo() {
+            return "";
+        }
+
+        @Override
+        public void close() throws IOException {
+            connections.add(CLOSED);
+        }
+    }
+}